@@ -0,0 +1,88 @@
+package propra.imageconverter.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import propra.imageconverter.ConversionEngine;
+import propra.imageconverter.ConversionRequest;
+import propra.imageconverter.ImageConverterException;
+import propra.imageconverter.Model;
+
+/** Misst Base-32-Kodierung und -Dekodierung einer unkomprimierten TGA-Datei.
+ * Kodierung und Dekodierung arbeiten in getrennten Verzeichnissen, da die
+ * Dekodierung die Ausgangsdatei der Kodierung überschreiben würde.
+ *
+ * @author Martina Koch */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Base32Benchmark {
+	private static final long SEED = 42;
+
+	@Param({ "SOLID", "NOISE", "PHOTO" })
+	public EImagePattern pattern;
+
+	@Param({ "1024" })
+	public int size;
+
+	private Path directory;
+	private ConversionEngine conversionEngine;
+	private ConversionRequest encodeRequest;
+	private ConversionRequest decodeRequest;
+	private long fileBytes;
+
+	@Setup(Level.Trial)
+	public void createFiles() throws IOException, ImageConverterException {
+		directory = Files.createTempDirectory("imageconverter-benchmark");
+		conversionEngine = new ConversionEngine();
+		byte[] pixels = ImageCorpusGenerator.generatePixels(pattern, size, size, 0, SEED);
+
+		Path encodeFile = Files.createDirectories(directory.resolve("encode")).resolve("image.tga");
+		ImageCorpusGenerator.writeTga(encodeFile, size, size, pixels);
+		encodeRequest = ConversionRequest.encodeBase32(encodeFile.toString());
+		fileBytes = Files.size(encodeFile);
+
+		Path decodeFile = Files.createDirectories(directory.resolve("decode")).resolve("image.tga");
+		ImageCorpusGenerator.writeTga(decodeFile, size, size, pixels);
+		conversionEngine.convert(ConversionRequest.encodeBase32(decodeFile.toString()));
+		decodeRequest = ConversionRequest.decodeBase32(decodeFile + ".base-32");
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteFiles() throws IOException {
+		ConversionBenchmark.deleteDirectory(directory);
+	}
+
+	@Benchmark
+	public Model encode(ThroughputCounter counter) throws ImageConverterException, IOException {
+		Model model = conversionEngine.convert(encodeRequest);
+		counter.pixelBytes += fileBytes;
+		return model;
+	}
+
+	@Benchmark
+	public Model decode(ThroughputCounter counter) throws ImageConverterException, IOException {
+		Model model = conversionEngine.convert(decodeRequest);
+		counter.pixelBytes += fileBytes;
+		return model;
+	}
+}
@@ -0,0 +1,53 @@
+package propra.imageconverter.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import propra.imageconverter.checksum.CheckSum;
+
+/** Misst die Checksummenberechnung im Speicher ohne Dateizugriffe, aufgeteilt
+ * in Blöcke wie beim Lesen der Dateien.
+ *
+ * @author Martina Koch */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckSumBenchmark {
+	@Param({ "1024" })
+	public int size;
+
+	@Param({ "65536" })
+	public int blockSize;
+
+	private byte[] pixels;
+
+	@Setup(Level.Trial)
+	public void createPixels() {
+		pixels = ImageCorpusGenerator.generatePixels(EImagePattern.PHOTO, size, size, 0, 42);
+	}
+
+	@Benchmark
+	public long update(ThroughputCounter counter) {
+		CheckSum checkSum = new CheckSum(0);
+		for (int offset = 0; offset < pixels.length; offset += blockSize) {
+			checkSum.update(pixels, offset, Math.min(blockSize, pixels.length - offset));
+		}
+		counter.pixelBytes += pixels.length;
+		return checkSum.finallyCalculateChecksum();
+	}
+}
@@ -0,0 +1,117 @@
+package propra.imageconverter.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import propra.imageconverter.ConversionEngine;
+import propra.imageconverter.ConversionRequest;
+import propra.imageconverter.ImageConverterException;
+import propra.imageconverter.Model;
+
+/** Misst jede Konvertierung zwischen allen Ein- und Ausgabevarianten (TGA und
+ * ProPra, unkomprimiert, RLE und Huffman) für alle Bildmuster. Einzelne
+ * Kombinationen lassen sich mit JMH-Parametern auswählen, z.B. <br>
+ * java -jar target/benchmarks.jar ConversionBenchmark -p input=PROPRA_HUFFMAN
+ * -p output=PROPRA_RLE -prof gc <br>
+ * Mit -p pipelined=true wird im Pipeline-Betrieb konvertiert, mit
+ * -p inMemory=true ohne Dateien aus einem byte[] in einen ByteBuffer.
+ *
+ * @author Martina Koch */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConversionBenchmark {
+	private static final long SEED = 42;
+
+	@Param({ "TGA_UNCOMPRESSED", "TGA_RLE", "PROPRA_UNCOMPRESSED", "PROPRA_RLE", "PROPRA_HUFFMAN" })
+	public EImageVariant input;
+
+	@Param({ "TGA_UNCOMPRESSED", "TGA_RLE", "PROPRA_UNCOMPRESSED", "PROPRA_RLE", "PROPRA_HUFFMAN" })
+	public EImageVariant output;
+
+	@Param({ "SOLID", "GRADIENT", "NOISE", "PHOTO" })
+	public EImagePattern pattern;
+
+	@Param({ "1024" })
+	public int size;
+
+	@Param({ "0" })
+	public int noiseBits;
+
+	@Param({ "false" })
+	public boolean pipelined;
+
+	@Param({ "false" })
+	public boolean inMemory;
+
+	private Path directory;
+	private ConversionEngine conversionEngine;
+	private ConversionRequest conversionRequest;
+	/** Input-Bild bei Konvertierung im Speicher */
+	private byte[] inputBytes;
+	private long pixelBytes;
+
+	@Setup(Level.Trial)
+	public void createCorpus() throws IOException, ImageConverterException {
+		directory = Files.createTempDirectory("imageconverter-benchmark");
+		Map<EImageVariant, Path> corpus = ImageCorpusGenerator.createCorpus(directory, pattern, size, size,
+		        noiseBits, SEED);
+		// eigener Name, damit gleiche Ein- und Ausgabevariante nicht dieselbe Datei ist
+		Path outputFile = directory.resolve(output.getFileName("output"));
+
+		conversionEngine = new ConversionEngine();
+		if (inMemory) {
+			inputBytes = Files.readAllBytes(corpus.get(input));
+			conversionRequest = ConversionRequest
+			        .convertInMemory(input.getFormat(), output.getFormat(), output.getCompressionType())
+			        .withPipelinedExecution(pipelined);
+		} else {
+			conversionRequest = ConversionRequest.convert(corpus.get(input).toString(), outputFile.toString(),
+			        output.getCompressionType()).withPipelinedExecution(pipelined);
+		}
+		pixelBytes = (long) size * size * 3;
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteCorpus() throws IOException {
+		deleteDirectory(directory);
+	}
+
+	@Benchmark
+	public Model convert(ThroughputCounter counter) throws ImageConverterException, IOException {
+		Model model = inMemory ? conversionEngine.convert(conversionRequest, inputBytes)
+		        : conversionEngine.convert(conversionRequest);
+		counter.pixelBytes += pixelBytes;
+		return model;
+	}
+
+	static void deleteDirectory(Path directory) throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(path);
+			}
+		}
+	}
+}
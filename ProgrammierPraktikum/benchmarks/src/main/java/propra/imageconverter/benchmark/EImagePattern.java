@@ -0,0 +1,15 @@
+package propra.imageconverter.benchmark;
+
+/** Muster der synthetischen Testbilder, von geringer zu hoher Entropie.
+ *
+ * @author Martina Koch */
+public enum EImagePattern {
+	/** einfarbige Fläche, ideal für RLE */
+	SOLID,
+	/** horizontale, vertikale und diagonale Farbverläufe */
+	GRADIENT,
+	/** zufällige Bytes, maximale Entropie */
+	NOISE,
+	/** weiche Übergänge zwischen Farbflächen mit quantisierten Stufen */
+	PHOTO
+}
@@ -0,0 +1,37 @@
+package propra.imageconverter.benchmark;
+
+import propra.imageconverter.enums.ECompressionType;
+import propra.imageconverter.enums.EFormat;
+
+/** Alle Kombinationen aus Format und Kompression, die der ImageConverter lesen
+ * und schreiben kann.
+ *
+ * @author Martina Koch */
+public enum EImageVariant {
+	TGA_UNCOMPRESSED(EFormat.TGA, ECompressionType.UNCOMPRESSED),
+	TGA_RLE(EFormat.TGA, ECompressionType.RLE),
+	PROPRA_UNCOMPRESSED(EFormat.PROPRA, ECompressionType.UNCOMPRESSED),
+	PROPRA_RLE(EFormat.PROPRA, ECompressionType.RLE),
+	PROPRA_HUFFMAN(EFormat.PROPRA, ECompressionType.HUFFMAN);
+
+	private final EFormat format;
+	private final ECompressionType compressionType;
+
+	EImageVariant(EFormat format, ECompressionType compressionType) {
+		this.format = format;
+		this.compressionType = compressionType;
+	}
+
+	public EFormat getFormat() {
+		return format;
+	}
+
+	public ECompressionType getCompressionType() {
+		return compressionType;
+	}
+
+	/** Dateiname mit Kompression im Namen und Endung des Formates. */
+	public String getFileName(String baseName) {
+		return baseName + "_" + compressionType.name().toLowerCase() + "." + format;
+	}
+}
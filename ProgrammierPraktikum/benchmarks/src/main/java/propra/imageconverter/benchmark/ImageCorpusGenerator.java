@@ -0,0 +1,166 @@
+package propra.imageconverter.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import propra.imageconverter.ConversionEngine;
+import propra.imageconverter.ConversionRequest;
+import propra.imageconverter.ImageConverterException;
+
+/** Erzeugt deterministisch synthetische Testbilder für die Benchmarks. Aus
+ * gleichem Muster, gleicher Größe, gleichen Rauschbits und gleichem Seed
+ * entstehen immer dieselben Bytes. <br>
+ * Zuerst wird eine unkomprimierte TGA-Datei geschrieben, alle weiteren
+ * Varianten (TGA RLE, ProPra unkomprimiert/RLE/Huffman) werden daraus mit der
+ * ConversionEngine erzeugt. <br>
+ * <br>
+ * Aufruf: ImageCorpusGenerator &lt;Verzeichnis&gt; [Breite Höhe Rauschbits
+ * Seed] schreibt alle Varianten aller Muster in das Verzeichnis.
+ *
+ * @author Martina Koch */
+public class ImageCorpusGenerator {
+	/** Seitenlänge der Zellen, aus denen fotoähnliche Bilder interpoliert werden */
+	private static final int PHOTO_CELL_SIZE = 32;
+	/** Fotoähnliche Bilder werden auf Stufen dieser Breite quantisiert, damit wie
+	 * in realen Bildern gleichfarbige Flächen entstehen */
+	private static final int PHOTO_QUANTIZATION = 8;
+
+	private ImageCorpusGenerator() {
+	}
+
+	public static void main(String[] args) throws IOException, ImageConverterException {
+		if (args.length != 1 && args.length != 5) {
+			System.err.println("Aufruf: ImageCorpusGenerator <Verzeichnis> [Breite Höhe Rauschbits Seed]");
+			System.exit(1);
+		}
+		Path directory = Paths.get(args[0]);
+		int width = args.length == 5 ? Integer.parseInt(args[1]) : 1024;
+		int height = args.length == 5 ? Integer.parseInt(args[2]) : 1024;
+		int noiseBits = args.length == 5 ? Integer.parseInt(args[3]) : 0;
+		long seed = args.length == 5 ? Long.parseLong(args[4]) : 42;
+
+		for (EImagePattern pattern : EImagePattern.values()) {
+			for (Path file : createCorpus(directory, pattern, width, height, noiseBits, seed).values()) {
+				System.out.println(file + " (" + Files.size(file) + " Bytes)");
+			}
+		}
+	}
+
+	/** Schreibt alle Varianten eines Bildes in das Verzeichnis.
+	 *
+	 * @return Pfad je Variante */
+	public static Map<EImageVariant, Path> createCorpus(Path directory, EImagePattern pattern, int width,
+	        int height, int noiseBits, long seed) throws IOException, ImageConverterException {
+		Files.createDirectories(directory);
+		String baseName = pattern.name().toLowerCase() + "_" + width + "x" + height + "_" + noiseBits;
+		Map<EImageVariant, Path> corpus = new EnumMap<>(EImageVariant.class);
+
+		Path sourceFile = directory.resolve(EImageVariant.TGA_UNCOMPRESSED.getFileName(baseName));
+		writeTga(sourceFile, width, height, generatePixels(pattern, width, height, noiseBits, seed));
+		corpus.put(EImageVariant.TGA_UNCOMPRESSED, sourceFile);
+
+		ConversionEngine conversionEngine = new ConversionEngine();
+		for (EImageVariant variant : EImageVariant.values()) {
+			if (variant != EImageVariant.TGA_UNCOMPRESSED) {
+				Path file = directory.resolve(variant.getFileName(baseName));
+				conversionEngine.convert(ConversionRequest.convert(sourceFile.toString(), file.toString(),
+				        variant.getCompressionType()));
+				corpus.put(variant, file);
+			}
+		}
+		return corpus;
+	}
+
+	/** Erzeugt die Pixel eines Bildes in TGA-Reihenfolge (Blau, Grün, Rot).
+	 *
+	 * @param noiseBits Anzahl zufälliger niederwertiger Bits je Farbkanal (0-8),
+	 * steuert die Entropie der Muster SOLID, GRADIENT und PHOTO; NOISE besteht
+	 * immer aus vollständig zufälligen Bytes */
+	public static byte[] generatePixels(EImagePattern pattern, int width, int height, int noiseBits, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		int noiseMask = (1 << Math.max(0, Math.min(8, noiseBits))) - 1;
+		byte[] pixels = new byte[width * height * 3];
+		int[] photoCells = pattern == EImagePattern.PHOTO ? createPhotoCells(width, height, random) : null;
+
+		int i = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				for (int channel = 0; channel < 3; channel++) {
+					int value;
+					switch (pattern) {
+					case SOLID:
+						value = 0x40 + 0x30 * channel;
+						break;
+					case GRADIENT:
+						value = channel == 0 ? x * 255 / Math.max(1, width - 1)
+						        : channel == 1 ? y * 255 / Math.max(1, height - 1)
+						                : (x + y) * 255 / Math.max(1, width + height - 2);
+						break;
+					case NOISE:
+						value = random.nextInt(256);
+						break;
+					default:
+						value = interpolatePhotoCells(photoCells, width, x, y, channel) / PHOTO_QUANTIZATION
+						        * PHOTO_QUANTIZATION;
+						break;
+					}
+					pixels[i++] = (byte) (value ^ (random.nextInt(256) & noiseMask));
+				}
+			}
+		}
+		return pixels;
+	}
+
+	/** Zufällige Farben auf einem groben Gitter, je Gitterpunkt drei Kanäle. */
+	private static int[] createPhotoCells(int width, int height, SplittableRandom random) {
+		int cellsX = width / PHOTO_CELL_SIZE + 2;
+		int cellsY = height / PHOTO_CELL_SIZE + 2;
+		int[] cells = new int[cellsX * cellsY * 3];
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] = random.nextInt(256);
+		}
+		return cells;
+	}
+
+	/** Bilineare Interpolation zwischen den vier umgebenden Gitterpunkten. */
+	private static int interpolatePhotoCells(int[] cells, int width, int x, int y, int channel) {
+		int cellsX = width / PHOTO_CELL_SIZE + 2;
+		int cellX = x / PHOTO_CELL_SIZE;
+		int cellY = y / PHOTO_CELL_SIZE;
+		int fractionX = x % PHOTO_CELL_SIZE;
+		int fractionY = y % PHOTO_CELL_SIZE;
+
+		int topLeft = cells[(cellY * cellsX + cellX) * 3 + channel];
+		int topRight = cells[(cellY * cellsX + cellX + 1) * 3 + channel];
+		int bottomLeft = cells[((cellY + 1) * cellsX + cellX) * 3 + channel];
+		int bottomRight = cells[((cellY + 1) * cellsX + cellX + 1) * 3 + channel];
+
+		int top = topLeft * (PHOTO_CELL_SIZE - fractionX) + topRight * fractionX;
+		int bottom = bottomLeft * (PHOTO_CELL_SIZE - fractionX) + bottomRight * fractionX;
+		return (top * (PHOTO_CELL_SIZE - fractionY) + bottom * fractionY) / (PHOTO_CELL_SIZE * PHOTO_CELL_SIZE);
+	}
+
+	/** Schreibt unkomprimierte TGA-Datei mit Ursprung oben links. */
+	public static void writeTga(Path file, int width, int height, byte[] pixels) throws IOException {
+		byte[] tga = new byte[18 + pixels.length];
+		// Bildtyp 2: unkomprimiertes Echtfarbbild
+		tga[2] = 2;
+		// y-Ursprung, Breite und Höhe im LittleEndian-Format
+		tga[10] = (byte) height;
+		tga[11] = (byte) (height >>> 8);
+		tga[12] = (byte) width;
+		tga[13] = (byte) (width >>> 8);
+		tga[14] = (byte) height;
+		tga[15] = (byte) (height >>> 8);
+		// 24 Bit je Pixel, Bildursprung oben links
+		tga[16] = 24;
+		tga[17] = 0x20;
+		System.arraycopy(pixels, 0, tga, 18, pixels.length);
+		Files.write(file, tga);
+	}
+}
@@ -0,0 +1,95 @@
+package propra.imageconverter.benchmark;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import propra.imageconverter.checksum.CheckSum;
+import propra.imageconverter.enums.ERleMode;
+import propra.imageconverter.transformimage.EncoderRLEImageDataSegment;
+
+/** Vergleicht die RLE-Modi GREEDY und OPTIMAL im Speicher ohne Dateizugriffe.
+ * Die Zeit je Modus misst JMH, die Größen beider Modi und die Ersparnis von
+ * OPTIMAL werden vor jeder Messung einmal ausgegeben, z.B. <br>
+ * java -jar target/benchmarks.jar RleModeBenchmark -p pattern=PHOTO -p
+ * noiseBits=1
+ *
+ * @author Martina Koch */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RleModeBenchmark {
+	private static final long SEED = 42;
+
+	@Param({ "GREEDY", "OPTIMAL" })
+	public ERleMode mode;
+
+	@Param({ "SOLID", "GRADIENT", "NOISE", "PHOTO" })
+	public EImagePattern pattern;
+
+	@Param({ "1024" })
+	public int size;
+
+	@Param({ "0", "1" })
+	public int noiseBits;
+
+	private byte[] pixels;
+
+	@Setup(Level.Trial)
+	public void createPixels() throws IOException {
+		pixels = ImageCorpusGenerator.generatePixels(pattern, size, size, noiseBits, SEED);
+		long greedySize = encode(pixels, ERleMode.GREEDY);
+		long optimalSize = encode(pixels, ERleMode.OPTIMAL);
+		System.out.printf("%nRLE-Größe %s: greedy %d Bytes, optimal %d Bytes, gespart %d Bytes (%.3f %%)%n",
+		        pattern, greedySize, optimalSize, greedySize - optimalSize,
+		        100.0 * (greedySize - optimalSize) / greedySize);
+	}
+
+	@Benchmark
+	public long encode(ThroughputCounter counter) throws IOException {
+		counter.pixelBytes += pixels.length;
+		return encode(pixels, mode);
+	}
+
+	/** Komprimiert die Pixel und gibt die Anzahl geschriebener Bytes zurück. */
+	private static long encode(byte[] pixels, ERleMode rleMode) throws IOException {
+		ByteCounter byteCounter = new ByteCounter();
+		EncoderRLEImageDataSegment rleEncoder = new EncoderRLEImageDataSegment(new DataOutputStream(byteCounter),
+		        new CheckSum(0), rleMode);
+		rleEncoder.writePixels(pixels, 0, pixels.length);
+		rleEncoder.finish();
+		return byteCounter.count;
+	}
+
+	/** Zählt geschriebene Bytes, ohne sie zu speichern. */
+	private static class ByteCounter extends OutputStream {
+		private long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) {
+			count += length;
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package propra.imageconverter.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Zusätzlicher JMH-Zähler für den Durchsatz in Bytes. JMH gibt den Zähler als
+ * Rate je Sekunde aus, "pixelBytes" entspricht also Bytes/s der unkomprimierten
+ * Bilddaten (geteilt durch 10^6 MB/s) und ist damit über Formate und
+ * Kompressionen vergleichbar.
+ *
+ * @author Martina Koch */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class ThroughputCounter {
+	public long pixelBytes;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		pixelBytes = 0;
+	}
+}
@@ -0,0 +1,70 @@
+package propra.imageconverter.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import propra.imageconverter.checksum.CheckSum;
+
+/** Prüft CheckSum.combine, mit dem die Prüfung und die Kodierung in Abschnitten
+ * ihre Checksummen zusammenfügen, gegen die fortlaufende Berechnung.
+ *
+ * @author Martina Koch */
+class CheckSumCombineTest {
+	private static final long SEED = 42;
+	private static final int MOD = 65521;
+
+	/** Teilt Bytefolgen an zufälligen Stellen und an Vielfachen von 65521 und
+	 * fügt die Checksummen der Teile zusammen. */
+	@Test
+	void combinedCheckSumEqualsSequentialCheckSum() {
+		SplittableRandom random = new SplittableRandom(SEED);
+		int[] lengths = { 0, 1, 2, MOD - 1, MOD, MOD + 1, 2 * MOD, 3 * MOD + 5, 1 << 16, 1 << 20 };
+		for (int length : lengths) {
+			byte[] bytes = new byte[length];
+			for (int i = 0; i < length; i++) {
+				bytes[i] = (byte) random.nextInt(256);
+			}
+			long expected = checkSumOf(bytes, 0, length).finallyCalculateChecksum();
+
+			int[][] splits = { {}, { 0 }, { length }, { length / 2 }, { Math.min(length, MOD) },
+			        { Math.min(length, 1), Math.min(length, MOD + 1) }, randomSplits(random, length, 7) };
+			for (int[] split : splits) {
+				CheckSum combined = new CheckSum(0);
+				int start = 0;
+				for (int end : split) {
+					combined.combine(checkSumOf(bytes, start, end - start));
+					start = end;
+				}
+				combined.combine(checkSumOf(bytes, start, length - start));
+				assertEquals(expected, combined.finallyCalculateChecksum(), "Länge " + length);
+				assertEquals(length, combined.getLength());
+			}
+		}
+	}
+
+	/** Stellt eine Checksumme, die bereits fortgeschrieben wurde, vor weitere
+	 * zusammengefügte und fortgeschriebene Teile. */
+	@Test
+	void combineContinuesUpdatedCheckSum() {
+		byte[] bytes = ImageCorpusGenerator.generatePixels(EImagePattern.NOISE, 700, 300, 0, SEED);
+		long expected = checkSumOf(bytes, 0, bytes.length).finallyCalculateChecksum();
+		CheckSum checkSum = checkSumOf(bytes, 0, 100_000);
+		checkSum.combine(checkSumOf(bytes, 100_000, 300_000));
+		checkSum.update(bytes, 400_000, bytes.length - 400_000);
+		assertEquals(expected, checkSum.finallyCalculateChecksum());
+	}
+
+	private static CheckSum checkSumOf(byte[] bytes, int offset, int length) {
+		CheckSum checkSum = new CheckSum(0);
+		checkSum.update(bytes, offset, length);
+		return checkSum;
+	}
+
+	/** Aufsteigende Teilungsstellen zwischen 0 und length. */
+	private static int[] randomSplits(SplittableRandom random, int length, int count) {
+		return random.ints(count, 0, length + 1).sorted().toArray();
+	}
+}
@@ -0,0 +1,183 @@
+package propra.imageconverter.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import propra.imageconverter.ConversionEngine;
+import propra.imageconverter.ConversionRequest;
+import propra.imageconverter.ImageConverterException;
+import propra.imageconverter.Model;
+import propra.imageconverter.checksum.CheckSum;
+import propra.imageconverter.reader.huffman.DecoderHuffmanImageDataSegmentParallel;
+
+/** Dekodiert Huffman-kodierte Bilder des Korpus mit dem sequentiellen und dem
+ * parallelen Decoder und vergleicht Output-Bytes und beide Checksummen. Neben
+ * den unveränderten Bildern werden Datensegmente geprüft, die gekürzt oder
+ * verlängert wurden; Header-Länge und Checksumme werden dabei angepasst, damit
+ * erst die Decoder den Fehler finden. Beide Decoder müssen dann mit derselben
+ * Meldung abbrechen.
+ *
+ * @author Martina Koch */
+class HuffmanDecoderEquivalenceTest {
+	private static final long SEED = 42;
+	/** Position von Datensegmentlänge und Checksumme im ProPra-Header */
+	private static final int HEADER_DATA_SEGMENT_SIZE = 18;
+	private static final int HEADER_CHECKSUM = 26;
+	private static final int HEADER_LENGTH = 30;
+
+	@TempDir
+	Path directory;
+
+	/** Bilder, deren Datensegment die Mindestgröße der parallelen Dekodierung
+	 * erreicht, mit unterschiedlicher Entropie und ungeraden Maßen. */
+	static Stream<Arguments> images() {
+		return Stream.of(Arguments.of(EImagePattern.NOISE, 1201, 1165, 0),
+		        Arguments.of(EImagePattern.PHOTO, 2048, 1537, 6),
+		        Arguments.of(EImagePattern.GRADIENT, 1999, 1500, 7));
+	}
+
+	@ParameterizedTest
+	@MethodSource("images")
+	void decodersProduceSameOutputAndCheckSums(EImagePattern pattern, int width, int height, int noiseBits)
+	        throws IOException, ImageConverterException {
+		assertTrue(ForkJoinPool.getCommonPoolParallelism() > 1, "paralleler Decoder benötigt mehrere Threads");
+		Map<EImageVariant, Path> corpus = ImageCorpusGenerator.createCorpus(directory, pattern, width, height,
+		        noiseBits, SEED);
+		byte[] huffmanImage = Files.readAllBytes(corpus.get(EImageVariant.PROPRA_HUFFMAN));
+		assertTrue(huffmanImage.length - HEADER_LENGTH >= DecoderHuffmanImageDataSegmentParallel.MIN_DATA_SEGMENT_SIZE,
+		        "Datensegment zu klein für die parallele Dekodierung");
+
+		byte[] tgaImage = Files.readAllBytes(corpus.get(EImageVariant.TGA_UNCOMPRESSED));
+		for (EImageVariant output : new EImageVariant[] { EImageVariant.TGA_UNCOMPRESSED,
+		        EImageVariant.PROPRA_RLE }) {
+			Outcome sequential = convert(huffmanImage, output, false);
+			assertEquals(sequential, convert(huffmanImage, output, true), output.name());
+			assertEquals(null, sequential.message, output.name());
+			if (output == EImageVariant.TGA_UNCOMPRESSED) {
+				assertArrayEquals(tgaImage, sequential.outputImage);
+			}
+		}
+	}
+
+	@ParameterizedTest
+	@MethodSource("images")
+	void decodersRejectTruncatedAndOverlongSegmentsAlike(EImagePattern pattern, int width, int height,
+	        int noiseBits) throws IOException, ImageConverterException {
+		Map<EImageVariant, Path> corpus = ImageCorpusGenerator.createCorpus(directory, pattern, width, height,
+		        noiseBits, SEED);
+		byte[] huffmanImage = Files.readAllBytes(corpus.get(EImageVariant.PROPRA_HUFFMAN));
+		int dataSegmentLength = huffmanImage.length - HEADER_LENGTH;
+		SplittableRandom random = new SplittableRandom(SEED);
+
+		// gekürzt: letztes Byte, einige Bytes, über eine Abschnittsgrenze hinweg
+		for (int cut : new int[] { 1, 7, 4096, 1024 * 1024 + 17 }) {
+			byte[] image = withDataSegment(huffmanImage, Arrays.copyOfRange(huffmanImage, HEADER_LENGTH,
+			        HEADER_LENGTH + dataSegmentLength - cut));
+			assertSameOutcome(image, "gekürzt um " + cut);
+		}
+		// verlängert: Nullbytes, zufällige Bytes, mehr als ein Abschnitt
+		for (int extra : new int[] { 1, 3, 5000, 1024 * 1024 + 5 }) {
+			byte[] dataSegment = Arrays.copyOfRange(huffmanImage, HEADER_LENGTH, HEADER_LENGTH + dataSegmentLength
+			        + extra);
+			if (extra > 1) {
+				for (int i = dataSegmentLength; i < dataSegment.length; i++) {
+					dataSegment[i] = (byte) random.nextInt(256);
+				}
+			}
+			assertSameOutcome(withDataSegment(huffmanImage, dataSegment), "verlängert um " + extra);
+		}
+	}
+
+	private void assertSameOutcome(byte[] image, String variant) {
+		for (EImageVariant output : new EImageVariant[] { EImageVariant.TGA_UNCOMPRESSED,
+		        EImageVariant.PROPRA_RLE }) {
+			Outcome sequential = convert(image, output, false);
+			Outcome parallel = convert(image, output, true);
+			assertEquals(sequential, parallel, variant + ", " + output.name());
+			assertTrue(sequential.message != null, variant + " wurde nicht abgelehnt");
+		}
+	}
+
+	/** ProPra-Bild mit dem Header des Originals und neuem Datensegment, Länge und
+	 * Checksumme im Header passen zum neuen Datensegment. */
+	private static byte[] withDataSegment(byte[] huffmanImage, byte[] dataSegment) {
+		byte[] image = Arrays.copyOf(huffmanImage, HEADER_LENGTH + dataSegment.length);
+		System.arraycopy(dataSegment, 0, image, HEADER_LENGTH, dataSegment.length);
+		CheckSum checkSum = new CheckSum(0);
+		checkSum.update(dataSegment, 0, dataSegment.length);
+		ByteBuffer header = ByteBuffer.wrap(image).order(ByteOrder.LITTLE_ENDIAN);
+		header.putLong(HEADER_DATA_SEGMENT_SIZE, dataSegment.length);
+		header.putInt(HEADER_CHECKSUM, (int) checkSum.finallyCalculateChecksum());
+		return image;
+	}
+
+	private static Outcome convert(byte[] huffmanImage, EImageVariant output, boolean parallelHuffmanDecoding) {
+		ConversionRequest request = ConversionRequest
+		        .convertInMemory(EImageVariant.PROPRA_HUFFMAN.getFormat(), output.getFormat(),
+		                output.getCompressionType())
+		        .withParallelHuffmanDecoding(parallelHuffmanDecoding);
+		try {
+			Model model = new ConversionEngine().convert(request, huffmanImage);
+			ByteBuffer outputBuffer = model.getOutputBuffer();
+			byte[] outputImage = new byte[outputBuffer.remaining()];
+			outputBuffer.get(outputImage);
+			return new Outcome(outputImage, model.getCheckSumInputFile(), model.getCheckSumOutputFile(), null);
+		} catch (ImageConverterException | IOException e) {
+			return new Outcome(null, 0, 0, e.getClass().getSimpleName() + ": " + e.getMessage());
+		}
+	}
+
+	/** Output-Bild und Checksummen bzw. Fehlermeldung einer Konvertierung. */
+	private static final class Outcome {
+		private final byte[] outputImage;
+		private final long checkSumInput;
+		private final long checkSumOutput;
+		private final String message;
+
+		Outcome(byte[] outputImage, long checkSumInput, long checkSumOutput, String message) {
+			this.outputImage = outputImage;
+			this.checkSumInput = checkSumInput;
+			this.checkSumOutput = checkSumOutput;
+			this.message = message;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Outcome)) {
+				return false;
+			}
+			Outcome outcome = (Outcome) other;
+			return Arrays.equals(outputImage, outcome.outputImage) && checkSumInput == outcome.checkSumInput
+			        && checkSumOutput == outcome.checkSumOutput && Objects.equals(message, outcome.message);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(outputImage);
+		}
+
+		@Override
+		public String toString() {
+			return message != null ? "Fehler: " + message
+			        : "Output " + outputImage.length + " Bytes, Checksummen " + checkSumInput + "/" + checkSumOutput;
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package propra.imageconverter.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import propra.imageconverter.ConversionEngine;
+import propra.imageconverter.ConversionRequest;
+import propra.imageconverter.ImageConverterException;
+import propra.imageconverter.Model;
+import propra.imageconverter.checksum.CheckSum;
+import propra.imageconverter.enums.ECompressionType;
+import propra.imageconverter.enums.EFormat;
+import propra.imageconverter.enums.ERleMode;
+import propra.imageconverter.transformimage.EncoderRLEImageDataSegment;
+
+/** Prüft die RLE-Kompression unkomprimierter Bilder ab zwei Streifen (etwa 2 MB
+ * Bilddaten): Die Pakete müssen denen eines fortlaufend komprimierenden
+ * Encoders entsprechen, die mit CheckSum.combine zusammengefügten Checksummen
+ * denen über das ganze Datensegment.
+ *
+ * @author Martina Koch */
+class RleStripeEncodingTest {
+	private static final long SEED = 42;
+	/** Position der Checksumme im ProPra-Header */
+	private static final int HEADER_CHECKSUM = 26;
+	private static final int HEADER_LENGTH = 30;
+
+	@TempDir
+	Path directory;
+
+	/** Bilder mit Zeilenlängen, bei denen die Streifen keine Vielfachen von
+	 * 65521 Bytes sind, ein Bild mit einem kurzen letzten Streifen und Bilder,
+	 * deren Streifen keinen unabhängigen Paketbeginn enthalten (einfarbig,
+	 * Rauschen). */
+	static Stream<Arguments> stripedImages() {
+		return Stream.of(Arguments.of(EImagePattern.PHOTO, 1000, 800, 2, ERleMode.GREEDY),
+		        Arguments.of(EImagePattern.GRADIENT, 1024, 1100, 0, ERleMode.GREEDY),
+		        Arguments.of(EImagePattern.NOISE, 1000, 1000, 1, ERleMode.GREEDY),
+		        Arguments.of(EImagePattern.NOISE, 777, 901, 0, ERleMode.GREEDY),
+		        Arguments.of(EImagePattern.SOLID, 1000, 1100, 0, ERleMode.GREEDY),
+		        Arguments.of(EImagePattern.PHOTO, 1000, 800, 2, ERleMode.OPTIMAL));
+	}
+
+	@ParameterizedTest
+	@MethodSource("stripedImages")
+	void stripesMatchSequentialEncodingAndCheckSums(EImagePattern pattern, int width, int height, int noiseBits,
+	        ERleMode rleMode) throws IOException, ImageConverterException {
+		Map<EImageVariant, Path> corpus = ImageCorpusGenerator.createCorpus(directory, pattern, width, height,
+		        noiseBits, SEED);
+		byte[] tgaImage = Files.readAllBytes(corpus.get(EImageVariant.TGA_UNCOMPRESSED));
+		byte[] propraImage = Files.readAllBytes(corpus.get(EImageVariant.PROPRA_UNCOMPRESSED));
+
+		Model model = convert(propraImage, EFormat.PROPRA, EFormat.PROPRA, ECompressionType.RLE, rleMode);
+		byte[] rleImage = outputOf(model);
+		assertArrayEquals(encodeSequentially(propraImage, rleMode),
+		        Arrays.copyOfRange(rleImage, HEADER_LENGTH, rleImage.length));
+
+		long checkSumInput = checkSumOf(propraImage, HEADER_LENGTH, propraImage.length - HEADER_LENGTH)
+		        .finallyCalculateChecksum();
+		long checkSumOutput = checkSumOf(rleImage, HEADER_LENGTH, rleImage.length - HEADER_LENGTH)
+		        .finallyCalculateChecksum();
+		assertEquals(checkSumInput, model.getCheckSumInputFile());
+		assertEquals(checkSumOutput, model.getCheckSumOutputFile());
+		assertEquals(checkSumOutput,
+		        ByteBuffer.wrap(rleImage).order(ByteOrder.LITTLE_ENDIAN).getInt(HEADER_CHECKSUM) & 0xffffffffL);
+
+		// die Dekodierung prüft die Checksumme im Header erneut
+		byte[] decodedImage = outputOf(
+		        convert(rleImage, EFormat.PROPRA, EFormat.TGA, ECompressionType.UNCOMPRESSED, ERleMode.GREEDY));
+		assertArrayEquals(tgaImage, decodedImage);
+
+		// TGA-Input ohne Input-Checksumme
+		Model tgaModel = convert(tgaImage, EFormat.TGA, EFormat.PROPRA, ECompressionType.RLE, rleMode);
+		assertArrayEquals(rleImage, outputOf(tgaModel));
+	}
+
+	/** Komprimiert das Datensegment eines unkomprimierten ProPra-Bildes mit einem
+	 * einzigen Encoder. */
+	private static byte[] encodeSequentially(byte[] propraImage, ERleMode rleMode) throws IOException {
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		EncoderRLEImageDataSegment rleEncoder = new EncoderRLEImageDataSegment(new DataOutputStream(encoded),
+		        new CheckSum(-1), rleMode);
+		rleEncoder.writePixels(propraImage, HEADER_LENGTH, propraImage.length - HEADER_LENGTH);
+		rleEncoder.finish();
+		return encoded.toByteArray();
+	}
+
+	private static CheckSum checkSumOf(byte[] bytes, int offset, int length) {
+		CheckSum checkSum = new CheckSum(0);
+		checkSum.update(bytes, offset, length);
+		return checkSum;
+	}
+
+	private static Model convert(byte[] image, EFormat inputFormat, EFormat outputFormat,
+	        ECompressionType compressionType, ERleMode rleMode) throws IOException, ImageConverterException {
+		return new ConversionEngine().convert(
+		        ConversionRequest.convertInMemory(inputFormat, outputFormat, compressionType).withRleMode(rleMode),
+		        image);
+	}
+
+	private static byte[] outputOf(Model model) {
+		ByteBuffer outputBuffer = model.getOutputBuffer();
+		byte[] output = new byte[outputBuffer.remaining()];
+		outputBuffer.get(output);
+		return output;
+	}
+}
@@ -1,58 +1,140 @@
 package propra.imageconverter;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
-import propra.imageconverter.argument.ArgumentChecker;
-import propra.imageconverter.argument.ArgumentExtractor;
+import propra.imageconverter.batch.BatchConverter;
 import propra.imageconverter.consistancy.ConsistancyCheckerProPra;
 import propra.imageconverter.consistancy.ConsistancyCheckerTGA;
+import propra.imageconverter.enums.ECompressionType;
+import propra.imageconverter.enums.ECounter;
 import propra.imageconverter.enums.EFormat;
+import propra.imageconverter.enums.EStage;
+import propra.imageconverter.metrics.ConversionMetrics;
 import propra.imageconverter.reader.header.HeaderReaderProPraInputFile;
 import propra.imageconverter.reader.header.HeaderReaderTGAInputFile;
+import propra.imageconverter.region.ConverterRegionToOutputFile;
 import propra.imageconverter.transportcoding.EncodeDecodeBase32;
-
-/** Instanz dieser Klasse instanziiert über die jeweiligen Konstruktoren das
- * Datenmodel, den ArgumentExtractor und ArgumentChecker für die
- * Eingabeargumente des Nutzers, den ConsistancyChecker und den HeaderReader für
- * das Input-File und stößt mit Base32 die Transportkodierung bzw. die
- * Transformation ins Ausgabeformat an. <br>
+import propra.imageconverter.verify.VerifierProPra;
+
+/** Instanz dieser Klasse führt für das bereits geprüfte Model einer
+ * ConversionEngine-Anfrage genau eine Ausführung durch. Hierzu werden der
+ * ConsistancyChecker und der HeaderReader für das Input-File instanziiert und
+ * mit Base32 die Transportkodierung bzw. die Transformation ins Ausgabeformat
+ * angestoßen. <br>
+ * Laufzeiten von Header, Konsistenzprüfung und Base32 sowie Dateigrößen und
+ * Pixelanzahl werden hier in ConversionMetrics erfasst, die übrigen Abschnitte
+ * in den ausführenden Komponenten.
  *
  * @author Martina Koch */
 public class Controller {
 	private Model model;
-	private String[] excecutionArguments;
-	private ArgumentExtractor argumentExctractor;
 	private IHeaderReaderInputFile headerReaderInputFile;
 	private IConsistancyChecker consistancyCheckerInputFile;
 	private EFormat inputFormat;
+	private ConversionMetrics metrics;
 
-	public Controller(String[] commandLineArguments) throws ImageConverterException, IOException {
-		this.model = new Model();
-		this.excecutionArguments = commandLineArguments;
-		argumentExctractor = new ArgumentExtractor(this, model);
-		new ArgumentChecker(model);
-
+	public Controller(Model model) throws ImageConverterException, IOException {
+		this.model = model;
 		this.inputFormat = model.getInputFormat();
+		this.metrics = model.getMetrics();
+
+		// überprüfe ProPra-Dateien ohne Konvertierung
+		if (model.getVerifyCheckSum()) {
+			new VerifierProPra(model);
+		}
+
+		// konvertiere alle Dateien eines Verzeichnisses bzw. einer Liste
+		else if (model.getBatchConversion()) {
+			new BatchConverter(model);
+		}
 
 		// starte Transportkodierung/-enkodierung Base32
-		if (model.getEncodeBase32() || model.getDecodeBase32()) {
-			// gibt Konsolen-Eingabeparameter für Benutzer aus
-			System.out.println(model);
+		else if (model.getEncodeBase32() || model.getDecodeBase32()) {
 			initializeTransportCodingEncodingBase32();
 		}
 
 		// starte Konvertierung bzw. Transformation ins Output-Format
 		else {
-			initializeHeaderReaderForInputFile();
-			initializeConsistancyCheckerForInputFile();
-			assignInputOutputCompressionTypeToModel();
-			printStatusToScreenForUser();
+			// Input- und Output-File werden je Konvertierung nur einmal geöffnet
+			try (ConversionFiles conversionFiles = new ConversionFiles(model)) {
+				model.setConversionFiles(conversionFiles);
+				convertInputFile();
+				if (model.isInMemoryConversion()) {
+					model.setOutputBuffer(conversionFiles.getOutputContent());
+				}
+			} finally {
+				model.setConversionFiles(null);
+			}
+		}
+	}
 
-			initializeTransformationToOutputFile();
+	private void convertInputFile() throws ImageConverterException, IOException {
+		ConversionFiles conversionFiles = model.getConversionFiles();
+		// bei fortlaufend gelesener Standardeingabe steht die Länge des Inputs erst an ihrem Ende fest
+		boolean isInputStreamed = !conversionFiles.isInputLengthKnown();
+		try {
+			readAndCheckHeaderOfInputFile();
+			if (isInputStreamed && isPositionalInputRequired()) {
+				conversionFiles.getInputChannel();
+				isInputStreamed = false;
+				readAndCheckHeaderOfInputFile();
+			}
+
+			// Bildausschnitt: Input wird nur soweit nötig gelesen, daher keine Checksummenprüfung
+			if (model.getRegion() != null) {
+				new ConverterRegionToOutputFile(model, headerReaderInputFile);
+			} else {
+				initializeTransformationToOutputFile();
+			}
+		} catch (IOException | ImageConverterException e) {
+			checkHeaderOfFinishedInput(isInputStreamed);
+			throw e;
+		}
+		checkHeaderOfFinishedInput(isInputStreamed);
 
+		if (model.getRegion() == null) {
+			long startNanos = System.nanoTime();
 			checkConsistancyCheckSumIfProPraInputFile();
+			metrics.stopStage(EStage.CONSISTENCY_CHECK, startNanos);
+		}
+
+		assignFileSizesToMetrics(conversionFiles.getInputLength(), conversionFiles.getOutputLength());
+		long imageWidth = model.getRegion() != null ? model.getRegion().getWidth() : model.getImageWidth();
+		long imageHeight = model.getRegion() != null ? model.getRegion().getHeight() : model.getImageHeight();
+		metrics.set(ECounter.PIXELS, imageWidth * imageHeight);
+	}
+
+	private void readAndCheckHeaderOfInputFile() throws ImageConverterException, IOException {
+		long startNanos = System.nanoTime();
+		initializeHeaderReaderForInputFile();
+		metrics.stopStage(EStage.HEADER_READ, startNanos);
+
+		startNanos = System.nanoTime();
+		initializeConsistancyCheckerForInputFile();
+		metrics.stopStage(EStage.CONSISTENCY_CHECK, startNanos);
+		assignInputCompressionTypeToModel();
+	}
+
+	/** Bildausschnitt, Huffman-Kodierung mit Häufigkeitsbestimmung und parallele
+	 * Huffman-Dekodierung lesen positionsgenau, eine fortlaufend gelesene
+	 * Standardeingabe wird für sie gepuffert. */
+	private boolean isPositionalInputRequired() {
+		boolean isHuffmanInput = model.getInputCompressionType().equals(ECompressionType.HUFFMAN);
+		boolean isHuffmanOutput = model.getOutputCompressionType().equals(ECompressionType.HUFFMAN);
+		return model.getRegion() != null || (isHuffmanOutput && !isHuffmanInput)
+		        || (isHuffmanInput && !isHuffmanOutput && model.getParallelHuffmanDecoding());
+	}
+
+	/** Holt bei fortlaufend gelesener Standardeingabe die von der Dateilänge
+	 * abhängigen Prüfungen nach, sobald diese feststeht. Wie beim Input-File
+	 * haben ihre Fehler Vorrang vor denen der Transformation. */
+	private void checkHeaderOfFinishedInput(boolean isInputStreamed) throws ImageConverterException, IOException {
+		if (isInputStreamed) {
+			model.getConversionFiles().finishInput();
+			readAndCheckHeaderOfInputFile();
 		}
-		System.out.println("Konvertierung erfolgreich!");
 	}
 
 	/** Startet Transportkodierung/-enkodierung Base32
@@ -60,7 +142,19 @@ public class Controller {
 	 * @throws ImageConverterException
 	 * @throws IOException */
 	private void initializeTransportCodingEncodingBase32() throws ImageConverterException, IOException {
+		long startNanos = System.nanoTime();
 		new EncodeDecodeBase32(model);
+		metrics.stopStage(EStage.BASE32, startNanos);
+		assignFileSizesToMetrics(Files.size(Paths.get(model.getInputFilePath())),
+		        Files.size(Paths.get(model.getOutputFilePath())));
+	}
+
+	/** Setzt die Dateigrößen nach der Ausführung, Werte einer intern
+	 * ausgeführten Konvertierung (Bildausschnitt) werden überschrieben. Bei
+	 * Ausgabe auf die Standardausgabe zählen die geschriebenen Bytes. */
+	private void assignFileSizesToMetrics(long inputLength, long outputLength) {
+		metrics.set(ECounter.BYTES_IN, inputLength);
+		metrics.set(ECounter.BYTES_OUT, outputLength);
 	}
 
 	private void initializeHeaderReaderForInputFile() throws ImageConverterException, IOException {
@@ -74,9 +168,8 @@ public class Controller {
 		        : new ConsistancyCheckerProPra(model, headerReaderInputFile);
 	}
 
-	private void assignInputOutputCompressionTypeToModel() throws ImageConverterException {
+	private void assignInputCompressionTypeToModel() {
 		model.setInputCompressionType(headerReaderInputFile.getCompressionType());
-		model.setOutputCompressionType(argumentExctractor.getOutputCompressionTypeFromArgumentExtractor());
 	}
 
 	private void initializeTransformationToOutputFile() throws ImageConverterException, IOException {
@@ -89,22 +182,14 @@ public class Controller {
 		}
 	}
 
-	public String[] getExecutionArguments() {
-		return excecutionArguments;
-	}
-
-	private void printStatusToScreenForUser() {
-		// Ausgabe der Eingabeparameter
-		System.out.println(model);
-		// Ausgabe der gewählten Konvertierung im Programm
-		System.out.println(this);
-	}
-
 	@Override
 	public String toString() {
-		StringBuilder stringOutput = new StringBuilder();
-		stringOutput.append("Konvertiere " + model.getInputFormat() + " (" + model.getInputCompressionType() + ") zu "
-		        + model.getOutputFormat() + " (" + model.getOutputCompressionType() + ")");
-		return stringOutput.toString();
+		return describeConversion(model);
+	}
+
+	/** Beschreibt die gewählte Konvertierung für die Ausgabe auf der Konsole. */
+	static String describeConversion(Model model) {
+		return "Konvertiere " + model.getInputFormat() + " (" + model.getInputCompressionType() + ") zu "
+		        + model.getOutputFormat() + " (" + model.getOutputCompressionType() + ")";
 	}
 }
@@ -0,0 +1,77 @@
+package propra.imageconverter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import propra.imageconverter.argument.ArgumentChecker;
+
+/** Einstiegspunkt für die Nutzung des ImageConverters als Bibliothek innerhalb
+ * einer laufenden JVM. <br>
+ * Jeder Aufruf von convert arbeitet auf einem eigenen Model und eigenen
+ * Dateien, die Engine selbst hält keinen veränderlichen Zustand. Eine Instanz
+ * kann daher von beliebig vielen Threads gleichzeitig genutzt werden. Fehler
+ * werden als ImageConverterException bzw. IOException geworfen, das Programm
+ * wird nie beendet. Da die JVM weiterläuft, bleiben geladene Klassen und
+ * bereits JIT-kompilierter Code für folgende Konvertierungen erhalten. <br>
+ * Mit ConversionRequest.convertInMemory wird ein Bild aus einem ByteBuffer
+ * bzw. byte[] ohne Dateisystem konvertiert. HeaderReader, Konsistenzprüfung
+ * und Codecs sind dieselben wie für Dateien, sie lesen und schreiben über
+ * BufferPositionalChannels.
+ *
+ * @author Martina Koch */
+public class ConversionEngine {
+
+	/** Führt die Anfrage aus.
+	 *
+	 * @return Model der Ausführung mit Formaten, Kompressionen, Checksummen und
+	 * Laufzeiten (Model.getMetrics) */
+	public Model convert(ConversionRequest request) throws ImageConverterException, IOException {
+		return execute(request.createModel());
+	}
+
+	/** Konvertiert das Bild von position bis limit des Input-Buffers (Heap oder
+	 * direkt) im Speicher, der Input-Buffer wird nicht verändert.
+	 *
+	 * @return Model der Ausführung, Model.getOutputBuffer enthält das Output-Bild
+	 * in einem eigenen Heap-Puffer */
+	public Model convert(ConversionRequest request, ByteBuffer input) throws ImageConverterException, IOException {
+		return convert(request, input, null);
+	}
+
+	/** Konvertiert das Bild aus dem Array im Speicher.
+	 *
+	 * @return Model der Ausführung, Model.getOutputBuffer enthält das Output-Bild
+	 * in einem eigenen Heap-Puffer */
+	public Model convert(ConversionRequest request, byte[] input) throws ImageConverterException, IOException {
+		return convert(request, ByteBuffer.wrap(input), null);
+	}
+
+	/** Konvertiert das Bild von position bis limit des Input-Buffers im Speicher
+	 * und schreibt das Output-Bild ab position in den Zielpuffer. Danach steht
+	 * die Position des Zielpuffers hinter dem Output-Bild. Reicht der Platz bis
+	 * limit nicht, wird mit IOException abgebrochen und die Position bleibt
+	 * unverändert.
+	 *
+	 * @param output Zielpuffer, null für einen eigenen Heap-Puffer
+	 * @return Model der Ausführung, Model.getOutputBuffer enthält das Output-Bild
+	 * als Ausschnitt des Zielpuffers */
+	public Model convert(ConversionRequest request, ByteBuffer input, ByteBuffer output)
+	        throws ImageConverterException, IOException {
+		Model model = request.createModel();
+		model.setInputBuffer(input);
+		model.setOutputBuffer(output);
+		execute(model);
+		if (output != null) {
+			output.position(output.position() + model.getOutputBuffer().remaining());
+		}
+		return model;
+	}
+
+	private Model execute(Model model) throws ImageConverterException, IOException {
+		long startNanos = System.nanoTime();
+		new ArgumentChecker(model);
+		new Controller(model);
+		model.getMetrics().setWallTimeNanos(System.nanoTime() - startNanos);
+		return model;
+	}
+}
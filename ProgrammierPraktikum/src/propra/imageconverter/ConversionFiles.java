@@ -0,0 +1,559 @@
+package propra.imageconverter;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import propra.imageconverter.channel.BufferPositionalChannel;
+import propra.imageconverter.channel.FilePositionalChannel;
+import propra.imageconverter.channel.IPositionalChannel;
+import propra.imageconverter.checksum.CheckSum;
+import propra.imageconverter.enums.ECounter;
+import propra.imageconverter.enums.EFormat;
+import propra.imageconverter.metrics.ConversionMetrics;
+import propra.imageconverter.pipeline.PipelinedInputStream;
+import propra.imageconverter.pipeline.PipelinedOutputStream;
+import propra.imageconverter.utilities.BufferCache;
+
+/** Instanz dieser Klasse hält Input- und Output-File genau einer Konvertierung
+ * offen. Beide Dateien werden nur einmal als IPositionalChannel geöffnet, alle
+ * HeaderReader und Transformationen lesen und schreiben über diese Channels
+ * bzw. über die hier erzeugten Streams. Geschlossen wird nur über close(),
+ * Streams schließen die Channels nicht. <br>
+ * Beim Öffnen wird der erste Block des Input-Files gelesen. Aus ihm wird der
+ * Header entnommen, der Rest dient dem Input-Stream des Bilddatensegmentes als
+ * erster Puffer, sodass der Anfang der Datei nur einmal gelesen wird. <br>
+ * Das Output-File wird erst beim ersten Zugriff angelegt bzw. geleert. <br>
+ * Die Aufrufe von read und write auf den Channels werden in den
+ * ConversionMetrics des Models gezählt. <br>
+ * Im Pipeline-Betrieb lesen und schreiben eigene Threads über die Streams aus
+ * openPipelinedInputStream und openPipelinedOutputStream. Beim Schließen
+ * werden deren Threads beendet, auch wenn die Transformation abgebrochen wurde.
+ * <br>
+ * Der Pfad "-" steht für die Standardeingabe bzw. Standardausgabe. Von der
+ * Standardeingabe wird beim Öffnen nur der erste Block gelesen. Ist sie länger,
+ * lesen die fortlaufend arbeitenden Decoder sie über openInputStream direkt
+ * weiter, ihre Länge steht dann erst an ihrem Ende fest. Nur wenn
+ * getInputChannel bzw. getInputPath positionsgenauen Zugriff verlangen, wird
+ * sie in einen SpillOverBuffer bzw. eine temporäre Datei übernommen. Auf die
+ * Standardausgabe wird nur fortlaufend geschrieben: Ein
+ * TGA-Header steht vor den Bilddaten fest und wird zuerst geschrieben, die
+ * Bilddaten folgen direkt. Ein ProPra-Header enthält Länge und Checksumme des
+ * Bilddatensegmentes, dieses wird daher im SpillOverBuffer gesammelt und erst
+ * nach dem Header ausgegeben. <br>
+ * Bei Konvertierung im Speicher lesen und schreiben alle Komponenten über
+ * BufferPositionalChannels statt über Dateien.
+ *
+ * @author Martina Koch */
+public class ConversionFiles implements Closeable {
+	/** Pfad für Standardeingabe bzw. Standardausgabe */
+	public static final String STANDARD_STREAM = "-";
+	/** Länge einer noch nicht bis zum Ende gelesenen Standardeingabe */
+	public static final long UNKNOWN_LENGTH = -1;
+	/** Größe der Lese- und Schreibpuffer in Bytes */
+	private static final int BLOCK_SIZE = 64 * 1024;
+	private final String outputFilePath;
+	private final EFormat inputFormat;
+	/** Input-File bzw. temporäre Kopie der Standardeingabe */
+	private Path inputPath;
+	private final boolean isStandardInput;
+	/** true für die temporäre Kopie der Standardeingabe */
+	private boolean isInputTemporary;
+	/** null, solange die Standardeingabe fortlaufend gelesen wird */
+	private IPositionalChannel inputChannel;
+	private long inputLength;
+	/** Anzahl der bisher von der Standardeingabe gelesenen Bytes */
+	private long standardInputPosition;
+	private final byte[] firstInputBlock;
+	private final int firstInputBlockLength;
+	private IPositionalChannel outputChannel;
+	/** nur bei Konvertierung im Speicher gesetzt, zugleich outputChannel */
+	private BufferPositionalChannel memoryOutputChannel;
+	/** nur bei Ausgabe auf die Standardausgabe gesetzt */
+	private StandardOutputChannel standardOutput;
+	/** Bilddatensegment einer ProPra-Ausgabe auf die Standardausgabe */
+	private SpillOverBuffer dataSegmentBuffer;
+	private final ConversionMetrics metrics;
+	private final List<PipelinedInputStream> pipelinedInputStreams = new ArrayList<>();
+	private final List<PipelinedOutputStream> pipelinedOutputStreams = new ArrayList<>();
+	/** nimmt die Puffer dieser Konvertierung auf, bis close sie dem BufferCache
+	 * des Threads zurückgibt */
+	private final BufferCache.Scope bufferScope;
+
+	/** Muss im selben Thread geschlossen werden, in dem die Instanz erzeugt
+	 * wurde. */
+	public ConversionFiles(Model model) throws IOException {
+		this.outputFilePath = model.getOutputFilePath();
+		this.inputFormat = model.getInputFormat();
+		this.metrics = model.getMetrics();
+		isStandardInput = !model.isInMemoryConversion() && isStandardStream(model.getInputFilePath());
+		bufferScope = BufferCache.openScope();
+		firstInputBlock = BufferCache.take(BLOCK_SIZE);
+		try {
+			if (model.isInMemoryConversion()) {
+				inputChannel = BufferPositionalChannel.forReading(model.getInputBuffer());
+				memoryOutputChannel = BufferPositionalChannel.forWriting(model.getOutputBuffer());
+				outputChannel = memoryOutputChannel;
+			} else if (!isStandardInput) {
+				inputPath = Paths.get(model.getInputFilePath());
+				try {
+					inputChannel = FilePositionalChannel.open(inputPath, StandardOpenOption.READ);
+				} catch (NoSuchFileException e) {
+					throw new FileNotFoundException("Input-Datei nicht gefunden: " + model.getInputFilePath());
+				}
+			}
+			if (isStandardInput) {
+				inputLength = UNKNOWN_LENGTH;
+				firstInputBlockLength = readStandardInput(firstInputBlock, 0, BLOCK_SIZE, 0);
+				if (isInputLengthKnown()) {
+					// die Standardeingabe liegt vollständig im ersten Block
+					inputChannel = BufferPositionalChannel
+					        .forReading(ByteBuffer.wrap(firstInputBlock, 0, firstInputBlockLength));
+				}
+			} else {
+				inputLength = inputChannel.size();
+				firstInputBlockLength = readInput(firstInputBlock, 0, (int) Math.min(BLOCK_SIZE, inputLength), 0);
+			}
+		} catch (IOException | RuntimeException e) {
+			try {
+				if (inputChannel != null) {
+					inputChannel.close();
+				}
+			} finally {
+				bufferScope.close();
+			}
+			throw e;
+		}
+		if (isStandardStream(outputFilePath)) {
+			standardOutput = new StandardOutputChannel();
+			if (model.getOutputFormat().equals(EFormat.PROPRA)) {
+				dataSegmentBuffer = new SpillOverBuffer("imageconverter-stdout-");
+			}
+		}
+	}
+
+	/** true, wenn der Pfad für die Standardeingabe bzw. Standardausgabe steht. */
+	public static boolean isStandardStream(String filePath) {
+		return STANDARD_STREAM.equals(filePath);
+	}
+
+	/** Übernimmt die Standardeingabe in einen SpillOverBuffer, der ab
+	 * MEMORY_LIMIT Bytes in eine temporäre Datei auslagert. Nur möglich, solange
+	 * kein Stream hinter dem ersten Block gelesen hat. */
+	private void spoolStandardInput() throws IOException {
+		if (standardInputPosition > firstInputBlockLength) {
+			throw new IllegalStateException("Standardeingabe wurde bereits fortlaufend gelesen");
+		}
+		SpillOverBuffer spoolBuffer = new SpillOverBuffer("imageconverter-stdin-");
+		try {
+			spoolBuffer.write(ByteBuffer.wrap(firstInputBlock, 0, firstInputBlockLength));
+			byte[] block = BufferCache.take(BLOCK_SIZE);
+			int bytesRead;
+			while ((bytesRead = readStandardInput(block, 0, BLOCK_SIZE, standardInputPosition)) > 0) {
+				spoolBuffer.write(ByteBuffer.wrap(block, 0, bytesRead));
+			}
+		} catch (IOException e) {
+			spoolBuffer.close();
+			throw e;
+		}
+		inputChannel = spoolBuffer;
+	}
+
+	/** Übernimmt die Standardeingabe in eine temporäre Datei mit der Endung des
+	 * Input-Formates, die in close() gelöscht wird. */
+	private void writeStandardInputToTemporaryFile() throws IOException {
+		IPositionalChannel spoolChannel = getInputChannel();
+		Path temporaryFile = Files.createTempFile("imageconverter-stdin-", "." + inputFormat);
+		IPositionalChannel fileChannel;
+		try {
+			fileChannel = FilePositionalChannel.open(temporaryFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		} catch (IOException e) {
+			Files.deleteIfExists(temporaryFile);
+			throw e;
+		}
+		try {
+			WritableByteChannel fileWriter = fileChannel.newWriter(0);
+			long position = 0;
+			while (position < inputLength) {
+				long transferred = spoolChannel.transferTo(position, inputLength - position, fileWriter);
+				if (transferred <= 0) {
+					throw new IOException("Standardeingabe konnte nicht zwischengespeichert werden");
+				}
+				position += transferred;
+			}
+		} catch (IOException e) {
+			fileChannel.close();
+			Files.deleteIfExists(temporaryFile);
+			throw e;
+		}
+		spoolChannel.close();
+		inputChannel = fileChannel;
+		inputPath = temporaryFile;
+		isInputTemporary = true;
+	}
+
+	/** Gibt die ersten length Bytes des Input-Files zurück, bei einer kürzeren
+	 * Datei sind die fehlenden Bytes 0. */
+	public byte[] readInputHeader(int length) {
+		byte[] header = new byte[length];
+		System.arraycopy(firstInputBlock, 0, header, 0, Math.min(length, firstInputBlockLength));
+		return header;
+	}
+
+	/** Channel für positionsgenaues Lesen. Eine fortlaufend gelesene
+	 * Standardeingabe wird hierfür beim ersten Aufruf vollständig gepuffert. */
+	public IPositionalChannel getInputChannel() throws IOException {
+		if (inputChannel == null) {
+			spoolStandardInput();
+		}
+		return inputChannel;
+	}
+
+	/** Pfad des Input-Files, bei der Standardeingabe einer temporären Kopie, die
+	 * beim ersten Aufruf angelegt wird und nur bis close() besteht. Bei
+	 * Konvertierung im Speicher null. */
+	public Path getInputPath() throws IOException {
+		if (inputPath == null && isStandardInput) {
+			writeStandardInputToTemporaryFile();
+		}
+		return inputPath;
+	}
+
+	/** Länge des Input-Files, bei der Standardeingabe erst an deren Ende bekannt,
+	 * vorher UNKNOWN_LENGTH. */
+	public long getInputLength() {
+		return inputLength;
+	}
+
+	public boolean isInputLengthKnown() {
+		return inputLength != UNKNOWN_LENGTH;
+	}
+
+	/** Liest eine fortlaufend gelesene Standardeingabe bis zu ihrem Ende, damit
+	 * ihre Länge feststeht.
+	 *
+	 * @return Länge des Inputs */
+	public long finishInput() throws IOException {
+		if (!isInputLengthKnown()) {
+			// Lese-Threads dürfen nicht gleichzeitig weiterlesen
+			for (PipelinedInputStream inputStream : pipelinedInputStreams) {
+				inputStream.close();
+			}
+			byte[] block = BufferCache.take(BLOCK_SIZE);
+			while (!isInputLengthKnown()) {
+				readStandardInput(block, 0, BLOCK_SIZE, standardInputPosition);
+			}
+		}
+		return inputLength;
+	}
+
+	/** Legt das Output-File beim ersten Aufruf an, eine vorhandene Datei wird
+	 * geleert. Nicht bei Ausgabe auf die Standardausgabe. */
+	public IPositionalChannel getOutputChannel() throws IOException {
+		if (standardOutput != null) {
+			throw new IllegalStateException("Standardausgabe kann nicht wahlfrei beschrieben werden");
+		}
+		if (outputChannel == null) {
+			outputChannel = FilePositionalChannel.open(Paths.get(outputFilePath), StandardOpenOption.CREATE,
+			        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		}
+		return outputChannel;
+	}
+
+	/** Gepufferter Stream über das Input-File ab position, liegt diese im ersten
+	 * Block, wird dieser nicht erneut gelesen. Eine noch nicht gepufferte
+	 * Standardeingabe kann nur ein Stream ab dem ersten Block fortlaufend lesen. */
+	public InputStream openInputStream(long position) {
+		return new InputFileStream(position);
+	}
+
+	/** Channel, der ab position fortlaufend in das Output-File schreibt und nicht
+	 * geschlossen werden darf. Bei Ausgabe auf die Standardausgabe beginnt er
+	 * immer hinter dem Header. */
+	public WritableByteChannel openOutputChannel(long position) throws IOException {
+		if (standardOutput != null) {
+			return dataSegmentBuffer != null ? dataSegmentBuffer : standardOutput;
+		}
+		return getOutputChannel().newWriter(position);
+	}
+
+	/** Gepufferter Stream, der ab position in das Output-File schreibt. close()
+	 * schreibt den Puffer, schließt aber nicht den Channel. */
+	public OutputStream openOutputStream(long position) throws IOException {
+		return new BufferedOutputStream(new OutputFileStream(openOutputChannel(position)), BLOCK_SIZE);
+	}
+
+	/** Liest length Bytes ab position über openInputStream in einem eigenen
+	 * Lese-Thread, die Checksumme wird in einem eigenen Checksummen-Thread
+	 * fortgeschrieben. */
+	public PipelinedInputStream openPipelinedInputStream(long position, long length, CheckSum checkSum)
+	        throws IOException {
+		PipelinedInputStream inputStream = new PipelinedInputStream(openInputStream(position), length, checkSum);
+		pipelinedInputStreams.add(inputStream);
+		return inputStream;
+	}
+
+	/** Schreibt ab position in einem eigenen Schreib-Thread in das Output-File,
+	 * die Checksumme wird in einem eigenen Checksummen-Thread fortgeschrieben.
+	 * close() wartet, bis alle Bytes geschrieben sind. */
+	public PipelinedOutputStream openPipelinedOutputStream(long position, CheckSum checkSum) throws IOException {
+		PipelinedOutputStream outputStream = new PipelinedOutputStream(openOutputChannel(position), checkSum,
+		        metrics);
+		pipelinedOutputStreams.add(outputStream);
+		return outputStream;
+	}
+
+	/** Schreibt den Header an den Anfang des Output-Files. Auf der
+	 * Standardausgabe folgt ihm das gepufferte Bilddatensegment einer
+	 * ProPra-Ausgabe, ein TGA-Header muss dort vor den Bilddaten geschrieben
+	 * werden. */
+	public void writeOutputHeader(byte[] header) throws IOException {
+		ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+		while (headerBuffer.hasRemaining()) {
+			if (standardOutput == null) {
+				getOutputChannel().write(headerBuffer, headerBuffer.position());
+			} else {
+				standardOutput.write(headerBuffer);
+			}
+			metrics.add(ECounter.WRITE_CALLS, 1);
+		}
+		if (dataSegmentBuffer != null) {
+			dataSegmentBuffer.writeTo(standardOutput);
+		}
+	}
+
+	/** Länge des hinter dem Header geschriebenen Bilddatensegmentes. */
+	public long getOutputDataSegmentLength(int headerLength) throws IOException {
+		if (standardOutput == null) {
+			// ohne Bilddaten ist das Output-File vor dem Header noch leer
+			return Math.max(0, getOutputChannel().size() - headerLength);
+		}
+		return dataSegmentBuffer != null ? dataSegmentBuffer.size() : standardOutput.length - headerLength;
+	}
+
+	/** Länge des Output-Files bzw. Anzahl der auf die Standardausgabe
+	 * geschriebenen Bytes. */
+	public long getOutputLength() throws IOException {
+		if (memoryOutputChannel != null) {
+			return memoryOutputChannel.size();
+		}
+		if (standardOutput == null) {
+			return Files.size(Paths.get(outputFilePath));
+		}
+		return standardOutput.length;
+	}
+
+	/** Output-Bild einer Konvertierung im Speicher von position 0 bis limit. */
+	public ByteBuffer getOutputContent() {
+		return memoryOutputChannel.getContent();
+	}
+
+	/** Beendet alle Pipelines und schließt alle Channels. Die Puffer gehen nur
+	 * an den BufferCache zurück, wenn kein Pipeline-Thread mehr läuft. */
+	@Override
+	public void close() throws IOException {
+		boolean arePipelinesStopped = true;
+		for (PipelinedInputStream inputStream : pipelinedInputStreams) {
+			inputStream.close();
+			arePipelinesStopped &= inputStream.isStopped();
+		}
+		for (PipelinedOutputStream outputStream : pipelinedOutputStreams) {
+			outputStream.cancel();
+			arePipelinesStopped &= outputStream.isStopped();
+		}
+		if (arePipelinesStopped) {
+			bufferScope.close();
+		} else {
+			bufferScope.discard();
+		}
+		try {
+			if (inputChannel != null) {
+				inputChannel.close();
+			}
+		} finally {
+			if (outputChannel != null) {
+				outputChannel.close();
+			}
+			if (dataSegmentBuffer != null) {
+				dataSegmentBuffer.close();
+			}
+			if (standardOutput != null) {
+				System.out.flush();
+			}
+			if (isInputTemporary) {
+				Files.deleteIfExists(inputPath);
+			}
+		}
+	}
+
+	/** Liest ab position bis length Bytes oder bis zum Dateiende.
+	 *
+	 * @return Anzahl gelesener Bytes */
+	private int readInput(byte[] target, int offset, int length, long position) throws IOException {
+		if (inputChannel == null) {
+			return readStandardInput(target, offset, length, position);
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(target, offset, length);
+		while (buffer.hasRemaining()) {
+			metrics.add(ECounter.READ_CALLS, 1);
+			if (inputChannel.read(buffer, position + buffer.position() - offset) < 0) {
+				break;
+			}
+		}
+		return buffer.position() - offset;
+	}
+
+	/** Liest fortlaufend von der Standardeingabe, position muss der Anzahl
+	 * bisher gelesener Bytes entsprechen. An ihrem Ende steht die Länge des
+	 * Inputs fest. System.in wird nicht geschlossen.
+	 *
+	 * @return Anzahl gelesener Bytes, weniger als length nur am Ende */
+	private int readStandardInput(byte[] target, int offset, int length, long position) throws IOException {
+		if (position != standardInputPosition) {
+			throw new IllegalStateException("Standardeingabe kann nur fortlaufend gelesen werden");
+		}
+		int bytesRead = 0;
+		while (bytesRead < length && !isInputLengthKnown()) {
+			metrics.add(ECounter.READ_CALLS, 1);
+			int n = System.in.read(target, offset + bytesRead, length - bytesRead);
+			if (n < 0) {
+				inputLength = standardInputPosition + bytesRead;
+			} else {
+				bytesRead += n;
+			}
+		}
+		standardInputPosition += bytesRead;
+		return bytesRead;
+	}
+
+	/** Liest positionsgenau über den Input-Channel, sodass mehrere Streams
+	 * unabhängig voneinander lesen können. */
+	private class InputFileStream extends InputStream {
+		/** wird im erzeugenden Thread entnommen, da der Stream auch in einem
+		 * Lese-Thread ohne Scope laufen kann */
+		private final byte[] spareBlock = BufferCache.take(BLOCK_SIZE);
+		private byte[] block;
+		private int blockPosition;
+		private int blockLength;
+		/** Position im Input-File hinter dem Puffer */
+		private long nextBlockPosition;
+
+		InputFileStream(long position) {
+			if (position < firstInputBlockLength) {
+				block = firstInputBlock;
+				blockPosition = (int) position;
+				blockLength = firstInputBlockLength;
+				nextBlockPosition = firstInputBlockLength;
+			} else {
+				block = spareBlock;
+				nextBlockPosition = position;
+			}
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (blockPosition == blockLength && !readNextBlock()) {
+				return -1;
+			}
+			return block[blockPosition++] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] target, int offset, int length) throws IOException {
+			if (length == 0) {
+				return 0;
+			}
+			if (blockPosition == blockLength) {
+				// große Anforderungen werden ohne Umweg über den Puffer gelesen
+				if (length >= BLOCK_SIZE) {
+					int bytesRead = readInput(target, offset, length, nextBlockPosition);
+					nextBlockPosition += bytesRead;
+					return bytesRead > 0 ? bytesRead : -1;
+				}
+				if (!readNextBlock()) {
+					return -1;
+				}
+			}
+			int bytesToCopy = Math.min(length, blockLength - blockPosition);
+			System.arraycopy(block, blockPosition, target, offset, bytesToCopy);
+			blockPosition += bytesToCopy;
+			return bytesToCopy;
+		}
+
+		private boolean readNextBlock() throws IOException {
+			// der erste Block wird von allen Streams geteilt und nicht überschrieben
+			if (block == firstInputBlock) {
+				block = spareBlock;
+			}
+			blockPosition = 0;
+			blockLength = readInput(block, 0, BLOCK_SIZE, nextBlockPosition);
+			nextBlockPosition += blockLength;
+			return blockLength > 0;
+		}
+	}
+
+	/** Schreibt fortlaufend in den Channel aus openOutputChannel. */
+	private class OutputFileStream extends OutputStream {
+		private final WritableByteChannel channel;
+
+		OutputFileStream(WritableByteChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] source, int offset, int length) throws IOException {
+			ByteBuffer buffer = ByteBuffer.wrap(source, offset, length);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+				metrics.add(ECounter.WRITE_CALLS, 1);
+			}
+		}
+	}
+
+	/** Schreibt auf System.out und zählt die geschriebenen Bytes, die Aufrufe
+	 * zählen die Schreibenden wie beim Output-File. System.out wird nie
+	 * geschlossen, Schreibfehler werden über checkError erkannt. */
+	private class StandardOutputChannel implements WritableByteChannel {
+		private long length;
+
+		@Override
+		public int write(ByteBuffer source) throws IOException {
+			int bytesToWrite = source.remaining();
+			if (source.hasArray()) {
+				System.out.write(source.array(), source.arrayOffset() + source.position(), bytesToWrite);
+				source.position(source.limit());
+			} else {
+				byte[] bytes = new byte[bytesToWrite];
+				source.get(bytes);
+				System.out.write(bytes, 0, bytesToWrite);
+			}
+			if (System.out.checkError()) {
+				throw new IOException("Standardausgabe konnte nicht geschrieben werden");
+			}
+			length += bytesToWrite;
+			return bytesToWrite;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+			// System.out bleibt für Ausgaben des Programmes geöffnet
+		}
+	}
+}
@@ -0,0 +1,371 @@
+package propra.imageconverter;
+
+import propra.imageconverter.argument.ArgumentExtractor;
+import propra.imageconverter.enums.ECompressionType;
+import propra.imageconverter.enums.EFormat;
+import propra.imageconverter.enums.ERleMode;
+import propra.imageconverter.region.ImageRegion;
+
+/** Instanzen dieser Klasse beschreiben einen Auftrag an die ConversionEngine:
+ * Konvertierung, Stapelkonvertierung, Base-32-Kodierung/-Dekodierung oder
+ * Überprüfung von ProPra-Dateien. <br>
+ * Anfragen sind unveränderlich und können daher von mehreren Threads
+ * gleichzeitig genutzt werden. Erst die ConversionEngine erstellt je
+ * Konvertierung ein eigenes Model.
+ *
+ * @author Martina Koch */
+public final class ConversionRequest {
+	private final String inputFilePath;
+	private final String outputFilePath;
+	private final ECompressionType outputCompressionType;
+	private final boolean encodeBase32;
+	private final boolean decodeBase32;
+	private final boolean verifyCheckSum;
+	private final boolean batchConversion;
+	/** nur für die Standardeingabe gesetzt, sonst folgt das Format aus der
+	 * Dateiendung */
+	private final EFormat inputFormat;
+	/** nur im Stapelbetrieb und für die Standardausgabe gesetzt, sonst folgt das
+	 * Format aus der Dateiendung */
+	private final EFormat outputFormat;
+	private final int threadCount;
+	private final ERleMode rleMode;
+	/** null für das ganze Bild */
+	private final ImageRegion region;
+	/** Cache-Verzeichnis für Zeilenindizes von RLE-Input, null für keine */
+	private final String rowIndexDirectory;
+	/** Ziel der JSON-Statistik, "-" für die Konsole, null für keine */
+	private final String statsFilePath;
+	private final boolean parallelHuffmanDecoding;
+	private final boolean pipelinedExecution;
+
+	private ConversionRequest(Builder builder) {
+		this.inputFilePath = builder.inputFilePath;
+		this.outputFilePath = builder.outputFilePath;
+		this.outputCompressionType = builder.outputCompressionType;
+		this.encodeBase32 = builder.encodeBase32;
+		this.decodeBase32 = builder.decodeBase32;
+		this.verifyCheckSum = builder.verifyCheckSum;
+		this.batchConversion = builder.batchConversion;
+		this.inputFormat = builder.inputFormat;
+		this.outputFormat = builder.outputFormat;
+		this.threadCount = builder.threadCount;
+		this.rleMode = builder.rleMode;
+		this.region = builder.region;
+		this.rowIndexDirectory = builder.rowIndexDirectory;
+		this.statsFilePath = builder.statsFilePath;
+		this.parallelHuffmanDecoding = builder.parallelHuffmanDecoding;
+		this.pipelinedExecution = builder.pipelinedExecution;
+	}
+
+	/** Gibt einen Builder mit allen Werten dieser Anfrage zurück, die Methoden
+	 * with... ändern darin nur ihren Wert. */
+	private Builder toBuilder() {
+		Builder builder = new Builder();
+		builder.inputFilePath = inputFilePath;
+		builder.outputFilePath = outputFilePath;
+		builder.outputCompressionType = outputCompressionType;
+		builder.encodeBase32 = encodeBase32;
+		builder.decodeBase32 = decodeBase32;
+		builder.verifyCheckSum = verifyCheckSum;
+		builder.batchConversion = batchConversion;
+		builder.inputFormat = inputFormat;
+		builder.outputFormat = outputFormat;
+		builder.threadCount = threadCount;
+		builder.rleMode = rleMode;
+		builder.region = region;
+		builder.rowIndexDirectory = rowIndexDirectory;
+		builder.statsFilePath = statsFilePath;
+		builder.parallelHuffmanDecoding = parallelHuffmanDecoding;
+		builder.pipelinedExecution = pipelinedExecution;
+		return builder;
+	}
+
+	/** Konvertierung der Input- in die Output-Datei, Formate ergeben sich aus den
+	 * Dateiendungen. Ohne Kompressionsangabe wird unkomprimiert geschrieben. */
+	public static ConversionRequest convert(String inputFilePath, String outputFilePath,
+	        ECompressionType outputCompressionType) {
+		Builder builder = new Builder(outputCompressionType);
+		builder.inputFilePath = inputFilePath;
+		builder.outputFilePath = outputFilePath;
+		return builder.build();
+	}
+
+	/** Konvertierung eines Bildes im Speicher ohne Input- und Output-File, die
+	 * Formate werden angegeben. Ausführen mit ConversionEngine.convert(request,
+	 * input) bzw. convert(request, input, output). */
+	public static ConversionRequest convertInMemory(EFormat inputFormat, EFormat outputFormat,
+	        ECompressionType outputCompressionType) {
+		Builder builder = new Builder(outputCompressionType);
+		builder.inputFormat = inputFormat;
+		builder.outputFormat = outputFormat;
+		return builder.build();
+	}
+
+	/** Stapelkonvertierung aller TGA- und ProPra-Dateien eines Verzeichnisses (auch
+	 * in Unterverzeichnissen) oder aller in einer Listendatei (ein Pfad je Zeile)
+	 * aufgeführten Dateien in das Output-Verzeichnis.
+	 *
+	 * @param threadCount Anzahl gleichzeitiger Konvertierungen, bei 0 Anzahl der
+	 * Prozessorkerne */
+	public static ConversionRequest batch(String inputPath, String outputDirectory, EFormat outputFormat,
+	        ECompressionType outputCompressionType, int threadCount) {
+		Builder builder = new Builder(outputCompressionType);
+		builder.inputFilePath = inputPath;
+		builder.outputFilePath = outputDirectory;
+		builder.batchConversion = true;
+		builder.outputFormat = outputFormat;
+		builder.threadCount = threadCount == 0 ? Runtime.getRuntime().availableProcessors() : threadCount;
+		return builder.build();
+	}
+
+	/** Gibt eine Kopie dieser Anfrage zurück, die RLE-Pakete mit dem angegebenen
+	 * Verfahren bildet. */
+	public ConversionRequest withRleMode(ERleMode rleMode) {
+		Builder builder = toBuilder();
+		builder.rleMode = rleMode;
+		return builder.build();
+	}
+
+	/** Gibt eine Kopie dieser Anfrage zurück, die nur den Bildausschnitt
+	 * konvertiert.
+	 *
+	 * @param rowIndexDirectory Cache-Verzeichnis, in dem bei RLE-Input ein
+	 * Zeilenindex gespeichert wird, damit weitere Ausschnitte ohne Durchlauf über
+	 * die Paket-Header auskommen, null für keinen gespeicherten Index */
+	public ConversionRequest withRegion(ImageRegion region, String rowIndexDirectory) {
+		Builder builder = toBuilder();
+		builder.region = region;
+		builder.rowIndexDirectory = rowIndexDirectory;
+		return builder.build();
+	}
+
+	/** Gibt eine Kopie dieser Anfrage zurück, nach deren Ausführung
+	 * ImageConverterMain die JSON-Statistik schreibt. Die Laufzeiten und Zähler
+	 * werden unabhängig davon immer im Model zurückgegeben.
+	 *
+	 * @param statsFilePath Dateipfad oder "-" für die Konsole */
+	public ConversionRequest withStats(String statsFilePath) {
+		Builder builder = toBuilder();
+		builder.statsFilePath = statsFilePath;
+		return builder.build();
+	}
+
+	/** Gibt eine Kopie dieser Anfrage zurück, die große Huffman-kodierte
+	 * Bilddatensegmente spekulativ parallel dekodiert. Das Ergebnis ist dasselbe
+	 * wie bei sequentieller Dekodierung. */
+	public ConversionRequest withParallelHuffmanDecoding(boolean parallelHuffmanDecoding) {
+		Builder builder = toBuilder();
+		builder.parallelHuffmanDecoding = parallelHuffmanDecoding;
+		return builder.build();
+	}
+
+	/** Gibt eine Kopie dieser Anfrage zurück, bei der eigene Threads lesen, die
+	 * Checksummen berechnen und schreiben, während die Transformation rechnet.
+	 * Das Ergebnis ist dasselbe wie ohne Pipeline. */
+	public ConversionRequest withPipelinedExecution(boolean pipelinedExecution) {
+		Builder builder = toBuilder();
+		builder.pipelinedExecution = pipelinedExecution;
+		return builder.build();
+	}
+
+	/** Gibt eine Kopie dieser Anfrage zurück, deren Input dieses Format hat,
+	 * unabhängig von der Dateiendung, z.B. für die Standardeingabe "-". */
+	public ConversionRequest withInputFormat(EFormat inputFormat) {
+		Builder builder = toBuilder();
+		builder.inputFormat = inputFormat;
+		return builder.build();
+	}
+
+	/** Gibt eine Kopie dieser Anfrage zurück, deren Output in diesem Format
+	 * geschrieben wird, unabhängig von der Dateiendung, z.B. für die
+	 * Standardausgabe "-". */
+	public ConversionRequest withOutputFormat(EFormat outputFormat) {
+		Builder builder = toBuilder();
+		builder.outputFormat = outputFormat;
+		return builder.build();
+	}
+
+	/** Base-32-Kodierung, Output-Datei erhält zusätzlich die Endung ".base-32". */
+	public static ConversionRequest encodeBase32(String inputFilePath) {
+		Builder builder = new Builder();
+		builder.inputFilePath = inputFilePath;
+		builder.outputFilePath = inputFilePath + ".base-32";
+		builder.encodeBase32 = true;
+		return builder.build();
+	}
+
+	/** Base-32-Dekodierung, die Endung ".base-32" der Input-Datei wird entfernt. */
+	public static ConversionRequest decodeBase32(String inputFilePath) {
+		Builder builder = new Builder();
+		builder.inputFilePath = inputFilePath;
+		builder.outputFilePath = inputFilePath.substring(0, inputFilePath.length() - 8);
+		builder.decodeBase32 = true;
+		return builder.build();
+	}
+
+	/** Überprüfung einer ProPra-Datei oder aller ProPra-Dateien eines
+	 * Verzeichnisses, es wird keine Output-Datei geschrieben. */
+	public static ConversionRequest verify(String inputPath) {
+		Builder builder = new Builder();
+		builder.inputFilePath = inputPath;
+		builder.verifyCheckSum = true;
+		return builder.build();
+	}
+
+	/** Erstellt Anfrage aus den Konsolen-Eingabeparametern. */
+	public static ConversionRequest fromCommandLineArguments(String[] commandLineArguments)
+	        throws ImageConverterException {
+		Model model = new Model();
+		new ArgumentExtractor(commandLineArguments, model);
+		Builder builder = new Builder();
+		builder.inputFilePath = model.getInputFilePath();
+		builder.outputFilePath = model.getOutputFilePath();
+		builder.outputCompressionType = model.getOutputCompressionType();
+		builder.encodeBase32 = model.getEncodeBase32();
+		builder.decodeBase32 = model.getDecodeBase32();
+		builder.verifyCheckSum = model.getVerifyCheckSum();
+		builder.batchConversion = model.getBatchConversion();
+		if (ConversionFiles.isStandardStream(model.getInputFilePath())) {
+			builder.inputFormat = model.getInputFormat();
+		}
+		if (model.getBatchConversion() || ConversionFiles.isStandardStream(model.getOutputFilePath())) {
+			builder.outputFormat = model.getOutputFormat();
+		}
+		builder.threadCount = model.getThreadCount();
+		builder.rleMode = model.getRleMode();
+		builder.region = model.getRegion();
+		builder.rowIndexDirectory = model.getRowIndexDirectory();
+		builder.statsFilePath = model.getStatsFilePath();
+		builder.parallelHuffmanDecoding = model.getParallelHuffmanDecoding();
+		builder.pipelinedExecution = model.getPipelinedExecution();
+		return builder.build();
+	}
+
+	/** Erstellt ein neues Model für genau eine Ausführung dieser Anfrage. */
+	Model createModel() {
+		Model model = new Model();
+		model.setInputFilePath(inputFilePath);
+		model.setOutputFilePath(outputFilePath);
+		if (inputFormat != null) {
+			model.setInputFormat(inputFormat);
+		} else {
+			model.setInputFormat(inputFilePath != null ? EFormat.fromFilePath(inputFilePath) : null);
+		}
+		if (batchConversion || outputFormat != null) {
+			model.setOutputFormat(outputFormat);
+		} else {
+			model.setOutputFormat(outputFilePath != null ? EFormat.fromFilePath(outputFilePath) : null);
+		}
+		model.setOutputCompressionType(outputCompressionType);
+		model.setEncodeBase32(encodeBase32);
+		model.setDecodeBase32(decodeBase32);
+		model.setVerifyCheckSum(verifyCheckSum);
+		model.setBatchConversion(batchConversion);
+		model.setThreadCount(threadCount);
+		model.setRleMode(rleMode);
+		model.setRegion(region);
+		model.setRowIndexDirectory(rowIndexDirectory);
+		model.setStatsFilePath(statsFilePath);
+		model.setParallelHuffmanDecoding(parallelHuffmanDecoding);
+		model.setPipelinedExecution(pipelinedExecution);
+		return model;
+	}
+
+	public String getInputFilePath() {
+		return inputFilePath;
+	}
+
+	public String getOutputFilePath() {
+		return outputFilePath;
+	}
+
+	public ECompressionType getOutputCompressionType() {
+		return outputCompressionType;
+	}
+
+	public boolean getEncodeBase32() {
+		return encodeBase32;
+	}
+
+	public boolean getDecodeBase32() {
+		return decodeBase32;
+	}
+
+	public boolean getVerifyCheckSum() {
+		return verifyCheckSum;
+	}
+
+	public boolean getBatchConversion() {
+		return batchConversion;
+	}
+
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	public ERleMode getRleMode() {
+		return rleMode;
+	}
+
+	public ImageRegion getRegion() {
+		return region;
+	}
+
+	public String getRowIndexDirectory() {
+		return rowIndexDirectory;
+	}
+
+	public String getStatsFilePath() {
+		return statsFilePath;
+	}
+
+	public boolean getParallelHuffmanDecoding() {
+		return parallelHuffmanDecoding;
+	}
+
+	public boolean getPipelinedExecution() {
+		return pipelinedExecution;
+	}
+
+	@Override
+	public String toString() {
+		return createModel().toString();
+	}
+
+	/** Sammelt die Werte einer Anfrage, bis sie mit build erstellt wird. Nicht
+	 * gesetzte Werte sind null, false bzw. 0, der RLE-Modus ist GREEDY. */
+	private static final class Builder {
+		private String inputFilePath;
+		private String outputFilePath;
+		private ECompressionType outputCompressionType;
+		private boolean encodeBase32;
+		private boolean decodeBase32;
+		private boolean verifyCheckSum;
+		private boolean batchConversion;
+		private EFormat inputFormat;
+		private EFormat outputFormat;
+		private int threadCount;
+		private ERleMode rleMode = ERleMode.GREEDY;
+		private ImageRegion region;
+		private String rowIndexDirectory;
+		private String statsFilePath;
+		private boolean parallelHuffmanDecoding;
+		private boolean pipelinedExecution;
+
+		private Builder() {
+		}
+
+		/** Builder einer Konvertierung.
+		 *
+		 * @param outputCompressionType null für unkomprimiert */
+		private Builder(ECompressionType outputCompressionType) {
+			this.outputCompressionType = outputCompressionType != null ? outputCompressionType
+			        : ECompressionType.UNCOMPRESSED;
+		}
+
+		private ConversionRequest build() {
+			return new ConversionRequest(this);
+		}
+	}
+}
@@ -1,71 +1,66 @@
 package propra.imageconverter;
 
-import java.io.*;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.IOException;
 
 import propra.imageconverter.enums.ECompressionType;
 import propra.imageconverter.enums.EFormat;
+import propra.imageconverter.enums.ERleMode;
+import propra.imageconverter.enums.EStage;
+import propra.imageconverter.metrics.ConversionMetrics;
 import propra.imageconverter.headercomposer.HeaderComposerForProPraOutputFile;
 import propra.imageconverter.headercomposer.HeaderComposerForTGAOutputFile;
 import propra.imageconverter.reader.huffman.ConverterHuffmanImageDataSegement;
+import propra.imageconverter.transformimage.TransformImageDataToHuffman;
 import propra.imageconverter.transformimage.TransformImageDataToRLE;
+import propra.imageconverter.transformimage.TransformImageDataToSameFormat;
 import propra.imageconverter.transformimage.TransformImageDataToUncompressed;
 
 /** Instanzen dieser Klasse transformieren die Eingabebilddatei in eine
  * Ausgabedatei. Hierbei werden zuerst die Output-Header-Daten mit dem
- * HeaderComposer in ein Array geschrieben. Anschließend werden zuerst die
+ * HeaderComposer in ein Array geschrieben. Ein TGA-Header hängt nicht von den
+ * Bilddaten ab und wird sofort geschrieben, sodass die Ausgabe auch auf die
+ * Standardausgabe fortlaufend erfolgen kann. Anschließend werden die
  * transformierten Bilddaten in das Output-Format geschrieben. <br>
  * Für eine Propra-Ausgabedatei werden aus diesen Bilddaten die
  * Bilddatensegmentlänge und die Checksumme in das Header-Output-Array
+ * geschrieben und der Header abschließend an den Anfang der Output-Datei
  * geschrieben. <br>
- * Abschließend wird der Header in die Output-Datei geschrieben.
+ * Die Laufzeiten von Transformation und Header werden getrennt erfasst.
  *
  * @author Martina Koch */
 public class ConverterToOutputFile {
 	private Model model;
 	private IHeaderReaderInputFile headerReaderInputFormat;
-	private byte[] headerOutputFile;
 	private IHeaderComposerOutputFile headerComposerForOutputFile;
 
-	private BufferedInputStream bufferedInputStream;
-	private BufferedOutputStream bufferedOutputStream;
-	private RandomAccessFile randomAccessFileInput;
-	private RandomAccessFile randomAccessFileOutput;
+	private ConversionFiles conversionFiles;
+	private ConversionMetrics metrics;
 
 	public ConverterToOutputFile(Model model, IHeaderReaderInputFile headerReaderInputFile)
 	        throws ImageConverterException, IOException {
 		this.model = model;
 		this.headerReaderInputFormat = headerReaderInputFile;
-		this.headerOutputFile = new byte[model.getOutputFormat().getHeaderLength()];
+		this.conversionFiles = model.getConversionFiles();
+		// ggf. vorhandene OutputDatei wird beim Öffnen geleert
+		conversionFiles.openOutputChannel(0);
+		this.metrics = model.getMetrics();
 
-		// ggf. vorhandene OutputDatei wird vorab gelöscht
-		Path outputPath = Paths.get(model.getOutputFilePath());
-		if (outputPath.toFile().isFile()) {
-			new File(model.getOutputFilePath()).delete();
+		long startNanos = System.nanoTime();
+		composeHeaderOutputFile();
+		if (model.getOutputFormat().equals(EFormat.TGA)) {
+			writeHeaderToOutputFile();
 		}
+		metrics.stopStage(EStage.HEADER_WRITE, startNanos);
 
-		try {
-			/* RandomAccessFile und FileInputStream zeigen auf gleiche Position, lesen von
-			 * FileInputStream oder RandomAccessFile bewegen den Filepointer bei beiden
-			 * Objekten */
-			randomAccessFileInput = new RandomAccessFile(model.getInputFilePath(), "r");
-			randomAccessFileOutput = new RandomAccessFile(model.getOutputFilePath(), "rw");
-			bufferedInputStream = new BufferedInputStream(new FileInputStream(randomAccessFileInput.getFD()));
-			bufferedOutputStream = new BufferedOutputStream(new FileOutputStream(randomAccessFileOutput.getFD()));
-
-			composeHeaderOutputFile();
-			transformAndWriteImageData();
+		startNanos = System.nanoTime();
+		transformAndWriteImageData();
+		metrics.stopStage(EStage.TRANSFORM, startNanos);
 
-			assignImageDataSegmentSizeAndCheckSumIfPropraOutputFile();
+		if (model.getOutputFormat().equals(EFormat.PROPRA)) {
+			startNanos = System.nanoTime();
+			assignImageDataSegmentSizeAndCheckSum();
 			writeHeaderToOutputFile();
-
-			bufferedInputStream.close();
-			bufferedOutputStream.close();
-		} catch (FileNotFoundException e) {
-			ImageConverterException.abruptlyExitProgram(e);
-		} catch (IOException e) {
-			ImageConverterException.abruptlyExitProgram(e);
+			metrics.stopStage(EStage.HEADER_WRITE, startNanos);
 		}
 	}
 
@@ -89,9 +84,21 @@ public class ConverterToOutputFile {
 
 	/** Transformiert und schreibt zuerst Output-ImageDaten, damit hieraus ggf. die
 	 * Datensegmentlänge und Checksumme berechnet und dann in Header geschrieben
-	 * werden kann */
-	public void transformAndWriteImageData() throws IOException {
-		if (model.getInputCompressionType().equals(ECompressionType.HUFFMAN)) {
+	 * werden kann. Stimmen Format und Kompression überein, wird das
+	 * Bilddatensegment unverändert kopiert, außer RLE-Pakete sollen optimiert
+	 * werden. */
+	public void transformAndWriteImageData() throws IOException, ImageConverterException {
+		if (model.isInputOutputFormatEqual()
+		        && model.getInputCompressionType().equals(model.getOutputCompressionType())
+		        && !isOptimalRleRequested()) {
+			new TransformImageDataToSameFormat(model);
+		}
+
+		else if (model.getOutputCompressionType().equals(ECompressionType.HUFFMAN)) {
+			new TransformImageDataToHuffman(model);
+		}
+
+		else if (model.getInputCompressionType().equals(ECompressionType.HUFFMAN)) {
 			new ConverterHuffmanImageDataSegement(model);
 		}
 
@@ -109,20 +116,20 @@ public class ConverterToOutputFile {
 		}
 	}
 
-	private void assignImageDataSegmentSizeAndCheckSumIfPropraOutputFile() throws IOException {
-		long writtenImageDataSegmentSize_Output;
-		if (model.getOutputFormat().equals(EFormat.PROPRA)) {
-			writtenImageDataSegmentSize_Output = randomAccessFileOutput.length()
-			        - model.getOutputFormat().getHeaderLength();
-			((HeaderComposerForProPraOutputFile) headerComposerForOutputFile)
-			        .setImageDataSegmentSize(writtenImageDataSegmentSize_Output);
-			((HeaderComposerForProPraOutputFile) headerComposerForOutputFile).setCheckSum();
-		}
+	private boolean isOptimalRleRequested() {
+		return model.getOutputCompressionType().equals(ECompressionType.RLE)
+		        && model.getRleMode().equals(ERleMode.OPTIMAL);
+	}
+
+	private void assignImageDataSegmentSizeAndCheckSum() throws IOException {
+		long writtenImageDataSegmentSize_Output = conversionFiles
+		        .getOutputDataSegmentLength(model.getOutputFormat().getHeaderLength());
+		((HeaderComposerForProPraOutputFile) headerComposerForOutputFile)
+		        .setImageDataSegmentSize(writtenImageDataSegmentSize_Output);
+		((HeaderComposerForProPraOutputFile) headerComposerForOutputFile).setCheckSum();
 	}
 
 	public void writeHeaderToOutputFile() throws IOException {
-		headerOutputFile = headerComposerForOutputFile.getHeader();
-		randomAccessFileOutput.seek(0L);
-		randomAccessFileOutput.write(headerOutputFile);
+		conversionFiles.writeOutputHeader(headerComposerForOutputFile.getHeader());
 	}
 }
@@ -0,0 +1,48 @@
+package propra.imageconverter;
+
+import java.nio.file.Path;
+
+/** Instanzen dieser Klasse beschreiben das Ergebnis für eine Datei einer
+ * Stapelkonvertierung bzw. Überprüfung. Die Ergebnisse werden im Model bzw.
+ * in der ImageConverterException zurückgegeben und erst von
+ * ImageConverterMain ausgegeben.
+ *
+ * @author Martina Koch */
+public final class FileResult {
+	private final Path inputFile;
+	private final Path outputFile;
+	private final String error;
+
+	/** @param outputFile Ausgabedatei, null bei Überprüfung
+	 * @param error Fehlermeldung, null bei Erfolg */
+	public FileResult(Path inputFile, Path outputFile, String error) {
+		this.inputFile = inputFile;
+		this.outputFile = outputFile;
+		this.error = error;
+	}
+
+	public Path getInputFile() {
+		return inputFile;
+	}
+
+	public Path getOutputFile() {
+		return outputFile;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public boolean isSuccessful() {
+		return error == null;
+	}
+
+	/** Zeile für die Ausgabe auf der Konsole. */
+	@Override
+	public String toString() {
+		if (error != null) {
+			return "FEHLER  " + inputFile + ": " + error;
+		}
+		return "OK      " + inputFile + (outputFile != null ? " -> " + outputFile : "");
+	}
+}
@@ -1,13 +1,38 @@
 package propra.imageconverter;
 
-/** Instanzen dieser Klasse schreiben Nachricht auf Standardfehlerausgabe für
- * Benutzer sowie Statuscode beim abrupten Programmende.
+import java.util.List;
+
+/** Instanzen dieser Klasse melden Fehler bei der Konvertierung. Die Ausnahme
+ * beendet das Programm nicht selbst, sodass die ConversionEngine auch
+ * innerhalb einer laufenden Anwendung genutzt werden kann. Erst
+ * ImageConverterMain schreibt die Nachricht auf die Standardfehlerausgabe und
+ * beendet das Programm mit Statuscode.
  *
  * @author Martina Koch */
 public class ImageConverterException extends Exception {
+	private static final long serialVersionUID = 1L;
+	/** Ergebnisse je Datei einer Stapelkonvertierung bzw. Überprüfung */
+	private final List<FileResult> fileResults;
+
 	public ImageConverterException(String error) {
-		System.err.println("\n" + "Programmabbruch: " + error);
-		System.exit(123);
+		this(error, List.of());
+	}
+
+	/** Fehler einer Stapelkonvertierung bzw. Überprüfung mit den Ergebnissen
+	 * aller Dateien. */
+	public ImageConverterException(String error, List<FileResult> fileResults) {
+		super(error);
+		this.fileResults = List.copyOf(fileResults);
+	}
+
+	public ImageConverterException(String error, Throwable cause) {
+		super(error, cause);
+		this.fileResults = List.of();
+	}
+
+	/** Ergebnisse je Datei, leer außer bei Stapelkonvertierung bzw. Überprüfung. */
+	public List<FileResult> getFileResults() {
+		return fileResults;
 	}
 
 	/** Statische Methode generiert Nachricht auf Standardfehlerausgabe für Benutzer
@@ -1,10 +1,22 @@
 package propra.imageconverter;
 
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
 
 /**
- * Main-Methode startet über Konstruktor des Controllers das
- * Konvertierungsprogramm.<br>
+ * Main-Methode startet über die ConversionEngine das Konvertierungsprogramm.
+ * Die Konsoleneingabe wird in eine ConversionRequest übersetzt, Ausgaben für
+ * den Benutzer und das Programmende mit Statuscode bei Fehlern erfolgen nur
+ * hier. Mit --stats wird nach erfolgreicher Ausführung die JSON-Statistik der
+ * ConversionMetrics als letzte Zeile bzw. mit --stats=Datei in die Datei
+ * geschrieben. Die Ergebnisse je Datei von Stapelkonvertierung und
+ * Überprüfung werden hier ausgegeben, auch wenn einzelne Dateien
+ * fehlschlagen. Schreibt die Konvertierung auf die Standardausgabe, gehen alle
+ * Meldungen auf die Standardfehlerausgabe.<br>
  * <br>
  * Aufbau des Programms im MVC-Entwurfsmuster. Hierbei ist die Konsoleneingabe
  * als Benutzerschnittstelle Teil der View. Das MVC-Entwurfsmuster sowie die
@@ -17,14 +29,52 @@ import java.io.IOException;
 
 public class ImageConverterMain {
     public static void main(String[] args) {
+        PrintStream console = System.out;
         try {
-            new Controller(args);
+            ConversionRequest request = ConversionRequest.fromCommandLineArguments(args);
+            if (ConversionFiles.isStandardStream(request.getOutputFilePath())) {
+                console = System.err;
+            }
+            // gibt Konsolen-Eingabeparameter für Benutzer aus
+            console.println(request);
+
+            Model model = new ConversionEngine().convert(request);
+            printFileResults(model.getFileResults(), console);
+
+            if (model.getVerifyCheckSum()) {
+                console.println("Überprüfung erfolgreich!");
+            } else {
+                if (!model.getEncodeBase32() && !model.getDecodeBase32() && !model.getBatchConversion()) {
+                    // Ausgabe der gewählten Konvertierung im Programm
+                    console.println(Controller.describeConversion(model));
+                }
+                console.println("Konvertierung erfolgreich!");
+            }
+            writeStatsIfRequested(model, console);
         } catch (ImageConverterException e) {
-            ImageConverterException.abruptlyExitProgram(e);
-        } catch (IOException e) {
+            printFileResults(e.getFileResults(), console);
             ImageConverterException.abruptlyExitProgram(e);
         } catch (Exception e) {
             ImageConverterException.abruptlyExitProgram(e);
         }
     }
+
+    private static void printFileResults(List<FileResult> fileResults, PrintStream console) {
+        for (FileResult fileResult : fileResults) {
+            console.println(fileResult);
+        }
+    }
+
+    private static void writeStatsIfRequested(Model model, PrintStream console) throws IOException {
+        String statsFilePath = model.getStatsFilePath();
+        if (statsFilePath == null) {
+            return;
+        }
+        String stats = model.getMetrics().toJson(model);
+        if (statsFilePath.equals("-")) {
+            console.println(stats);
+        } else {
+            Files.write(Paths.get(statsFilePath), (stats + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
 }
@@ -1,9 +1,12 @@
 package propra.imageconverter;
-
-import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 import propra.imageconverter.enums.ECompressionType;
 import propra.imageconverter.enums.EFormat;
+import propra.imageconverter.enums.ERleMode;
+import propra.imageconverter.metrics.ConversionMetrics;
+import propra.imageconverter.region.ImageRegion;
 
 /** Instanz dieser Klasse definiert Datenmodel für Input- und Output-Datei und
  * Kompressionsparameter.
@@ -14,14 +17,31 @@ public class Model {
 	private String outputFilePath;
 	private ECompressionType inputCompressionType;
 	private ECompressionType outputCompressionType;
+	private ERleMode rleMode = ERleMode.GREEDY;
 	private boolean encodeBase32;
 	private boolean decodeBase32;
+	private boolean verifyCheckSum;
+	private boolean batchConversion;
+	private int threadCount;
 	private EFormat inputFormat;
 	private EFormat outputFormat;
 	private long checkSumInputFile;
 	private long checkSumOutputFile;
 	private long realImageDataSegmentInputFile;
-	private File temporaryFilePath;
+	private int imageWidth;
+	private int imageHeight;
+	private ImageRegion region;
+	private String rowIndexDirectory;
+	private ConversionFiles conversionFiles;
+	/** Input-Bild bei Konvertierung im Speicher, sonst null */
+	private ByteBuffer inputBuffer;
+	/** vor der Konvertierung ggf. Zielpuffer, danach Output-Bild */
+	private ByteBuffer outputBuffer;
+	private String statsFilePath;
+	private List<FileResult> fileResults = List.of();
+	private boolean parallelHuffmanDecoding;
+	private boolean pipelinedExecution;
+	private final ConversionMetrics metrics = new ConversionMetrics();
 
 	public void setInputFilePath(String inputFilePath) {
 		this.inputFilePath = inputFilePath;
@@ -67,10 +87,19 @@ public class Model {
 		return outputCompressionType;
 	}
 
-	public void setOutputCompressionType(ECompressionType outputCompressionType) throws ImageConverterException {
+	public void setOutputCompressionType(ECompressionType outputCompressionType) {
 		this.outputCompressionType = outputCompressionType;
 	}
 
+	/** Legt fest, wie Pixel bei RLE-Output in Pakete aufgeteilt werden. */
+	public void setRleMode(ERleMode rleMode) {
+		this.rleMode = rleMode;
+	}
+
+	public ERleMode getRleMode() {
+		return rleMode;
+	}
+
 	public void setEncodeBase32(boolean encodeBase32) {
 		this.encodeBase32 = encodeBase32;
 	}
@@ -87,12 +116,32 @@ public class Model {
 		return decodeBase32;
 	}
 
-	public byte[] getInputRGBOrder() {
-		return EFormat.getRGBOrder(inputFormat);
+	/** Legt fest, ob ProPra-Dateien nur überprüft und nicht konvertiert werden. */
+	public void setVerifyCheckSum(boolean verifyCheckSum) {
+		this.verifyCheckSum = verifyCheckSum;
+	}
+
+	public boolean getVerifyCheckSum() {
+		return verifyCheckSum;
+	}
+
+	/** Legt fest, ob alle Dateien eines Verzeichnisses bzw. einer Liste in ein
+	 * Ausgabeverzeichnis konvertiert werden. */
+	public void setBatchConversion(boolean batchConversion) {
+		this.batchConversion = batchConversion;
 	}
 
-	public byte[] getOutputRGBOrder() {
-		return EFormat.getRGBOrder(outputFormat);
+	public boolean getBatchConversion() {
+		return batchConversion;
+	}
+
+	/** Anzahl gleichzeitiger Konvertierungen im Stapelbetrieb. */
+	public void setThreadCount(int threadCount) {
+		this.threadCount = threadCount;
+	}
+
+	public int getThreadCount() {
+		return threadCount;
 	}
 
 	public boolean isInputOutputFormatEqual() {
@@ -133,12 +182,124 @@ public class Model {
 		return realImageDataSegmentInputFile;
 	}
 
-	public void setTemporaryFile(File temporaryOutputFile) {
-		this.temporaryFilePath = temporaryOutputFile;
+	/** Breite des Bildes in Pixeln laut Header der Input-Datei. */
+	public void setImageWidth(int imageWidth) {
+		this.imageWidth = imageWidth;
+	}
+
+	public int getImageWidth() {
+		return imageWidth;
+	}
+
+	/** Höhe des Bildes in Pixeln laut Header der Input-Datei. */
+	public void setImageHeight(int imageHeight) {
+		this.imageHeight = imageHeight;
+	}
+
+	public int getImageHeight() {
+		return imageHeight;
+	}
+
+	/** Legt den Bildausschnitt fest, der konvertiert wird, null für das ganze
+	 * Bild. */
+	public void setRegion(ImageRegion region) {
+		this.region = region;
+	}
+
+	public ImageRegion getRegion() {
+		return region;
+	}
+
+	/** Legt das Cache-Verzeichnis fest, in dem für RLE-Input beim Ausschneiden
+	 * ein Zeilenindex gespeichert wird, null für keinen gespeicherten Index. */
+	public void setRowIndexDirectory(String rowIndexDirectory) {
+		this.rowIndexDirectory = rowIndexDirectory;
+	}
+
+	public String getRowIndexDirectory() {
+		return rowIndexDirectory;
+	}
+
+	/** Legt die für diese Konvertierung geöffneten Input- und Output-Files fest. */
+	public void setConversionFiles(ConversionFiles conversionFiles) {
+		this.conversionFiles = conversionFiles;
+	}
+
+	public ConversionFiles getConversionFiles() {
+		return conversionFiles;
+	}
+
+	/** Legt das Input-Bild einer Konvertierung im Speicher fest, gelesen wird von
+	 * position bis limit. */
+	public void setInputBuffer(ByteBuffer inputBuffer) {
+		this.inputBuffer = inputBuffer;
 	}
 
-	public File getTemporaryFilePath() {
-		return this.temporaryFilePath;
+	public ByteBuffer getInputBuffer() {
+		return inputBuffer;
+	}
+
+	/** Legt vor der Konvertierung den Zielpuffer fest (null für einen
+	 * wachsenden Heap-Puffer), nach der Konvertierung das Output-Bild. */
+	public void setOutputBuffer(ByteBuffer outputBuffer) {
+		this.outputBuffer = outputBuffer;
+	}
+
+	/** Output-Bild einer Konvertierung im Speicher von position 0 bis limit. */
+	public ByteBuffer getOutputBuffer() {
+		return outputBuffer;
+	}
+
+	/** Legt die Ergebnisse je Datei einer Stapelkonvertierung bzw. Überprüfung
+	 * fest. */
+	public void setFileResults(List<FileResult> fileResults) {
+		this.fileResults = List.copyOf(fileResults);
+	}
+
+	/** Ergebnisse je Datei in der Reihenfolge der Dateien, leer außer bei
+	 * Stapelkonvertierung bzw. Überprüfung. */
+	public List<FileResult> getFileResults() {
+		return fileResults;
+	}
+
+	/** true bei Konvertierung im Speicher ohne Input- und Output-File. */
+	public boolean isInMemoryConversion() {
+		return inputBuffer != null;
+	}
+
+	/** Legt fest, wohin die JSON-Statistik geschrieben wird: Dateipfad, "-" für
+	 * die Konsole oder null für keine Statistik. */
+	public void setStatsFilePath(String statsFilePath) {
+		this.statsFilePath = statsFilePath;
+	}
+
+	public String getStatsFilePath() {
+		return statsFilePath;
+	}
+
+	/** Legt fest, ob große Huffman-kodierte Bilddatensegmente spekulativ
+	 * parallel dekodiert werden. */
+	public void setParallelHuffmanDecoding(boolean parallelHuffmanDecoding) {
+		this.parallelHuffmanDecoding = parallelHuffmanDecoding;
+	}
+
+	public boolean getParallelHuffmanDecoding() {
+		return parallelHuffmanDecoding;
+	}
+
+	/** Legt fest, ob Lesen, Transformation, Checksumme und Schreiben in eigenen
+	 * Threads gleichzeitig ausgeführt werden. */
+	public void setPipelinedExecution(boolean pipelinedExecution) {
+		this.pipelinedExecution = pipelinedExecution;
+	}
+
+	public boolean getPipelinedExecution() {
+		return pipelinedExecution;
+	}
+
+	/** Laufzeiten und Zähler dieser Ausführung. */
+	public ConversionMetrics getMetrics() {
+		return metrics;
 	}
 
 	@Override
@@ -147,14 +308,64 @@ public class Model {
 
 		builder.append("Eingabeparameter: \n");
 		builder.append("--input=" + this.inputFilePath + "\n");
+		if (ConversionFiles.isStandardStream(inputFilePath)) {
+			builder.append("--input-format=" + this.inputFormat + "\n");
+		}
+		if (verifyCheckSum) {
+			builder.append("--verify");
+			return builder.toString();
+		}
+		if (batchConversion) {
+			builder.append("--output=" + this.outputFilePath + "\n");
+			builder.append("--format=" + this.outputFormat + "\n");
+			builder.append("--compression=" + this.outputCompressionType + "\n");
+			if (rleMode == ERleMode.OPTIMAL) {
+				builder.append("--rle-mode=" + this.rleMode + "\n");
+			}
+			builder.append("--threads=" + this.threadCount);
+			if (parallelHuffmanDecoding) {
+				builder.append("\n--parallel-huffman");
+			}
+			if (pipelinedExecution) {
+				builder.append("\n--pipeline");
+			}
+			appendStatsArgument(builder);
+			return builder.toString();
+		}
 		builder.append("--output=" + this.outputFilePath);
+		if (ConversionFiles.isStandardStream(outputFilePath)) {
+			builder.append("\n--format=" + this.outputFormat);
+		}
 		if (outputCompressionType != null) {
 			builder.append("\n--compression=" + this.outputCompressionType);
+			if (rleMode == ERleMode.OPTIMAL) {
+				builder.append("\n--rle-mode=" + this.rleMode);
+			}
+			if (region != null) {
+				builder.append("\n--region=" + this.region);
+			}
+			if (rowIndexDirectory != null) {
+				builder.append("\n--region-index=" + this.rowIndexDirectory);
+			}
+			if (parallelHuffmanDecoding) {
+				builder.append("\n--parallel-huffman");
+			}
+			if (pipelinedExecution) {
+				builder.append("\n--pipeline");
+			}
 		} else if (encodeBase32) {
 			builder.append("\n" + "encodeBase32: " + this.encodeBase32);
 		} else {
 			builder.append("\n" + "decodeBase32: " + this.decodeBase32);
 		}
+		appendStatsArgument(builder);
 		return builder.toString();
 	}
+
+	private void appendStatsArgument(StringBuilder builder) {
+		if (statsFilePath != null) {
+			builder.append(statsFilePath.equals("-") ? "\n--stats" : "\n--stats=" + statsFilePath);
+		}
+	}
+
 }
@@ -0,0 +1,187 @@
+package propra.imageconverter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import propra.imageconverter.channel.IPositionalChannel;
+
+/** Instanz dieser Klasse puffert Bytes der Standardein- bzw. -ausgabe: das
+ * Bilddatensegment einer ProPra-Ausgabe, bis Länge und Checksumme für den
+ * Header feststehen, und die Standardeingabe, wenn eine Transformation
+ * positionsgenau lesen muss. <br>
+ * Die ersten MEMORY_LIMIT Bytes bleiben im Speicher, weitere Bytes werden in
+ * eine temporäre Datei ausgelagert, die beim Schließen gelöscht wird. Der
+ * Speicherbedarf ist so unabhängig von der Bildgröße begrenzt. <br>
+ * Fortlaufend wird mit write(ByteBuffer) angehängt, als IPositionalChannel
+ * kann positionsgenau gelesen und geschrieben werden. Byte n liegt im Speicher
+ * an Position n bzw. in der Datei an Position n - MEMORY_LIMIT.
+ *
+ * @author Martina Koch */
+final class SpillOverBuffer implements WritableByteChannel, IPositionalChannel {
+	/** maximale Anzahl Bytes im Speicher */
+	static final int MEMORY_LIMIT = 16 * 1024 * 1024;
+	private static final int INITIAL_CAPACITY = 64 * 1024;
+	private final String spillFilePrefix;
+	private byte[] memory = new byte[INITIAL_CAPACITY];
+	private int memoryLength;
+	private FileChannel spillChannel;
+	private long length;
+	private boolean isOpen = true;
+
+	/** @param spillFilePrefix Anfang des Namens der temporären Datei */
+	SpillOverBuffer(String spillFilePrefix) {
+		this.spillFilePrefix = spillFilePrefix;
+	}
+
+	@Override
+	public int write(ByteBuffer source) throws IOException {
+		return write(source, length);
+	}
+
+	@Override
+	public int write(ByteBuffer source, long position) throws IOException {
+		if (!isOpen) {
+			throw new ClosedChannelException();
+		}
+		int bytesToWrite = source.remaining();
+		int bytesToMemory = (int) Math.max(0, Math.min(bytesToWrite, MEMORY_LIMIT - position));
+		if (bytesToMemory > 0) {
+			ensureMemoryCapacity((int) position + bytesToMemory);
+			source.get(memory, (int) position, bytesToMemory);
+			memoryLength = Math.max(memoryLength, (int) position + bytesToMemory);
+		}
+		long spillPosition = position + bytesToMemory - MEMORY_LIMIT;
+		if (source.hasRemaining()) {
+			// vor der Datei ist der Speicher immer vollständig belegt
+			ensureMemoryCapacity(MEMORY_LIMIT);
+			memoryLength = MEMORY_LIMIT;
+		}
+		while (source.hasRemaining()) {
+			spillPosition += getSpillChannel().write(source, spillPosition);
+		}
+		length = Math.max(length, position + bytesToWrite);
+		return bytesToWrite;
+	}
+
+	/** Vergrößert den Speicherpuffer schrittweise, damit kleine Bilder nicht
+	 * MEMORY_LIMIT Bytes belegen. */
+	private void ensureMemoryCapacity(int capacity) {
+		if (capacity > memory.length) {
+			byte[] grownMemory = new byte[(int) Math.min(MEMORY_LIMIT, Math.max(capacity, 2L * memory.length))];
+			System.arraycopy(memory, 0, grownMemory, 0, memoryLength);
+			memory = grownMemory;
+		}
+	}
+
+	private FileChannel getSpillChannel() throws IOException {
+		if (spillChannel == null) {
+			Path spillFile = Files.createTempFile(spillFilePrefix, ".tmp");
+			try {
+				spillChannel = FileChannel.open(spillFile, StandardOpenOption.WRITE, StandardOpenOption.READ,
+				        StandardOpenOption.DELETE_ON_CLOSE);
+			} catch (IOException e) {
+				Files.deleteIfExists(spillFile);
+				throw e;
+			}
+		}
+		return spillChannel;
+	}
+
+	@Override
+	public int read(ByteBuffer target, long position) throws IOException {
+		if (position >= length) {
+			return -1;
+		}
+		int bytesToRead = (int) Math.min(target.remaining(), length - position);
+		if (position < memoryLength) {
+			bytesToRead = (int) Math.min(bytesToRead, memoryLength - position);
+			target.put(memory, (int) position, bytesToRead);
+			return bytesToRead;
+		}
+		ByteBuffer spillTarget = target.duplicate();
+		spillTarget.limit(spillTarget.position() + bytesToRead);
+		int bytesRead = spillChannel.read(spillTarget, position - MEMORY_LIMIT);
+		if (bytesRead > 0) {
+			target.position(target.position() + bytesRead);
+		}
+		return bytesRead;
+	}
+
+	/** Anzahl aller bisher geschriebenen Bytes. */
+	@Override
+	public long size() {
+		return length;
+	}
+
+	/** Ausschnitte innerhalb des Speichers bzw. der Datei werden nicht kopiert,
+	 * nur ein Ausschnitt über die Grenze beider wird in einen neuen Puffer
+	 * gelesen. */
+	@Override
+	public ByteBuffer mapReadOnly(long position, long mapLength) throws IOException {
+		if (position < 0 || mapLength < 0 || position + mapLength > length) {
+			throw new IOException("Ausschnitt liegt außerhalb des Puffers");
+		}
+		if (position + mapLength <= memoryLength) {
+			return ByteBuffer.wrap(memory, (int) position, (int) mapLength).slice().asReadOnlyBuffer();
+		}
+		if (position >= MEMORY_LIMIT) {
+			return spillChannel.map(FileChannel.MapMode.READ_ONLY, position - MEMORY_LIMIT, mapLength);
+		}
+		ByteBuffer copy = ByteBuffer.allocate((int) mapLength);
+		while (copy.hasRemaining()) {
+			read(copy, position + copy.position());
+		}
+		return copy.flip().asReadOnlyBuffer();
+	}
+
+	@Override
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		long end = Math.min(length, position + count);
+		long bytesTransferred = 0;
+		if (position < memoryLength) {
+			ByteBuffer memoryBuffer = ByteBuffer.wrap(memory, (int) position,
+			        (int) (Math.min(end, memoryLength) - position));
+			while (memoryBuffer.hasRemaining()) {
+				bytesTransferred += target.write(memoryBuffer);
+			}
+		}
+		long spillPosition = Math.max(position, MEMORY_LIMIT);
+		if (spillPosition < end) {
+			bytesTransferred += spillChannel.transferTo(spillPosition - MEMORY_LIMIT, end - spillPosition, target);
+		}
+		return bytesTransferred;
+	}
+
+	/** Schreibt alle gepufferten Bytes in Reihenfolge in das Ziel. */
+	void writeTo(WritableByteChannel target) throws IOException {
+		long position = 0;
+		while (position < length) {
+			long transferred = transferTo(position, length - position, target);
+			if (transferred <= 0) {
+				throw new IOException("Bilddatensegment konnte nicht ausgegeben werden");
+			}
+			position += transferred;
+		}
+	}
+
+	@Override
+	public boolean isOpen() {
+		return isOpen;
+	}
+
+	/** Gibt den Speicher frei und löscht die ggf. angelegte temporäre Datei. */
+	@Override
+	public void close() throws IOException {
+		isOpen = false;
+		memory = null;
+		if (spillChannel != null) {
+			spillChannel.close();
+		}
+	}
+}
@@ -1,5 +1,9 @@
 package propra.imageconverter.argument;
 
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import propra.imageconverter.ConversionFiles;
 import propra.imageconverter.ImageConverterException;
 import propra.imageconverter.Model;
 import propra.imageconverter.enums.ECompressionType;
@@ -36,6 +40,11 @@ public class ArgumentChecker {
         checkOutputFormat();
 
         checkOutputCompressionType();
+        checkThreadCountIfBatchConversion();
+        checkRegionOnlyForConversion();
+        checkRowIndexDirectory();
+        checkStandardStreamsOnlyForConversion();
+        checkInMemoryOnlyForConversion();
     }
 
     /**
@@ -43,44 +52,118 @@ public class ArgumentChecker {
      * (ArgumentExtractor in ArgumentChecker ausgelagert als statische Methode, da
      * diese Überprüfung stattfindet, bevor ArgumentChecker instanziiert wird)
      *
-     * @param i Anzahl der Konsolen-Eingabeparamter, mind. zwei Argumente für
-     *          Encode/Decode Base-32, max. drei Argumente bei Konvertierung
+     * @param i               Anzahl der Konsolen-Eingabeparamter, mind. zwei
+     *                        Argumente für Encode/Decode Base-32, max. drei
+     *                        Argumente bei Konvertierung
+     * @param batchConversion Stapelbetrieb mit zusätzlich --batch, --format und
+     *                        --threads, d.h. max. sechs Argumente
      */
-    static void checkArgumentNumber(int i) throws ImageConverterException {
-        if ((i > 3) || i < 2) {
+    static void checkArgumentNumber(int i, boolean batchConversion) throws ImageConverterException {
+        int maxArgumentNumber = batchConversion ? 6 : 3;
+        if ((i > maxArgumentNumber) || i < 2) {
             throw new ImageConverterException(
                     "ungültige Parameteranzahl, ggf. Dateipfad in Hochkommata \"< Dateipfad >\"setzen");
         }
     }
 
     private void checkInputFormat() throws ImageConverterException {
-        if ((!model.getDecodeBase32() && !model.getEncodeBase32()) && (inputFormat == EFormat.OTHER)) {
-            throw new ImageConverterException("Input Format konnte nicht zugeordnet werden");
+        // im Stapelbetrieb ist Input ein Verzeichnis oder eine Liste von Dateien
+        if ((!model.getDecodeBase32() && !model.getEncodeBase32() && !model.getVerifyCheckSum()
+                && !model.getBatchConversion()) && (inputFormat == null || inputFormat == EFormat.OTHER)) {
+            throw new ImageConverterException(ConversionFiles.isStandardStream(inputFilePath)
+                    ? "Format der Standardeingabe fehlt (--input-format=tga|propra)"
+                    : "Input Format konnte nicht zugeordnet werden");
         }
     }
 
     private void checkOutputFormat() throws ImageConverterException {
-        if ((!model.getDecodeBase32() && !model.getEncodeBase32()) && (outputFormat == EFormat.OTHER)) {
-            throw new ImageConverterException("OuputFormat konnte nicht zugeordnet werden");
+        if ((!model.getDecodeBase32() && !model.getEncodeBase32() && !model.getVerifyCheckSum())
+                && (outputFormat == null || outputFormat == EFormat.OTHER)) {
+            if (model.getBatchConversion()) {
+                throw new ImageConverterException("Ausgabeformat (--format=tga|propra) für Stapelbetrieb fehlt");
+            }
+            throw new ImageConverterException(ConversionFiles.isStandardStream(outputFilePath)
+                    ? "Ausgabeformat (--format=tga|propra) für Standardausgabe fehlt"
+                    : "OuputFormat konnte nicht zugeordnet werden");
         }
     }
 
     private void checkInputFilePath() throws ImageConverterException {
-        if (inputFilePath == null) {
+        if (inputFilePath == null && !model.isInMemoryConversion()) {
             throw new ImageConverterException("InputFilePath konnte nicht erkannt werden");
         }
     }
 
     private void checkOutputFilePath() throws ImageConverterException {
-        if (outputFilePath == null) {
+        if (outputFilePath == null && !model.getVerifyCheckSum() && !model.isInMemoryConversion()) {
             throw new ImageConverterException("OuputFilePath konnte nicht erkannt werden");
         }
     }
 
+    private void checkThreadCountIfBatchConversion() throws ImageConverterException {
+        if (model.getBatchConversion() && model.getThreadCount() < 1) {
+            throw new ImageConverterException("Anzahl Threads muss mindestens 1 sein");
+        }
+    }
+
+    /**
+     * Bildausschnitte sind nur bei der Konvertierung einer einzelnen Datei möglich
+     */
+    private void checkRegionOnlyForConversion() throws ImageConverterException {
+        if (model.getRegion() != null && (model.getBatchConversion() || model.getEncodeBase32()
+                || model.getDecodeBase32() || model.getVerifyCheckSum())) {
+            throw new ImageConverterException("Bildausschnitt (--region) nur bei Konvertierung einer Datei zulässig");
+        }
+    }
+
+    /**
+     * Das Cache-Verzeichnis für den Zeilenindex (--region-index) muss
+     * existieren, es wird nicht angelegt
+     */
+    private void checkRowIndexDirectory() throws ImageConverterException {
+        String rowIndexDirectory = model.getRowIndexDirectory();
+        if (rowIndexDirectory != null && !Files.isDirectory(Paths.get(rowIndexDirectory))) {
+            throw new ImageConverterException(
+                    "Verzeichnis für Zeilenindex (--region-index) nicht gefunden: " + rowIndexDirectory);
+        }
+    }
+
+    /**
+     * Standardein- und -ausgabe ("-") sind nur bei der Konvertierung einer
+     * einzelnen Datei möglich, neben der Standardeingabe kann kein Zeilenindex
+     * gespeichert werden
+     */
+    private void checkStandardStreamsOnlyForConversion() throws ImageConverterException {
+        boolean isStandardInput = ConversionFiles.isStandardStream(inputFilePath);
+        if ((isStandardInput || ConversionFiles.isStandardStream(outputFilePath)) && (model.getBatchConversion()
+                || model.getEncodeBase32() || model.getDecodeBase32() || model.getVerifyCheckSum())) {
+            throw new ImageConverterException("Standardein-/ausgabe (-) nur bei Konvertierung einer Datei zulässig");
+        }
+        if (isStandardInput && model.getRowIndexDirectory() != null) {
+            throw new ImageConverterException("Zeilenindex (--region-index) für Standardeingabe nicht möglich");
+        }
+    }
+
+    /**
+     * Im Speicher wird nur konvertiert, Stapelbetrieb, Base-32 und
+     * Checksummenprüfung arbeiten auf Dateien
+     */
+    private void checkInMemoryOnlyForConversion() throws ImageConverterException {
+        if (model.isInMemoryConversion() && (model.getBatchConversion() || model.getEncodeBase32()
+                || model.getDecodeBase32() || model.getVerifyCheckSum())) {
+            throw new ImageConverterException("Im Speicher ist nur eine Konvertierung zulässig");
+        }
+    }
+
     private void checkOutputCompressionType() throws ImageConverterException {
         if (outputCompression != null && (!outputCompression.equals(ECompressionType.UNCOMPRESSED)
-                && !outputCompression.equals(ECompressionType.RLE))) {
+                && !outputCompression.equals(ECompressionType.RLE)
+                && !outputCompression.equals(ECompressionType.HUFFMAN))) {
             throw new ImageConverterException("Output-Kompression nicht zulässig");
         }
+        // Huffman-Kompression ist nur im ProPra-Format definiert
+        if (ECompressionType.HUFFMAN.equals(outputCompression) && outputFormat != EFormat.PROPRA) {
+            throw new ImageConverterException("Huffman-Kompression nur für ProPra-Ausgabedatei zulässig");
+        }
     }
 }
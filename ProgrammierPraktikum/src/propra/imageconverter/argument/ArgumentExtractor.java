@@ -1,8 +1,12 @@
 package propra.imageconverter.argument;
 
+import java.util.Arrays;
+
 import propra.imageconverter.*;
 import propra.imageconverter.enums.ECompressionType;
 import propra.imageconverter.enums.EFormat;
+import propra.imageconverter.enums.ERleMode;
+import propra.imageconverter.region.ImageRegion;
 
 /** Instanzen dieser Klasse extrahieren aus Benutzer-Eingabeparametern die
  * Attribute des Models und melden Fehler bei zu vielen Eingabeparametern.
@@ -17,16 +21,47 @@ public class ArgumentExtractor {
 	private String outputFilePath;
 	private EFormat outputFormat;
 	private ECompressionType outputCompressionType;
+	private ERleMode rleMode = ERleMode.GREEDY;
+	private ImageRegion region;
+	/** Cache-Verzeichnis aus --region-index[=], null ohne gespeicherten Zeilenindex */
+	private String rowIndexDirectory;
+	private String statsFilePath;
+	private boolean parallelHuffmanDecoding;
+	private boolean pipelinedExecution;
 
 	private boolean encodeBase32;
 	private boolean decodeBase32;
+	private boolean verifyCheckSum;
+	private boolean batchConversion;
+	/** Format aus --format=, für Stapelbetrieb und Standardausgabe */
+	private EFormat formatArgument;
+	/** Format aus --input-format=, für die Standardeingabe */
+	private EFormat inputFormatArgument;
+	private int threadCount = Runtime.getRuntime().availableProcessors();
 
-	public ArgumentExtractor(Controller controller, Model model) throws ImageConverterException {
-		this.executionArguments = controller.getExecutionArguments();
+	public ArgumentExtractor(String[] executionArguments, Model model) throws ImageConverterException {
+		this.executionArguments = executionArguments;
 
-		ArgumentChecker.checkArgumentNumber(executionArguments.length);
+		batchConversion = Arrays.asList(executionArguments).contains("--batch");
+		// --rle-mode, --region, --region-index, --stats, --parallel-huffman, --pipeline und --input-format sowie
+		// --format außerhalb des Stapelbetriebes sind optional und zählen nicht zur Parameteranzahl
+		long optionalArguments = Arrays.stream(executionArguments).filter(argument -> argument.startsWith("--rle-mode=")
+		        || argument.startsWith("--region") || argument.startsWith("--stats")
+		        || argument.equals("--parallel-huffman") || argument.equals("--pipeline")
+		        || argument.startsWith("--input-format=") || (!batchConversion && argument.startsWith("--format=")))
+		        .count();
+		ArgumentChecker.checkArgumentNumber((int) (executionArguments.length - optionalArguments), batchConversion);
 		extractArguments();
 
+		// im Stapelbetrieb ist --output ein Verzeichnis, das Format folgt aus --format
+		if (batchConversion || ConversionFiles.isStandardStream(outputFilePath)) {
+			outputFormat = formatArgument;
+		}
+		// die Standardeingabe "-" hat keine Dateiendung
+		if (ConversionFiles.isStandardStream(inputFilePath)) {
+			inputFormat = inputFormatArgument;
+		}
+
 		assignInputOutputFilePathToModel(model);
 		assignInputOutputFormatToModel(model);
 		assignOutputCompressionTypeToModel(model);
@@ -59,16 +94,64 @@ public class ArgumentExtractor {
 					outputFormat = assignFormat(outputFilePath);
 				}
 
+				// Stapelbetrieb: Ausgabeformat und Anzahl gleichzeitiger Konvertierungen, Ausgabeformat auch
+				// für die Standardausgabe
+				else if (argumentSplit[0].equals("--format")) {
+					formatArgument = assignFormat("." + (argumentSplit.length > 1 ? argumentSplit[1] : ""));
+				}
+
+				// Format der Standardeingabe
+				else if (argumentSplit[0].equals("--input-format")) {
+					inputFormatArgument = assignFormat("." + (argumentSplit.length > 1 ? argumentSplit[1] : ""));
+				}
+
+				else if (argumentSplit[0].equals("--threads")) {
+					try {
+						threadCount = Integer.parseInt(argumentSplit.length > 1 ? argumentSplit[1] : "");
+					} catch (NumberFormatException e) {
+						throw new ImageConverterException("Ungültige Anzahl Threads: " + argument);
+					}
+				}
+
+				else if (argumentSplit[0].equals("--rle-mode")) {
+					try {
+						rleMode = ERleMode.valueOf((argumentSplit.length > 1 ? argumentSplit[1] : "").toUpperCase());
+					} catch (IllegalArgumentException e) {
+						throw new ImageConverterException("RLE-Modus nicht bekannt (greedy|optimal): " + argument);
+					}
+				}
+
+				// Bildausschnitt x,y,Breite,Höhe
+				else if (argumentSplit[0].equals("--region")) {
+					region = ImageRegion.parse(argumentSplit.length > 1 ? argumentSplit[1] : "");
+				}
+
+				// Cache-Verzeichnis für den Zeilenindex von RLE-Dateien
+				else if (argumentSplit[0].equals("--region-index")) {
+					if (argumentSplit.length == 1) {
+						throw new ImageConverterException("Fehlendes Verzeichnis für --region-index");
+					}
+					rowIndexDirectory = argumentSplit[1];
+				}
+
+				// JSON-Statistik in eine Datei statt auf die Konsole
+				else if (argumentSplit[0].equals("--stats")) {
+					if (argumentSplit.length == 1) {
+						throw new ImageConverterException("Fehlender Dateipfad für --stats");
+					}
+					statsFilePath = argumentSplit[1];
+				}
+
 				/* legt Kompressionstyp fest. Nach Review-Rückmeldung aus KE2 wurde
 				 * Ausnahmebehandlung hinzugefügt, falls Kompressionstyp nicht existiert */
 				else if (argumentSplit[0].equals("--compression")) {
+					if (argumentSplit.length == 1) {
+						throw new ImageConverterException("Fehlendes Kompressions-Argument");
+					}
 					try {
-						if (argumentSplit.length == 1) {
-							throw new ImageConverterException("Fehlendes Kompressions-Argument");
-						}
 						outputCompressionType = ECompressionType.valueOf(argumentSplit[1].toUpperCase());
-					} catch (Exception e) {
-						ImageConverterException.abruptlyExitProgram(e);
+					} catch (IllegalArgumentException e) {
+						throw new ImageConverterException("Kompressionstyp nicht bekannt: " + argumentSplit[1]);
 					}
 				}
 			}
@@ -81,6 +164,31 @@ public class ArgumentExtractor {
 				outputFormat = assignFormat(outputFilePath);
 			}
 
+			// Zeilenindex für Bildausschnitte aus RLE-Dateien im temporären Verzeichnis speichern
+			else if (argument.equals("--region-index")) {
+				rowIndexDirectory = System.getProperty("java.io.tmpdir");
+			}
+
+			// JSON-Statistik auf der Konsole
+			else if (argument.equals("--stats")) {
+				statsFilePath = "-";
+			}
+
+			// große Huffman-kodierte Bilddatensegmente parallel dekodieren
+			else if (argument.equals("--parallel-huffman")) {
+				parallelHuffmanDecoding = true;
+			}
+
+			// Lesen, Transformation, Checksumme und Schreiben in eigenen Threads
+			else if (argument.equals("--pipeline")) {
+				pipelinedExecution = true;
+			}
+
+			// nur Überprüfung der Checksumme, keine Ausgabedatei
+			else if (argument.equals("--verify")) {
+				verifyCheckSum = true;
+			}
+
 			else if (argument.startsWith("--decode-base-32")) {
 				decodeBase32 = true;
 				// entferne Dateiendung ".base-32
@@ -122,25 +230,24 @@ public class ArgumentExtractor {
 		}
 	}
 
-	/** Legt für Ein-/Ausgabedatei das Dateiformat fest. */
-	private EFormat assignFormat(String filePathString) throws ImageConverterException {
-		EFormat fileFormat = null;
-
-		if (filePathString.toLowerCase().endsWith(".tga")) {
-			fileFormat = EFormat.TGA;
-		} else if (filePathString.toLowerCase().endsWith(".propra")) {
-			fileFormat = EFormat.PROPRA;
-		} else {
-			/* Fehlerbehandlung bei nicht bekanntem Dateiformat und nicht
-			 * Base-Transformation in ArgumentChecker */
-			fileFormat = EFormat.OTHER;
-		}
-		return fileFormat;
+	/** Legt für Ein-/Ausgabedatei das Dateiformat fest. Fehlerbehandlung bei nicht
+	 * bekanntem Dateiformat und nicht Base-Transformation in ArgumentChecker */
+	private EFormat assignFormat(String filePathString) {
+		return EFormat.fromFilePath(filePathString);
 	}
 
 	private void assignEncodeDecodeBase32ToModel(Model model) {
 		model.setEncodeBase32(encodeBase32);
 		model.setDecodeBase32(decodeBase32);
+		model.setVerifyCheckSum(verifyCheckSum);
+		model.setBatchConversion(batchConversion);
+		model.setThreadCount(threadCount);
+		model.setRleMode(rleMode);
+		model.setRegion(region);
+		model.setRowIndexDirectory(rowIndexDirectory);
+		model.setStatsFilePath(statsFilePath);
+		model.setParallelHuffmanDecoding(parallelHuffmanDecoding);
+		model.setPipelinedExecution(pipelinedExecution);
 	}
 
 	public ECompressionType getOutputCompressionTypeFromArgumentExtractor() {
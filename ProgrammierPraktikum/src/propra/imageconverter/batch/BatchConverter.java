@@ -0,0 +1,165 @@
+package propra.imageconverter.batch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import propra.imageconverter.ConversionEngine;
+import propra.imageconverter.ConversionRequest;
+import propra.imageconverter.FileResult;
+import propra.imageconverter.ImageConverterException;
+import propra.imageconverter.Model;
+import propra.imageconverter.enums.EFormat;
+
+/** Instanz dieser Klasse konvertiert mehrere Dateien in ein Ausgabeverzeichnis.
+ * Input ist ein Verzeichnis, dessen TGA- und ProPra-Dateien (auch in
+ * Unterverzeichnissen) konvertiert werden, oder eine Listendatei mit einem Pfad
+ * je Zeile. Relative Pfade der Liste beziehen sich auf deren Verzeichnis, leere
+ * Zeilen und Zeilen mit '#' am Anfang werden übersprungen. <br>
+ * Die Ausgabedateien behalten den relativen Pfad und erhalten die Endung des
+ * Ausgabeformates. Ergibt sich für mehrere Input-Dateien dieselbe
+ * Ausgabedatei (z.B. a.tga und a.propra), wird nur die erste konvertiert, die
+ * übrigen werden als Fehler gemeldet. Jede Datei wird mit einer eigenen ConversionEngine-Anfrage
+ * konvertiert, die Anfragen laufen in einem Thread-Pool fester Größe. Ein
+ * Fehler bricht den Stapel nicht ab, sondern wird je Datei als FileResult im
+ * Model bzw. in der ImageConverterException zurückgegeben. Die
+ * ConversionMetrics der erfolgreichen Dateien werden im Model summiert.
+ *
+ * @author Martina Koch */
+public class BatchConverter {
+	private Model model;
+	private ConversionEngine conversionEngine = new ConversionEngine();
+	private Path outputDirectory;
+	private List<Path> inputFiles = new ArrayList<>();
+	private List<Path> outputFiles = new ArrayList<>();
+	/** je Datei Fehlermeldung bei bereits vergebener Ausgabedatei, sonst null */
+	private List<String> outputFileConflicts = new ArrayList<>();
+	private Map<Path, Path> inputFileByOutputFile = new HashMap<>();
+	private List<FileResult> fileResults = new ArrayList<>();
+	private int failedConversionCount;
+
+	public BatchConverter(Model model) throws ImageConverterException, IOException {
+		this.model = model;
+		this.outputDirectory = Paths.get(model.getOutputFilePath());
+
+		collectFilesToConvert(Paths.get(model.getInputFilePath()));
+		Files.createDirectories(outputDirectory);
+		convertFilesConcurrently();
+
+		model.setFileResults(fileResults);
+		if (failedConversionCount > 0) {
+			throw new ImageConverterException(
+			        failedConversionCount + " von " + inputFiles.size() + " Konvertierungen fehlgeschlagen",
+			        fileResults);
+		}
+	}
+
+	private void collectFilesToConvert(Path inputPath) throws ImageConverterException, IOException {
+		if (Files.isDirectory(inputPath)) {
+			List<Path> filesInDirectory;
+			try (Stream<Path> paths = Files.walk(inputPath)) {
+				filesInDirectory = paths.filter(Files::isRegularFile)
+				        .filter(path -> !EFormat.fromFilePath(path.toString()).equals(EFormat.OTHER)).sorted()
+				        .collect(Collectors.toList());
+			}
+			for (Path file : filesInDirectory) {
+				addFileToConvert(file, inputPath.relativize(file));
+			}
+		} else if (Files.isRegularFile(inputPath)) {
+			collectFilesFromList(inputPath);
+		} else {
+			throw new ImageConverterException("Input-Verzeichnis bzw. -Liste nicht gefunden: " + inputPath);
+		}
+	}
+
+	private void collectFilesFromList(Path listFile) throws IOException {
+		Path listDirectory = listFile.toAbsolutePath().getParent();
+		for (String line : Files.readAllLines(listFile, StandardCharsets.UTF_8)) {
+			String entry = line.trim();
+			if (entry.isEmpty() || entry.startsWith("#")) {
+				continue;
+			}
+			Path file = Paths.get(entry);
+			// absolute Pfade werden ohne Verzeichnisse ins Output-Verzeichnis geschrieben
+			addFileToConvert(file.isAbsolute() ? file : listDirectory.resolve(file),
+			        file.isAbsolute() ? file.getFileName() : file.normalize());
+		}
+	}
+
+	/** Ausgabedatei liegt unter gleichem relativen Pfad im Output-Verzeichnis und
+	 * erhält die Endung des Ausgabeformates. Zwei Konvertierungen in dieselbe
+	 * Datei würden sich gegenseitig überschreiben, daher wird eine bereits
+	 * vergebene Ausgabedatei als Fehler vermerkt und nicht konvertiert. */
+	private void addFileToConvert(Path inputFile, Path relativePath) {
+		String fileName = relativePath.getFileName().toString();
+		int extensionStart = fileName.lastIndexOf('.');
+		String baseName = extensionStart > 0 ? fileName.substring(0, extensionStart) : fileName;
+		Path outputFile = outputDirectory.resolve(relativePath).resolveSibling(baseName + "." + model.getOutputFormat());
+
+		inputFiles.add(inputFile);
+		outputFiles.add(outputFile);
+		Path previousInputFile = inputFileByOutputFile.putIfAbsent(outputFile.toAbsolutePath().normalize(),
+		        inputFile);
+		outputFileConflicts.add(previousInputFile == null ? null
+		        : "Ausgabedatei " + outputFile + " bereits für " + previousInputFile + " vorgesehen");
+	}
+
+	/** Konvertiert alle Dateien gleichzeitig in einem Thread-Pool und sammelt die
+	 * Ergebnisse in der Reihenfolge der Dateien. */
+	private void convertFilesConcurrently() throws IOException {
+		ExecutorService executorService = Executors.newFixedThreadPool(model.getThreadCount());
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < inputFiles.size(); i++) {
+				Path inputFile = inputFiles.get(i);
+				Path outputFile = outputFiles.get(i);
+				if (outputFileConflicts.get(i) != null) {
+					results.add(CompletableFuture.completedFuture(outputFileConflicts.get(i)));
+				} else {
+					results.add(executorService.submit(() -> convertFile(inputFile, outputFile)));
+				}
+			}
+			for (int i = 0; i < results.size(); i++) {
+				String error = results.get(i).get();
+				fileResults.add(new FileResult(inputFiles.get(i), outputFiles.get(i), error));
+				if (error != null) {
+					failedConversionCount++;
+				}
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IOException("Stapelkonvertierung abgebrochen: " + e.getMessage(), e);
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	/** Konvertiert eine Datei.
+	 *
+	 * @return Fehlermeldung oder null, wenn die Konvertierung erfolgreich war */
+	private String convertFile(Path inputFile, Path outputFile) {
+		try {
+			Files.createDirectories(outputFile.getParent());
+			Model fileModel = conversionEngine.convert(ConversionRequest
+			        .convert(inputFile.toString(), outputFile.toString(), model.getOutputCompressionType())
+			        .withRleMode(model.getRleMode()).withParallelHuffmanDecoding(model.getParallelHuffmanDecoding())
+			        .withPipelinedExecution(model.getPipelinedExecution()));
+			model.getMetrics().addAll(fileModel.getMetrics());
+			return null;
+		} catch (Exception e) {
+			return e.getMessage();
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package propra.imageconverter.channel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.WritableByteChannel;
+
+/** IPositionalChannel über einen ByteBuffer für die Konvertierung im
+ * Speicher. <br>
+ * Ein lesender Channel umfasst die Bytes des Input-Buffers von position bis
+ * limit und verändert diesen nicht. Ein schreibender Channel schreibt in einen
+ * vorgegebenen Zielpuffer fester Größe oder in einen Heap-Puffer, der bei
+ * Bedarf wächst. <br>
+ * Lesen arbeitet je Aufruf auf einem duplicate() des Puffers und benötigt
+ * keine Sperre. Nur Schreiben ist synchronisiert, da der Puffer dabei
+ * ausgetauscht werden kann; size wird erst nach dem Austausch erhöht.
+ *
+ * @author Martina Koch */
+public final class BufferPositionalChannel implements IPositionalChannel {
+	private static final int INITIAL_CAPACITY = 64 * 1024;
+	/** größte Länge eines Heap-Arrays */
+	private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+	/** Inhalt von 0 bis size */
+	private volatile ByteBuffer buffer;
+	private volatile int size;
+	private final boolean isGrowable;
+
+	private BufferPositionalChannel(ByteBuffer buffer, int size, boolean isGrowable) {
+		this.buffer = buffer;
+		this.size = size;
+		this.isGrowable = isGrowable;
+	}
+
+	/** Lesender Channel über die Bytes des Input-Buffers von position bis limit. */
+	public static BufferPositionalChannel forReading(ByteBuffer input) {
+		ByteBuffer content = input.slice().asReadOnlyBuffer();
+		return new BufferPositionalChannel(content, content.capacity(), false);
+	}
+
+	/** Schreibender Channel. Ohne Zielpuffer (null) wächst ein Heap-Puffer mit
+	 * dem Output, sonst wird ab position bis limit des Zielpuffers geschrieben. */
+	public static BufferPositionalChannel forWriting(ByteBuffer target) {
+		if (target == null) {
+			return new BufferPositionalChannel(ByteBuffer.allocate(INITIAL_CAPACITY), 0, true);
+		}
+		return new BufferPositionalChannel(target.slice(), 0, false);
+	}
+
+	/** Geschriebener bzw. gelesener Inhalt von 0 bis size. */
+	public ByteBuffer getContent() {
+		int contentSize = size;
+		ByteBuffer content = buffer.duplicate();
+		content.position(0).limit(contentSize);
+		return content.slice();
+	}
+
+	@Override
+	public int read(ByteBuffer target, long position) {
+		int contentSize = size;
+		if (position >= contentSize) {
+			return -1;
+		}
+		int bytesToRead = (int) Math.min(target.remaining(), contentSize - position);
+		ByteBuffer source = buffer.duplicate();
+		source.position((int) position).limit((int) position + bytesToRead);
+		target.put(source);
+		return bytesToRead;
+	}
+
+	@Override
+	public synchronized int write(ByteBuffer source, long position) throws IOException {
+		if (buffer.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		int bytesToWrite = source.remaining();
+		long end = position + bytesToWrite;
+		ensureCapacity(end);
+		ByteBuffer target = buffer.duplicate();
+		target.position((int) position);
+		target.put(source);
+		size = (int) Math.max(size, end);
+		return bytesToWrite;
+	}
+
+	/** Vergrößert den Heap-Puffer schrittweise, ein Zielpuffer fester Größe
+	 * läuft mit IOException über. */
+	private void ensureCapacity(long capacity) throws IOException {
+		if (capacity <= buffer.capacity()) {
+			return;
+		}
+		if (!isGrowable) {
+			throw new IOException("Zielpuffer zu klein für das Output-Bild");
+		}
+		if (capacity > MAX_CAPACITY) {
+			throw new IOException("Output-Bild zu groß für einen ByteBuffer");
+		}
+		ByteBuffer grownBuffer = ByteBuffer
+		        .allocate((int) Math.min(MAX_CAPACITY, Math.max(capacity, 2L * buffer.capacity())));
+		ByteBuffer content = buffer.duplicate();
+		content.position(0).limit(size);
+		grownBuffer.put(content);
+		buffer = grownBuffer;
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	@Override
+	public ByteBuffer mapReadOnly(long position, long length) throws IOException {
+		int contentSize = size;
+		if (position < 0 || length < 0 || position + length > contentSize) {
+			throw new IOException("Ausschnitt liegt außerhalb des Puffers");
+		}
+		ByteBuffer content = buffer.duplicate();
+		content.position((int) position).limit((int) (position + length));
+		return content.slice().asReadOnlyBuffer();
+	}
+
+	@Override
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		int contentSize = size;
+		if (position >= contentSize) {
+			return 0;
+		}
+		ByteBuffer source = mapReadOnly(position, Math.min(count, contentSize - position));
+		long bytesTransferred = 0;
+		while (source.hasRemaining()) {
+			int n = target.write(source);
+			if (n <= 0) {
+				break;
+			}
+			bytesTransferred += n;
+		}
+		return bytesTransferred;
+	}
+
+	/** Der Inhalt bleibt über getContent erreichbar. */
+	@Override
+	public void close() {
+	}
+}
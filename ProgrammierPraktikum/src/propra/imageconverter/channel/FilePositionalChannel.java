@@ -0,0 +1,54 @@
+package propra.imageconverter.channel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+
+/** IPositionalChannel über eine Datei. Ausschnitte werden in den Speicher
+ * abgebildet, transferTo kopiert über das Betriebssystem.
+ *
+ * @author Martina Koch */
+public final class FilePositionalChannel implements IPositionalChannel {
+	private final FileChannel fileChannel;
+
+	private FilePositionalChannel(FileChannel fileChannel) {
+		this.fileChannel = fileChannel;
+	}
+
+	public static FilePositionalChannel open(Path path, OpenOption... options) throws IOException {
+		return new FilePositionalChannel(FileChannel.open(path, options));
+	}
+
+	@Override
+	public int read(ByteBuffer target, long position) throws IOException {
+		return fileChannel.read(target, position);
+	}
+
+	@Override
+	public int write(ByteBuffer source, long position) throws IOException {
+		return fileChannel.write(source, position);
+	}
+
+	@Override
+	public long size() throws IOException {
+		return fileChannel.size();
+	}
+
+	@Override
+	public ByteBuffer mapReadOnly(long position, long length) throws IOException {
+		return fileChannel.map(FileChannel.MapMode.READ_ONLY, position, length);
+	}
+
+	@Override
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		return fileChannel.transferTo(position, count, target);
+	}
+
+	@Override
+	public void close() throws IOException {
+		fileChannel.close();
+	}
+}
@@ -0,0 +1,50 @@
+package propra.imageconverter.channel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/** Interface für positionsgenaues Lesen und Schreiben von Input- und
+ * Output-Bild. Header-Reader, Codecs und Checksummen arbeiten nur hierüber, die
+ * Daten liegen in einer Datei (FilePositionalChannel) oder in einem Puffer
+ * (BufferPositionalChannel). <br>
+ * Ein IPositionalChannel hat keine eigene Position, Aufrufe aus mehreren
+ * Threads sind daher zulässig.
+ *
+ * @author Martina Koch */
+public interface IPositionalChannel extends Closeable {
+
+	/** Liest ab position bis zu target.remaining() Bytes.
+	 *
+	 * @return Anzahl gelesener Bytes, -1 ab dem Ende */
+	int read(ByteBuffer target, long position) throws IOException;
+
+	/** Schreibt source.remaining() Bytes oder weniger ab position.
+	 *
+	 * @return Anzahl geschriebener Bytes */
+	int write(ByteBuffer source, long position) throws IOException;
+
+	long size() throws IOException;
+
+	/** Schreibgeschützter Ausschnitt von length Bytes ab position. */
+	ByteBuffer mapReadOnly(long position, long length) throws IOException;
+
+	/** Kopiert bis zu count Bytes ab position in den Channel.
+	 *
+	 * @return Anzahl kopierter Bytes */
+	long transferTo(long position, long count, WritableByteChannel target) throws IOException;
+
+	/** Stream, der ab position fortlaufend liest. Er schließt den Channel
+	 * nicht. */
+	default InputStream newInputStream(long position) {
+		return new PositionalInputStream(this, position);
+	}
+
+	/** Channel, der ab position fortlaufend schreibt. Er schließt den Channel
+	 * nicht. */
+	default PositionalWriter newWriter(long position) {
+		return new PositionalWriter(this, position);
+	}
+}
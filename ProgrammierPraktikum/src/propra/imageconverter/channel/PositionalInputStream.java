@@ -0,0 +1,37 @@
+package propra.imageconverter.channel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/** Ungepufferter Stream, der ab einer Startposition fortlaufend über einen
+ * IPositionalChannel liest.
+ *
+ * @author Martina Koch */
+final class PositionalInputStream extends InputStream {
+	private final IPositionalChannel channel;
+	private long position;
+
+	PositionalInputStream(IPositionalChannel channel, long position) {
+		this.channel = channel;
+		this.position = position;
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] oneByte = new byte[1];
+		return read(oneByte, 0, 1) < 0 ? -1 : oneByte[0] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] target, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+		int bytesRead = channel.read(ByteBuffer.wrap(target, offset, length), position);
+		if (bytesRead > 0) {
+			position += bytesRead;
+		}
+		return bytesRead;
+	}
+}
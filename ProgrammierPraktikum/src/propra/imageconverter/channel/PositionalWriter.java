@@ -0,0 +1,46 @@
+package propra.imageconverter.channel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/** Instanzen dieser Klasse schreiben ab einer Startposition fortlaufend über
+ * einen IPositionalChannel. Parallele Codecs erkennen ihn und schreiben über
+ * getChannel direkt an die Position ihrer Abschnitte.
+ *
+ * @author Martina Koch */
+public final class PositionalWriter implements WritableByteChannel {
+	private final IPositionalChannel channel;
+	private long position;
+
+	PositionalWriter(IPositionalChannel channel, long position) {
+		this.channel = channel;
+		this.position = position;
+	}
+
+	@Override
+	public int write(ByteBuffer source) throws IOException {
+		int bytesWritten = channel.write(source, position);
+		position += bytesWritten;
+		return bytesWritten;
+	}
+
+	public IPositionalChannel getChannel() {
+		return channel;
+	}
+
+	/** Position des nächsten geschriebenen Bytes. */
+	public long getPosition() {
+		return position;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return true;
+	}
+
+	@Override
+	public void close() {
+		// der Channel gehört dem Erzeuger
+	}
+}
@@ -1,12 +1,34 @@
 package propra.imageconverter.checksum;
 
+import java.nio.ByteBuffer;
+
 /** Instanzen dieser Klasse repräsentieren Checksumme einer Datei.<br>
+ * <br>
+ * Für jedes Byte b an Position i (ab 1) im Bilddatensegment gilt: <br>
+ * A_i = A_(i-1) + (i + b) mod 65521, B_i = B_(i-1) + A_i mod 65521 mit A_0 = 0
+ * und B_0 = 1. <br>
+ * A_n und B_n werden wie bei Adler-32 in primitiven Feldern gehalten und erst
+ * nach MAX_UNREDUCED_BYTES Bytes modulo 65521 reduziert, da die Summen bis
+ * dahin nicht überlaufen können.
  *
  * @author martina */
 public class CheckSum {
-	private long[] A_n_B_n = { 0, 1 };
-	private long calculatedCheckSum;
+	private static final int MOD = 65521;
+	/** Nach n Bytes ohne Reduktion gilt A_n < 65521 + n * (65521 + n + 255) und
+	 * B_n < 65521 + n * A_n, für n = 2^16 also weit unter Long.MAX_VALUE */
+	private static final int MAX_UNREDUCED_BYTES = 1 << 16;
+	private long A_n = 0;
+	private long B_n = 1;
+	/** Position des nächsten Bytes im Bilddatensegment, nur bei Reduktion modulo
+	 * 65521 gerechnet */
 	private long positionInImageSegement = 1;
+	private int unreducedBytes;
+	/** Anzahl der bisher eingerechneten Bytes */
+	private long length;
+	/** Rechenzeit der blockweisen Fortschreibung in Nanosekunden */
+	private long updateNanos;
+	private boolean isCheckSumCalculated;
+	private long calculatedCheckSum;
 
 	/** Instanz der Checksumme wird mit 0 oder -1 initiailisiert. <br>
 	 * 0: Ein-/Ausgabedatei ist Propra-Datei <br>
@@ -14,47 +36,157 @@ public class CheckSum {
 	 * @param i */
 	public CheckSum(int i) {
 		this.calculatedCheckSum = i;
+		this.isCheckSumCalculated = i >= 0;
+	}
+
+	/** Schreibt Checksumme mit einem Byte fort. */
+	public void update(byte b) {
+		if (isCheckSumCalculated) {
+			A_n += positionInImageSegement + (b & 0xff);
+			B_n += A_n;
+			positionInImageSegement++;
+			length++;
+			if (++unreducedBytes == MAX_UNREDUCED_BYTES) {
+				reduce();
+			}
+		}
+	}
+
+	/** Schreibt Checksumme mit length Bytes ab offset fort. */
+	public void update(byte[] bytes, int offset, int length) {
+		if (!isCheckSumCalculated) {
+			return;
+		}
+		long startNanos = System.nanoTime();
+		int end = offset + length;
+		while (offset < end) {
+			int blockEnd = Math.min(end, offset + (MAX_UNREDUCED_BYTES - unreducedBytes));
+			long a = A_n;
+			long b = B_n;
+			long position = positionInImageSegement;
+			for (int i = offset; i < blockEnd; i++) {
+				a += position + (bytes[i] & 0xff);
+				b += a;
+				position++;
+			}
+			A_n = a;
+			B_n = b;
+			positionInImageSegement = position;
+			unreducedBytes += blockEnd - offset;
+			this.length += blockEnd - offset;
+			offset = blockEnd;
+			if (unreducedBytes == MAX_UNREDUCED_BYTES) {
+				reduce();
+			}
+		}
+		updateNanos += System.nanoTime() - startNanos;
 	}
 
-	/** CheckSumme wird berechnet, wenn calculatedChecksum >= 0, d.h. Ein- oder
-	 * Ausgabedatei ist Propradatei.
-	 * @param rbgArray */
-	public void calculateCheckSumForByteArray(byte[] rbgArray) {
-		if (calculatedCheckSum >= 0) {
-			for (byte b : rbgArray) {
-				A_n_B_n = calculateCheckSumForEachByte(b);
-				positionInImageSegement++;
+	/** Schreibt Checksumme mit allen verbleibenden Bytes des Puffers fort, danach
+	 * steht die Position des Puffers auf dem Limit. */
+	public void update(ByteBuffer buffer) {
+		if (!isCheckSumCalculated) {
+			buffer.position(buffer.limit());
+			return;
+		}
+		if (buffer.hasArray()) {
+			update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			buffer.position(buffer.limit());
+			return;
+		}
+		long startNanos = System.nanoTime();
+		int index = buffer.position();
+		int end = buffer.limit();
+		while (index < end) {
+			int blockEnd = Math.min(end, index + (MAX_UNREDUCED_BYTES - unreducedBytes));
+			long a = A_n;
+			long b = B_n;
+			long position = positionInImageSegement;
+			for (int i = index; i < blockEnd; i++) {
+				a += position + (buffer.get(i) & 0xff);
+				b += a;
+				position++;
+			}
+			A_n = a;
+			B_n = b;
+			positionInImageSegement = position;
+			unreducedBytes += blockEnd - index;
+			length += blockEnd - index;
+			index = blockEnd;
+			if (unreducedBytes == MAX_UNREDUCED_BYTES) {
+				reduce();
 			}
 		}
+		buffer.position(end);
+		updateNanos += System.nanoTime() - startNanos;
 	}
 
-	/** Berechnet byteweise die Checksumme
+	/** Hängt die Checksumme eines unmittelbar folgenden Abschnittes an, sodass
+	 * diese Instanz danach der Checksumme über beide Abschnitte entspricht. Beide
+	 * Checksummen müssen wie üblich ab Position 1 mit A_0 = 0 und B_0 = 1
+	 * berechnet worden sein. <br>
+	 * <br>
+	 * Für den folgenden Abschnitt der Länge m mit Summen a und b, der bei Offset n
+	 * beginnt, gilt: <br>
+	 * A = A_n + a + m * n <br>
+	 * B = B_n + (b - 1) + m * A_n + n * m * (m + 1) / 2
 	 *
-	 * @param b Byte b an Position position
-	 * @param A_n_B_n Übergebene Zwischenwerte für A_n und B_n
-	 * @param position Position im Bilddatensegment, Zähler von 1 bis Länge
-	 * Bilddatensegment-1
-	 * @return Zwischensumme vor finaler Berechnung Checksumme */
-	public long[] calculateCheckSumForEachByte(byte b) {
-		long position = positionInImageSegement;
-		long A_n = A_n_B_n[0];
-		long B_n = A_n_B_n[1];
-		A_n = (A_n + (position + Byte.toUnsignedInt(b)) % 65521) % 65521;
-		B_n = (B_n + A_n) % 65521;
+	 * @param followingCheckSum Checksumme des folgenden Abschnittes */
+	public void combine(CheckSum followingCheckSum) {
+		if (!isCheckSumCalculated) {
+			return;
+		}
+		reduce();
+		followingCheckSum.reduce();
+		long offset = length % MOD;
+		long followingLength = followingCheckSum.length;
+		long followingLengthMod = followingLength % MOD;
+		// m * (m + 1) / 2 modulo 65521, ohne dass das Produkt überläuft
+		long triangularNumber = followingLength % 2 == 0
+		        ? ((followingLength / 2) % MOD) * ((followingLength + 1) % MOD) % MOD
+		        : followingLengthMod * (((followingLength + 1) / 2) % MOD) % MOD;
+
+		long combinedB = B_n + followingCheckSum.B_n - 1 + MOD + followingLengthMod * A_n % MOD
+		        + offset * triangularNumber % MOD;
+		A_n = (A_n + followingCheckSum.A_n + followingLengthMod * offset) % MOD;
+		B_n = combinedB % MOD;
+		length += followingLength;
+		positionInImageSegement = (length + 1) % MOD;
+		updateNanos += followingCheckSum.updateNanos;
+	}
+
+	/** true, wenn die Checksumme berechnet wird, d.h. bei ProPra-Dateien. */
+	public boolean isCalculated() {
+		return isCheckSumCalculated;
+	}
 
-		long[] A_n_B_n_next = { A_n, B_n };
+	/** Gibt Anzahl der bisher eingerechneten Bytes zurück. */
+	public long getLength() {
+		return length;
+	}
+
+	/** Gibt die Rechenzeit der blockweisen Fortschreibung in Nanosekunden zurück,
+	 * angehängte Checksummen eingeschlossen. */
+	public long getUpdateNanos() {
+		return updateNanos;
+	}
 
-		return A_n_B_n_next;
+	private void reduce() {
+		A_n %= MOD;
+		B_n %= MOD;
+		positionInImageSegement %= MOD;
+		unreducedBytes = 0;
 	}
 
 	/** CheckSumme wird final berechnet, wenn calculatedChecksum>-1, d.h. Ein- oder
 	 * Ausgabeformat eine Propradatei.
 	 * @return */
 	public long finallyCalculateChecksum() {
-		if (calculatedCheckSum >= 0) {
+		if (isCheckSumCalculated) {
+			reduce();
 			// Bitschieben (<<)nach links um 16 Stellen (Einfüllen Nullen) entspricht 2^16
-			calculatedCheckSum = (A_n_B_n[0] << 16) + A_n_B_n[1];
+			calculatedCheckSum = (A_n << 16) + B_n;
 		}
 		return calculatedCheckSum;
 	}
-}
\ No newline at end of file
+}
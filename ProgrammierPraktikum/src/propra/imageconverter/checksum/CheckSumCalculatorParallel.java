@@ -0,0 +1,75 @@
+package propra.imageconverter.checksum;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import propra.imageconverter.channel.IPositionalChannel;
+
+/** Berechnet die Checksumme eines Dateiabschnittes parallel mit Fork/Join. Der
+ * Abschnitt wird so lange halbiert, bis die Teilabschnitte höchstens
+ * MAX_CHUNK_SIZE Bytes lang sind. Diese werden schreibgeschützt in den Speicher
+ * abgebildet, einzeln berechnet und anschließend mit CheckSum.combine in
+ * Reihenfolge zusammengefügt.
+ *
+ * @author Martina Koch */
+public class CheckSumCalculatorParallel {
+	/** maximale Länge eines Teilabschnittes, der sequentiell berechnet wird */
+	private static final long MAX_CHUNK_SIZE = 4 * 1024 * 1024;
+
+	private CheckSumCalculatorParallel() {
+	}
+
+	/** Berechnet die Checksumme über length Bytes ab position.
+	 *
+	 * @param channel lesbarer Channel der Datei bzw. des Puffers
+	 * @param position Beginn des Abschnittes in der Datei
+	 * @param length Länge des Abschnittes
+	 * @return Checksumme, noch nicht final berechnet */
+	public static CheckSum calculate(IPositionalChannel channel, long position, long length) throws IOException {
+		try {
+			return ForkJoinPool.commonPool().invoke(new CheckSumTask(channel, position, length));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static class CheckSumTask extends RecursiveTask<CheckSum> {
+		private static final long serialVersionUID = 1L;
+		private final IPositionalChannel channel;
+		private final long position;
+		private final long length;
+
+		CheckSumTask(IPositionalChannel channel, long position, long length) {
+			this.channel = channel;
+			this.position = position;
+			this.length = length;
+		}
+
+		@Override
+		protected CheckSum compute() {
+			if (length <= MAX_CHUNK_SIZE) {
+				CheckSum checkSum = new CheckSum(0);
+				if (length > 0) {
+					try {
+						ByteBuffer chunk = channel.mapReadOnly(position, length);
+						checkSum.update(chunk);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+				return checkSum;
+			}
+			long lengthFirstHalf = length / 2;
+			CheckSumTask firstHalf = new CheckSumTask(channel, position, lengthFirstHalf);
+			CheckSumTask secondHalf = new CheckSumTask(channel, position + lengthFirstHalf,
+			        length - lengthFirstHalf);
+			secondHalf.fork();
+			CheckSum checkSum = firstHalf.compute();
+			checkSum.combine(secondHalf.join());
+			return checkSum;
+		}
+	}
+}
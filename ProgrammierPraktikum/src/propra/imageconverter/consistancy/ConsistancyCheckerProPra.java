@@ -86,8 +86,11 @@ public class ConsistancyCheckerProPra extends ConsistancyChecker implements ICon
             }
             /*
              * Test, ob im Header angegebene und tatsächlich vorhandene Datensegmentgröße
-             * übereinstimmen
+             * übereinstimmen, bei fortlaufend gelesener Standardeingabe erst an ihrem Ende
              */
+            if (!inputFormat.isFileLengthKnown()) {
+                return;
+            }
             if (((HeaderReaderProPraInputFile) inputFormat).getFileLength()
                     - 30 < ((HeaderReaderProPraInputFile) inputFormat).getHeaderDataSegmentSize()) {
                 throw new ImageConverterException("Zu wenig Bilddaten im Datensegment");
@@ -53,6 +53,10 @@ public class ConsistancyCheckerTGA extends ConsistancyChecker implements IConsis
 	 * überschrieben
 	 * @throws ImageConverterException */
 	public void checkDataSegmentSize() throws ImageConverterException {
+		// bei fortlaufend gelesener Standardeingabe erst an ihrem Ende
+		if (!inputFormat.isFileLengthKnown()) {
+			return;
+		}
 		if (format.getCompressionType().equals(ECompressionType.UNCOMPRESSED) && (inputFormat
 		        .getRealDataSegementSizeInFile() > ((HeaderReaderTGAInputFile) inputFormat).FileLengthWithFooter())) {
 			throw new ImageConverterException("Zu wenig Bilddaten in Datei");
@@ -0,0 +1,35 @@
+package propra.imageconverter.enums;
+
+/** Zähler einer Ausführung, die in ConversionMetrics erfasst werden. Der Name
+ * in der JSON-Statistik steht je Zähler fest.
+ *
+ * @author Martina Koch */
+public enum ECounter {
+	/** Länge des Input-Files in Bytes */
+	BYTES_IN("bytesIn"),
+	/** Länge des Output-Files in Bytes */
+	BYTES_OUT("bytesOut"),
+	/** Anzahl konvertierter Pixel, bei Bildausschnitten nur die des Ausschnittes */
+	PIXELS("pixels"),
+	/** geschriebene RLE-Pakete mit unterschiedlichen Pixeln */
+	RLE_RAW_PACKETS("rleRawPackets"),
+	/** geschriebene RLE-Pakete mit einem wiederholten Pixel */
+	RLE_RUN_PACKETS("rleRunPackets"),
+	/** aus einem Huffman-kodierten Datensegment dekodierte Symbole */
+	HUFFMAN_SYMBOLS_DECODED("huffmanSymbolsDecoded"),
+	/** Aufrufe von read auf den Channels der Input-Files */
+	READ_CALLS("readCalls"),
+	/** Aufrufe von write bzw. transferTo auf den Channels der Output-Files */
+	WRITE_CALLS("writeCalls");
+
+	private final String jsonName;
+
+	ECounter(String jsonName) {
+		this.jsonName = jsonName;
+	}
+
+	/** Name des Zählers in der JSON-Statistik. */
+	public String getJsonName() {
+		return jsonName;
+	}
+}
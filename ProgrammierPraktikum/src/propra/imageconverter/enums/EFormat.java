@@ -38,6 +38,17 @@ public enum EFormat {
 		}
 	}
 
+	/** Bestimmt das Format anhand der Dateiendung, OTHER bei unbekannter Endung. */
+	public static EFormat fromFilePath(String filePath) {
+		String lowerCaseFilePath = filePath.toLowerCase();
+		if (lowerCaseFilePath.endsWith(".tga")) {
+			return TGA;
+		} else if (lowerCaseFilePath.endsWith(".propra")) {
+			return PROPRA;
+		}
+		return OTHER;
+	}
+
 	/** Gibt Dateikopflänge des Formates zurück.
 	 * @return */
 	public int getHeaderLength() {
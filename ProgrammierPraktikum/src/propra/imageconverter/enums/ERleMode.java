@@ -0,0 +1,17 @@
+package propra.imageconverter.enums;
+
+/** Verfahren zur Aufteilung der Pixel in RLE-Pakete. <br>
+ * GREEDY: schnelle Entscheidung je Pixelpaar, ein RLE-Paket beginnt bei zwei
+ * gleichen aufeinanderfolgenden Pixeln. <br>
+ * OPTIMAL: Paketgrenzen mit minimaler Ausgabegröße, langsamer.
+ *
+ * @author Martina Koch */
+public enum ERleMode {
+	GREEDY, OPTIMAL;
+
+	/** toString-Methode überschrieben für Ausgabe wie in der Benutzereingabe. */
+	@Override
+	public String toString() {
+		return this.name().toLowerCase();
+	}
+}
@@ -0,0 +1,21 @@
+package propra.imageconverter.enums;
+
+/** Abschnitte einer Ausführung, deren Laufzeit in ConversionMetrics erfasst
+ * wird. Der Name in der JSON-Statistik steht je Abschnitt fest.
+ *
+ * @author Martina Koch */
+public enum EStage {
+	HEADER_READ("headerRead"), CONSISTENCY_CHECK("consistencyCheck"), TRANSFORM("transform"),
+	CHECKSUM("checksum"), HEADER_WRITE("headerWrite"), BASE32("base32");
+
+	private final String jsonName;
+
+	EStage(String jsonName) {
+		this.jsonName = jsonName;
+	}
+
+	/** Name des Abschnittes in der JSON-Statistik. */
+	public String getJsonName() {
+		return jsonName;
+	}
+}
@@ -31,10 +31,8 @@ public class HeaderComposerForProPraOutputFile implements IHeaderComposerOutputF
 	public void composeHeaderInformationForOutputFile() throws IOException {
 		// Formatkennung
 		System.arraycopy(FORMATKENNUNG, 0, headerOutputFileProPra, 0, FORMATKENNUNG.length);
-		// Kompression
-		headerOutputFileProPra[12] = (byte) ((model.getOutputCompressionType().equals(ECompressionType.UNCOMPRESSED))
-		        ? 0
-		        : 1);
+		// Kompression (uncompressed: 0, rle: 1, huffman: 2)
+		headerOutputFileProPra[12] = getCompressionCode(model.getOutputCompressionType());
 		// Breite
 		System.arraycopy(Utility.getTwoBytesOutOfInt(inputFormatHeaderReader.getWidth()), 0, headerOutputFileProPra, 13,
 		        2);
@@ -48,6 +46,19 @@ public class HeaderComposerForProPraOutputFile implements IHeaderComposerOutputF
 		 * Bilddatensegment geschrieben wurde */
 	}
 
+	private byte getCompressionCode(ECompressionType outputCompressionType) {
+		switch (outputCompressionType) {
+		case UNCOMPRESSED:
+			return 0;
+		case RLE:
+			return 1;
+		case HUFFMAN:
+			return 2;
+		default:
+			throw new IllegalArgumentException("Unexpected value: " + outputCompressionType);
+		}
+	}
+
 	/** Bilddatensegmentgröße wird nachträglich aus OutputFile bestimmt und in
 	 * Header-Array geschrieben. */
 	public void setImageDataSegmentSize(long writtenImageDataSegmentSizeOutput) {
@@ -0,0 +1,144 @@
+package propra.imageconverter.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import propra.imageconverter.Model;
+import propra.imageconverter.checksum.CheckSum;
+import propra.imageconverter.enums.ECounter;
+import propra.imageconverter.enums.EStage;
+import propra.imageconverter.transformimage.EncoderRLEImageDataSegment;
+
+/** Instanz dieser Klasse sammelt Laufzeiten und Zähler genau einer Ausführung
+ * der ConversionEngine. Sie wird mit dem Model zurückgegeben und kann mit
+ * toJson als maschinenlesbare Statistik ausgegeben werden. <br>
+ * Laufzeiten werden je Abschnitt (EStage) in Nanosekunden aufsummiert. Die
+ * Checksumme wird meist während der Transformation berechnet, ihre Zeit ist
+ * daher auch in TRANSFORM enthalten. Bei paralleler Berechnung wird die Zeit
+ * aller Threads summiert, sodass ein Abschnitt länger als die Gesamtlaufzeit
+ * sein kann. Im Stapelbetrieb werden die Werte aller Dateien summiert. <br>
+ * Alle Werte dürfen von mehreren Threads gleichzeitig fortgeschrieben werden.
+ * Häufige Ereignisse wie einzelne Pakete werden von den Komponenten lokal
+ * gezählt und einmal übergeben.
+ *
+ * @author Martina Koch */
+public class ConversionMetrics {
+	private final AtomicLongArray stageNanos = new AtomicLongArray(EStage.values().length);
+	private final AtomicLongArray counters = new AtomicLongArray(ECounter.values().length);
+	private volatile long wallTimeNanos;
+
+	/** Addiert die seit startNanos (System.nanoTime) vergangene Zeit zum
+	 * Abschnitt. */
+	public void stopStage(EStage stage, long startNanos) {
+		addStageNanos(stage, System.nanoTime() - startNanos);
+	}
+
+	public void addStageNanos(EStage stage, long nanos) {
+		stageNanos.addAndGet(stage.ordinal(), nanos);
+	}
+
+	/** Addiert die Rechenzeit der Checksummen zum Abschnitt CHECKSUM. */
+	public void addCheckSumTime(CheckSum checkSumInput, CheckSum checkSumOutput) {
+		addStageNanos(EStage.CHECKSUM, checkSumInput.getUpdateNanos() + checkSumOutput.getUpdateNanos());
+	}
+
+	/** Addiert die vom Encoder geschriebenen Pakete. */
+	public void addPacketCounts(EncoderRLEImageDataSegment rleEncoder) {
+		add(ECounter.RLE_RAW_PACKETS, rleEncoder.getRawPacketCount());
+		add(ECounter.RLE_RUN_PACKETS, rleEncoder.getRlePacketCount());
+	}
+
+	public long getStageNanos(EStage stage) {
+		return stageNanos.get(stage.ordinal());
+	}
+
+	public void add(ECounter counter, long amount) {
+		counters.addAndGet(counter.ordinal(), amount);
+	}
+
+	/** Setzt den Zähler, z.B. auf die Dateigröße nach der Konvertierung. */
+	public void set(ECounter counter, long value) {
+		counters.set(counter.ordinal(), value);
+	}
+
+	public long get(ECounter counter) {
+		return counters.get(counter.ordinal());
+	}
+
+	/** Addiert alle Laufzeiten und Zähler einer anderen Ausführung, z.B. einer
+	 * Datei im Stapelbetrieb. */
+	public void addAll(ConversionMetrics metrics) {
+		for (EStage stage : EStage.values()) {
+			addStageNanos(stage, metrics.getStageNanos(stage));
+		}
+		for (ECounter counter : ECounter.values()) {
+			add(counter, metrics.get(counter));
+		}
+	}
+
+	/** Gesamtlaufzeit der Ausführung, gesetzt von der ConversionEngine. */
+	public void setWallTimeNanos(long wallTimeNanos) {
+		this.wallTimeNanos = wallTimeNanos;
+	}
+
+	public long getWallTimeNanos() {
+		return wallTimeNanos;
+	}
+
+	/** Durchsatz bezogen auf die Bytes des Input-Files, 0 ohne gemessene
+	 * Laufzeit. */
+	public double getThroughputBytesPerSecond() {
+		return wallTimeNanos > 0 ? get(ECounter.BYTES_IN) * 1e9 / wallTimeNanos : 0;
+	}
+
+	/** Gibt die Statistik als einzeiliges JSON-Objekt mit Dateien, Formaten und
+	 * Kompressionen der Ausführung zurück. Zeiten in Nanosekunden. */
+	public String toJson(Model model) {
+		StringBuilder json = new StringBuilder("{");
+		appendField(json, "input", model.getInputFilePath());
+		appendField(json, "output", model.getOutputFilePath());
+		appendField(json, "inputFormat", model.getInputFormat());
+		appendField(json, "inputCompression", model.getInputCompressionType());
+		appendField(json, "outputFormat", model.getOutputFormat());
+		appendField(json, "outputCompression", model.getOutputCompressionType());
+		json.append("\"wallTimeNanos\":").append(wallTimeNanos);
+		json.append(",\"throughputBytesPerSecond\":").append(Math.round(getThroughputBytesPerSecond()));
+
+		json.append(",\"stages\":{");
+		for (EStage stage : EStage.values()) {
+			if (stage.ordinal() > 0) {
+				json.append(',');
+			}
+			json.append('"').append(stage.getJsonName()).append("\":").append(getStageNanos(stage));
+		}
+		json.append("},\"counters\":{");
+		for (ECounter counter : ECounter.values()) {
+			if (counter.ordinal() > 0) {
+				json.append(',');
+			}
+			json.append('"').append(counter.getJsonName()).append("\":").append(get(counter));
+		}
+		return json.append("}}").toString();
+	}
+
+	/** Hängt "name":"wert", an, null als JSON-null. */
+	private static void appendField(StringBuilder json, String name, Object value) {
+		json.append('"').append(name).append("\":");
+		if (value == null) {
+			json.append("null,");
+			return;
+		}
+		json.append('"');
+		String text = value.toString();
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < 0x20) {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		json.append("\",");
+	}
+}
@@ -0,0 +1,136 @@
+package propra.imageconverter.pipeline;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import propra.imageconverter.checksum.CheckSum;
+import propra.imageconverter.utilities.BufferCache;
+
+/** Instanzen dieser Klasse führen die Stufen eines PipelinedInputStream bzw.
+ * PipelinedOutputStream in je einem eigenen Thread aus. Die Stufen sind über
+ * ByteBufferRinge verbunden. Alle Puffer werden beim Erzeugen entnommen und
+ * danach nur wiederverwendet, ihre Anzahl begrenzt daher den Speicherbedarf und
+ * den Vorlauf der schnelleren Stufen. <br>
+ * Die Puffer stammen aus dem BufferCache des erzeugenden Threads und gehören
+ * dessen innerstem Scope, der erst geschlossen werden darf, wenn isStopped
+ * gilt. <br>
+ * Ein Fehler in einer Stufe wird an alle Ringe weitergegeben, sodass keine
+ * Stufe auf Puffer wartet, die nicht mehr kommen. Der erste Fehler wird von
+ * join an den aufrufenden Thread gemeldet.
+ *
+ * @author Martina Koch */
+final class BufferPipeline {
+	/** Größe eines Puffers in Bytes, Vielfaches von 3 */
+	static final int BUFFER_SIZE = 3 * 256 * 1024;
+	/** Anzahl der Puffer je Pipeline */
+	static final int BUFFER_COUNT = 4;
+	private final List<ByteBufferRing> rings = new ArrayList<>();
+	private final List<Thread> threads = new ArrayList<>();
+	private volatile IOException failure;
+
+	/** Eine Stufe, die Puffer aus Ringen entnimmt und ablegt. */
+	interface Stage {
+		void run() throws IOException;
+	}
+
+	/** Legt einen Ring an, der alle Puffer der Pipeline aufnehmen kann. */
+	ByteBufferRing createRing() {
+		ByteBufferRing ring = new ByteBufferRing(BUFFER_COUNT);
+		rings.add(ring);
+		return ring;
+	}
+
+	/** Legt den Ring der freien Puffer an, gefüllt mit allen Puffern der
+	 * Pipeline. */
+	ByteBufferRing createFreeBufferRing() throws IOException {
+		ByteBufferRing freeBuffers = createRing();
+		for (int i = 0; i < BUFFER_COUNT; i++) {
+			freeBuffers.put(ByteBuffer.wrap(BufferCache.take(BUFFER_SIZE)));
+		}
+		return freeBuffers;
+	}
+
+	/** Startet die Stufe in einem eigenen Thread. */
+	void start(String name, Stage stage) {
+		Thread thread = new Thread(() -> {
+			try {
+				stage.run();
+			} catch (IOException e) {
+				fail(e);
+			} catch (RuntimeException e) {
+				fail(new IOException("Fehler in Stufe " + name + ": " + e.getMessage(), e));
+			}
+		}, "ImageConverter-" + name);
+		thread.setDaemon(true);
+		threads.add(thread);
+		thread.start();
+	}
+
+	/** Stufe, die die Checksumme über alle Puffer aus input fortschreibt und die
+	 * Puffer unverändert an output weitergibt. */
+	void startCheckSumStage(ByteBufferRing input, ByteBufferRing output, CheckSum checkSum) {
+		start("Checksumme", () -> {
+			ByteBuffer buffer;
+			while ((buffer = input.take()) != null) {
+				int position = buffer.position();
+				checkSum.update(buffer);
+				buffer.position(position);
+				output.put(buffer);
+			}
+			output.close();
+		});
+	}
+
+	/** Gibt den Fehler an alle Ringe weiter. */
+	synchronized void fail(IOException failure) {
+		if (this.failure == null) {
+			this.failure = failure;
+		}
+		for (ByteBufferRing ring : rings) {
+			ring.fail(failure);
+		}
+	}
+
+	/** Wartet auf das Ende aller Stufen.
+	 *
+	 * @throws IOException erster Fehler einer Stufe */
+	void join() throws IOException {
+		try {
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			fail(new InterruptedIOException("Warten auf Pipeline unterbrochen"));
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/** Bricht alle Stufen ab und wartet auf ihr Ende, ohne Fehler zu melden. */
+	void cancel() {
+		fail(new IOException("Pipeline abgebrochen"));
+		try {
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** true, wenn keine Stufe mehr läuft und die Puffer nicht mehr verwendet
+	 * werden. Nach einem unterbrochenen cancel können Stufen noch laufen. */
+	boolean isStopped() {
+		for (Thread thread : threads) {
+			if (thread.isAlive()) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
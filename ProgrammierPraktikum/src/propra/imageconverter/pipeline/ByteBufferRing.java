@@ -0,0 +1,87 @@
+package propra.imageconverter.pipeline;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+
+/** Instanzen dieser Klasse verbinden zwei Stufen einer BufferPipeline über einen
+ * Ringpuffer fester Größe. Die vordere Stufe legt Puffer mit put ab, die hintere
+ * entnimmt sie mit take in derselben Reihenfolge. Ist der Ring voll bzw. leer,
+ * wartet die jeweilige Stufe. <br>
+ * Mit close zeigt die vordere Stufe an, dass keine Puffer mehr folgen, take
+ * liefert danach nach dem letzten Puffer null. Mit fail wird ein Fehler an alle
+ * wartenden und künftigen Aufrufe weitergegeben.
+ *
+ * @author Martina Koch */
+final class ByteBufferRing {
+	private final ByteBuffer[] slots;
+	/** Position des ältesten Puffers */
+	private int head;
+	private int count;
+	private boolean isClosed;
+	private IOException failure;
+
+	ByteBufferRing(int capacity) {
+		this.slots = new ByteBuffer[capacity];
+	}
+
+	/** Legt den Puffer ab, wartet solange der Ring voll ist. */
+	synchronized void put(ByteBuffer buffer) throws IOException {
+		while (count == slots.length && failure == null) {
+			await();
+		}
+		checkFailure();
+		slots[(head + count) % slots.length] = buffer;
+		count++;
+		notifyAll();
+	}
+
+	/** Entnimmt den ältesten Puffer, wartet solange der Ring leer ist.
+	 *
+	 * @return null, wenn der Ring geschlossen und leer ist */
+	synchronized ByteBuffer take() throws IOException {
+		while (count == 0 && !isClosed && failure == null) {
+			await();
+		}
+		checkFailure();
+		if (count == 0) {
+			return null;
+		}
+		ByteBuffer buffer = slots[head];
+		slots[head] = null;
+		head = (head + 1) % slots.length;
+		count--;
+		notifyAll();
+		return buffer;
+	}
+
+	/** Es werden keine weiteren Puffer abgelegt. */
+	synchronized void close() {
+		isClosed = true;
+		notifyAll();
+	}
+
+	/** Gibt den Fehler an alle Aufrufe von put und take weiter, nur der erste
+	 * Fehler wird behalten. */
+	synchronized void fail(IOException failure) {
+		if (this.failure == null) {
+			this.failure = failure;
+		}
+		notifyAll();
+	}
+
+	private void await() throws InterruptedIOException {
+		try {
+			wait();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Warten auf Puffer unterbrochen");
+		}
+	}
+
+	private void checkFailure() throws IOException {
+		if (failure != null) {
+			throw failure;
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package propra.imageconverter.pipeline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import propra.imageconverter.checksum.CheckSum;
+
+/** Instanzen dieser Klasse lesen einen Abschnitt des Inputs in einer
+ * BufferPipeline: Ein Lese-Thread füllt große Puffer, ein Checksummen-Thread
+ * schreibt die Checksumme fort, erst danach werden die Puffer über read an die
+ * Transformation im aufrufenden Thread übergeben. Gelesene Puffer werden an den
+ * Lese-Thread zurückgegeben. Lesen, Checksumme und Transformation laufen so
+ * gleichzeitig. <br>
+ * Wird die Checksumme nicht berechnet, entfällt der Checksummen-Thread. Die
+ * Checksumme umfasst alle length Bytes und ist nach dem Lesen des letzten Bytes
+ * vollständig.
+ *
+ * @author Martina Koch */
+public class PipelinedInputStream extends InputStream {
+	private final BufferPipeline pipeline = new BufferPipeline();
+	private final ByteBufferRing freeBuffers;
+	/** Ring, aus dem read die Puffer entnimmt */
+	private final ByteBufferRing readableBuffers;
+	private final CheckSum checkSum;
+	private ByteBuffer currentBuffer;
+	private boolean isEndOfStream;
+
+	/** @param source Stream ab dem Beginn des Abschnittes, wird nur vom
+	 * Lese-Thread gelesen
+	 * @param length Länge des Abschnittes, endet der Input vorher, endet der
+	 * Stream dort
+	 * @param checkSum Checksumme über den Abschnitt, wird vom Checksummen-Thread
+	 * fortgeschrieben */
+	public PipelinedInputStream(InputStream source, long length, CheckSum checkSum) throws IOException {
+		this.checkSum = checkSum;
+		freeBuffers = pipeline.createFreeBufferRing();
+		ByteBufferRing readBuffers = pipeline.createRing();
+		pipeline.start("Lesen", () -> readInput(source, length, readBuffers));
+		if (checkSum.isCalculated()) {
+			readableBuffers = pipeline.createRing();
+			pipeline.startCheckSumStage(readBuffers, readableBuffers, checkSum);
+		} else {
+			readableBuffers = readBuffers;
+		}
+	}
+
+	/** Lese-Stufe: füllt freie Puffer fortlaufend aus dem Stream. */
+	private void readInput(InputStream source, long length, ByteBufferRing readBuffers) throws IOException {
+		long remainingBytes = length;
+		boolean isEndOfInput = false;
+		while (remainingBytes > 0 && !isEndOfInput) {
+			ByteBuffer buffer = freeBuffers.take();
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), remainingBytes));
+			while (buffer.hasRemaining()) {
+				int bytesRead = source.read(buffer.array(), buffer.position(), buffer.remaining());
+				if (bytesRead < 0) {
+					isEndOfInput = true;
+					break;
+				}
+				buffer.position(buffer.position() + bytesRead);
+			}
+			remainingBytes -= buffer.position();
+			buffer.flip();
+			readBuffers.put(buffer);
+		}
+		readBuffers.close();
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!hasRemainingBytes()) {
+			return -1;
+		}
+		return currentBuffer.get() & 0xff;
+	}
+
+	@Override
+	public int read(byte[] target, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+		if (!hasRemainingBytes()) {
+			return -1;
+		}
+		int bytesToCopy = Math.min(length, currentBuffer.remaining());
+		currentBuffer.get(target, offset, bytesToCopy);
+		return bytesToCopy;
+	}
+
+	/** Gibt gelesene Puffer zurück und entnimmt den nächsten, bis ein Puffer
+	 * Bytes enthält oder der Stream endet. */
+	private boolean hasRemainingBytes() throws IOException {
+		while (!isEndOfStream && (currentBuffer == null || !currentBuffer.hasRemaining())) {
+			if (currentBuffer != null) {
+				freeBuffers.put(currentBuffer);
+			}
+			currentBuffer = readableBuffers.take();
+			isEndOfStream = currentBuffer == null;
+		}
+		return !isEndOfStream;
+	}
+
+	/** Beendet alle Threads, auch wenn noch nicht alle Bytes gelesen wurden. */
+	@Override
+	public void close() {
+		pipeline.cancel();
+	}
+
+	/** true, wenn nach close kein Thread mehr auf die Puffer zugreift. */
+	public boolean isStopped() {
+		return pipeline.isStopped();
+	}
+
+	/** Checksumme über den Abschnitt, vollständig nach dem Lesen des letzten
+	 * Bytes und close. */
+	public CheckSum getCheckSum() {
+		return checkSum;
+	}
+}
@@ -0,0 +1,142 @@
+package propra.imageconverter.pipeline;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import propra.imageconverter.checksum.CheckSum;
+import propra.imageconverter.enums.ECounter;
+import propra.imageconverter.metrics.ConversionMetrics;
+
+/** Instanzen dieser Klasse schreiben das Bilddatensegment des Output-Files in
+ * einer BufferPipeline: Die Transformation füllt im aufrufenden Thread große
+ * Puffer, ein Checksummen-Thread schreibt die Checksumme fort und ein
+ * Schreib-Thread schreibt die Puffer fortlaufend in das Output-File und gibt
+ * sie zur Wiederverwendung zurück. Transformation, Checksumme und Schreiben
+ * laufen so gleichzeitig. <br>
+ * Wird die Checksumme nicht berechnet, entfällt der Checksummen-Thread. close
+ * wartet, bis alle Puffer geschrieben sind, und meldet Fehler der Threads;
+ * danach ist die Checksumme vollständig.
+ *
+ * @author Martina Koch */
+public class PipelinedOutputStream extends OutputStream {
+	private final BufferPipeline pipeline = new BufferPipeline();
+	private final ByteBufferRing freeBuffers;
+	/** Ring, in den die gefüllten Puffer abgelegt werden */
+	private final ByteBufferRing filledBuffers;
+	private final CheckSum checkSum;
+	private ByteBuffer currentBuffer;
+	private boolean isClosed;
+
+	/** @param outputChannel Channel ab dem Beginn des Bilddatensegmentes, wird
+	 * nur vom Schreib-Thread beschrieben
+	 * @param checkSum Checksumme über alle geschriebenen Bytes, wird vom
+	 * Checksummen-Thread fortgeschrieben */
+	public PipelinedOutputStream(WritableByteChannel outputChannel, CheckSum checkSum, ConversionMetrics metrics)
+	        throws IOException {
+		this.checkSum = checkSum;
+		freeBuffers = pipeline.createFreeBufferRing();
+		filledBuffers = pipeline.createRing();
+		ByteBufferRing writableBuffers;
+		if (checkSum.isCalculated()) {
+			writableBuffers = pipeline.createRing();
+			pipeline.startCheckSumStage(filledBuffers, writableBuffers, checkSum);
+		} else {
+			writableBuffers = filledBuffers;
+		}
+		pipeline.start("Schreiben", () -> writeOutput(outputChannel, writableBuffers, metrics));
+	}
+
+	/** Schreib-Stufe: schreibt die Puffer in Reihenfolge in das Output-File. */
+	private void writeOutput(WritableByteChannel outputChannel, ByteBufferRing writableBuffers,
+	        ConversionMetrics metrics) throws IOException {
+		ByteBuffer buffer;
+		while ((buffer = writableBuffers.take()) != null) {
+			while (buffer.hasRemaining()) {
+				metrics.add(ECounter.WRITE_CALLS, 1);
+				outputChannel.write(buffer);
+			}
+			freeBuffers.put(buffer);
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		nextBufferWithSpace().put((byte) b);
+		publishIfFull();
+	}
+
+	@Override
+	public void write(byte[] source, int offset, int length) throws IOException {
+		while (length > 0) {
+			ByteBuffer buffer = nextBufferWithSpace();
+			int bytesToCopy = Math.min(length, buffer.remaining());
+			buffer.put(source, offset, bytesToCopy);
+			offset += bytesToCopy;
+			length -= bytesToCopy;
+			publishIfFull();
+		}
+	}
+
+	private ByteBuffer nextBufferWithSpace() throws IOException {
+		if (isClosed) {
+			throw new IOException("Stream bereits geschlossen");
+		}
+		if (currentBuffer == null) {
+			currentBuffer = freeBuffers.take();
+			currentBuffer.clear();
+		}
+		return currentBuffer;
+	}
+
+	private void publishIfFull() throws IOException {
+		if (!currentBuffer.hasRemaining()) {
+			publish();
+		}
+	}
+
+	private void publish() throws IOException {
+		currentBuffer.flip();
+		filledBuffers.put(currentBuffer);
+		currentBuffer = null;
+	}
+
+	/** Gibt den letzten Puffer weiter und wartet, bis alle Puffer geschrieben
+	 * sind. */
+	@Override
+	public void close() throws IOException {
+		if (isClosed) {
+			return;
+		}
+		isClosed = true;
+		try {
+			if (currentBuffer != null && currentBuffer.position() > 0) {
+				publish();
+			}
+			filledBuffers.close();
+		} catch (IOException e) {
+			pipeline.cancel();
+			throw e;
+		}
+		pipeline.join();
+	}
+
+	/** Beendet alle Threads ohne die restlichen Puffer zu schreiben, z.B. nach
+	 * einem Fehler der Transformation. */
+	public void cancel() {
+		isClosed = true;
+		pipeline.cancel();
+	}
+
+	/** true, wenn nach close bzw. cancel kein Thread mehr auf die Puffer
+	 * zugreift. */
+	public boolean isStopped() {
+		return pipeline.isStopped();
+	}
+
+	/** Checksumme über alle geschriebenen Bytes, vollständig nach close. */
+	public CheckSum getCheckSum() {
+		return checkSum;
+	}
+}
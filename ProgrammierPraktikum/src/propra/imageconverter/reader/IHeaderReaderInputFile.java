@@ -15,6 +15,8 @@ public interface IHeaderReaderInputFile {
 
 	long getRealDataSegementSizeInFile();
 
+	boolean isFileLengthKnown();
+
 	byte getPixelDepth();
 
 	int getWidth();
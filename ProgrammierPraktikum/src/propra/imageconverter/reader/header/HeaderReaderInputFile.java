@@ -1,7 +1,9 @@
 package propra.imageconverter.reader.header;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
 
+import propra.imageconverter.ConversionFiles;
 import propra.imageconverter.Model;
 import propra.imageconverter.enums.ECompressionType;
 
@@ -12,7 +14,9 @@ import propra.imageconverter.enums.ECompressionType;
 public abstract class HeaderReaderInputFile {
 	public Model model;
 	public File file;
-	public FileInputStream fileInputStream;
+	/** Länge des Input-Files, bei fortlaufend gelesener Standardeingabe bis zu
+	 * ihrem Ende ConversionFiles.UNKNOWN_LENGTH */
+	public long fileLength;
 	public byte[] headerInputFile;
 	public int imageWidth;
 	public int imageHeight;
@@ -21,7 +25,15 @@ public abstract class HeaderReaderInputFile {
 
 	HeaderReaderInputFile(Model model) throws IOException {
 		this.model = model;
-		file = new File(model.getInputFilePath());
+		// bei Konvertierung im Speicher gibt es kein Input-File
+		file = model.getInputFilePath() != null ? new File(model.getInputFilePath()) : null;
+		fileLength = model.getConversionFiles().getInputLength();
+	}
+
+	/** false, solange die Standardeingabe fortlaufend gelesen wird. Die von der
+	 * Dateilänge abhängigen Prüfungen werden dann an ihrem Ende nachgeholt. */
+	public boolean isFileLengthKnown() {
+		return fileLength != ConversionFiles.UNKNOWN_LENGTH;
 	}
 
 	public File getFile() {
@@ -1,6 +1,6 @@
 package propra.imageconverter.reader.header;
 
-import java.io.*;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Arrays;
@@ -16,8 +16,6 @@ import propra.imageconverter.utilities.Utility;
  *
  * @author Martina Koch */
 public class HeaderReaderProPraInputFile extends HeaderReaderInputFile implements IHeaderReaderInputFile {
-	private BufferedInputStream bufferedInputStream;
-	private RandomAccessFile randomAccessInputFile;
 	private final int headerLengthPropra = EFormat.PROPRA.getHeaderLength();
 	private byte[] formatCode = new byte[12];
 	private long dataSegmentSizeInHeader;
@@ -29,34 +27,21 @@ public class HeaderReaderProPraInputFile extends HeaderReaderInputFile implement
 
 	public HeaderReaderProPraInputFile(Model model) throws ImageConverterException, IOException {
 		super(model);
-		headerInputFile = new byte[headerLengthPropra];
 
-		try {
-			randomAccessInputFile = new RandomAccessFile(file, "r");
-			fileInputStream = new FileInputStream(randomAccessInputFile.getFD());
-			bufferedInputStream = new BufferedInputStream(fileInputStream);
+		extractInformationOutOfHeaderInputFile();
 
-			extractInformationOutOfHeaderInputFile();
+		this.dataSegmentSizeInFile = fileLength - headerInputFile.length;
 
-			this.dataSegmentSizeInFile = file.length() - headerInputFile.length;
+		assignCompression();
+		assignSegmentSizeImageDataInFile();
 
-			assignCompression();
-			assignSegmentSizeImageDataInFile();
-
-			checkConsistancyDataSegmentSizeIfUncompressedInputFile();
-
-			bufferedInputStream.close();
-		} catch (FileNotFoundException e) {
-			ImageConverterException.abruptlyExitProgram(e);
-		} catch (IOException e) {
-			ImageConverterException.abruptlyExitProgram(e);
-		}
+		checkConsistancyDataSegmentSizeIfUncompressedInputFile();
 	}
 
 	@Override
 	public void extractInformationOutOfHeaderInputFile() throws ImageConverterException, IOException {
-		// liest HeaderBytes aus InputFile ein (Propra 18 Bytes)
-		randomAccessInputFile.read(headerInputFile);
+		// Header aus dem bereits gelesenen Anfang des InputFiles (Propra 30 Bytes)
+		headerInputFile = model.getConversionFiles().readInputHeader(headerLengthPropra);
 		// ProPra-Kennung auslesen
 		formatCode = Arrays.copyOfRange(headerInputFile, 0, 12);
 
@@ -91,18 +76,22 @@ public class HeaderReaderProPraInputFile extends HeaderReaderInputFile implement
 
 	/** Legt Bilddaten-Segmentgröße fest. */
 	private void assignSegmentSizeImageDataInFile() {
+		model.setImageWidth(imageWidth);
+		model.setImageHeight(imageHeight);
 		if (compressionType.equals(ECompressionType.UNCOMPRESSED) || compressionType.equals(ECompressionType.HUFFMAN)) {
 			segmentSizeImageDataInFilePropra = (imageWidth * imageHeight) * 3;
 			model.setRealImageDataSegmentInputFile(segmentSizeImageDataInFilePropra);
 		}
 		if (compressionType.equals(ECompressionType.RLE)) {
-			segmentSizeImageDataInFilePropra = file.length() - headerLengthPropra;
+			// bei fortlaufend gelesener Standardeingabe bis zu ihrem Ende
+			segmentSizeImageDataInFilePropra = isFileLengthKnown() ? fileLength - headerLengthPropra
+			        : Long.MAX_VALUE;
 			model.setRealImageDataSegmentInputFile(segmentSizeImageDataInFilePropra);
 		}
 	}
 
 	private void checkConsistancyDataSegmentSizeIfUncompressedInputFile() throws ImageConverterException {
-		if (compressionType.equals(ECompressionType.UNCOMPRESSED)) {
+		if (compressionType.equals(ECompressionType.UNCOMPRESSED) && isFileLengthKnown()) {
 			ConsistancyCheckerProPra.checkDataSegmentSize(dataSegmentSizeInHeader, dataSegmentSizeInFile);
 		}
 	}
@@ -116,7 +105,7 @@ public class HeaderReaderProPraInputFile extends HeaderReaderInputFile implement
 	}
 
 	public long getFileLength() {
-		return file.length();
+		return fileLength;
 	}
 
 	public long getCheckSumAusHeader() {
@@ -1,6 +1,6 @@
 package propra.imageconverter.reader.header;
 
-import java.io.*;
+import java.io.IOException;
 
 import propra.imageconverter.*;
 import propra.imageconverter.enums.ECompressionType;
@@ -26,28 +26,17 @@ public class HeaderReaderTGAInputFile extends HeaderReaderInputFile implements I
 
 	public HeaderReaderTGAInputFile(Model model) throws ImageConverterException, IOException {
 		super(model);
-		this.headerInputFile = new byte[headerLengthTga];
 
-		try {
-			fileInputStream = new FileInputStream(file);
-
-			extractInformationOutOfHeaderInputFile();
-			assignCompressionType();
-			assignRealSegmentSizeImageDataToModel();
-
-			fileInputStream.close();
-		} catch (FileNotFoundException e) {
-			ImageConverterException.abruptlyExitProgram(e);
-		} catch (IOException e) {
-			ImageConverterException.abruptlyExitProgram(e);
-		}
+		extractInformationOutOfHeaderInputFile();
+		assignCompressionType();
+		assignRealSegmentSizeImageDataToModel();
 	}
 
 	/** Liest aus Header der TGA-Eingabedatei die Bildinformationen aus. Hierbei
 	 * sind alle Header-Elemente größer 1 Byte im LittleEndian-Format. */
 	@Override
 	public void extractInformationOutOfHeaderInputFile() throws ImageConverterException, IOException {
-		fileInputStream.read(headerInputFile);
+		headerInputFile = model.getConversionFiles().readInputHeader(headerLengthTga);
 
 		idLength = headerInputFile[0];
 		imageTypeCode = headerInputFile[2];
@@ -77,13 +66,17 @@ public class HeaderReaderTGAInputFile extends HeaderReaderInputFile implements I
 
 	/** Berechnet tatsächlich vorhandene Bilddatensegmentlänge. Diese ist bei einem
 	 * unkomprimierten File Höhe x Breite x 3 Bytes und bei einem komprimierten File
-	 * entspricht diese der Dateilänge ohne Header. */
+	 * entspricht diese der Dateilänge ohne Header, bei fortlaufend gelesener
+	 * Standardeingabe reicht es bis zu ihrem Ende. */
 	private void assignRealSegmentSizeImageDataToModel() {
+		model.setImageWidth(imageWidth);
+		model.setImageHeight(imageHeight);
 		// ggf. vorhandener Dateifuß wird verworfen
 		if (compressionType.equals(ECompressionType.UNCOMPRESSED)) {
 			model.setRealImageDataSegmentInputFile(imageWidth * imageHeight * 3);
 		} else {
-			model.setRealImageDataSegmentInputFile(file.length() - headerLengthTga);
+			model.setRealImageDataSegmentInputFile(
+			        isFileLengthKnown() ? fileLength - headerLengthTga : Long.MAX_VALUE);
 		}
 	}
 
@@ -107,7 +100,7 @@ public class HeaderReaderTGAInputFile extends HeaderReaderInputFile implements I
 	}
 
 	public long FileLengthWithFooter() {
-		return file.length() - headerInputFile.length;
+		return fileLength - headerInputFile.length;
 	}
 
 	@Override
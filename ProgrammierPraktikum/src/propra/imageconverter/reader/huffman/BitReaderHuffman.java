@@ -0,0 +1,115 @@
+package propra.imageconverter.reader.huffman;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import propra.imageconverter.ImageConverterException;
+import propra.imageconverter.checksum.CheckSum;
+import propra.imageconverter.utilities.BufferCache;
+
+/** Instanzen dieser Klasse lesen das Huffman-kodierte Bilddatensegment
+ * bitweise. Die Bytes werden blockweise eingelesen und in einem 64-Bit Puffer
+ * linksbündig (höchstwertiges Bit zuerst) bereitgehalten. Beim Einlesen jedes
+ * Blockes wird die Checksumme des Input-Files fortgeschrieben.
+ *
+ * @author Martina Koch */
+public class BitReaderHuffman {
+	/** Größe des Lesepuffers in Bytes */
+	private static final int BLOCK_SIZE = 64 * 1024;
+	private InputStream input;
+	private CheckSum checkSumInput;
+	private byte[] block = BufferCache.take(BLOCK_SIZE);
+	private int blockPosition;
+	private int blockLength;
+	/** Anzahl der Bytes vor dem aktuellen Block */
+	private long bytesBeforeBlock;
+	private boolean isEndOfInputFile;
+	/** Bits linksbündig, nicht belegte Bits rechts sind immer 0 */
+	private long bitBuffer;
+	private int bitCount;
+
+	/** @param input Input-File ab dem Beginn des Bilddatensegmentes */
+	public BitReaderHuffman(InputStream input, CheckSum checkSumInput) {
+		this.input = input;
+		this.checkSumInput = checkSumInput;
+	}
+
+	/** Füllt Bitpuffer mit ganzen Bytes auf, bis mindestens 57 Bits belegt sind
+	 * oder das Input-File vollständig gelesen wurde. */
+	public void fillBitBuffer() throws IOException {
+		while (bitCount <= 56) {
+			if (blockPosition == blockLength) {
+				readNextBlock();
+				if (isEndOfInputFile) {
+					return;
+				}
+			}
+			bitBuffer |= (block[blockPosition++] & 0xffL) << (56 - bitCount);
+			bitCount += 8;
+		}
+	}
+
+	private void readNextBlock() throws IOException {
+		bytesBeforeBlock += blockLength;
+		blockPosition = 0;
+		blockLength = input.read(block, 0, BLOCK_SIZE);
+		if (blockLength <= 0) {
+			blockLength = 0;
+			isEndOfInputFile = true;
+		} else {
+			checkSumInput.update(block, 0, blockLength);
+		}
+	}
+
+	/** Gibt die nächsten n Bits (1 bis 32) zurück, ohne sie zu verbrauchen. Fehlende
+	 * Bits am Dateiende werden als 0 gelesen. */
+	public int peekBits(int n) {
+		return (int) (bitBuffer >>> (64 - n));
+	}
+
+	/** Verbraucht n Bits aus dem Bitpuffer.
+	 * @throws ImageConverterException wenn mehr Bits verbraucht werden als im
+	 * Input-File vorhanden sind */
+	public void skipBits(int n) throws ImageConverterException {
+		if (n > bitCount) {
+			throw new ImageConverterException("Zu wenig Bilddaten in Huffman-kodiertem Datensegment");
+		}
+		bitBuffer <<= n;
+		bitCount -= n;
+	}
+
+	/** Liest und verbraucht die nächsten n Bits (1 bis 32). */
+	public int readBits(int n) throws IOException, ImageConverterException {
+		if (bitCount < n) {
+			fillBitBuffer();
+		}
+		int bits = peekBits(n);
+		skipBits(n);
+		return bits;
+	}
+
+	/** Position des nächsten nicht verbrauchten Bits, gezählt ab dem ersten Bit
+	 * des Input-Streams. */
+	public long getBitPosition() {
+		return (bytesBeforeBlock + blockPosition) * 8 - bitCount;
+	}
+
+	/** Anzahl der aktuell im Bitpuffer vorhandenen Bits. */
+	public int getBitCount() {
+		return bitCount;
+	}
+
+	/** Liest alle restlichen Bytes des Input-Files, damit die Checksumme über das
+	 * gesamte Bilddatensegment berechnet wird.
+	 * @return Anzahl der nach dem Bitpuffer noch gelesenen Bytes */
+	public long readRemainingBytesForCheckSum() throws IOException {
+		long remainingBytes = blockLength - blockPosition;
+		blockPosition = blockLength;
+		while (!isEndOfInputFile) {
+			readNextBlock();
+			remainingBytes += blockLength;
+			blockPosition = blockLength;
+		}
+		return remainingBytes;
+	}
+}
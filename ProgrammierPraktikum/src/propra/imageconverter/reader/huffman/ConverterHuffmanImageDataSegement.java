@@ -1,39 +1,75 @@
 package propra.imageconverter.reader.huffman;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.InputStream;
+import java.io.OutputStream;
 
+import propra.imageconverter.ConversionFiles;
+import propra.imageconverter.ImageConverterException;
 import propra.imageconverter.Model;
 import propra.imageconverter.checksum.CheckSum;
 import propra.imageconverter.enums.EFormat;
+import propra.imageconverter.pipeline.PipelinedInputStream;
+import propra.imageconverter.pipeline.PipelinedOutputStream;
 
 /** Instanz dieser Klasse initialisiert HuffmanTreeReader und stößt Dekodierung
  * Bilddatensegment an. Hiermit werden aus dem Huffman-kodierten
- * Bilddatensegment die entsprechenden Output-Daten geschrieben.
+ * Bilddatensegment die entsprechenden Output-Daten geschrieben. <br>
+ * Ist im Model die parallele Dekodierung gewählt, werden große
+ * Bilddatensegmente mit DecoderHuffmanImageDataSegmentParallel dekodiert. <br>
+ * Im Pipeline-Betrieb lesen, prüfen und schreiben eigene Threads, dekodiert
+ * wird im aufrufenden Thread. Die parallele Dekodierung hat Vorrang, da sie
+ * das Input-File selbst liest.
  *
  * @author Martina Koch */
 public class ConverterHuffmanImageDataSegement {
 	private CheckSum checkSumInput;
 	private CheckSum checkSumOutput;
 	private Model model;
-	private RandomAccessFile randomAccessInputFile;
-	private RandomAccessFile randomAccessOutputFile;
+	private InputStream imageDataInput;
+	private OutputStream imageDataOutput;
 	private ReaderHuffmanTree huffmanTreeReader;
-	private DecoderHuffmanImageDataSegment huffmanDecoder;
+	private PipelinedInputStream pipelinedInputStream;
+	private PipelinedOutputStream pipelinedOutputStream;
 
-	public ConverterHuffmanImageDataSegement(Model model) throws IOException {
+	public ConverterHuffmanImageDataSegement(Model model) throws IOException, ImageConverterException {
 		this.model = model;
-		randomAccessInputFile = new RandomAccessFile(model.getInputFilePath(), "r");
-		randomAccessOutputFile = new RandomAccessFile(model.getOutputFilePath(), "rw");
 
 		initializeCheckSumInputOutputFile();
+		openStreams(model.getConversionFiles());
 
 		readHuffmanTree();
 		decodeHuffmanImageDataSegment();
+		imageDataOutput.close();
+		imageDataInput.close();
 
 		finallyCalculateCheckSum();
 	}
 
+	/** Öffnet Input- und Output-Stream. Im Pipeline-Betrieb schreiben die
+	 * Checksummen-Threads die Checksummen fort, Huffman-Tree und Decoder erhalten
+	 * Checksummen, die nicht berechnet werden. */
+	private void openStreams(ConversionFiles conversionFiles) throws IOException {
+		long inputPosition = model.getInputFormat().getHeaderLength();
+		long outputPosition = model.getOutputFormat().getHeaderLength();
+		if (model.getPipelinedExecution() && !model.getParallelHuffmanDecoding()) {
+			// eine fortlaufend gelesene Standardeingabe wird bis zu ihrem Ende gelesen
+			long dataSegmentLength = conversionFiles.isInputLengthKnown()
+			        ? conversionFiles.getInputLength() - inputPosition
+			        : Long.MAX_VALUE;
+			pipelinedInputStream = conversionFiles.openPipelinedInputStream(inputPosition, dataSegmentLength,
+			        checkSumInput);
+			pipelinedOutputStream = conversionFiles.openPipelinedOutputStream(outputPosition, checkSumOutput);
+			imageDataInput = pipelinedInputStream;
+			imageDataOutput = pipelinedOutputStream;
+			checkSumInput = new CheckSum(-1);
+			checkSumOutput = new CheckSum(-1);
+		} else {
+			imageDataInput = conversionFiles.openInputStream(inputPosition);
+			imageDataOutput = conversionFiles.openOutputStream(outputPosition);
+		}
+	}
+
 	/** Intitalisiere CheckSumInput/Output mit 0, wenn Propra-Datei
 	 * eingelesen/ausgegeben wird, sonst -1; */
 	private void initializeCheckSumInputOutputFile() {
@@ -42,19 +78,34 @@ public class ConverterHuffmanImageDataSegement {
 	}
 
 	private void finallyCalculateCheckSum() {
-		checkSumInput = huffmanDecoder.getCheckSumInput();
-		checkSumOutput = huffmanDecoder.getCheckSumOutput();
+		if (pipelinedInputStream != null) {
+			checkSumInput = pipelinedInputStream.getCheckSum();
+			checkSumOutput = pipelinedOutputStream.getCheckSum();
+		}
+		model.getMetrics().addCheckSumTime(checkSumInput, checkSumOutput);
 
 		model.setCheckSumInputFile(checkSumInput.finallyCalculateChecksum());
 		model.setCheckSumOutputFile(checkSumOutput.finallyCalculateChecksum());
 	}
 
-	private void readHuffmanTree() throws IOException {
-		huffmanTreeReader = new ReaderHuffmanTree(model, randomAccessInputFile);
-		checkSumInput = huffmanTreeReader.getCheckSumInputAfterConstructingHuffmanTree();
+	private void readHuffmanTree() throws IOException, ImageConverterException {
+		huffmanTreeReader = new ReaderHuffmanTree(imageDataInput, checkSumInput);
 	}
 
-	private void decodeHuffmanImageDataSegment() throws IOException {
-		huffmanDecoder = new DecoderHuffmanImageDataSegment(randomAccessInputFile, randomAccessOutputFile, huffmanTreeReader, model);
+	private void decodeHuffmanImageDataSegment() throws IOException, ImageConverterException {
+		ConversionFiles conversionFiles = model.getConversionFiles();
+		long dataSegmentLength = conversionFiles.getInputLength() - model.getInputFormat().getHeaderLength();
+		if (model.getParallelHuffmanDecoding()
+		        && DecoderHuffmanImageDataSegmentParallel.isApplicable(huffmanTreeReader, dataSegmentLength)) {
+			DecoderHuffmanImageDataSegmentParallel huffmanDecoder = new DecoderHuffmanImageDataSegmentParallel(
+			        imageDataOutput, huffmanTreeReader, model, conversionFiles.getInputChannel());
+			checkSumInput = huffmanDecoder.getCheckSumInput();
+			checkSumOutput = huffmanDecoder.getCheckSumOutput();
+		} else {
+			DecoderHuffmanImageDataSegment huffmanDecoder = new DecoderHuffmanImageDataSegment(imageDataOutput,
+			        huffmanTreeReader, model, checkSumOutput);
+			checkSumInput = huffmanDecoder.getCheckSumInput();
+			checkSumOutput = huffmanDecoder.getCheckSumOutput();
+		}
 	}
 }
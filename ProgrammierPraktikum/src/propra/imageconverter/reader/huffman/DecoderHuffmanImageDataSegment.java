@@ -1,183 +1,122 @@
 package propra.imageconverter.reader.huffman;
 
-import java.io.*;
-import java.nio.ByteBuffer;
-import java.util.Arrays;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 
+import propra.imageconverter.ImageConverterException;
 import propra.imageconverter.Model;
 import propra.imageconverter.checksum.CheckSum;
 import propra.imageconverter.enums.ECompressionType;
-import propra.imageconverter.enums.EFormat;
-import propra.imageconverter.transformimage.TransformImageDataToRLE;
+import propra.imageconverter.enums.ECounter;
+import propra.imageconverter.transformimage.EncoderRLEImageDataSegment;
+import propra.imageconverter.transformimage.SwizzlerRGBOrder;
+import propra.imageconverter.utilities.BufferCache;
 
 /**
  * Instanzen dieser Klasse dekodieren mit Hilfe des eingelesenen Huffman-Trees
  * das InputFile. Mit Huffman-Tree werden Bilddaten dekodiert und unkomprimiert
- * ins Output File geschrieben. Bei Konvertierung zu RLE werden diese
- * anschließend in ein temporäres File zu RLE konvertiert und abschließend in
- * die finale Output-Datei geschrieben.
+ * ins Output File geschrieben. Bei Konvertierung zu RLE werden die dekodierten
+ * Pixel direkt an einen EncoderRLEImageDataSegment übergeben, sodass das
+ * Bilddatensegment in einem Durchgang geschrieben wird.
  *
  * @author Martina Koch
  */
 public class DecoderHuffmanImageDataSegment {
-    private StringBuilder bitString;
+    /** Größe des Pixelpuffers in Bytes, Vielfaches von 3 */
+    private static final int PIXEL_BUFFER_SIZE = 3 * 16 * 1024;
     private ReaderHuffmanTree huffmanTreeReader;
-    private RandomAccessFile randomAccessInputFile;
-    private RandomAccessFile randomAccessOutputFile;
+    private OutputStream imageDataOutput;
     private Model model;
-    private byte[] inputRGBOrder;
-    private byte[] outputRGBOrder;
+    private SwizzlerRGBOrder swizzler;
 
     private CheckSum checkSumInput;
     private CheckSum checkSumOutput;
 
-    public DecoderHuffmanImageDataSegment(RandomAccessFile randomAccessInputFile,
-            RandomAccessFile randomAccessOutputFile, ReaderHuffmanTree huffmanTreeReader, Model model)
-            throws IOException {
-        this.randomAccessInputFile = randomAccessInputFile;
-        this.randomAccessOutputFile = randomAccessOutputFile;
+    /**
+     * @param imageDataOutput Output-File ab dem Beginn des Bilddatensegmentes
+     * @param checkSumOutput  Checksumme, in die alle geschriebenen Bytes des
+     *                        Bilddatensegmentes eingehen
+     */
+    public DecoderHuffmanImageDataSegment(OutputStream imageDataOutput, ReaderHuffmanTree huffmanTreeReader,
+            Model model, CheckSum checkSumOutput) throws IOException, ImageConverterException {
+        this.imageDataOutput = imageDataOutput;
         this.model = model;
 
         this.huffmanTreeReader = huffmanTreeReader;
-        this.bitString = huffmanTreeReader.getRestBitStreamAfterConstructingHuffmanTree();
+        this.checkSumInput = huffmanTreeReader.getCheckSumInputAfterConstructingHuffmanTree();
+        this.checkSumOutput = checkSumOutput;
 
         assignInputOutputRGBOrder();
-        initializeCheckSumInputAndOutputFile();
-
-        decodeInputFileToUncompressed();
-        convertUncompressedImageDataSegmentToRle();
-    }
 
-    private void convertUncompressedImageDataSegmentToRle() throws IOException, FileNotFoundException {
-        if (model.getOutputCompressionType() == ECompressionType.RLE) {
-            /*
-             * Unkomprimiertes Bilddatensegment des Output-Files wird jetzt als InputFile
-             * genutzt und in einem temporären File zu RLE komprimiert
-             */
-            new TransformImageDataToRLE(model, randomAccessOutputFile).convertUncompressedToRle();
-
-            // schreibe Daten aus temporärer Datei in eigentliches OutputFile
-            FileInputStream temporaryFileInputStream = new FileInputStream(model.getTemporaryFilePath());
-            BufferedInputStream temporaryBufferedInputStream = new BufferedInputStream(temporaryFileInputStream);
-
-            // in temporärer Date sind RLE komprimierte Bilddaten abgelegt
-            long temporaryFileBytesToBeRead = model.getTemporaryFilePath().length();
-            System.out.println(temporaryFileBytesToBeRead);
-            byte[] temporaryByteBuffer = new byte[1024 * 3];
-
-            randomAccessOutputFile.seek(model.getOutputFormat().getHeaderLength());
-
-            // Überschreibe Bilddaten im OutputFile mit Bilddaten aus temporärer Datei
-            while (temporaryFileBytesToBeRead != 0) {
-                int bytesToRead = temporaryFileBytesToBeRead > (1024 * 3) ? (1024 * 3)
-                        : (int) temporaryFileBytesToBeRead;
-                temporaryByteBuffer = temporaryBufferedInputStream.readNBytes(bytesToRead);
-                randomAccessOutputFile.write(temporaryByteBuffer, 0, bytesToRead);
-                temporaryFileBytesToBeRead -= bytesToRead;
-            }
-            temporaryBufferedInputStream.close();
-            model.getTemporaryFilePath().delete();
-        }
-        // schneide Bytes ab, da unkomprimiertes OutputFile mehr Bytes enthielt
-        randomAccessOutputFile.setLength(randomAccessOutputFile.getFilePointer());
+        decodeInputFile();
     }
 
     private void assignInputOutputRGBOrder() {
-        inputRGBOrder = model.getInputRGBOrder();
-        outputRGBOrder = model.getOutputRGBOrder();
-    }
-
-    private void initializeCheckSumInputAndOutputFile() {
-        checkSumInput = huffmanTreeReader.getCheckSumInputAfterConstructingHuffmanTree();
-        /*
-         * bei RLE-Output Kodierung wird Checksumme Output erst berechnet, wenn im
-         * zweiten Schritt RLE Komprimierung erfolgt
-         */
-        checkSumOutput = (!model.getOutputCompressionType().equals(ECompressionType.RLE)
-                && model.getOutputFormat().equals(EFormat.PROPRA)) ? new CheckSum(0) : new CheckSum(-1);
+        swizzler = SwizzlerRGBOrder.of(model.getInputFormat(), model.getOutputFormat());
     }
 
-    private void decodeInputFileToUncompressed() throws IOException {
-        int i = 0;
-        String value = "";
-        int bitStringPositionFromLeft = 1;
-        byte[] nextPixelToWrite = new byte[3];
-
-        // starte Schreiben des Bilddatensegmentes nach Header Bytes
-        randomAccessOutputFile.seek(model.getOutputFormat().getHeaderLength());
-
-        /*
-         * Abbruchkriterium, d.h. solange Bytes zu lesen oder bitString noch Einser
-         * enthält, d.h. noch Bits aus bitStream zu lesen
-         */
-        while (randomAccessInputFile.getFilePointer() < randomAccessInputFile.length()
-                || (bitString.indexOf("1") != -1)) {
-            readNextBytesAndAddToPathStringIfSubstringLengthLessThenEight();
-
-            /*
-             * setze bitStringPosition nach rechts so lange, bis Key in HuffmanTreeHashMap
-             * gefunden wird
-             */
-            while (!isSubstringAKeyInHuffmanTreeHashMap(bitStringPositionFromLeft)) {
-                if (bitStringPositionFromLeft > bitString.length()) {
-                    readNextBytesAndAddToPathStringIfSubstringLengthLessThenEight();
-                }
-                bitStringPositionFromLeft++;
+    /**
+     * Dekodiert das Bilddatensegment mit den Nachschlagetabellen des Huffman-Trees.
+     * Die Symbole werden direkt in einen wiederverwendeten Pixelpuffer in
+     * Output-RGB-Reihenfolge geschrieben, der blockweise ins OutputFile geschrieben
+     * oder bei RLE-Output zuvor komprimiert wird. Es werden genau Breite x Höhe x 3
+     * Symbole dekodiert.
+     */
+    private void decodeInputFile() throws IOException, ImageConverterException {
+        LookupTableHuffman lookupTable = huffmanTreeReader.createLookupTable();
+        long bytesToDecode = model.getRealDataSegmentSizeInputFile();
+        byte[] pixelBuffer = BufferCache.take(PIXEL_BUFFER_SIZE);
+        int[] outputPositionOfByte = determineOutputPositionOfEachPixelByte();
+        int outputPositionByte0 = outputPositionOfByte[0];
+        int outputPositionByte1 = outputPositionOfByte[1];
+        int outputPositionByte2 = outputPositionOfByte[2];
+
+        // BitReader steht bereits unmittelbar hinter dem Huffman-Tree
+        BitReaderHuffman bitReader = huffmanTreeReader.getBitReader();
+
+        EncoderRLEImageDataSegment rleEncoder = model.getOutputCompressionType().equals(ECompressionType.RLE)
+                ? new EncoderRLEImageDataSegment(new DataOutputStream(imageDataOutput), checkSumOutput,
+                        model.getRleMode())
+                : null;
+
+        while (bytesToDecode > 0) {
+            int bytesInPixelBuffer = (int) Math.min(bytesToDecode, PIXEL_BUFFER_SIZE);
+            for (int i = 0; i < bytesInPixelBuffer; i += 3) {
+                pixelBuffer[i + outputPositionByte0] = (byte) lookupTable.decodeSymbol(bitReader);
+                pixelBuffer[i + outputPositionByte1] = (byte) lookupTable.decodeSymbol(bitReader);
+                pixelBuffer[i + outputPositionByte2] = (byte) lookupTable.decodeSymbol(bitReader);
             }
-
-            if (isSubstringAKeyInHuffmanTreeHashMap(bitStringPositionFromLeft)) {
-                value = lookUpCodeForKeyInHashMapHuffmanTree(bitStringPositionFromLeft);
-
-                nextPixelToWrite[i] = (byte) Integer.parseInt(value, 2);
-                i++;
-
-                bitString.delete(0, bitStringPositionFromLeft);
-                // reset Leseposition
-                bitStringPositionFromLeft = 1;
-
-                if (i == 3) {
-                    if (!model.isInputOutputFormatEqual()) {
-                        byte[] turnedRGBOrderPixel = turnRGBOrder(nextPixelToWrite);
-                        nextPixelToWrite = Arrays.copyOf(turnedRGBOrderPixel, 3);
-                    }
-                    randomAccessOutputFile.write(nextPixelToWrite);
-                    checkSumOutput.calculateCheckSumForByteArray(nextPixelToWrite);
-                    i = 0;
-                }
+            if (rleEncoder != null) {
+                rleEncoder.writePixels(pixelBuffer, 0, bytesInPixelBuffer);
+            } else {
+                imageDataOutput.write(pixelBuffer, 0, bytesInPixelBuffer);
+                checkSumOutput.update(pixelBuffer, 0, bytesInPixelBuffer);
             }
+            bytesToDecode -= bytesInPixelBuffer;
         }
-    }
-
-    private String lookUpCodeForKeyInHashMapHuffmanTree(int bitStringPositionFromLeft) {
-        String bitStringSubstringAsKey = bitString.substring(0, bitStringPositionFromLeft);
-        String codeForKeyInHashMapHuffmanTree = huffmanTreeReader.getCodeForKey(bitStringSubstringAsKey);
-        return codeForKeyInHashMapHuffmanTree;
-    }
-
-    private void readNextBytesAndAddToPathStringIfSubstringLengthLessThenEight() throws IOException {
-        int amountOfBytesToRead = 300;
-        if (bitString.length() <= 8) {
-            int lastByteReadFromInputFile;
-            int i = 0;
-            /*
-             * an dieser Stelle ist die Reihenfolge der beiden Abfragen wichtig, da nur ein
-             * Byte gelesen werden darf, wenn die erste Bedingung zutrifft
-             */
-            while ((i < amountOfBytesToRead) && ((lastByteReadFromInputFile = randomAccessInputFile.read()) != -1)) {
-                checkSumInput.calculateCheckSumForByteArray(
-                        ByteBuffer.allocate(1).put((byte) lastByteReadFromInputFile).array());
-
-                String byteToReadToBinaryString = Integer.toBinaryString(lastByteReadFromInputFile);
-                String stringFormatted = String.format("%08d", Integer.valueOf(byteToReadToBinaryString));
-                bitString.append(stringFormatted);
-                i++;
-            }
+        if (rleEncoder != null) {
+            rleEncoder.finish();
+            model.getMetrics().addPacketCounts(rleEncoder);
+        }
+        model.getMetrics().add(ECounter.HUFFMAN_SYMBOLS_DECODED, model.getRealDataSegmentSizeInputFile());
+        /*
+         * nach dem letzten Symbol dürfen nur noch die Füllbits des letzten Bytes
+         * folgen, die Checksumme wird dennoch über das gesamte Datensegment berechnet
+         */
+        int unusedBits = bitReader.getBitCount();
+        if (bitReader.readRemainingBytesForCheckSum() > 0 || unusedBits >= 8) {
+            throw new ImageConverterException("Zu viele Bilddaten in Huffman-kodiertem Datensegment");
         }
     }
 
-    private boolean isSubstringAKeyInHuffmanTreeHashMap(int bitStringPosition) {
-        String testSubstringAsKey = bitString.substring(0, bitStringPosition);
-        return huffmanTreeReader.lookUpKeyInHuffmanTreeHashMap(testSubstringAsKey);
+    /**
+     * Bestimmt für jedes Byte eines Input-Pixels die Position im Output-Pixel, die
+     * Symbole werden so ohne weiteren Durchlauf gedreht.
+     */
+    private int[] determineOutputPositionOfEachPixelByte() {
+        return new int[] { swizzler.getTargetPosition(0), swizzler.getTargetPosition(1),
+                swizzler.getTargetPosition(2) };
     }
 
     public CheckSum getCheckSumInput() {
@@ -187,18 +126,4 @@ public class DecoderHuffmanImageDataSegment {
     public CheckSum getCheckSumOutput() {
         return this.checkSumOutput;
     }
-
-    /**
-     * Dreht RGB-Bytes entsprechend der Vorgaben der Input-/Output-Formate.
-     *
-     * @param rbgArray
-     * @return
-     */
-    public byte[] turnRGBOrder(byte[] rbgArray) {
-        byte[] turnedRGB = new byte[3];
-        for (int i = 0; i < 3; i++) {
-            turnedRGB[outputRGBOrder[i]] = rbgArray[inputRGBOrder[i]];
-        }
-        return turnedRGB;
-    }
 }
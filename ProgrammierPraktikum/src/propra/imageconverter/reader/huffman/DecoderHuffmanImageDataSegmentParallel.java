@@ -0,0 +1,392 @@
+package propra.imageconverter.reader.huffman;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import propra.imageconverter.ImageConverterException;
+import propra.imageconverter.Model;
+import propra.imageconverter.channel.IPositionalChannel;
+import propra.imageconverter.checksum.CheckSum;
+import propra.imageconverter.checksum.CheckSumCalculatorParallel;
+import propra.imageconverter.enums.ECompressionType;
+import propra.imageconverter.enums.ECounter;
+import propra.imageconverter.enums.EFormat;
+import propra.imageconverter.transformimage.EncoderRLEImageDataSegment;
+import propra.imageconverter.transformimage.SwizzlerRGBOrder;
+import propra.imageconverter.utilities.BufferCache;
+
+/**
+ * Instanzen dieser Klasse dekodieren ein großes Huffman-kodiertes
+ * Bilddatensegment spekulativ parallel. Das Ergebnis entspricht genau dem von
+ * DecoderHuffmanImageDataSegment, einschließlich Checksummen und Fehlern. <br>
+ * Der Bitstrom wird in Abschnitte von CHUNK_SIZE Bytes geteilt. Da die
+ * Codegrenzen nicht bekannt sind, dekodiert jeder Abschnitt ab seinem ersten
+ * Byte, als begänne dort ein Code, bis zum ersten Code hinter dem
+ * Abschnittsende. Die Abschnitte beginnen an derselben Bitposition im Byte wie
+ * der erste Code, sodass auch Codes gleicher Länge (z.B. bei Rauschen) ohne
+ * Versatz dekodiert werden. Die Anfänge der ersten SYNC_SYMBOLS Codes werden
+ * gemerkt. <br>
+ * Anschließend wird in Reihenfolge geprüft: Das tatsächliche Ende des
+ * vorherigen Abschnittes ist der tatsächliche Beginn des Abschnittes. Ab dort
+ * wird sequentiell dekodiert, bis ein Code an einem der gemerkten Code-Anfänge
+ * beginnt. Ab diesem Code hat sich die spekulative Dekodierung synchronisiert
+ * und alle folgenden Symbole sind richtig, nur die Symbole davor werden
+ * ersetzt. Huffman-Codes synchronisieren sich meist nach wenigen Symbolen.
+ * Andernfalls wird der Abschnitt ab dem tatsächlichen Beginn vollständig
+ * erneut dekodiert. <br>
+ * Es sind höchstens zwei Abschnitte je Thread gleichzeitig im Speicher. Die
+ * Checksumme des Input-Files wird mit CheckSumCalculatorParallel über das
+ * gesamte Datensegment berechnet.
+ *
+ * @author Martina Koch
+ */
+public class DecoderHuffmanImageDataSegmentParallel {
+    /** minimale Größe des Datensegmentes in Bytes, ab der parallel dekodiert wird */
+    public static final long MIN_DATA_SEGMENT_SIZE = 4 * 1024 * 1024;
+    /** Größe eines Abschnittes in Bytes */
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    /**
+     * Bytes, die hinter dem Abschnittsende mitgelesen werden, mehr als der
+     * längste mögliche Code (255 Bits)
+     */
+    private static final int CHUNK_MARGIN = 64;
+    /** Anzahl Code-Anfänge je Abschnitt, in denen eine Synchronisation gesucht wird */
+    private static final int SYNC_SYMBOLS = 4096;
+    /** Größe des Pixelpuffers in Bytes, Vielfaches von 3 */
+    private static final int PIXEL_BUFFER_SIZE = 3 * 16 * 1024;
+    private Model model;
+    private IPositionalChannel inputChannel;
+    private OutputStream imageDataOutput;
+    private LookupTableHuffman lookupTable;
+    private SwizzlerRGBOrder swizzler;
+    private EncoderRLEImageDataSegment rleEncoder;
+    /** Beginn des Bilddatensegmentes im Input-File */
+    private long dataSegmentStart;
+    private long dataSegmentLength;
+    private long totalBits;
+
+    private CheckSum checkSumInput;
+    private CheckSum checkSumOutput;
+    private byte[] pixelBuffer = BufferCache.take(PIXEL_BUFFER_SIZE);
+    private int pixelBufferLength;
+    private long resynchronizedChunkCount;
+
+    /**
+     * Prüft, ob sich die parallele Dekodierung lohnt. Ohne weiteren Thread im
+     * ForkJoinPool wäre sie nur zusätzlicher Aufwand. Ein Huffman-Tree, der nur aus
+     * der Wurzel besteht, verbraucht keine Bits je Symbol und lässt sich nicht
+     * teilen.
+     */
+    public static boolean isApplicable(ReaderHuffmanTree huffmanTreeReader, long dataSegmentLength) {
+        return dataSegmentLength >= MIN_DATA_SEGMENT_SIZE && ForkJoinPool.getCommonPoolParallelism() > 1
+                && !huffmanTreeReader.isLeaf(0);
+    }
+
+    /**
+     * @param imageDataOutput Output-File ab dem Beginn des Bilddatensegmentes
+     * @param inputChannel    Input-File, es wird nur positionsgenau gelesen
+     */
+    public DecoderHuffmanImageDataSegmentParallel(OutputStream imageDataOutput, ReaderHuffmanTree huffmanTreeReader,
+            Model model, IPositionalChannel inputChannel) throws IOException, ImageConverterException {
+        this.imageDataOutput = imageDataOutput;
+        this.model = model;
+        this.inputChannel = inputChannel;
+        this.lookupTable = huffmanTreeReader.createLookupTable();
+        this.swizzler = SwizzlerRGBOrder.of(model.getInputFormat(), model.getOutputFormat());
+        this.dataSegmentStart = model.getInputFormat().getHeaderLength();
+        this.dataSegmentLength = model.getConversionFiles().getInputLength() - dataSegmentStart;
+        this.totalBits = dataSegmentLength * 8;
+
+        calculateCheckSumInput();
+        checkSumOutput = model.getOutputFormat().equals(EFormat.PROPRA) ? new CheckSum(0) : new CheckSum(-1);
+        rleEncoder = model.getOutputCompressionType().equals(ECompressionType.RLE)
+                ? new EncoderRLEImageDataSegment(new DataOutputStream(imageDataOutput), checkSumOutput,
+                        model.getRleMode())
+                : null;
+
+        decodeChunks(huffmanTreeReader.getTreeBitLength(), model.getRealDataSegmentSizeInputFile());
+
+        if (rleEncoder != null) {
+            rleEncoder.finish();
+            model.getMetrics().addPacketCounts(rleEncoder);
+        }
+        model.getMetrics().add(ECounter.HUFFMAN_SYMBOLS_DECODED, model.getRealDataSegmentSizeInputFile());
+    }
+
+    private void calculateCheckSumInput() throws IOException {
+        if (model.getInputFormat().equals(EFormat.PROPRA)) {
+            checkSumInput = CheckSumCalculatorParallel.calculate(inputChannel, dataSegmentStart, dataSegmentLength);
+        } else {
+            checkSumInput = new CheckSum(-1);
+        }
+    }
+
+    /**
+     * Dekodiert die Abschnitte im ForkJoinPool und übernimmt sie in Reihenfolge.
+     *
+     * @param firstCodeBit    Beginn des ersten Codes hinter dem Huffman-Tree
+     * @param symbolsToDecode Anzahl Symbole, d.h. Breite x Höhe x 3
+     */
+    private void decodeChunks(long firstCodeBit, long symbolsToDecode) throws IOException, ImageConverterException {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int maxChunksInProgress = 2 * Math.max(1, pool.getParallelism());
+        Deque<ChunkDecoder> chunksInProgress = new ArrayDeque<>();
+        long chunkStartBit = firstCodeBit;
+        // Bitposition des ersten Codes im Byte, alle Abschnitte beginnen dort
+        long bitInByte = firstCodeBit % 8;
+        // tatsächlicher Beginn des nächsten übernommenen Abschnittes
+        long codeStartBit = firstCodeBit;
+        long symbolsLeft = symbolsToDecode;
+
+        try {
+            while (symbolsLeft > 0 && (chunkStartBit < totalBits || !chunksInProgress.isEmpty())) {
+                while (chunkStartBit < totalBits && chunksInProgress.size() < maxChunksInProgress) {
+                    long chunkEndBit = Math.min(totalBits,
+                            (chunkStartBit / 8 / CHUNK_SIZE + 1) * CHUNK_SIZE * 8L + bitInByte);
+                    ChunkDecoder chunkDecoder = new ChunkDecoder(chunkStartBit, chunkEndBit);
+                    pool.execute(chunkDecoder);
+                    chunksInProgress.add(chunkDecoder);
+                    chunkStartBit = chunkEndBit;
+                }
+                ChunkDecoder chunkDecoder = chunksInProgress.poll();
+                chunkDecoder.join();
+                DecodedChunk chunk = synchronize(chunkDecoder.decodedChunk, codeStartBit);
+                int firstSymbol = chunk.firstSymbol;
+
+                if (chunk.symbolCount - firstSymbol >= symbolsLeft) {
+                    // letzter benötigter Abschnitt: Ende des letzten Symbols genau bestimmen
+                    DecodedChunk lastChunk = decodeChunk(codeStartBit, chunk.endBit, symbolsLeft);
+                    writeSymbols(lastChunk.symbols, 0, (int) symbolsLeft);
+                    codeStartBit = lastChunk.endBit;
+                    symbolsLeft = 0;
+                } else if (chunk.isTruncated) {
+                    throw new ImageConverterException("Zu wenig Bilddaten in Huffman-kodiertem Datensegment");
+                } else {
+                    writeSymbols(chunk.symbols, firstSymbol, chunk.symbolCount - firstSymbol);
+                    symbolsLeft -= chunk.symbolCount - firstSymbol;
+                    codeStartBit = chunk.endBit;
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (ChunkDecoder chunkDecoder : chunksInProgress) {
+                chunkDecoder.cancel(true);
+            }
+        }
+        if (symbolsLeft > 0) {
+            throw new ImageConverterException("Zu wenig Bilddaten in Huffman-kodiertem Datensegment");
+        }
+        flushPixelBuffer();
+        // nach dem letzten Symbol dürfen nur noch die Füllbits des letzten Bytes folgen
+        if (totalBits - codeStartBit >= 8) {
+            throw new ImageConverterException("Zu viele Bilddaten in Huffman-kodiertem Datensegment");
+        }
+    }
+
+    /**
+     * Gibt den Abschnitt mit den ab codeStartBit richtig dekodierten Symbolen
+     * zurück. Die Symbole vor dem ersten gemeinsamen Code-Anfang werden ab
+     * codeStartBit erneut dekodiert, ohne gemeinsamen Code-Anfang der ganze
+     * Abschnitt.
+     */
+    private DecodedChunk synchronize(DecodedChunk chunk, long codeStartBit) throws IOException {
+        int symbolIndex = chunk.indexOfCodeStart(codeStartBit);
+        if (symbolIndex >= 0) {
+            chunk.firstSymbol = symbolIndex;
+            return chunk;
+        }
+        if (chunk.getRecordedCodeStartCount() > 0) {
+            long lastRecordedCodeStart = chunk.codeStartBits[chunk.getRecordedCodeStartCount() - 1];
+            DecodedChunk prefix = decodeChunk(codeStartBit, lastRecordedCodeStart + 1, Long.MAX_VALUE);
+            for (int prefixIndex = 0; prefixIndex < prefix.getRecordedCodeStartCount(); prefixIndex++) {
+                symbolIndex = chunk.indexOfCodeStart(prefix.codeStartBits[prefixIndex]);
+                if (symbolIndex >= 0) {
+                    return new DecodedChunk(prefix, prefixIndex, chunk, symbolIndex);
+                }
+            }
+        }
+        resynchronizedChunkCount++;
+        return decodeChunk(codeStartBit, chunk.endOfChunkBit, Long.MAX_VALUE);
+    }
+
+    /**
+     * Dekodiert ab startBit alle Codes, die vor endOfChunkBit beginnen, höchstens
+     * maxSymbols.
+     */
+    private DecodedChunk decodeChunk(long startBit, long endOfChunkBit, long maxSymbols) throws IOException {
+        long firstByte = startBit / 8;
+        int length = (int) (Math.min(dataSegmentLength, endOfChunkBit / 8 + CHUNK_MARGIN) - firstByte);
+        byte[] compressed = new byte[length];
+        readFully(compressed, dataSegmentStart + firstByte);
+
+        DecodedChunk chunk = new DecodedChunk(startBit, endOfChunkBit, length);
+        // der Lesepuffer bleibt im Cache des ausführenden Threads für den nächsten Abschnitt
+        BufferCache.Scope bufferScope = BufferCache.openScope();
+        try {
+            BitReaderHuffman bitReader = new BitReaderHuffman(new ByteArrayInputStream(compressed),
+                    new CheckSum(-1));
+            long bitOffset = firstByte * 8;
+            try {
+                bitReader.fillBitBuffer();
+                bitReader.skipBits((int) (startBit - bitOffset));
+                long position = startBit;
+                while (position < endOfChunkBit && chunk.symbolCount < maxSymbols) {
+                    if (chunk.symbolCount < SYNC_SYMBOLS) {
+                        chunk.codeStartBits[chunk.symbolCount] = position;
+                    }
+                    chunk.addSymbol((byte) lookupTable.decodeSymbol(bitReader));
+                    position = bitOffset + bitReader.getBitPosition();
+                }
+                chunk.endBit = position;
+            } catch (ImageConverterException e) {
+                // Ende des Datensegmentes innerhalb eines Codes
+                chunk.endBit = bitOffset + bitReader.getBitPosition();
+                chunk.isTruncated = true;
+            }
+        } finally {
+            bufferScope.close();
+        }
+        return chunk;
+    }
+
+    private void readFully(byte[] target, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(target);
+        while (buffer.hasRemaining()) {
+            model.getMetrics().add(ECounter.READ_CALLS, 1);
+            if (inputChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Input-Datei wurde während des Lesens verkürzt");
+            }
+        }
+    }
+
+    /** Übernimmt dekodierte Symbole in den Pixelpuffer. */
+    private void writeSymbols(byte[] symbols, int offset, int length) throws IOException {
+        while (length > 0) {
+            int bytesToCopy = Math.min(length, PIXEL_BUFFER_SIZE - pixelBufferLength);
+            System.arraycopy(symbols, offset, pixelBuffer, pixelBufferLength, bytesToCopy);
+            pixelBufferLength += bytesToCopy;
+            offset += bytesToCopy;
+            length -= bytesToCopy;
+            if (pixelBufferLength == PIXEL_BUFFER_SIZE) {
+                flushPixelBuffer();
+            }
+        }
+    }
+
+    /** Dreht die vollständigen Pixel des Puffers und schreibt sie. */
+    private void flushPixelBuffer() throws IOException {
+        int pixelBytes = pixelBufferLength - pixelBufferLength % 3;
+        swizzler.swizzle(pixelBuffer, 0, pixelBytes);
+        if (rleEncoder != null) {
+            rleEncoder.writePixels(pixelBuffer, 0, pixelBytes);
+        } else {
+            imageDataOutput.write(pixelBuffer, 0, pixelBytes);
+            checkSumOutput.update(pixelBuffer, 0, pixelBytes);
+        }
+        pixelBufferLength -= pixelBytes;
+        System.arraycopy(pixelBuffer, pixelBytes, pixelBuffer, 0, pixelBufferLength);
+    }
+
+    public CheckSum getCheckSumInput() {
+        return checkSumInput;
+    }
+
+    public CheckSum getCheckSumOutput() {
+        return checkSumOutput;
+    }
+
+    /** Anzahl der Abschnitte, die wegen fehlender Synchronisation erneut dekodiert wurden. */
+    public long getResynchronizedChunkCount() {
+        return resynchronizedChunkCount;
+    }
+
+    /** Symbole und Code-Anfänge eines dekodierten Abschnittes. */
+    private static class DecodedChunk {
+        private final long startBit;
+        private final long endOfChunkBit;
+        private final long[] codeStartBits = new long[SYNC_SYMBOLS];
+        private byte[] symbols;
+        private int symbolCount;
+        /** Index des ersten richtig dekodierten Symbols */
+        private int firstSymbol;
+        /** Beginn des ersten Codes hinter dem Abschnitt */
+        private long endBit;
+        /** Datensegment endet innerhalb eines Codes */
+        private boolean isTruncated;
+
+        DecodedChunk(long startBit, long endOfChunkBit, int compressedLength) {
+            this.startBit = startBit;
+            this.endOfChunkBit = endOfChunkBit;
+            this.symbols = new byte[2 * compressedLength];
+        }
+
+        /**
+         * Setzt die ersten prefixLength Symbole von prefix und die Symbole von
+         * chunk ab symbolIndex zusammen.
+         */
+        DecodedChunk(DecodedChunk prefix, int prefixLength, DecodedChunk chunk, int symbolIndex) {
+            this.startBit = prefix.startBit;
+            this.endOfChunkBit = chunk.endOfChunkBit;
+            this.symbolCount = prefixLength + chunk.symbolCount - symbolIndex;
+            this.symbols = Arrays.copyOf(prefix.symbols, symbolCount);
+            System.arraycopy(chunk.symbols, symbolIndex, symbols, prefixLength, chunk.symbolCount - symbolIndex);
+            this.endBit = chunk.endBit;
+            this.isTruncated = chunk.isTruncated;
+        }
+
+        void addSymbol(byte symbol) {
+            if (symbolCount == symbols.length) {
+                symbols = Arrays.copyOf(symbols, 2 * symbols.length);
+            }
+            symbols[symbolCount++] = symbol;
+        }
+
+        int getRecordedCodeStartCount() {
+            return Math.min(symbolCount, SYNC_SYMBOLS);
+        }
+
+        /**
+         * Index des Symbols, dessen Code bei codeStartBit beginnt, -1 wenn
+         * codeStartBit keiner der gemerkten Code-Anfänge ist.
+         */
+        int indexOfCodeStart(long codeStartBit) {
+            if (codeStartBit == startBit) {
+                return 0;
+            }
+            int index = Arrays.binarySearch(codeStartBits, 0, getRecordedCodeStartCount(), codeStartBit);
+            return index >= 0 ? index : -1;
+        }
+    }
+
+    /** Dekodiert einen Abschnitt ab seinem ersten Byte. */
+    private class ChunkDecoder extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final long startBit;
+        private final long endOfChunkBit;
+        private DecodedChunk decodedChunk;
+
+        ChunkDecoder(long startBit, long endOfChunkBit) {
+            this.startBit = startBit;
+            this.endOfChunkBit = endOfChunkBit;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                decodedChunk = decodeChunk(startBit, endOfChunkBit, Long.MAX_VALUE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package propra.imageconverter.reader.huffman;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import propra.imageconverter.ImageConverterException;
+
+/** Instanzen dieser Klasse bilden den Huffman-Tree auf mehrstufige
+ * Nachschlagetabellen ab. Jede Tabelle wird mit den nächsten 8 Bits des
+ * Bitstroms indiziert. Ein Eintrag enthält entweder den dekodierten Blattwert
+ * samt Codelänge oder verweist auf die Folgetabelle für Codes, die länger als
+ * 8 Bit sind. <br>
+ * <br>
+ * Aufbau eines Eintrags: <br>
+ * >= 0: Blatt, Bits 0-7 Blattwert, ab Bit 8 Anzahl zu verbrauchender Bits <br>
+ * < 0: negierter Beginn der Folgetabelle im Array
+ *
+ * @author Martina Koch */
+public class LookupTableHuffman {
+	/** Anzahl der Bits, mit denen eine Tabelle indiziert wird */
+	static final int LOOKUP_BITS = 8;
+	private static final int TABLE_SIZE = 1 << LOOKUP_BITS;
+	private int[] lookupTable;
+
+	/** Erstellt Nachschlagetabellen aus dem eingelesenen Huffman-Tree.
+	 *
+	 * @param childNodes Kindknoten je Knoten n an Position 2n (links) und 2n+1
+	 * (rechts), -1 bei Blättern; Wurzel ist Knoten 0
+	 * @param leafValues Blattwert je Knoten */
+	public LookupTableHuffman(int[] childNodes, byte[] leafValues, int nodeCount) {
+		if (childNodes[0] == -1) {
+			// Baum besteht nur aus Wurzel, Blattwert wird ohne Verbrauch von Bits gelesen
+			lookupTable = new int[TABLE_SIZE];
+			Arrays.fill(lookupTable, leafValues[0] & 0xff);
+			return;
+		}
+
+		// Tabellenbeginn je innerem Knoten, 0: noch keine Tabelle erstellt
+		int[] tableOffsetOfNode = new int[nodeCount];
+		int[] nodesToBuild = new int[nodeCount];
+		int nodesToBuildCount = 0;
+		int tableCount = 1;
+		lookupTable = new int[TABLE_SIZE];
+		nodesToBuild[nodesToBuildCount++] = 0;
+
+		for (int k = 0; k < nodesToBuildCount; k++) {
+			int startNode = nodesToBuild[k];
+			int offset = tableOffsetOfNode[startNode];
+			for (int index = 0; index < TABLE_SIZE; index++) {
+				int node = startNode;
+				int depth = 0;
+				// folge den Bits des Index (höchstwertiges Bit zuerst) bis Blatt oder 8 Bits
+				while (childNodes[2 * node] != -1 && depth < LOOKUP_BITS) {
+					int bit = (index >>> (LOOKUP_BITS - 1 - depth)) & 0x1;
+					node = childNodes[2 * node + bit];
+					depth++;
+				}
+				if (childNodes[2 * node] == -1) {
+					lookupTable[offset + index] = (depth << 8) | (leafValues[node] & 0xff);
+				} else {
+					if (tableOffsetOfNode[node] == 0) {
+						tableOffsetOfNode[node] = tableCount * TABLE_SIZE;
+						tableCount++;
+						if (tableCount * TABLE_SIZE > lookupTable.length) {
+							// Verdoppeln statt je Folgetabelle kopieren, sonst wächst der Aufwand quadratisch
+							lookupTable = Arrays.copyOf(lookupTable, 2 * lookupTable.length);
+						}
+						nodesToBuild[nodesToBuildCount++] = node;
+					}
+					lookupTable[offset + index] = -tableOffsetOfNode[node];
+				}
+			}
+		}
+	}
+
+	/** Dekodiert das nächste Symbol aus dem Bitstrom.
+	 *
+	 * @return dekodierter Blattwert (0 bis 255) */
+	public int decodeSymbol(BitReaderHuffman bitReader) throws IOException, ImageConverterException {
+		if (bitReader.getBitCount() < LOOKUP_BITS) {
+			bitReader.fillBitBuffer();
+		}
+		int entry = lookupTable[bitReader.peekBits(LOOKUP_BITS)];
+		while (entry < 0) {
+			bitReader.skipBits(LOOKUP_BITS);
+			if (bitReader.getBitCount() < LOOKUP_BITS) {
+				bitReader.fillBitBuffer();
+			}
+			entry = lookupTable[-entry + bitReader.peekBits(LOOKUP_BITS)];
+		}
+		bitReader.skipBits(entry >>> 8);
+		return entry & 0xff;
+	}
+}
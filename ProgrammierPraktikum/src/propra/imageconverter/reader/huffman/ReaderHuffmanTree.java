@@ -1,40 +1,44 @@
 package propra.imageconverter.reader.huffman;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.nio.ByteBuffer;
-import java.util.HashMap;
+import java.io.InputStream;
 
-import propra.imageconverter.Model;
+import propra.imageconverter.ImageConverterException;
 import propra.imageconverter.checksum.CheckSum;
-import propra.imageconverter.enums.EFormat;
 
-/** Instanz dieser Klasse liest HuffmanTree aus InputFile und erstellt HashMap,
- * in der Keys und 8-Bit Blattwerte enthalten sind.
+/** Instanz dieser Klasse liest HuffmanTree aus InputFile und legt ihn in
+ * primitiven Arrays ab. Die Knoten werden in Preorder nummeriert, die Wurzel
+ * ist Knoten 0. Je Knoten n stehen in childNodes an Position 2n der linke und
+ * an Position 2n+1 der rechte Kindknoten, bei Blättern jeweils -1. Die 8-Bit
+ * Blattwerte stehen in leafValues. <br>
+ * Der Baum wird iterativ über einen Stapel offener Kindpositionen eingelesen,
+ * sodass der Speicherbedarf auf 511 Knoten begrenzt ist.
  *
  * @author Martina Koch */
 public class ReaderHuffmanTree {
-	private RandomAccessFile randomAccessInputFile;
+	/** 256 Blätter und 255 innere Knoten */
+	public static final int MAX_NODE_COUNT = 511;
 	private CheckSum checkSumInput;
-	private StringBuilder restBitStreamAfterConstructingHuffmanTree;
-	private StringBuilder bitStringToReconstructHuffmanTree = new StringBuilder();
-	private StringBuilder pathThroughTree = new StringBuilder();
-	/** In hashMapHuffmanTree wird zu jedem Key des Knotens der entschlüsselte 8-bit
-	 * Wert geschrieben */
-	private HashMap<String, String> hashMapHuffmanTree = new HashMap<>();
-
-	public ReaderHuffmanTree(Model model, RandomAccessFile randomAccessInputFile) throws IOException {
-		this.randomAccessInputFile = randomAccessInputFile;
-		this.checkSumInput = model.getInputFormat().equals(EFormat.PROPRA) ? new CheckSum(0) : new CheckSum(-1);
-		randomAccessInputFile.seek(model.getInputFormat().getHeaderLength());
-
-		/* Methode wird mit leerem String gestartet, da Pfad zur Wurzel dem leeren
-		 * String entspricht */
-		recursivelyReadHuffmanTree("");
-		restBitStreamAfterConstructingHuffmanTree = bitStringToReconstructHuffmanTree;
+	private BitReaderHuffman bitReader;
+	private int[] childNodes = new int[2 * MAX_NODE_COUNT];
+	private byte[] leafValues = new byte[MAX_NODE_COUNT];
+	private int nodeCount;
+	/** Länge des Huffman-Trees in Bits, die Codes beginnen unmittelbar danach */
+	private long treeBitLength;
+
+	/** @param imageDataInput Input-File ab dem Beginn des Bilddatensegmentes
+	 * @param checkSumInput Checksumme, in die alle gelesenen Bytes des
+	 * Bilddatensegmentes eingehen */
+	public ReaderHuffmanTree(InputStream imageDataInput, CheckSum checkSumInput)
+	        throws IOException, ImageConverterException {
+		this.checkSumInput = checkSumInput;
+		this.bitReader = new BitReaderHuffman(imageDataInput, checkSumInput);
+
+		readHuffmanTree();
+		treeBitLength = bitReader.getBitPosition();
 	}
 
-	/** Rekursive Funktion liest in Preorder (d.h. Wurzel - links - rechts) den
+	/** Liest in Preorder (d.h. Wurzel - links - rechts) den
 	 * Dekodierungsbaum/das Huffman-Wörterbuch ein, maximale theoretische Größe in
 	 * Bytes: <br>
 	 *
@@ -43,94 +47,87 @@ public class ReaderHuffmanTree {
 	 * leaf: 1) und 8 Bit für eigentliche Knoteninformation
 	 *
 	 * d.h. 256 Blätter (1 Bit + 8 Bit) + (255 innere Knoten x 1 Bit) = 2559 Bits,
-	 * d.h. 320 Bytes
+	 * d.h. 320 Bytes <br>
+	 * <br>
+	 * Auf dem Stapel liegen die Positionen in childNodes, an denen der nächste
+	 * eingelesene Knoten eingetragen wird (-1 für die Wurzel). Ein innerer Knoten
+	 * legt erst die Position des rechten, dann des linken Kindes ab.
 	 *
-	 * @param branchLeftOrRight
-	 * @throws IOException */
-	void recursivelyReadHuffmanTree(String branchLeftOrRight) throws IOException {
-		pathThroughTree.append(branchLeftOrRight);
+	 * @throws ImageConverterException bei mehr als 256 Blättern oder wenn der
+	 * Baum nicht vollständig im Datensegment enthalten ist */
+	private void readHuffmanTree() throws IOException, ImageConverterException {
+		int[] openChildPositions = new int[MAX_NODE_COUNT + 1];
+		int openChildPositionCount = 0;
+		openChildPositions[openChildPositionCount++] = -1;
+
+		while (openChildPositionCount > 0) {
+			int childPosition = openChildPositions[--openChildPositionCount];
+			if (nodeCount == MAX_NODE_COUNT) {
+				throw new ImageConverterException("Huffman-Tree enthält mehr als 256 Blätter");
+			}
+			int node = nodeCount++;
+			if (childPosition >= 0) {
+				childNodes[childPosition] = node;
+			}
 
-		readNextBytesAndAddToBitStringIfSubstringLengthLessThenEight();
+			// Kodierung im vordersten Bit: Blatt: 1, innerer Knoten: 0
+			if (bitReader.readBits(1) == 1) {
+				childNodes[2 * node] = -1;
+				childNodes[2 * node + 1] = -1;
+				leafValues[node] = (byte) bitReader.readBits(8);
+			} else {
+				openChildPositions[openChildPositionCount++] = 2 * node + 1;
+				openChildPositions[openChildPositionCount++] = 2 * node;
+			}
+		}
+	}
 
-		boolean isFirstBitIndicatingLeaf = evaluateIfFirstBitOfBitStringIndicatesLeaf();
+	/** Erstellt aus dem eingelesenen Huffman-Tree die Nachschlagetabellen für den
+	 * Dekoder. */
+	public LookupTableHuffman createLookupTable() {
+		return new LookupTableHuffman(childNodes, leafValues, nodeCount);
+	}
 
-		// Blatt erreicht
-		if (isFirstBitIndicatingLeaf) {
-			readNextBytesAndAddToBitStringIfSubstringLengthLessThenEight();
-			putLeafInformationToHashMapHuffmanTree();
-		}
+	/** Gibt BitReader zurück, der unmittelbar nach dem Huffman-Tree im
+	 * Bilddatensegment steht. */
+	public BitReaderHuffman getBitReader() {
+		return bitReader;
+	}
 
-		// inneren Knoten erreicht
-		else {
-			readNextBytesAndAddToBitStringIfSubstringLengthLessThenEight();
-			// linker Teilbaum
-			recursivelyReadHuffmanTree("0");
-			// rechter Teilbaum
-			recursivelyReadHuffmanTree("1");
-			// d.h. aktuelle Position im Baum ist nicht Wurzel
-			if (pathThroughTree.length() > 0) {
-				// beim Aufsteigen im Baum letztes PfadBit löschen, außer an der Wurzel
-				pathThroughTree.deleteCharAt(pathThroughTree.length() - 1);
-			}
-		}
+	public boolean isLeaf(int node) {
+		return childNodes[2 * node] == -1;
 	}
 
-	private void readNextBytesAndAddToBitStringIfSubstringLengthLessThenEight() throws IOException {
-		int amountOfBytesToRead = 200;
-		if (bitStringToReconstructHuffmanTree.length() <= 8) {
-			int lastByteReadFromInputFile;
-			int i = 0;
-			/* an dieser Stelle ist die Reihenfolge der beiden Abfragen wichtig, da nur ein
-			 * Byte gelesen werden darf, wenn die erste Bedingung zutrifft */
-			while ((i < amountOfBytesToRead) && ((lastByteReadFromInputFile = randomAccessInputFile.read()) != -1)) {
-				checkSumInput.calculateCheckSumForByteArray(
-				        ByteBuffer.allocate(1).put((byte) lastByteReadFromInputFile).array());
-
-				String toBinaryStringByteToRead = Integer.toBinaryString(lastByteReadFromInputFile);
-				String stringFormatted = String.format("%08d", Integer.valueOf(toBinaryStringByteToRead));
-
-				bitStringToReconstructHuffmanTree.append(stringFormatted);
-				i++;
-			}
-		}
+	public int getLeftChild(int node) {
+		return childNodes[2 * node];
 	}
 
-	private void putLeafInformationToHashMapHuffmanTree() {
-		String leafValue = determineLeafValueForHuffmanTreeHashMap();
-		String determinePathThroughTreeAsHashMapKey = pathThroughTree.toString();
-		String leafValueFormatted = String.format("%08d", Integer.valueOf(leafValue));
-		hashMapHuffmanTree.put(determinePathThroughTreeAsHashMapKey, leafValueFormatted);
-		pathThroughTree.deleteCharAt(pathThroughTree.length() - 1);
+	public int getRightChild(int node) {
+		return childNodes[2 * node + 1];
 	}
 
-	private String determineLeafValueForHuffmanTreeHashMap() {
-		String leafSubstring = bitStringToReconstructHuffmanTree.substring(0, 8);
-		bitStringToReconstructHuffmanTree.delete(0, 8);
-		return leafSubstring;
+	public byte getLeafValue(int node) {
+		return leafValues[node];
 	}
 
-	/** Kodierung im vordersten Bit: Blatt: 1, innerer Knoten: 0
-	 * @return */
-	private boolean evaluateIfFirstBitOfBitStringIndicatesLeaf() {
-		String valueAtNextPositionBitString = bitStringToReconstructHuffmanTree.substring(0, 1);
-		bitStringToReconstructHuffmanTree.deleteCharAt(0);
-		boolean isLeaf = valueAtNextPositionBitString.equals("1");
-		return isLeaf;
+	public int[] getChildNodes() {
+		return childNodes;
 	}
 
-	public StringBuilder getRestBitStreamAfterConstructingHuffmanTree() {
-		return this.restBitStreamAfterConstructingHuffmanTree;
+	public byte[] getLeafValues() {
+		return leafValues;
 	}
 
-	public boolean lookUpKeyInHuffmanTreeHashMap(String bitString) {
-		return hashMapHuffmanTree.containsKey(bitString);
+	public int getNodeCount() {
+		return nodeCount;
 	}
 
-	public String getCodeForKey(String keyToEncode) {
-		return hashMapHuffmanTree.get(keyToEncode);
+	/** Länge des Huffman-Trees in Bits ab dem Beginn des Bilddatensegmentes. */
+	public long getTreeBitLength() {
+		return treeBitLength;
 	}
 
 	public CheckSum getCheckSumInputAfterConstructingHuffmanTree() {
 		return checkSumInput;
 	}
-}
\ No newline at end of file
+}
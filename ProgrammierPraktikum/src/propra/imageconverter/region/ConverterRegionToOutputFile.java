@@ -0,0 +1,162 @@
+package propra.imageconverter.region;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import propra.imageconverter.ConversionFiles;
+import propra.imageconverter.IHeaderComposerOutputFile;
+import propra.imageconverter.IHeaderReaderInputFile;
+import propra.imageconverter.ImageConverterException;
+import propra.imageconverter.Model;
+import propra.imageconverter.checksum.CheckSum;
+import propra.imageconverter.enums.EFormat;
+import propra.imageconverter.enums.EStage;
+import propra.imageconverter.headercomposer.HeaderComposerForProPraOutputFile;
+import propra.imageconverter.headercomposer.HeaderComposerForTGAOutputFile;
+import propra.imageconverter.metrics.ConversionMetrics;
+import propra.imageconverter.transformimage.BitWriterHuffman;
+import propra.imageconverter.transformimage.EncoderHuffmanTree;
+import propra.imageconverter.transformimage.EncoderRLEImageDataSegment;
+
+/** Instanzen dieser Klasse konvertieren nur einen Bildausschnitt des
+ * Input-Files in das Output-Format. Die Zeilen des Ausschnittes werden mit dem
+ * RegionExtractor gelesen und direkt in der Kompression des Output-Files
+ * geschrieben, temporäre Dateien entstehen nicht. Der Aufwand hängt daher bei
+ * unkomprimiertem Input nur von der Größe des Ausschnittes ab. <br>
+ * Für Huffman-Output werden die Zeilen zweimal gelesen, zuerst für die
+ * Häufigkeit der Bytes, dann für die Kodierung. <br>
+ * Der Header wird wie bei ConverterToOutputFile mit den HeaderComposern
+ * erstellt, ein TGA-Header vor, ein ProPra-Header nach den Bilddaten
+ * geschrieben. Die Checksumme des Input-Files wird nicht geprüft, da sein
+ * Bilddatensegment nur soweit nötig gelesen wird.
+ *
+ * @author Martina Koch */
+public class ConverterRegionToOutputFile {
+	private Model model;
+	private ImageRegion region;
+	private IHeaderComposerOutputFile headerComposerForOutputFile;
+
+	private ConversionFiles conversionFiles;
+	private ConversionMetrics metrics;
+	private OutputStream imageDataOutput;
+	private CheckSum checkSumOutput;
+
+	/** @param model Model mit bereits gelesenem Header des Input-Files */
+	public ConverterRegionToOutputFile(Model model, IHeaderReaderInputFile headerReaderInputFile)
+	        throws ImageConverterException, IOException {
+		this.model = model;
+		this.region = model.getRegion();
+		this.conversionFiles = model.getConversionFiles();
+		this.metrics = model.getMetrics();
+		region.checkWithin(model.getImageWidth(), model.getImageHeight());
+		// ggf. vorhandene OutputDatei wird beim Öffnen geleert
+		conversionFiles.openOutputChannel(0);
+
+		long startNanos = System.nanoTime();
+		composeHeaderOutputFile(new HeaderReaderRegion(headerReaderInputFile, region));
+		if (model.getOutputFormat().equals(EFormat.TGA)) {
+			conversionFiles.writeOutputHeader(headerComposerForOutputFile.getHeader());
+		}
+		metrics.stopStage(EStage.HEADER_WRITE, startNanos);
+
+		startNanos = System.nanoTime();
+		writeRegionImageData();
+		metrics.stopStage(EStage.TRANSFORM, startNanos);
+
+		if (model.getOutputFormat().equals(EFormat.PROPRA)) {
+			startNanos = System.nanoTime();
+			((HeaderComposerForProPraOutputFile) headerComposerForOutputFile).setImageDataSegmentSize(
+			        conversionFiles.getOutputDataSegmentLength(EFormat.PROPRA.getHeaderLength()));
+			((HeaderComposerForProPraOutputFile) headerComposerForOutputFile).setCheckSum();
+			conversionFiles.writeOutputHeader(headerComposerForOutputFile.getHeader());
+			metrics.stopStage(EStage.HEADER_WRITE, startNanos);
+		}
+	}
+
+	private void composeHeaderOutputFile(IHeaderReaderInputFile headerReaderRegion)
+	        throws ImageConverterException, IOException {
+		headerComposerForOutputFile = model.getOutputFormat().equals(EFormat.TGA)
+		        ? new HeaderComposerForTGAOutputFile(model, headerReaderRegion)
+		        : new HeaderComposerForProPraOutputFile(model, headerReaderRegion);
+	}
+
+	/** Schreibt die Zeilen des Ausschnittes in der Kompression des Output-Files. */
+	private void writeRegionImageData() throws ImageConverterException, IOException {
+		checkSumOutput = model.getOutputFormat().equals(EFormat.PROPRA) ? new CheckSum(0) : new CheckSum(-1);
+		imageDataOutput = conversionFiles.openOutputStream(model.getOutputFormat().getHeaderLength());
+		switch (model.getOutputCompressionType()) {
+		case UNCOMPRESSED:
+			writeUncompressed();
+			break;
+		case RLE:
+			writeRle();
+			break;
+		case HUFFMAN:
+			writeHuffman();
+			break;
+		default:
+			throw new IllegalArgumentException("Unexpected value: " + model.getOutputCompressionType());
+		}
+		imageDataOutput.close();
+
+		metrics.addStageNanos(EStage.CHECKSUM, checkSumOutput.getUpdateNanos());
+		model.setCheckSumInputFile(-1);
+		model.setCheckSumOutputFile(checkSumOutput.finallyCalculateChecksum());
+	}
+
+	private RegionExtractor openRegionExtractor() throws ImageConverterException, IOException {
+		return new RegionExtractor(model, conversionFiles.getInputChannel(), region, model.getRowIndexDirectory());
+	}
+
+	private void writeUncompressed() throws ImageConverterException, IOException {
+		RegionExtractor regionExtractor = openRegionExtractor();
+		byte[] row = new byte[region.getWidth() * 3];
+		for (int y = 0; y < region.getHeight(); y++) {
+			regionExtractor.readRow(row);
+			checkSumOutput.update(row, 0, row.length);
+			imageDataOutput.write(row);
+		}
+	}
+
+	private void writeRle() throws ImageConverterException, IOException {
+		RegionExtractor regionExtractor = openRegionExtractor();
+		EncoderRLEImageDataSegment rleEncoder = new EncoderRLEImageDataSegment(new DataOutputStream(imageDataOutput),
+		        checkSumOutput, model.getRleMode());
+		byte[] row = new byte[region.getWidth() * 3];
+		for (int y = 0; y < region.getHeight(); y++) {
+			regionExtractor.readRow(row);
+			rleEncoder.writePixels(row, 0, row.length);
+		}
+		rleEncoder.finish();
+		metrics.addPacketCounts(rleEncoder);
+	}
+
+	/** Bestimmt in einem ersten Durchlauf die Häufigkeit jedes Byte-Wertes im
+	 * Ausschnitt und kodiert diesen in einem zweiten Durchlauf. */
+	private void writeHuffman() throws ImageConverterException, IOException {
+		byte[] row = new byte[region.getWidth() * 3];
+		long[] byteHistogram = new long[256];
+		RegionExtractor regionExtractor = openRegionExtractor();
+		for (int y = 0; y < region.getHeight(); y++) {
+			regionExtractor.readRow(row);
+			for (byte value : row) {
+				byteHistogram[value & 0xff]++;
+			}
+		}
+		EncoderHuffmanTree huffmanTree = new EncoderHuffmanTree(byteHistogram);
+		long[] codes = huffmanTree.getCodes();
+		int[] codeLengths = huffmanTree.getCodeLengths();
+		BitWriterHuffman bitWriter = new BitWriterHuffman(imageDataOutput, checkSumOutput);
+
+		huffmanTree.writeHuffmanTree(bitWriter);
+		regionExtractor = openRegionExtractor();
+		for (int y = 0; y < region.getHeight(); y++) {
+			regionExtractor.readRow(row);
+			for (byte value : row) {
+				bitWriter.writeBits(codes[value & 0xff], codeLengths[value & 0xff]);
+			}
+		}
+		bitWriter.flush();
+	}
+}
@@ -0,0 +1,62 @@
+package propra.imageconverter.region;
+
+import java.io.File;
+import java.io.IOException;
+
+import propra.imageconverter.IHeaderReaderInputFile;
+import propra.imageconverter.ImageConverterException;
+import propra.imageconverter.enums.ECompressionType;
+
+/** Beschreibt für die HeaderComposer einen Bildausschnitt als Input, Breite und
+ * Höhe sind die des Ausschnittes, alle übrigen Angaben die des Input-Files.
+ *
+ * @author Martina Koch */
+class HeaderReaderRegion implements IHeaderReaderInputFile {
+	private IHeaderReaderInputFile inputFormatHeaderReader;
+	private ImageRegion region;
+
+	HeaderReaderRegion(IHeaderReaderInputFile inputFormatHeaderReader, ImageRegion region) {
+		this.inputFormatHeaderReader = inputFormatHeaderReader;
+		this.region = region;
+	}
+
+	@Override
+	public void extractInformationOutOfHeaderInputFile() throws ImageConverterException, IOException {
+		inputFormatHeaderReader.extractInformationOutOfHeaderInputFile();
+	}
+
+	@Override
+	public long getRealDataSegementSizeInFile() {
+		return inputFormatHeaderReader.getRealDataSegementSizeInFile();
+	}
+
+	@Override
+	public boolean isFileLengthKnown() {
+		return inputFormatHeaderReader.isFileLengthKnown();
+	}
+
+	@Override
+	public byte getPixelDepth() {
+		return inputFormatHeaderReader.getPixelDepth();
+	}
+
+	@Override
+	public int getWidth() {
+		return region.getWidth();
+	}
+
+	@Override
+	public int getHeight() {
+		return region.getHeight();
+	}
+
+	@Override
+	public ECompressionType getCompressionType() {
+		return inputFormatHeaderReader.getCompressionType();
+	}
+
+	@Override
+	public File getFile() {
+		return inputFormatHeaderReader.getFile();
+	}
+}
@@ -0,0 +1,68 @@
+package propra.imageconverter.region;
+
+import propra.imageconverter.ImageConverterException;
+
+/** Unveränderlicher rechteckiger Bildausschnitt in Pixeln, Nullpunkt links oben.
+ * Instanzen können daher von mehreren Threads gleichzeitig genutzt werden.
+ *
+ * @author Martina Koch */
+public final class ImageRegion {
+	private final int x;
+	private final int y;
+	private final int width;
+	private final int height;
+
+	public ImageRegion(int x, int y, int width, int height) throws ImageConverterException {
+		if (x < 0 || y < 0 || width < 1 || height < 1) {
+			throw new ImageConverterException("Ungültiger Bildausschnitt: " + x + "," + y + "," + width + "," + height);
+		}
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+	}
+
+	/** Erstellt den Bildausschnitt aus der Benutzereingabe "x,y,Breite,Höhe". */
+	public static ImageRegion parse(String region) throws ImageConverterException {
+		String[] values = region.split(",");
+		if (values.length != 4) {
+			throw new ImageConverterException("Bildausschnitt nicht im Format x,y,Breite,Höhe: " + region);
+		}
+		try {
+			return new ImageRegion(Integer.parseInt(values[0].trim()), Integer.parseInt(values[1].trim()),
+			        Integer.parseInt(values[2].trim()), Integer.parseInt(values[3].trim()));
+		} catch (NumberFormatException e) {
+			throw new ImageConverterException("Bildausschnitt nicht im Format x,y,Breite,Höhe: " + region);
+		}
+	}
+
+	/** Prüft, ob der Bildausschnitt vollständig innerhalb des Bildes liegt. */
+	public void checkWithin(int imageWidth, int imageHeight) throws ImageConverterException {
+		if ((long) x + width > imageWidth || (long) y + height > imageHeight) {
+			throw new ImageConverterException(
+			        "Bildausschnitt " + this + " liegt nicht innerhalb des Bildes " + imageWidth + "x" + imageHeight);
+		}
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getY() {
+		return y;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/** Ausgabe wie in der Benutzereingabe. */
+	@Override
+	public String toString() {
+		return x + "," + y + "," + width + "," + height;
+	}
+}
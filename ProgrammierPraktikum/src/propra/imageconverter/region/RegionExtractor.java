@@ -0,0 +1,172 @@
+package propra.imageconverter.region;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import propra.imageconverter.ConversionFiles;
+import propra.imageconverter.ImageConverterException;
+import propra.imageconverter.Model;
+import propra.imageconverter.channel.IPositionalChannel;
+import propra.imageconverter.checksum.CheckSum;
+import propra.imageconverter.enums.ECounter;
+import propra.imageconverter.reader.huffman.BitReaderHuffman;
+import propra.imageconverter.reader.huffman.LookupTableHuffman;
+import propra.imageconverter.reader.huffman.ReaderHuffmanTree;
+import propra.imageconverter.transformimage.DecoderRLEImageDataSegment;
+import propra.imageconverter.transformimage.SwizzlerRGBOrder;
+
+/** Instanzen dieser Klasse lesen die Zeilen eines Bildausschnittes des
+ * Input-Files nacheinander in der RGB-Reihenfolge des Output-Formats. Gelesen
+ * werden nur die benötigten Zeilen: <br>
+ * Unkomprimiert wird je Zeile nur der Ausschnitt an seiner Position gelesen.
+ * <br>
+ * Bei RLE werden bis zur ersten Zeile des Ausschnittes nur die Paket-Header
+ * gelesen oder, falls vorhanden, der im Cache-Verzeichnis gespeicherte
+ * Zeilenindex genutzt. Ab dort werden nur die Zeilen des Ausschnittes
+ * dekodiert. <br>
+ * Der Huffman-Code erlaubt keinen Einstieg mitten im Bild, die Zeilen vor dem
+ * Ausschnitt werden daher dekodiert und verworfen, hinter der letzten Zeile
+ * des Ausschnittes endet die Dekodierung.
+ *
+ * @author Martina Koch */
+public class RegionExtractor {
+	private Model model;
+	private IPositionalChannel inputChannel;
+	private ImageRegion region;
+	private long dataStart;
+	private SwizzlerRGBOrder swizzler;
+	/** nächste zu lesende Zeile des Ausschnittes */
+	private int nextRow;
+
+	private DecoderRLEImageDataSegment rleDecoder;
+	private LookupTableHuffman lookupTable;
+	private BitReaderHuffman bitReader;
+	/** eine vollständige Bildzeile bei komprimiertem Input */
+	private byte[] imageRow;
+
+	/** @param model beschreibt das Input-File inkl. Kompression und Bildgröße
+	 * @param inputChannel geöffnetes Input-File, es wird nur positionsgenau
+	 * gelesen
+	 * @param rowIndexDirectory Cache-Verzeichnis, in dem bei RLE-Input der
+	 * Zeilenindex gespeichert wird, falls noch nicht vorhanden, null für keinen
+	 * gespeicherten Index */
+	public RegionExtractor(Model model, IPositionalChannel inputChannel, ImageRegion region,
+	        String rowIndexDirectory) throws ImageConverterException, IOException {
+		this.model = model;
+		this.inputChannel = inputChannel;
+		this.region = region;
+		this.dataStart = model.getInputFormat().getHeaderLength();
+		this.swizzler = SwizzlerRGBOrder.of(model.getInputFormat(), model.getOutputFormat());
+		region.checkWithin(model.getImageWidth(), model.getImageHeight());
+
+		switch (model.getInputCompressionType()) {
+		case UNCOMPRESSED:
+			break;
+		case RLE:
+			seekRleToRegion(rowIndexDirectory);
+			break;
+		case HUFFMAN:
+			decodeHuffmanToRegion();
+			break;
+		default:
+			throw new ImageConverterException(
+			        "Bildausschnitt für Kompression " + model.getInputCompressionType() + " nicht möglich");
+		}
+	}
+
+	/** Liest die nächste Zeile des Ausschnittes.
+	 *
+	 * @param row nimmt Breite des Ausschnittes x 3 Bytes in RGB-Reihenfolge des
+	 * Output-Formats auf */
+	public void readRow(byte[] row) throws IOException, ImageConverterException {
+		int length = region.getWidth() * 3;
+		switch (model.getInputCompressionType()) {
+		case UNCOMPRESSED:
+			readUncompressedRow(row);
+			break;
+		case RLE:
+			if (rleDecoder.readPixels(imageRow, 0, imageRow.length) < imageRow.length) {
+				throw new EOFException("Bilddatensegment ist kürzer als im Header angegeben");
+			}
+			System.arraycopy(imageRow, region.getX() * 3, row, 0, length);
+			break;
+		default:
+			decodeHuffmanRow();
+			System.arraycopy(imageRow, region.getX() * 3, row, 0, length);
+			break;
+		}
+		swizzler.swizzle(row, 0, length);
+		nextRow++;
+	}
+
+	/** Liest von einer Zeile nur die Pixel des Ausschnittes an ihrer Position. */
+	private void readUncompressedRow(byte[] row) throws IOException {
+		long position = dataStart
+		        + ((long) (region.getY() + nextRow) * model.getImageWidth() + region.getX()) * 3;
+		ByteBuffer buffer = ByteBuffer.wrap(row, 0, region.getWidth() * 3);
+		while (buffer.hasRemaining()) {
+			if (inputChannel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("Bilddatensegment ist kürzer als im Header angegeben");
+			}
+		}
+	}
+
+	/** Springt zum Paket der ersten Zeile des Ausschnittes und überspringt die
+	 * Pixel dieses Paketes vor dem Zeilenbeginn. */
+	private void seekRleToRegion(String rowIndexDirectory) throws IOException {
+		long compressedLength = model.getRealDataSegmentSizeInputFile();
+		// für die Standardeingabe und im Speicher gibt es keine Datei, zu der ein Index passt
+		boolean isIndexed = rowIndexDirectory != null && !model.isInMemoryConversion()
+		        && !ConversionFiles.isStandardStream(model.getInputFilePath());
+		File inputFile = isIndexed ? new File(model.getInputFilePath()) : null;
+		Path indexPath = isIndexed ? RowIndexRLE.getIndexPath(rowIndexDirectory, inputFile) : null;
+
+		RowIndexRLE rowIndex = isIndexed
+		        ? RowIndexRLE.load(indexPath, inputFile, model.getImageWidth(), model.getImageHeight())
+		        : null;
+		if (rowIndex == null && isIndexed) {
+			rowIndex = RowIndexRLE.scan(inputChannel, dataStart, compressedLength,
+			        model.getImageWidth(), model.getImageHeight());
+			rowIndex.save(indexPath, inputFile, model.getImageWidth());
+		} else if (rowIndex == null) {
+			rowIndex = RowIndexRLE.scan(inputChannel, dataStart, compressedLength,
+			        model.getImageWidth(), region.getY() + 1);
+		}
+
+		long packetOffset = rowIndex.getPacketOffset(region.getY());
+		rleDecoder = new DecoderRLEImageDataSegment(inputChannel.newInputStream(dataStart + packetOffset),
+		        compressedLength - packetOffset, new CheckSum(-1));
+
+		// Paket kann vor dem Zeilenbeginn mehr Pixel als eine Zeile enthalten
+		imageRow = new byte[model.getImageWidth() * 3];
+		int bytesToSkip = rowIndex.getPixelsToSkip(region.getY()) * 3;
+		while (bytesToSkip > 0) {
+			int skipped = rleDecoder.readPixels(imageRow, 0, Math.min(bytesToSkip, imageRow.length));
+			if (skipped == 0) {
+				throw new EOFException("Bilddatensegment ist kürzer als im Header angegeben");
+			}
+			bytesToSkip -= skipped;
+		}
+	}
+
+	/** Liest den Huffman-Tree und dekodiert die Zeilen vor dem Ausschnitt. Die
+	 * Checksumme wird wie bei RLE-Input nicht geprüft. */
+	private void decodeHuffmanToRegion() throws IOException, ImageConverterException {
+		ReaderHuffmanTree huffmanTreeReader = new ReaderHuffmanTree(inputChannel.newInputStream(dataStart),
+		        new CheckSum(-1));
+		lookupTable = huffmanTreeReader.createLookupTable();
+		bitReader = huffmanTreeReader.getBitReader();
+		imageRow = new byte[model.getImageWidth() * 3];
+		for (int y = 0; y < region.getY(); y++) {
+			decodeHuffmanRow();
+		}
+	}
+
+	private void decodeHuffmanRow() throws IOException, ImageConverterException {
+		for (int i = 0; i < imageRow.length; i++) {
+			imageRow[i] = (byte) lookupTable.decodeSymbol(bitReader);
+		}
+		model.getMetrics().add(ECounter.HUFFMAN_SYMBOLS_DECODED, imageRow.length);
+	}
+}
@@ -0,0 +1,159 @@
+package propra.imageconverter.region;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import propra.imageconverter.channel.IPositionalChannel;
+import propra.imageconverter.utilities.BufferCache;
+
+/** Zeilenindex eines RLE-komprimierten Bilddatensegmentes. Je Bildzeile wird
+ * die Position des Paketes, in dem die Zeile beginnt, relativ zum Beginn des
+ * Datensegmentes und die Anzahl Pixel dieses Paketes vor dem Zeilenbeginn
+ * gespeichert. <br>
+ * Der Index wird durch einen Durchlauf über die Paket-Header erstellt, Pixel
+ * werden dabei nicht dekodiert. Gespeichert wird er in einem Cache-Verzeichnis
+ * zusammen mit Pfad, Länge und Änderungszeit der Input-Datei, ein veralteter
+ * oder zu einer anderen Datei gehörender Index wird beim Laden verworfen. Der
+ * Index wird erst vollständig in eine temporäre Datei geschrieben und dann
+ * umbenannt, sodass gleichzeitige Konvertierungen nie einen halben Index
+ * lesen.
+ *
+ * @author Martina Koch */
+class RowIndexRLE {
+	/** Kennung der Index-Datei, entspricht "RLI2" */
+	private static final int FORMAT_CODE = 0x524c4932;
+	/** Endung der Index-Dateien im Cache-Verzeichnis */
+	private static final String EXTENSION = ".rowindex";
+	/** Größe des Lesepuffers beim Durchlauf über die Paket-Header */
+	private static final int BLOCK_SIZE = 64 * 1024;
+	private final long[] packetOffsets;
+	private final int[] pixelsToSkip;
+
+	private RowIndexRLE(int rows) {
+		packetOffsets = new long[rows];
+		pixelsToSkip = new int[rows];
+	}
+
+	/** Liest die Paket-Header, bis der Beginn der ersten rows Zeilen bekannt ist.
+	 *
+	 * @param dataStart Position des Bilddatensegmentes im Input-File
+	 * @param compressedLength Länge des RLE-komprimierten Datensegmentes */
+	static RowIndexRLE scan(IPositionalChannel inputChannel, long dataStart, long compressedLength, int imageWidth,
+	        int rows) throws IOException {
+		RowIndexRLE rowIndex = new RowIndexRLE(rows);
+		byte[] block = BufferCache.take(BLOCK_SIZE);
+		long packetStart = 0;
+		long pixelsBeforePacket = 0;
+		int nextRow = 0;
+
+		while (nextRow < rows && packetStart < compressedLength) {
+			// Block beginnt immer an einem Paket-Header
+			ByteBuffer buffer = ByteBuffer.wrap(block, 0, (int) Math.min(BLOCK_SIZE, compressedLength - packetStart));
+			while (buffer.hasRemaining()) {
+				if (inputChannel.read(buffer, dataStart + packetStart + buffer.position()) < 0) {
+					throw new EOFException("Bilddatensegment ist kürzer als im Header angegeben");
+				}
+			}
+			int blockPosition = 0;
+			while (nextRow < rows && blockPosition < buffer.limit()) {
+				int packetHeader = block[blockPosition] & 0xff;
+				int pixelCount = (packetHeader & 0x7f) + 1;
+				int packetLength = 1 + (packetHeader >= 0x80 ? 3 : pixelCount * 3);
+				if (packetStart + packetLength > compressedLength) {
+					throw new EOFException("Bilddatensegment endet innerhalb eines Paketes");
+				}
+				// ein Paket kann mehrere Zeilen beginnen
+				while (nextRow < rows && (long) nextRow * imageWidth < pixelsBeforePacket + pixelCount) {
+					rowIndex.packetOffsets[nextRow] = packetStart;
+					rowIndex.pixelsToSkip[nextRow] = (int) ((long) nextRow * imageWidth - pixelsBeforePacket);
+					nextRow++;
+				}
+				packetStart += packetLength;
+				blockPosition += packetLength;
+				pixelsBeforePacket += pixelCount;
+			}
+		}
+		if (nextRow < rows) {
+			throw new EOFException("Bilddatensegment enthält weniger Zeilen als im Header angegeben");
+		}
+		return rowIndex;
+	}
+
+	/** Pfad des Indexes einer Input-Datei im Cache-Verzeichnis. Gleichnamige
+	 * Dateien aus verschiedenen Verzeichnissen unterscheiden sich im Hash ihres
+	 * absoluten Pfades. */
+	static Path getIndexPath(String indexDirectory, File inputFile) {
+		String absolutePath = inputFile.getAbsolutePath();
+		return Paths.get(indexDirectory,
+		        inputFile.getName() + "-" + Integer.toHexString(absolutePath.hashCode()) + EXTENSION);
+	}
+
+	/** Lädt einen gespeicherten Index.
+	 *
+	 * @return null, wenn kein Index vorhanden ist oder dieser nicht zur
+	 * Input-Datei passt */
+	static RowIndexRLE load(Path indexPath, File inputFile, int imageWidth, int imageHeight) throws IOException {
+		try (DataInputStream indexInput = new DataInputStream(
+		        new BufferedInputStream(Files.newInputStream(indexPath)))) {
+			if (indexInput.readInt() != FORMAT_CODE
+			        || !indexInput.readUTF().equals(inputFile.getAbsolutePath())
+			        || indexInput.readLong() != inputFile.length()
+			        || indexInput.readLong() != inputFile.lastModified() || indexInput.readInt() != imageWidth
+			        || indexInput.readInt() != imageHeight) {
+				return null;
+			}
+			RowIndexRLE rowIndex = new RowIndexRLE(imageHeight);
+			for (int row = 0; row < imageHeight; row++) {
+				rowIndex.packetOffsets[row] = indexInput.readLong();
+				rowIndex.pixelsToSkip[row] = indexInput.readUnsignedByte();
+			}
+			return rowIndex;
+		} catch (NoSuchFileException | EOFException e) {
+			return null;
+		}
+	}
+
+	/** Speichert den Index, er muss alle Zeilen des Bildes enthalten. */
+	void save(Path indexPath, File inputFile, int imageWidth) throws IOException {
+		Path temporaryIndexPath = Files.createTempFile(indexPath.getParent(), ".rowindex-", ".tmp");
+		try {
+			writeTo(temporaryIndexPath, inputFile, imageWidth);
+			Files.move(temporaryIndexPath, indexPath, StandardCopyOption.REPLACE_EXISTING,
+			        StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporaryIndexPath);
+		}
+	}
+
+	private void writeTo(Path indexPath, File inputFile, int imageWidth) throws IOException {
+		try (DataOutputStream indexOutput = new DataOutputStream(
+		        new BufferedOutputStream(Files.newOutputStream(indexPath)))) {
+			indexOutput.writeInt(FORMAT_CODE);
+			indexOutput.writeUTF(inputFile.getAbsolutePath());
+			indexOutput.writeLong(inputFile.length());
+			indexOutput.writeLong(inputFile.lastModified());
+			indexOutput.writeInt(imageWidth);
+			indexOutput.writeInt(packetOffsets.length);
+			for (int row = 0; row < packetOffsets.length; row++) {
+				indexOutput.writeLong(packetOffsets[row]);
+				// höchstens 127 Pixel eines Paketes liegen vor dem Zeilenbeginn
+				indexOutput.writeByte(pixelsToSkip[row]);
+			}
+		}
+	}
+
+	/** Position des Paketes, in dem die Zeile beginnt, relativ zum Datensegment. */
+	long getPacketOffset(int row) {
+		return packetOffsets[row];
+	}
+
+	/** Anzahl Pixel des Paketes vor dem Beginn der Zeile. */
+	int getPixelsToSkip(int row) {
+		return pixelsToSkip[row];
+	}
+}
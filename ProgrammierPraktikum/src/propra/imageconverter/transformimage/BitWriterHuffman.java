@@ -0,0 +1,62 @@
+package propra.imageconverter.transformimage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import propra.imageconverter.checksum.CheckSum;
+import propra.imageconverter.utilities.BufferCache;
+
+/** Instanzen dieser Klasse schreiben Bitfolgen (höchstwertiges Bit zuerst) in
+ * das Output-File. Vollständige Bytes werden in einem Puffer gesammelt, der
+ * blockweise geschrieben wird. Hierbei wird die Checksumme des Output-Files
+ * fortgeschrieben.
+ *
+ * @author Martina Koch */
+public class BitWriterHuffman {
+	/** Größe des Schreibpuffers in Bytes */
+	private static final int BLOCK_SIZE = 64 * 1024;
+	private OutputStream output;
+	private CheckSum checkSumOutput;
+	private byte[] block = BufferCache.take(BLOCK_SIZE);
+	private int blockPosition;
+	/** Bits rechtsbündig, maximal 7 Bits verbleiben nach jedem Schreiben */
+	private long bitBuffer;
+	private int bitCount;
+
+	public BitWriterHuffman(OutputStream output, CheckSum checkSumOutput) {
+		this.output = output;
+		this.checkSumOutput = checkSumOutput;
+	}
+
+	/** Schreibt die niederwertigsten n Bits (maximal 56) von bits.
+	 *
+	 * @param bits zu schreibende Bits, rechtsbündig
+	 * @param n Anzahl Bits */
+	public void writeBits(long bits, int n) throws IOException {
+		bitBuffer = (bitBuffer << n) | bits;
+		bitCount += n;
+		while (bitCount >= 8) {
+			bitCount -= 8;
+			block[blockPosition++] = (byte) (bitBuffer >>> bitCount);
+			if (blockPosition == BLOCK_SIZE) {
+				writeBlock();
+			}
+		}
+	}
+
+	/** Füllt letztes Byte mit 0-Bits auf und schreibt alle gepufferten Bytes. */
+	public void flush() throws IOException {
+		if (bitCount > 0) {
+			writeBits(0, 8 - bitCount);
+		}
+		writeBlock();
+	}
+
+	private void writeBlock() throws IOException {
+		if (blockPosition > 0) {
+			output.write(block, 0, blockPosition);
+			checkSumOutput.update(block, 0, blockPosition);
+			blockPosition = 0;
+		}
+	}
+}
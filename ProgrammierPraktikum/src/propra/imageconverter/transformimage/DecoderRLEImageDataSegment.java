@@ -0,0 +1,149 @@
+package propra.imageconverter.transformimage;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import propra.imageconverter.checksum.CheckSum;
+import propra.imageconverter.utilities.BufferCache;
+
+/** Instanzen dieser Klasse dekodieren ein RLE-komprimiertes Bilddatensegment
+ * schrittweise zu unkomprimierten Pixeln in Input-RGB-Reihenfolge. Die
+ * komprimierten Bytes werden blockweise gelesen, hierbei wird die Checksumme
+ * des Input-Files fortgeschrieben. Pakete dürfen über Blockgrenzen und über
+ * Aufrufe von readPixels hinweg reichen. <br>
+ * Im strikten Modus endet das Datensegment wie bei
+ * DecoderRLEImageDataSegmentParallel: Folgen einem Paket-Header keine 3 Bytes
+ * mehr, werden diese ignoriert und gehen nicht in die Checksumme ein, ein
+ * abgeschnittenes Paket führt zur EOFException. Die Checksumme wird dazu erst
+ * über die verarbeiteten Bytes fortgeschrieben.
+ *
+ * @author Martina Koch */
+public class DecoderRLEImageDataSegment {
+	/** Größe des Lesepuffers in Bytes */
+	private static final int BLOCK_SIZE = 64 * 1024;
+	private InputStream input;
+	private CheckSum checkSumInput;
+	private long compressedBytesToRead;
+	private final boolean isStrict;
+	private byte[] block = BufferCache.take(BLOCK_SIZE);
+	private int blockPosition;
+	private int blockLength;
+	/** im strikten Modus Beginn der noch nicht in die Checksumme eingerechneten Bytes */
+	private int checkSumPosition;
+	/** noch zu schreibende Pixel des aktuellen Paketes */
+	private int packetPixelsLeft;
+	private boolean isRlePacket;
+	private byte[] rlePixel = new byte[3];
+
+	/** @param input Input-File ab dem Beginn des Bilddatensegmentes
+	 * @param compressedBytesToRead Länge des RLE-komprimierten Datensegmentes */
+	public DecoderRLEImageDataSegment(InputStream input, long compressedBytesToRead, CheckSum checkSumInput) {
+		this(input, compressedBytesToRead, checkSumInput, false);
+	}
+
+	/** @param isStrict true für das Ende des Datensegmentes wie bei
+	 *            DecoderRLEImageDataSegmentParallel */
+	public DecoderRLEImageDataSegment(InputStream input, long compressedBytesToRead, CheckSum checkSumInput,
+	        boolean isStrict) {
+		this.input = input;
+		this.compressedBytesToRead = compressedBytesToRead;
+		this.checkSumInput = checkSumInput;
+		this.isStrict = isStrict;
+	}
+
+	/** Schreibt die nächsten unkomprimierten Pixel in das Zielarray.
+	 *
+	 * @param length gewünschte Anzahl Bytes, Vielfaches von 3
+	 * @return Anzahl geschriebener Bytes, weniger als length nur am Ende des
+	 * Datensegmentes */
+	public int readPixels(byte[] target, int offset, int length) throws IOException {
+		int written = 0;
+		while (written < length) {
+			if (packetPixelsLeft == 0) {
+				if (isStrict && !fillBlock(3)) {
+					updateCheckSum();
+					break;
+				}
+				int packetHeader = nextByte();
+				if (packetHeader == -1) {
+					break;
+				}
+				// Pakettyp: Raw (0), RLE (1) im höchstwertigen Bit, Pixelanzahl - 1 in Bits 0-6
+				isRlePacket = (packetHeader & 0x80) != 0;
+				packetPixelsLeft = (packetHeader & 0x7f) + 1;
+				if (isRlePacket && !readPixel(rlePixel, 0)) {
+					break;
+				}
+			}
+			if (isRlePacket) {
+				target[offset + written] = rlePixel[0];
+				target[offset + written + 1] = rlePixel[1];
+				target[offset + written + 2] = rlePixel[2];
+			} else if (!readPixel(target, offset + written)) {
+				break;
+			}
+			packetPixelsLeft--;
+			written += 3;
+		}
+		return written;
+	}
+
+	private boolean readPixel(byte[] target, int offset) throws IOException {
+		for (int i = 0; i < 3; i++) {
+			int nextByte = nextByte();
+			if (nextByte == -1) {
+				if (isStrict) {
+					throw new EOFException("Bilddatensegment endet innerhalb eines Paketes");
+				}
+				return false;
+			}
+			target[offset + i] = (byte) nextByte;
+		}
+		return true;
+	}
+
+	private int nextByte() throws IOException {
+		if (blockPosition == blockLength && !fillBlock(1)) {
+			return -1;
+		}
+		return block[blockPosition++] & 0xff;
+	}
+
+	/** Liest, bis ab blockPosition mindestens count Bytes im Puffer liegen. Noch
+	 * nicht verarbeitete Bytes werden dazu an den Anfang des Puffers verschoben.
+	 *
+	 * @return false, wenn das Datensegment vorher endet */
+	private boolean fillBlock(int count) throws IOException {
+		while (blockLength - blockPosition < count) {
+			if (compressedBytesToRead == 0) {
+				return false;
+			}
+			updateCheckSum();
+			blockLength -= blockPosition;
+			System.arraycopy(block, blockPosition, block, 0, blockLength);
+			blockPosition = 0;
+			checkSumPosition = 0;
+			int bytesRead = input.read(block, blockLength,
+			        (int) Math.min(BLOCK_SIZE - blockLength, compressedBytesToRead));
+			if (bytesRead <= 0) {
+				compressedBytesToRead = 0;
+				return false;
+			}
+			if (!isStrict) {
+				checkSumInput.update(block, blockLength, bytesRead);
+			}
+			blockLength += bytesRead;
+			compressedBytesToRead -= bytesRead;
+		}
+		return true;
+	}
+
+	/** Schreibt im strikten Modus die Checksumme bis blockPosition fort. */
+	private void updateCheckSum() {
+		if (isStrict) {
+			checkSumInput.update(block, checkSumPosition, blockPosition - checkSumPosition);
+			checkSumPosition = blockPosition;
+		}
+	}
+}
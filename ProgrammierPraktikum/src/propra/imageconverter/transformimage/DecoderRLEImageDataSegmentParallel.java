@@ -0,0 +1,244 @@
+package propra.imageconverter.transformimage;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import propra.imageconverter.Model;
+import propra.imageconverter.channel.IPositionalChannel;
+import propra.imageconverter.channel.PositionalWriter;
+import propra.imageconverter.checksum.CheckSum;
+import propra.imageconverter.enums.ECounter;
+import propra.imageconverter.enums.EFormat;
+import propra.imageconverter.utilities.BufferCache;
+
+/** Instanzen dieser Klasse dekodieren ein RLE-komprimiertes Bilddatensegment
+ * parallel zu unkomprimierten Pixeln in Output-RGB-Reihenfolge. <br>
+ * Ein erster Durchlauf liest nur die Paket-Header und merkt sich etwa alle
+ * SEGMENT_SIZE unkomprimierten Bytes eine Paketgrenze mit Position im Input
+ * und im Output. Die Abschnitte zwischen diesen Grenzen werden mit Fork/Join
+ * unabhängig dekodiert und direkt an ihre Position im Output-File geschrieben.
+ * Ist der Output nicht positionierbar (Standardausgabe), werden jeweils so
+ * viele Abschnitte parallel dekodiert, wie der Pool Threads hat, und danach in
+ * Reihenfolge geschrieben. <br>
+ * Die Checksummen werden je Abschnitt berechnet und in Reihenfolge mit
+ * CheckSum.combine zusammengefügt. <br>
+ * Wie bisher werden weniger als 3 Bytes am Ende des Datensegmentes ignoriert.
+ *
+ * @author Martina Koch */
+public class DecoderRLEImageDataSegmentParallel {
+	/** ungefähre Anzahl unkomprimierter Bytes je Abschnitt */
+	private static final long SEGMENT_SIZE = 4 * 1024 * 1024;
+	/** Größe des Lesepuffers beim Durchlauf über die Paket-Header */
+	private static final int BLOCK_SIZE = 64 * 1024;
+	private Model model;
+	private IPositionalChannel inputChannel;
+	private WritableByteChannel outputChannel;
+	/** nur gesetzt, wenn an die Position der Abschnitte geschrieben werden kann */
+	private IPositionalChannel positionalOutputChannel;
+	private long inputStart;
+	private long outputStart;
+	private SwizzlerRGBOrder swizzler;
+
+	/** Beginn der Abschnitte im komprimierten und unkomprimierten Datensegment,
+	 * der letzte Eintrag ist jeweils das Ende */
+	private List<Long> compressedOffsets = new ArrayList<>();
+	private List<Long> uncompressedOffsets = new ArrayList<>();
+	private CheckSum[] checkSumsInput;
+	private CheckSum[] checkSumsOutput;
+	/** dekodierte, noch nicht geschriebene Abschnitte bei fortlaufendem Output */
+	private byte[][] decodedSegments;
+
+	/** Dekodiert das Bilddatensegment und schreibt die Checksummen fort.
+	 *
+	 * @param inputChannel Input-File, Bilddatensegment beginnt nach dem Header
+	 * @param outputChannel PositionalWriter des Output-Files, Pixel werden nach
+	 *            dem Header geschrieben, oder fortlaufender Channel */
+	public DecoderRLEImageDataSegmentParallel(Model model, IPositionalChannel inputChannel,
+	        WritableByteChannel outputChannel, CheckSum checkSumInput, CheckSum checkSumOutput) throws IOException {
+		this.model = model;
+		this.inputChannel = inputChannel;
+		this.outputChannel = outputChannel;
+		if (outputChannel instanceof PositionalWriter) {
+			positionalOutputChannel = ((PositionalWriter) outputChannel).getChannel();
+		}
+		this.inputStart = model.getInputFormat().getHeaderLength();
+		this.outputStart = model.getOutputFormat().getHeaderLength();
+		this.swizzler = SwizzlerRGBOrder.of(model.getInputFormat(), model.getOutputFormat());
+
+		findSegmentBoundaries(model.getRealDataSegmentSizeInputFile());
+		int segmentCount = compressedOffsets.size() - 1;
+		checkSumsInput = new CheckSum[segmentCount];
+		checkSumsOutput = new CheckSum[segmentCount];
+		if (segmentCount > 0) {
+			decodeSegments(segmentCount);
+		}
+
+		for (int i = 0; i < segmentCount; i++) {
+			checkSumInput.combine(checkSumsInput[i]);
+			checkSumOutput.combine(checkSumsOutput[i]);
+		}
+	}
+
+	/** Liest nur die Paket-Header und legt die Abschnittsgrenzen fest. */
+	private void findSegmentBoundaries(long compressedLength) throws IOException {
+		byte[] block = BufferCache.take(BLOCK_SIZE);
+		long packetStart = 0;
+		long uncompressedBytes = 0;
+		compressedOffsets.add(0L);
+		uncompressedOffsets.add(0L);
+
+		while (compressedLength - packetStart >= 3) {
+			// Block beginnt immer an einem Paket-Header
+			int blockLength = readFully(block, inputStart + packetStart,
+			        (int) Math.min(BLOCK_SIZE, compressedLength - packetStart));
+			int blockPosition = 0;
+			while (blockPosition < blockLength && compressedLength - packetStart >= 3) {
+				int packetHeader = block[blockPosition] & 0xff;
+				int pixelCount = (packetHeader & 0x7f) + 1;
+				int packetLength = 1 + (packetHeader >= 0x80 ? 3 : pixelCount * 3);
+				if (packetStart + packetLength > compressedLength) {
+					throw new EOFException("Bilddatensegment endet innerhalb eines Paketes");
+				}
+				if (uncompressedBytes - uncompressedOffsets.get(uncompressedOffsets.size() - 1) >= SEGMENT_SIZE) {
+					compressedOffsets.add(packetStart);
+					uncompressedOffsets.add(uncompressedBytes);
+				}
+				packetStart += packetLength;
+				blockPosition += packetLength;
+				uncompressedBytes += pixelCount * 3;
+			}
+		}
+		compressedOffsets.add(packetStart);
+		uncompressedOffsets.add(uncompressedBytes);
+	}
+
+	private void decodeSegments(int segmentCount) throws IOException {
+		if (positionalOutputChannel != null) {
+			invokeDecodeTask(0, segmentCount);
+			return;
+		}
+		decodedSegments = new byte[segmentCount][];
+		int segmentsPerRound = ForkJoinPool.commonPool().getParallelism();
+		for (int firstSegment = 0; firstSegment < segmentCount; firstSegment += segmentsPerRound) {
+			int endSegment = Math.min(segmentCount, firstSegment + segmentsPerRound);
+			invokeDecodeTask(firstSegment, endSegment);
+			for (int segment = firstSegment; segment < endSegment; segment++) {
+				writeFully(ByteBuffer.wrap(decodedSegments[segment]), -1);
+				decodedSegments[segment] = null;
+			}
+		}
+	}
+
+	private void invokeDecodeTask(int firstSegment, int endSegment) throws IOException {
+		try {
+			ForkJoinPool.commonPool().invoke(new DecodeTask(firstSegment, endSegment));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/** Dekodiert einen Abschnitt und schreibt ihn an seine Position bzw. legt
+	 * ihn bei fortlaufendem Output für das Schreiben in Reihenfolge ab. */
+	private void decodeSegment(int segment) throws IOException {
+		long compressedStart = compressedOffsets.get(segment);
+		long uncompressedStart = uncompressedOffsets.get(segment);
+		byte[] compressed = new byte[(int) (compressedOffsets.get(segment + 1) - compressedStart)];
+		byte[] pixels = new byte[(int) (uncompressedOffsets.get(segment + 1) - uncompressedStart)];
+		readFully(compressed, inputStart + compressedStart, compressed.length);
+
+		CheckSum checkSumInput = model.getInputFormat().equals(EFormat.PROPRA) ? new CheckSum(0) : new CheckSum(-1);
+		checkSumInput.update(compressed, 0, compressed.length);
+
+		int compressedPosition = 0;
+		int pixelPosition = 0;
+		while (compressedPosition < compressed.length) {
+			int packetHeader = compressed[compressedPosition++] & 0xff;
+			int pixelBytes = ((packetHeader & 0x7f) + 1) * 3;
+			if (packetHeader >= 0x80) {
+				for (int i = 0; i < pixelBytes; i += 3) {
+					pixels[pixelPosition + i] = compressed[compressedPosition];
+					pixels[pixelPosition + i + 1] = compressed[compressedPosition + 1];
+					pixels[pixelPosition + i + 2] = compressed[compressedPosition + 2];
+				}
+				compressedPosition += 3;
+			} else {
+				System.arraycopy(compressed, compressedPosition, pixels, pixelPosition, pixelBytes);
+				compressedPosition += pixelBytes;
+			}
+			pixelPosition += pixelBytes;
+		}
+		swizzler.swizzle(pixels, 0, pixels.length);
+
+		CheckSum checkSumOutput = model.getOutputFormat().equals(EFormat.PROPRA) ? new CheckSum(0)
+		        : new CheckSum(-1);
+		checkSumOutput.update(pixels, 0, pixels.length);
+		checkSumsInput[segment] = checkSumInput;
+		checkSumsOutput[segment] = checkSumOutput;
+
+		if (decodedSegments != null) {
+			decodedSegments[segment] = pixels;
+		} else {
+			writeFully(ByteBuffer.wrap(pixels), outputStart + uncompressedStart);
+		}
+	}
+
+	/** Schreibt den Puffer ab position, bei negativer position fortlaufend. */
+	private void writeFully(ByteBuffer pixelBuffer, long position) throws IOException {
+		while (pixelBuffer.hasRemaining()) {
+			if (position < 0) {
+				outputChannel.write(pixelBuffer);
+			} else {
+				positionalOutputChannel.write(pixelBuffer, position + pixelBuffer.position());
+			}
+			model.getMetrics().add(ECounter.WRITE_CALLS, 1);
+		}
+	}
+
+	/** Liest length Bytes ab position, bricht am Dateiende mit EOFException ab. */
+	private int readFully(byte[] target, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(target, 0, length);
+		while (buffer.hasRemaining()) {
+			model.getMetrics().add(ECounter.READ_CALLS, 1);
+			if (inputChannel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("Bilddatensegment ist kürzer als im Header angegeben");
+			}
+		}
+		return length;
+	}
+
+	/** Teilt den Bereich der Abschnitte, bis je Task ein Abschnitt übrig ist. */
+	private class DecodeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int firstSegment;
+		private final int endSegment;
+
+		DecodeTask(int firstSegment, int endSegment) {
+			this.firstSegment = firstSegment;
+			this.endSegment = endSegment;
+		}
+
+		@Override
+		protected void compute() {
+			if (endSegment - firstSegment == 1) {
+				try {
+					decodeSegment(firstSegment);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				return;
+			}
+			int middleSegment = firstSegment + (endSegment - firstSegment) / 2;
+			DecodeTask secondHalf = new DecodeTask(middleSegment, endSegment);
+			secondHalf.fork();
+			new DecodeTask(firstSegment, middleSegment).compute();
+			secondHalf.join();
+		}
+	}
+}
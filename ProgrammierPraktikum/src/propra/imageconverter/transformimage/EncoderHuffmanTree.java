@@ -0,0 +1,134 @@
+package propra.imageconverter.transformimage;
+
+import java.io.IOException;
+import java.util.PriorityQueue;
+
+import propra.imageconverter.ImageConverterException;
+
+/** Instanzen dieser Klasse erstellen aus den Byte-Häufigkeiten der Bilddaten
+ * einen Huffman-Tree und die zugehörigen Codes je Byte-Wert. Linke Kanten
+ * entsprechen dem Bit 0, rechte Kanten dem Bit 1. <br>
+ * Der Baum wird in Preorder serialisiert: innerer Knoten: 0, Blatt: 1 gefolgt
+ * von den 8 Bit des Blattwertes.
+ *
+ * @author Martina Koch */
+public class EncoderHuffmanTree {
+	/** maximale Codelänge, die der BitWriterHuffman in einem Schritt schreibt */
+	private static final int MAX_CODE_LENGTH = 56;
+	/** Kindknoten je Knoten n an Position 2n (links) und 2n+1 (rechts), -1 bei
+	 * Blättern */
+	private int[] childNodes = new int[2 * 511];
+	private byte[] leafValues = new byte[511];
+	private long[] nodeWeights = new long[511];
+	private int nodeCount;
+	private int rootNode;
+	private long[] codes = new long[256];
+	private int[] codeLengths = new int[256];
+
+	public EncoderHuffmanTree(long[] byteHistogram) throws ImageConverterException {
+		createLeaves(byteHistogram);
+		combineNodesToTree();
+		assignCodesToLeaves();
+	}
+
+	/** Erstellt je vorkommendem Byte-Wert ein Blatt. Kommt nur ein Byte-Wert vor,
+	 * wird ein zweites Blatt ergänzt, damit jeder Code mindestens ein Bit lang
+	 * ist. */
+	private void createLeaves(long[] byteHistogram) {
+		for (int value = 0; value < 256; value++) {
+			if (byteHistogram[value] > 0) {
+				addLeaf(value, byteHistogram[value]);
+			}
+		}
+		if (nodeCount == 1) {
+			addLeaf((leafValues[0] + 1) & 0xff, 0);
+		}
+	}
+
+	private void addLeaf(int value, long weight) {
+		childNodes[2 * nodeCount] = -1;
+		childNodes[2 * nodeCount + 1] = -1;
+		leafValues[nodeCount] = (byte) value;
+		nodeWeights[nodeCount] = weight;
+		nodeCount++;
+	}
+
+	/** Fasst jeweils die zwei Knoten mit geringstem Gewicht zusammen, bei gleichem
+	 * Gewicht entscheidet die Knotennummer, damit die Codes reproduzierbar
+	 * sind. */
+	private void combineNodesToTree() {
+		PriorityQueue<Integer> queue = new PriorityQueue<>(
+		        (a, b) -> nodeWeights[a] != nodeWeights[b] ? Long.compare(nodeWeights[a], nodeWeights[b])
+		                : Integer.compare(a, b));
+		for (int node = 0; node < nodeCount; node++) {
+			queue.add(node);
+		}
+		while (queue.size() > 1) {
+			int left = queue.poll();
+			int right = queue.poll();
+			childNodes[2 * nodeCount] = left;
+			childNodes[2 * nodeCount + 1] = right;
+			nodeWeights[nodeCount] = nodeWeights[left] + nodeWeights[right];
+			queue.add(nodeCount);
+			nodeCount++;
+		}
+		rootNode = queue.poll();
+	}
+
+	/** Durchläuft den Baum iterativ und legt Code und Codelänge je Blatt fest. */
+	private void assignCodesToLeaves() throws ImageConverterException {
+		int[] nodeStack = new int[nodeCount];
+		long[] codeStack = new long[nodeCount];
+		int[] lengthStack = new int[nodeCount];
+		int stackSize = 0;
+		nodeStack[stackSize++] = rootNode;
+
+		while (stackSize > 0) {
+			stackSize--;
+			int node = nodeStack[stackSize];
+			long code = codeStack[stackSize];
+			int length = lengthStack[stackSize];
+			if (childNodes[2 * node] == -1) {
+				if (length > MAX_CODE_LENGTH) {
+					throw new ImageConverterException("Huffman-Code zu lang");
+				}
+				codes[leafValues[node] & 0xff] = code;
+				codeLengths[leafValues[node] & 0xff] = length;
+			} else {
+				for (int bit = 0; bit < 2; bit++) {
+					nodeStack[stackSize] = childNodes[2 * node + bit];
+					codeStack[stackSize] = (code << 1) | bit;
+					lengthStack[stackSize] = length + 1;
+					stackSize++;
+				}
+			}
+		}
+	}
+
+	/** Schreibt den Huffman-Tree in Preorder (Wurzel - links - rechts). */
+	public void writeHuffmanTree(BitWriterHuffman bitWriter) throws IOException {
+		int[] nodeStack = new int[nodeCount];
+		int stackSize = 0;
+		nodeStack[stackSize++] = rootNode;
+
+		while (stackSize > 0) {
+			int node = nodeStack[--stackSize];
+			if (childNodes[2 * node] == -1) {
+				bitWriter.writeBits(0x100 | (leafValues[node] & 0xff), 9);
+			} else {
+				bitWriter.writeBits(0, 1);
+				// rechter Teilbaum zuerst auf Stapel, damit linker zuerst geschrieben wird
+				nodeStack[stackSize++] = childNodes[2 * node + 1];
+				nodeStack[stackSize++] = childNodes[2 * node];
+			}
+		}
+	}
+
+	public long[] getCodes() {
+		return codes;
+	}
+
+	public int[] getCodeLengths() {
+		return codeLengths;
+	}
+}
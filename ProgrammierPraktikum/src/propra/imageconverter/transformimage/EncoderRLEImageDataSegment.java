@@ -0,0 +1,323 @@
+package propra.imageconverter.transformimage;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+import propra.imageconverter.checksum.CheckSum;
+import propra.imageconverter.enums.ERleMode;
+import propra.imageconverter.utilities.BufferCache;
+
+/** Instanzen dieser Klasse komprimieren schrittweise übergebene Pixel zu RLE.
+ * Die Pixel müssen bereits in Output-RGB-Reihenfolge vorliegen und dürfen in
+ * beliebig großen Abschnitten übergeben werden; Pakete reichen über Aufrufe von
+ * writePixels hinweg. <br>
+ * Im Modus GREEDY beginnt ein RLE-Paket, sobald zwei aufeinanderfolgende Pixel
+ * gleich sind, ansonsten werden die Pixel in einem Raw-Paket gesammelt, jeweils
+ * bis zu 128 Pixel. <br>
+ * Im Modus OPTIMAL werden die Pixel in Fenstern von WINDOW_PIXELS Pixeln
+ * gesammelt und je Fenster die Paketgrenzen mit minimaler Ausgabegröße
+ * bestimmt (siehe encodeWindowOptimal). Die Pakete der letzten
+ * RETAINED_PIXELS Pixel eines Fensters werden nicht geschrieben, sondern mit dem
+ * nächsten Fenster neu bestimmt, damit die Fenstergrenzen keine Pakete teilen.
+ * <br>
+ * Die komprimierten Bytes werden blockweise in das Output-File oder einen
+ * anderen DataOutput geschrieben, hierbei wird die Checksumme fortgeschrieben.
+ *
+ * @author Martina Koch */
+public class EncoderRLEImageDataSegment {
+	/** Größe des Schreibpuffers in Bytes */
+	private static final int BLOCK_SIZE = 64 * 1024;
+	private static final int MAX_PIXELS_IN_PACKET = 128;
+	/** Anzahl Pixel, über die im Modus OPTIMAL gemeinsam optimiert wird */
+	private static final int WINDOW_PIXELS = 64 * 1024;
+	/** Anzahl Pixel am Fensterende, die mit dem nächsten Fenster optimiert werden */
+	private static final int RETAINED_PIXELS = 2 * MAX_PIXELS_IN_PACKET;
+	private DataOutput output;
+	private CheckSum checkSumOutput;
+	private byte[] block = BufferCache.take(BLOCK_SIZE);
+	private int blockPosition;
+
+	/** Pixel des noch offenen Raw-Paketes, das letzte Pixel kann noch Beginn
+	 * eines RLE-Paketes werden */
+	private byte[] rawPixels = new byte[MAX_PIXELS_IN_PACKET * 3];
+	private int rawPixelCount;
+	/** Anzahl Pixel des offenen RLE-Paketes, 0 wenn kein RLE-Paket offen ist */
+	private int rlePixelCount;
+	/** zuletzt übergebenes Pixel als int (3 Bytes) */
+	private int lastPixel;
+	/** Anzahl geschriebener Raw- und RLE-Pakete */
+	private long rawPacketCount;
+	private long rlePacketCount;
+
+	private final boolean optimal;
+	/** Modus OPTIMAL: Pixel des Fensters als Bytes und als int */
+	private byte[] windowBytes;
+	private int[] windowPixels;
+	private int windowPixelCount;
+	/** Modus OPTIMAL: minimale Größe in Bytes für die ersten i Pixel des Fensters,
+	 * Beginn und Typ des letzten Paketes dieser Lösung */
+	private int[] minimalSize;
+	private int[] packetStart;
+	private boolean[] isRlePacket;
+	/** Modus OPTIMAL: Warteschlangen für die gleitenden Minima */
+	private int[] rawCandidates;
+	private int[] rleCandidates;
+
+	/** @param output Output-File, dessen Filepointer am Beginn des
+	 * Bilddatensegmentes steht, oder ein Puffer für einen Teil der Pakete */
+	public EncoderRLEImageDataSegment(DataOutput output, CheckSum checkSumOutput) {
+		this(output, checkSumOutput, ERleMode.GREEDY);
+	}
+
+	/** @param rleMode Verfahren zur Aufteilung in Pakete */
+	public EncoderRLEImageDataSegment(DataOutput output, CheckSum checkSumOutput, ERleMode rleMode) {
+		this.output = output;
+		this.checkSumOutput = checkSumOutput;
+		this.optimal = rleMode == ERleMode.OPTIMAL;
+		if (optimal) {
+			windowBytes = BufferCache.take(WINDOW_PIXELS * 3);
+			windowPixels = BufferCache.takeInts(WINDOW_PIXELS);
+			minimalSize = BufferCache.takeInts(WINDOW_PIXELS + 1);
+			packetStart = BufferCache.takeInts(WINDOW_PIXELS + 1);
+			isRlePacket = new boolean[WINDOW_PIXELS + 1];
+			rawCandidates = BufferCache.takeInts(WINDOW_PIXELS + 1);
+			rleCandidates = BufferCache.takeInts(WINDOW_PIXELS + 1);
+		}
+	}
+
+	/** Komprimiert length Bytes (Vielfaches von 3) ab offset. */
+	public void writePixels(byte[] pixels, int offset, int length) throws IOException {
+		if (optimal) {
+			collectPixelsInWindow(pixels, offset, length);
+			return;
+		}
+		int end = offset + length;
+		for (int i = offset; i < end; i += 3) {
+			int pixel = ((pixels[i] & 0xff) << 16) | ((pixels[i + 1] & 0xff) << 8) | (pixels[i + 2] & 0xff);
+			if (rlePixelCount > 0) {
+				if (pixel == lastPixel && rlePixelCount < MAX_PIXELS_IN_PACKET) {
+					rlePixelCount++;
+					continue;
+				}
+				writeRlePacket();
+			} else if (rawPixelCount > 0 && pixel == lastPixel) {
+				// letztes Pixel des Raw-Paketes beginnt stattdessen ein RLE-Paket
+				rawPixelCount--;
+				if (rawPixelCount > 0) {
+					writeRawPacket();
+				}
+				rlePixelCount = 2;
+				continue;
+			} else if (rawPixelCount == MAX_PIXELS_IN_PACKET) {
+				writeRawPacket();
+			}
+			rawPixels[rawPixelCount * 3] = pixels[i];
+			rawPixels[rawPixelCount * 3 + 1] = pixels[i + 1];
+			rawPixels[rawPixelCount * 3 + 2] = pixels[i + 2];
+			rawPixelCount++;
+			lastPixel = pixel;
+		}
+	}
+
+	/** Schreibt das offene Paket und alle gepufferten Bytes ins Output-File. */
+	public void finish() throws IOException {
+		if (optimal) {
+			encodeWindowOptimal(true);
+		} else if (rlePixelCount > 0) {
+			writeRlePacket();
+		} else if (rawPixelCount > 0) {
+			writeRawPacket();
+		}
+		flushBlock();
+	}
+
+	/** Sucht im Modus GREEDY das erste Pixel ab dem zweiten Pixel, das von seinem
+	 * Vorgänger abweicht und dem ein gleiches Pixel folgt. Nach diesem und dem
+	 * folgenden Pixel sind alle Pakete vor dem Pixel geschrieben und ein RLE-Paket
+	 * mit zwei Pixeln offen, unabhängig von den vorangehenden Pixeln. Ein Encoder,
+	 * der erst ab diesem Pixel komprimiert, schreibt daher dieselben Pakete wie
+	 * ein Encoder, der alle Pixel erhält.
+	 *
+	 * @return Position des Pixels in pixels oder -1, wenn es keines gibt */
+	static int findRunStart(byte[] pixels, int offset, int length) {
+		int end = offset + length;
+		for (int i = offset + 3; i + 5 < end; i += 3) {
+			if (pixels[i] == pixels[i + 3] && pixels[i + 1] == pixels[i + 4] && pixels[i + 2] == pixels[i + 5]
+			        && (pixels[i] != pixels[i - 3] || pixels[i + 1] != pixels[i - 2]
+			                || pixels[i + 2] != pixels[i - 1])) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/** Schließt im Modus GREEDY das offene Paket ab. Vor einer mit findRunStart
+	 * gefundenen Position entspricht dies den Paketen, die ein fortlaufend
+	 * komprimierender Encoder schreibt. */
+	void writeOpenPacket() throws IOException {
+		if (rlePixelCount > 0) {
+			writeRlePacket();
+		} else if (rawPixelCount > 0) {
+			writeRawPacket();
+		}
+	}
+
+	/** Schreibt die gepufferten Bytes der abgeschlossenen Pakete, ein offenes
+	 * Paket bleibt offen. */
+	void flushCompletedPackets() throws IOException {
+		flushBlock();
+	}
+
+	/** Übernimmt im Modus GREEDY das offene Paket eines Encoders, der die
+	 * unmittelbar folgenden Pixel komprimiert hat. Das eigene offene Paket muss
+	 * zuvor mit writeOpenPacket abgeschlossen worden sein. */
+	void continueOpenPacketOf(EncoderRLEImageDataSegment followingEncoder) {
+		rawPixelCount = followingEncoder.rawPixelCount;
+		System.arraycopy(followingEncoder.rawPixels, 0, rawPixels, 0, rawPixelCount * 3);
+		rlePixelCount = followingEncoder.rlePixelCount;
+		lastPixel = followingEncoder.lastPixel;
+	}
+
+	/** Anzahl bisher geschriebener Raw-Pakete. */
+	public long getRawPacketCount() {
+		return rawPacketCount;
+	}
+
+	/** Anzahl bisher geschriebener RLE-Pakete. */
+	public long getRlePacketCount() {
+		return rlePacketCount;
+	}
+
+	private void collectPixelsInWindow(byte[] pixels, int offset, int length) throws IOException {
+		int end = offset + length;
+		for (int i = offset; i < end; i += 3) {
+			if (windowPixelCount == WINDOW_PIXELS) {
+				encodeWindowOptimal(false);
+			}
+			windowBytes[windowPixelCount * 3] = pixels[i];
+			windowBytes[windowPixelCount * 3 + 1] = pixels[i + 1];
+			windowBytes[windowPixelCount * 3 + 2] = pixels[i + 2];
+			windowPixels[windowPixelCount++] = ((pixels[i] & 0xff) << 16) | ((pixels[i + 1] & 0xff) << 8)
+			        | (pixels[i + 2] & 0xff);
+		}
+	}
+
+	/** Bestimmt die Pakete des Fensters mit minimaler Größe und schreibt sie. <br>
+	 * <br>
+	 * Kostenmodell: Ein RLE-Paket kostet 4 Bytes für bis zu 128 gleiche Pixel, ein
+	 * Raw-Paket mit k Pixeln (k bis 128) kostet 1 + 3 * k Bytes. <br>
+	 * Für die minimale Größe S(i) der ersten i Pixel gilt mit S(0) = 0: <br>
+	 * S(i) = min( min S(j) + 1 + 3 * (i - j) für i - 128 &lt;= j &lt; i, <br>
+	 * min S(j) + 4 für i - 128 &lt;= j &lt; i, wenn Pixel j bis i - 1 gleich sind)
+	 * <br>
+	 * Beide Minima werden als gleitende Minima mit monotonen Warteschlangen
+	 * bestimmt, der Aufwand ist daher linear in der Anzahl der Pixel.
+	 *
+	 * @param lastWindow false: Pakete, die in den letzten RETAINED_PIXELS Pixeln
+	 * enden, werden nicht geschrieben und ihre Pixel an den Fensteranfang
+	 * verschoben */
+	private void encodeWindowOptimal(boolean lastWindow) throws IOException {
+		int pixelCount = windowPixelCount;
+		if (pixelCount == 0) {
+			return;
+		}
+		int rawFirst = 0;
+		int rawLast = -1;
+		int rleFirst = 0;
+		int rleLast = -1;
+		minimalSize[0] = 0;
+
+		for (int i = 1; i <= pixelCount; i++) {
+			int candidate = i - 1;
+			// Raw-Paket ab j: S(j) - 3 * j minimal, Warteschlange aufsteigend sortiert
+			while (rawLast >= rawFirst && minimalSize[rawCandidates[rawLast]]
+			        - 3 * rawCandidates[rawLast] >= minimalSize[candidate] - 3 * candidate) {
+				rawLast--;
+			}
+			rawCandidates[++rawLast] = candidate;
+			while (rawCandidates[rawFirst] < i - MAX_PIXELS_IN_PACKET) {
+				rawFirst++;
+			}
+
+			// RLE-Paket ab j: nur solange alle Pixel ab j gleich sind
+			if (candidate > 0 && windowPixels[candidate] != windowPixels[candidate - 1]) {
+				rleFirst = 0;
+				rleLast = -1;
+			}
+			while (rleLast >= rleFirst && minimalSize[rleCandidates[rleLast]] >= minimalSize[candidate]) {
+				rleLast--;
+			}
+			rleCandidates[++rleLast] = candidate;
+			while (rleCandidates[rleFirst] < i - MAX_PIXELS_IN_PACKET) {
+				rleFirst++;
+			}
+
+			int rawStart = rawCandidates[rawFirst];
+			int rawSize = minimalSize[rawStart] + 1 + 3 * (i - rawStart);
+			int rleStart = rleCandidates[rleFirst];
+			int rleSize = minimalSize[rleStart] + 4;
+			// bei gleicher Größe ein RLE-Paket, es enthält weniger Bytes zum Kopieren
+			isRlePacket[i] = rleSize <= rawSize;
+			minimalSize[i] = isRlePacket[i] ? rleSize : rawSize;
+			packetStart[i] = isRlePacket[i] ? rleStart : rawStart;
+		}
+
+		// Paketenden rückwärts bestimmen, in rawCandidates zwischengespeichert
+		int packetCount = 0;
+		for (int end = pixelCount; end > 0; end = packetStart[end]) {
+			rawCandidates[packetCount++] = end;
+		}
+		int lastWrittenPixel = lastWindow ? pixelCount : pixelCount - RETAINED_PIXELS;
+		int writtenPixels = 0;
+		for (int k = packetCount - 1; k >= 0 && rawCandidates[k] <= lastWrittenPixel; k--) {
+			int end = rawCandidates[k];
+			int start = packetStart[end];
+			if (isRlePacket[end]) {
+				rlePixelCount = end - start;
+				lastPixel = windowPixels[start];
+				writeRlePacket();
+			} else {
+				rawPixelCount = end - start;
+				System.arraycopy(windowBytes, start * 3, rawPixels, 0, rawPixelCount * 3);
+				writeRawPacket();
+			}
+			writtenPixels = end;
+		}
+
+		windowPixelCount = pixelCount - writtenPixels;
+		System.arraycopy(windowPixels, writtenPixels, windowPixels, 0, windowPixelCount);
+		System.arraycopy(windowBytes, writtenPixels * 3, windowBytes, 0, windowPixelCount * 3);
+	}
+
+	private void writeRlePacket() throws IOException {
+		ensureBlockCapacity(4);
+		block[blockPosition++] = (byte) (0x80 | (rlePixelCount - 1));
+		block[blockPosition++] = (byte) (lastPixel >>> 16);
+		block[blockPosition++] = (byte) (lastPixel >>> 8);
+		block[blockPosition++] = (byte) lastPixel;
+		rlePixelCount = 0;
+		rlePacketCount++;
+	}
+
+	private void writeRawPacket() throws IOException {
+		int rawBytes = rawPixelCount * 3;
+		ensureBlockCapacity(1 + rawBytes);
+		block[blockPosition++] = (byte) (rawPixelCount - 1);
+		System.arraycopy(rawPixels, 0, block, blockPosition, rawBytes);
+		blockPosition += rawBytes;
+		rawPixelCount = 0;
+		rawPacketCount++;
+	}
+
+	private void ensureBlockCapacity(int bytesToWrite) throws IOException {
+		if (blockPosition + bytesToWrite > BLOCK_SIZE) {
+			flushBlock();
+		}
+	}
+
+	private void flushBlock() throws IOException {
+		output.write(block, 0, blockPosition);
+		checkSumOutput.update(block, 0, blockPosition);
+		blockPosition = 0;
+	}
+}
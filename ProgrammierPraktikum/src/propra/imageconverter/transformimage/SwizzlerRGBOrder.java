@@ -0,0 +1,117 @@
+package propra.imageconverter.transformimage;
+
+import propra.imageconverter.enums.EFormat;
+
+/** Instanzen dieser Klasse drehen die RGB-Bytes von Pixeln aus der Reihenfolge
+ * des Input-Formates in die des Output-Formates. <br>
+ * Für jedes Paar aus TGA und ProPra wird die Permutation einmalig beim Laden
+ * der Klasse berechnet, Instanzen sind unveränderlich und können von mehreren
+ * Threads gleichzeitig genutzt werden. Gedreht wird im übergebenen Array ohne
+ * zusätzlichen Speicher, je Schleifendurchlauf vier Pixel. Stimmen die
+ * Reihenfolgen überein, wird nichts getan.
+ *
+ * @author Martina Koch */
+public final class SwizzlerRGBOrder {
+	private static final EFormat[] FORMATS = { EFormat.TGA, EFormat.PROPRA };
+	private static final SwizzlerRGBOrder[][] SWIZZLERS = new SwizzlerRGBOrder[FORMATS.length][FORMATS.length];
+	static {
+		for (int input = 0; input < FORMATS.length; input++) {
+			for (int output = 0; output < FORMATS.length; output++) {
+				SWIZZLERS[input][output] = new SwizzlerRGBOrder(EFormat.getRGBOrder(FORMATS[input]),
+				        EFormat.getRGBOrder(FORMATS[output]));
+			}
+		}
+	}
+
+	/** Position im Input-Pixel für Byte 0, 1 und 2 des Output-Pixels */
+	private final int source0;
+	private final int source1;
+	private final int source2;
+	/** Position im Output-Pixel für jedes Byte des Input-Pixels */
+	private final int[] targetPositions = new int[3];
+	private final boolean isIdentity;
+
+	private SwizzlerRGBOrder(byte[] RGBOrderInput, byte[] RGBOrderOutput) {
+		int[] sourcePositions = new int[3];
+		for (int color = 0; color < 3; color++) {
+			sourcePositions[RGBOrderOutput[color]] = RGBOrderInput[color];
+			targetPositions[RGBOrderInput[color]] = RGBOrderOutput[color];
+		}
+		source0 = sourcePositions[0];
+		source1 = sourcePositions[1];
+		source2 = sourcePositions[2];
+		isIdentity = source0 == 0 && source1 == 1 && source2 == 2;
+	}
+
+	/** Gibt den Swizzler von Input- zu Output-Format zurück. */
+	public static SwizzlerRGBOrder of(EFormat inputFormat, EFormat outputFormat) {
+		return SWIZZLERS[indexOf(inputFormat)][indexOf(outputFormat)];
+	}
+
+	private static int indexOf(EFormat format) {
+		switch (format) {
+		case TGA:
+			return 0;
+		case PROPRA:
+			return 1;
+		default:
+			throw new IllegalArgumentException("Unerwartetes Dateiformat: " + format);
+		}
+	}
+
+	/** true, wenn Input- und Output-Reihenfolge übereinstimmen. */
+	public boolean isIdentity() {
+		return isIdentity;
+	}
+
+	/** Position im Output-Pixel für Byte inputPosition (0 bis 2) des
+	 * Input-Pixels. */
+	public int getTargetPosition(int inputPosition) {
+		return targetPositions[inputPosition];
+	}
+
+	/** Dreht die RGB-Bytes von length Bytes (Vielfaches von 3) ab offset im
+	 * Array. */
+	public void swizzle(byte[] pixels, int offset, int length) {
+		if (isIdentity) {
+			return;
+		}
+		int end = offset + length;
+		int i = offset;
+		// vier Pixel je Durchlauf, alle Bytes werden vor dem Schreiben gelesen
+		for (; i + 12 <= end; i += 12) {
+			byte a0 = pixels[i + source0];
+			byte a1 = pixels[i + source1];
+			byte a2 = pixels[i + source2];
+			byte b0 = pixels[i + 3 + source0];
+			byte b1 = pixels[i + 3 + source1];
+			byte b2 = pixels[i + 3 + source2];
+			byte c0 = pixels[i + 6 + source0];
+			byte c1 = pixels[i + 6 + source1];
+			byte c2 = pixels[i + 6 + source2];
+			byte d0 = pixels[i + 9 + source0];
+			byte d1 = pixels[i + 9 + source1];
+			byte d2 = pixels[i + 9 + source2];
+			pixels[i] = a0;
+			pixels[i + 1] = a1;
+			pixels[i + 2] = a2;
+			pixels[i + 3] = b0;
+			pixels[i + 4] = b1;
+			pixels[i + 5] = b2;
+			pixels[i + 6] = c0;
+			pixels[i + 7] = c1;
+			pixels[i + 8] = c2;
+			pixels[i + 9] = d0;
+			pixels[i + 10] = d1;
+			pixels[i + 11] = d2;
+		}
+		for (; i < end; i += 3) {
+			byte p0 = pixels[i + source0];
+			byte p1 = pixels[i + source1];
+			byte p2 = pixels[i + source2];
+			pixels[i] = p0;
+			pixels[i + 1] = p1;
+			pixels[i + 2] = p2;
+		}
+	}
+}
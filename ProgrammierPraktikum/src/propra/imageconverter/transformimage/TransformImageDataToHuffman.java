@@ -0,0 +1,217 @@
+package propra.imageconverter.transformimage;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import propra.imageconverter.ConversionFiles;
+import propra.imageconverter.ImageConverterException;
+import propra.imageconverter.Model;
+import propra.imageconverter.channel.IPositionalChannel;
+import propra.imageconverter.checksum.CheckSum;
+import propra.imageconverter.enums.EFormat;
+import propra.imageconverter.utilities.BufferCache;
+
+/** Instanz dieser Klasse transformiert die Bilddaten zu Huffman (nur
+ * ProPra-Ausgabedatei). <br>
+ * Im ersten Durchlauf wird die Häufigkeit jedes Byte-Wertes bestimmt, bei
+ * unkomprimierten Eingabedateien parallel über Abschnitte des
+ * Bilddatensegmentes. Im zweiten Durchlauf werden Huffman-Tree und Codes
+ * blockweise in das Output-File geschrieben, ohne das Bild vollständig im
+ * Speicher zu halten. <br>
+ * Die Häufigkeiten hängen nicht von der RGB-Reihenfolge ab, daher wird erst im
+ * zweiten Durchlauf gedreht.
+ *
+ * @author Martina Koch */
+public class TransformImageDataToHuffman {
+	/** Größe des Lesepuffers in Bytes, Vielfaches von 3 */
+	private static final int BLOCK_SIZE = 3 * 16 * 1024;
+	/** minimale Abschnittsgröße für parallele Häufigkeitsbestimmung */
+	private static final long MIN_HISTOGRAM_CHUNK_SIZE = 1024 * 1024;
+	/** maximale Abschnittsgröße, die auf einmal in den Speicher abgebildet wird */
+	private static final long MAX_HISTOGRAM_CHUNK_SIZE = 1 << 30;
+	private Model model;
+	private SwizzlerRGBOrder swizzler;
+	private CheckSum checkSumInput;
+	private CheckSum checkSumOutput;
+	private long realDataSegmentSizeInFileToRead;
+
+	private ConversionFiles conversionFiles;
+	private InputStream imageDataInput;
+	private OutputStream imageDataOutput;
+
+	public TransformImageDataToHuffman(Model model) throws IOException, ImageConverterException {
+		this.model = model;
+		this.conversionFiles = model.getConversionFiles();
+
+		imageDataOutput = conversionFiles.openOutputStream(model.getOutputFormat().getHeaderLength());
+
+		realDataSegmentSizeInFileToRead = model.getRealDataSegmentSizeInputFile();
+
+		initializeCheckSumInputOutputFile();
+		assignInputOutputRGBOrder();
+		chooseImageDataSegementTransformation();
+
+		imageDataOutput.close();
+	}
+
+	private void chooseImageDataSegementTransformation() throws IOException, ImageConverterException {
+		switch (model.getInputCompressionType()) {
+		case UNCOMPRESSED:
+			convertUncompressedToHuffman();
+			break;
+		case RLE:
+			convertRleToHuffman();
+			break;
+		default:
+			break;
+		}
+	}
+
+	private void assignInputOutputRGBOrder() {
+		swizzler = SwizzlerRGBOrder.of(model.getInputFormat(), model.getOutputFormat());
+	}
+
+	/** Intitalisiere CheckSumInput/Output mit 0, wenn Propra-Datei
+	 * eingelesen/ausgegeben wird, sonst -1; */
+	private void initializeCheckSumInputOutputFile() {
+		checkSumInput = model.getInputFormat().equals(EFormat.PROPRA) ? new CheckSum(0) : new CheckSum(-1);
+		checkSumOutput = model.getOutputFormat().equals(EFormat.PROPRA) ? new CheckSum(0) : new CheckSum(-1);
+	}
+
+	public void convertUncompressedToHuffman() throws IOException, ImageConverterException {
+		EncoderHuffmanTree huffmanTree = new EncoderHuffmanTree(calculateByteHistogramInParallel());
+		imageDataInput = conversionFiles.openInputStream(model.getInputFormat().getHeaderLength());
+		encodeImageData(huffmanTree, null);
+	}
+
+	public void convertRleToHuffman() throws IOException, ImageConverterException {
+		long headerLength = model.getInputFormat().getHeaderLength();
+		long[] byteHistogram = new long[256];
+		byte[] pixelBlock = BufferCache.take(BLOCK_SIZE);
+		int bytesRead;
+
+		// RLE-Pakete lassen sich nicht ohne Dekodierung aufteilen, daher sequentiell
+		DecoderRLEImageDataSegment rleDecoder = new DecoderRLEImageDataSegment(
+		        conversionFiles.openInputStream(headerLength), realDataSegmentSizeInFileToRead, new CheckSum(-1));
+		while ((bytesRead = rleDecoder.readPixels(pixelBlock, 0, BLOCK_SIZE)) > 0) {
+			for (int i = 0; i < bytesRead; i++) {
+				byteHistogram[pixelBlock[i] & 0xff]++;
+			}
+		}
+		EncoderHuffmanTree huffmanTree = new EncoderHuffmanTree(byteHistogram);
+
+		encodeImageData(huffmanTree, new DecoderRLEImageDataSegment(conversionFiles.openInputStream(headerLength),
+		        realDataSegmentSizeInFileToRead, checkSumInput));
+	}
+
+	/** Schreibt Huffman-Tree und die Codes aller Bytes des Bilddatensegmentes.
+	 *
+	 * @param rleDecoder Dekoder für RLE-Eingabedatei, null bei unkomprimierter
+	 * Eingabedatei */
+	private void encodeImageData(EncoderHuffmanTree huffmanTree, DecoderRLEImageDataSegment rleDecoder)
+	        throws IOException {
+		long[] codes = huffmanTree.getCodes();
+		int[] codeLengths = huffmanTree.getCodeLengths();
+		BitWriterHuffman bitWriter = new BitWriterHuffman(imageDataOutput, checkSumOutput);
+		byte[] pixelBlock = BufferCache.take(BLOCK_SIZE);
+		int bytesRead;
+
+		huffmanTree.writeHuffmanTree(bitWriter);
+		while ((bytesRead = readNextPixelBlock(pixelBlock, rleDecoder)) > 0) {
+			swizzler.swizzle(pixelBlock, 0, bytesRead);
+			for (int i = 0; i < bytesRead; i++) {
+				int value = pixelBlock[i] & 0xff;
+				bitWriter.writeBits(codes[value], codeLengths[value]);
+			}
+		}
+		bitWriter.flush();
+
+		model.getMetrics().addCheckSumTime(checkSumInput, checkSumOutput);
+		model.setCheckSumInputFile(checkSumInput.finallyCalculateChecksum());
+		model.setCheckSumOutputFile(checkSumOutput.finallyCalculateChecksum());
+	}
+
+	private int readNextPixelBlock(byte[] pixelBlock, DecoderRLEImageDataSegment rleDecoder) throws IOException {
+		if (rleDecoder != null) {
+			return rleDecoder.readPixels(pixelBlock, 0, BLOCK_SIZE);
+		}
+		int bytesToRead = (int) Math.min(BLOCK_SIZE, realDataSegmentSizeInFileToRead);
+		int bytesRead = 0;
+		while (bytesRead < bytesToRead) {
+			int n = imageDataInput.read(pixelBlock, bytesRead, bytesToRead - bytesRead);
+			if (n == -1) {
+				break;
+			}
+			bytesRead += n;
+		}
+		checkSumInput.update(pixelBlock, 0, bytesRead);
+		realDataSegmentSizeInFileToRead -= bytesRead;
+		return bytesRead;
+	}
+
+	/** Bestimmt die Häufigkeit jedes Byte-Wertes im unkomprimierten
+	 * Bilddatensegment. Jeder Abschnitt wird in einem eigenen Thread in ein
+	 * eigenes long[256]-Array gezählt, die Arrays werden abschließend addiert. */
+	private long[] calculateByteHistogramInParallel() throws IOException {
+		IPositionalChannel inputChannel = conversionFiles.getInputChannel();
+		long dataSegmentStart = model.getInputFormat().getHeaderLength();
+		long dataSegmentSize = realDataSegmentSizeInFileToRead;
+		// Abschnitte werden abgebildet und müssen daher vollständig vorhanden sein
+		if (dataSegmentStart + dataSegmentSize > inputChannel.size()) {
+			throw new EOFException("Bilddatensegment ist kürzer als im Header angegeben");
+		}
+		int threads = Runtime.getRuntime().availableProcessors();
+		long chunkSize = Math.min(MAX_HISTOGRAM_CHUNK_SIZE,
+		        Math.max(MIN_HISTOGRAM_CHUNK_SIZE, (dataSegmentSize + threads - 1) / threads));
+
+		List<Future<long[]>> chunkHistograms = new ArrayList<>();
+		for (long position = 0; position < dataSegmentSize; position += chunkSize) {
+			long chunkStart = dataSegmentStart + position;
+			long chunkLength = Math.min(chunkSize, dataSegmentSize - position);
+			chunkHistograms.add(ForkJoinPool.commonPool()
+			        .submit(() -> calculateByteHistogramOfChunk(inputChannel, chunkStart, chunkLength)));
+		}
+
+		long[] byteHistogram = new long[256];
+		try {
+			for (Future<long[]> chunkHistogram : chunkHistograms) {
+				long[] histogram = chunkHistogram.get();
+				for (int value = 0; value < 256; value++) {
+					byteHistogram[value] += histogram[value];
+				}
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IOException("Häufigkeitsbestimmung fehlgeschlagen: " + e.getMessage(), e);
+		}
+		return byteHistogram;
+	}
+
+	private static long[] calculateByteHistogramOfChunk(IPositionalChannel inputChannel, long position, long length)
+	        throws IOException {
+		long[] histogram = new long[256];
+		ByteBuffer mappedChunk = inputChannel.mapReadOnly(position, length);
+		// der Block bleibt im Cache des ausführenden Worker-Threads
+		BufferCache.Scope bufferScope = BufferCache.openScope();
+		try {
+			byte[] block = BufferCache.take(BLOCK_SIZE);
+			while (mappedChunk.hasRemaining()) {
+				int bytesToCount = Math.min(BLOCK_SIZE, mappedChunk.remaining());
+				mappedChunk.get(block, 0, bytesToCount);
+				for (int i = 0; i < bytesToCount; i++) {
+					histogram[block[i] & 0xff]++;
+				}
+			}
+		} finally {
+			bufferScope.close();
+		}
+		return histogram;
+	}
+}
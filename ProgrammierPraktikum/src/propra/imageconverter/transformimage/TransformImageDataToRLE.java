@@ -1,91 +1,103 @@
 package propra.imageconverter.transformimage;
 
 import java.io.*;
-import java.nio.ByteBuffer;
-import java.util.Arrays;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+import propra.imageconverter.ConversionFiles;
 import propra.imageconverter.Model;
 import propra.imageconverter.checksum.CheckSum;
+import propra.imageconverter.enums.ECompressionType;
+import propra.imageconverter.enums.ECounter;
 import propra.imageconverter.enums.EFormat;
+import propra.imageconverter.enums.ERleMode;
+import propra.imageconverter.pipeline.PipelinedInputStream;
+import propra.imageconverter.pipeline.PipelinedOutputStream;
+import propra.imageconverter.utilities.BufferCache;
 
 /** Instanz dieser Klasse transformiert die Bilddaten zu RLE. <br>
  * Für eine höhere Verarbeitungsgeschwindigkeit wird das Bild nur einmal *
  * eingelesen und ausgegeben und hierbei die Checksumme - wenn nötig - berechnet
- * und ggf. die Pixeldaten gedreht.
+ * und ggf. die Pixeldaten gedreht. Unkomprimierte Bilder ab zwei Streifen
+ * werden im Modus GREEDY streifenweise parallel zu denselben Paketen
+ * komprimiert, im Modus OPTIMAL hängen die Pakete von allen vorangehenden
+ * Fenstern ab und werden fortlaufend bestimmt. <br>
+ * Im Pipeline-Betrieb lesen, prüfen und schreiben eigene Threads, die
+ * Transformation dreht und komprimiert nur noch die Pixel.
  *
  * @author Martina Koch */
 public class TransformImageDataToRLE {
+	/** Größe des Lesepuffers in Bytes, Vielfaches von 3 */
+	private static final int BLOCK_SIZE = 3 * 64 * 1024;
+	/** ungefähre Größe eines parallel komprimierten Streifens in Bytes */
+	private static final int STRIPE_SIZE = 1024 * 1024;
 	private Model model;
-	private byte[] RGBOrderInput;
-	private byte[] RGBOrderOutput;
+	private SwizzlerRGBOrder swizzler;
 	private CheckSum checkSumInput;
 	private CheckSum checkSumOutput;
 	private long realDataSegmentSizeInFileToRead;
-	private long pixelToRead;
-	private long pixelToCompressInOutputFile;
+	/** false bei fortlaufend gelesener Standardeingabe, deren Ende erst beim Lesen erkannt wird */
+	private boolean isInputLengthKnown;
 
-	private BufferedOutputStream bufferedOutputStream;
-	private BufferedInputStream bufferedInputStream;
-	private RandomAccessFile randomAccessFileInput;
-	private RandomAccessFile randomAccessFileOutput;
+	private OutputStream bufferedOutputStream;
+	private DataOutputStream imageDataOutput;
+	private InputStream bufferedInputStream;
+	private PipelinedInputStream pipelinedInputStream;
+	private PipelinedOutputStream pipelinedOutputStream;
 
-	/** Normaler Konstruktor, wenn kein Huffman-Bild zu RLE transformiert werden
-	 * soll. */
 	public TransformImageDataToRLE(Model model) throws IOException {
 		this.model = model;
 
-		randomAccessFileInput = new RandomAccessFile(model.getInputFilePath(), "r");
-		randomAccessFileOutput = new RandomAccessFile(model.getOutputFilePath(), "rw");
-		bufferedInputStream = new BufferedInputStream(new FileInputStream(randomAccessFileInput.getFD()));
-		bufferedOutputStream = new BufferedOutputStream(new FileOutputStream(randomAccessFileOutput.getFD()));
-
-		randomAccessFileOutput.seek(model.getOutputFormat().getHeaderLength());
-		randomAccessFileInput.seek(model.getInputFormat().getHeaderLength());
-
 		realDataSegmentSizeInFileToRead = model.getRealDataSegmentSizeInputFile();
-		pixelToRead = realDataSegmentSizeInFileToRead / 3;
+		isInputLengthKnown = model.getConversionFiles().isInputLengthKnown();
 
 		initializeCheckSumInputOutputFile();
+		openStreams(model.getConversionFiles());
+		imageDataOutput = new DataOutputStream(bufferedOutputStream);
 		assignInputOutputRGBOrder();
 		chooseImageDataSegementTransformation();
 
-		bufferedInputStream.close();
 		bufferedOutputStream.close();
+		bufferedInputStream.close();
+		finallyCalculateCheckSum();
 	}
 
-	/** Konstruktor, um aus unkomprimierten Daten einer bereits im ersten Schritt
-	 * dekodierten Huffman-Eingabedatei eine RLE Komprimierung zu erstellen. */
-	public TransformImageDataToRLE(Model model, RandomAccessFile randomAccessInputFile) throws IOException {
-		this.model = model;
-		// nutze bereits geschriebene OutputDaten als InputFile
-		this.randomAccessFileInput = randomAccessInputFile;
-		bufferedInputStream = new BufferedInputStream(new FileInputStream(randomAccessInputFile.getFD()));
-
-		// erstelle temporäres File, in dem Bilddaten zu RLE komprimiert werden
-		File temporaryOutputFile = File.createTempFile("imageConverterTempFile", null);
-		model.setTemporaryFile(temporaryOutputFile);
-		randomAccessFileOutput = new RandomAccessFile(temporaryOutputFile, "rw");
-		bufferedOutputStream = new BufferedOutputStream(new FileOutputStream(randomAccessFileOutput.getFD()));
-
-		/* da randomAccessInputFile bereits in Output-Zielformat mit Platz für Header
-		 * geschrieben ist, muss Header-Länge des Output-Formates abgezogen werden */
-		realDataSegmentSizeInFileToRead = randomAccessInputFile.length() - model.getOutputFormat().getHeaderLength();
-		pixelToRead = realDataSegmentSizeInFileToRead / 3;
-
-		// Checksumme InputFile wurde bereits bei Dekodierung Huffman-Datei berechnet
-		checkSumInput = new CheckSum(-1);
-		checkSumOutput = model.getOutputFormat().equals(EFormat.PROPRA) ? new CheckSum(0) : new CheckSum(-1);
-
-		RGBOrderInput = model.getOutputRGBOrder();
-		RGBOrderOutput = model.getOutputRGBOrder();
+	/** Öffnet Input- und Output-Stream. Im Pipeline-Betrieb schreiben die
+	 * Checksummen-Threads die Checksummen fort, die Transformation erhält
+	 * Checksummen, die nicht berechnet werden. */
+	private void openStreams(ConversionFiles conversionFiles) throws IOException {
+		long inputPosition = model.getInputFormat().getHeaderLength();
+		long outputPosition = model.getOutputFormat().getHeaderLength();
+		if (model.getPipelinedExecution() && !model.getInputCompressionType().equals(ECompressionType.HUFFMAN)) {
+			pipelinedInputStream = conversionFiles.openPipelinedInputStream(inputPosition,
+			        realDataSegmentSizeInFileToRead, checkSumInput);
+			pipelinedOutputStream = conversionFiles.openPipelinedOutputStream(outputPosition, checkSumOutput);
+			bufferedInputStream = pipelinedInputStream;
+			bufferedOutputStream = pipelinedOutputStream;
+			checkSumInput = new CheckSum(-1);
+			checkSumOutput = new CheckSum(-1);
+		} else {
+			bufferedInputStream = conversionFiles.openInputStream(inputPosition);
+			bufferedOutputStream = conversionFiles.openOutputStream(outputPosition);
+		}
+	}
 
-		randomAccessFileInput.seek(model.getOutputFormat().getHeaderLength());
-		randomAccessFileOutput.seek(0L);
+	/** Übernimmt die Checksummen ins Model, im Pipeline-Betrieb erst nach dem
+	 * Schließen der Streams vollständig. */
+	private void finallyCalculateCheckSum() {
+		if (pipelinedInputStream != null) {
+			checkSumInput = pipelinedInputStream.getCheckSum();
+			checkSumOutput = pipelinedOutputStream.getCheckSum();
+		}
+		model.getMetrics().addCheckSumTime(checkSumInput, checkSumOutput);
+		model.setCheckSumInputFile(checkSumInput.finallyCalculateChecksum());
+		model.setCheckSumOutputFile(checkSumOutput.finallyCalculateChecksum());
 	}
 
 	private void assignInputOutputRGBOrder() {
-		RGBOrderInput = model.getInputRGBOrder();
-		RGBOrderOutput = model.getOutputRGBOrder();
+		swizzler = SwizzlerRGBOrder.of(model.getInputFormat(), model.getOutputFormat());
 	}
 
 	/** Intitalisiere CheckSumInput/Output mit 0, wenn Propra-Datei
@@ -98,7 +110,12 @@ public class TransformImageDataToRLE {
 	private void chooseImageDataSegementTransformation() throws IOException {
 		switch (model.getInputCompressionType()) {
 		case UNCOMPRESSED:
-			convertUncompressedToRle();
+			int stripeSize = getStripeSize();
+			if (model.getRleMode() == ERleMode.GREEDY && realDataSegmentSizeInFileToRead >= 2L * stripeSize) {
+				convertUncompressedToRleInStripes(stripeSize);
+			} else {
+				convertUncompressedToRle();
+			}
 			break;
 		case RLE:
 			convertRleToRle();
@@ -110,262 +127,246 @@ public class TransformImageDataToRLE {
 		}
 	}
 
+	/** Übernimmt die Pakete unverändert und dreht nur die RGB-Bytes in den
+	 * Paketen. Die Pakete werden blockweise gelesen, ein am Blockende
+	 * unvollständiges Paket wird an den Anfang des nächsten Blockes verschoben.
+	 * Eine fortlaufend gelesene Standardeingabe endet mit dem letzten Block.
+	 * <br>
+	 * Im RLE-Modus OPTIMAL werden die Pakete stattdessen zu Pixeln expandiert und
+	 * neu komprimiert. */
 	public void convertRleToRle() throws IOException {
+		byte[] block = BufferCache.take(BLOCK_SIZE);
+		EncoderRLEImageDataSegment rleEncoder = model.getRleMode() == ERleMode.OPTIMAL
+		        ? new EncoderRLEImageDataSegment(imageDataOutput, checkSumOutput, ERleMode.OPTIMAL)
+		        : null;
+		byte[] repeatedPixels = new byte[128 * 3];
+		// Bytes eines unvollständigen Paketes am Anfang des Blockes
+		int incompletePacketLength = 0;
+		long rlePacketCount = 0;
+		long packetCount = 0;
 		long bytesToRead = realDataSegmentSizeInFileToRead;
-		byte[] rbgOutOfInputFile = new byte[3];
-		byte packetHeader;
-		byte[] turnedRGB = new byte[3];
 
-		while (bytesToRead >= 1) {
-			// lese Paket-Header
-			packetHeader = randomAccessFileInput.readByte();
-			checkSumInput.calculateCheckSumForByteArray(ByteBuffer.allocate(1).put(packetHeader).array());
-			bytesToRead--;
-
-			/* bestimme Pakettyp: Raw (0), RLE(1), maskieren mit 0x1, Bitschieben mit ">>>"
-			 * um 7 Stellen */
-			int bitID = ((packetHeader >>> 7) & 0x1);
-			/* über logische UND-Verknüpfung mit 0x7f, d.h. 01111 1111 Anzahl Wdh. RLE-Paket
-			 * RGB-Werte bzw. Anzahl Raw-Paket unterschiedliche RGB-Werte ermitteln */
-			short repetitions = (short) ((packetHeader & 0x7f));
-
-			// IDbyte: RLE-Packet
-			if (bitID == 1) {
-				// Header + 3 Bytes für RGB
-				byte[] paketArray = new byte[1 + 3];
-				paketArray[0] = packetHeader;
-
-				// liest drei Folgebytes für RGB in rgb-Array
-				randomAccessFileInput.read(rbgOutOfInputFile);
-				checkSumInput.calculateCheckSumForByteArray(rbgOutOfInputFile);
-				bytesToRead -= 3;
-				turnedRGB = turnToOutputRGBOrder(rbgOutOfInputFile);
-
-				// Schreibe Header plus erstes RGB Information in PaketArray
-				for (int i = 0; i < turnedRGB.length; i++) {
-					paketArray[i + 1] = turnedRGB[i];
+		while (bytesToRead > 0) {
+			int length = (int) Math.min(block.length - incompletePacketLength, bytesToRead);
+			int bytesRead = bufferedInputStream.readNBytes(block, incompletePacketLength, length);
+			if (bytesRead < length) {
+				if (isInputLengthKnown) {
+					throw new EOFException("Bilddatensegment ist kürzer als im Header angegeben");
 				}
-
-				randomAccessFileOutput.write(paketArray);
-				checkSumOutput.calculateCheckSumForByteArray(paketArray);
+				length = bytesRead;
+				bytesToRead = length;
 			}
-
-			// IDbyte: Raw-Paket
-			else {
-				// Header und zu schreibende RGB-Werte
-				byte[] paketArray = new byte[1 + (repetitions + 1) * 3];
-				paketArray[0] = packetHeader;
-
-				for (int j = 0; j < (repetitions + 1); j++) {
-					// jeweils drei Folgebytes für RGB in paketArray
-					randomAccessFileInput.read(rbgOutOfInputFile);
-					checkSumInput.calculateCheckSumForByteArray(rbgOutOfInputFile);
-					bytesToRead -= 3;
-					// drehen RGB-Reihenfolge
-					turnedRGB = turnToOutputRGBOrder(rbgOutOfInputFile);
-
-					paketArray[j * 3 + 1] = turnedRGB[0];
-					paketArray[j * 3 + 2] = turnedRGB[1];
-					paketArray[j * 3 + 3] = turnedRGB[2];
+			checkSumInput.update(block, incompletePacketLength, length);
+			bytesToRead -= length;
+			int blockEnd = incompletePacketLength + length;
+
+			int packetStart = 0;
+			while (packetStart < blockEnd) {
+				int packetHeader = block[packetStart] & 0xff;
+				// RLE-Paket: ein Pixel, Raw-Paket: (Header & 0x7f) + 1 Pixel
+				int pixelBytes = packetHeader >= 0x80 ? 3 : ((packetHeader & 0x7f) + 1) * 3;
+				if (packetStart + 1 + pixelBytes > blockEnd) {
+					break;
+				}
+				swizzler.swizzle(block, packetStart + 1, pixelBytes);
+				if (rleEncoder != null) {
+					writePacketPixels(rleEncoder, block, packetStart, repeatedPixels);
+				} else if (packetHeader >= 0x80) {
+					rlePacketCount++;
 				}
-				randomAccessFileOutput.write(paketArray);
-				checkSumOutput.calculateCheckSumForByteArray(paketArray);
+				packetStart += 1 + pixelBytes;
+				packetCount++;
 			}
+
+			if (rleEncoder == null) {
+				bufferedOutputStream.write(block, 0, packetStart);
+				checkSumOutput.update(block, 0, packetStart);
+			}
+			incompletePacketLength = blockEnd - packetStart;
+			System.arraycopy(block, packetStart, block, 0, incompletePacketLength);
+		}
+		if (incompletePacketLength > 0) {
+			throw new EOFException("Bilddatensegment endet innerhalb eines Paketes");
+		}
+		if (rleEncoder != null) {
+			rleEncoder.finish();
+			model.getMetrics().addPacketCounts(rleEncoder);
+		} else {
+			model.getMetrics().add(ECounter.RLE_RAW_PACKETS, packetCount - rlePacketCount);
+			model.getMetrics().add(ECounter.RLE_RUN_PACKETS, rlePacketCount);
 		}
-		model.setCheckSumInputFile(checkSumInput.finallyCalculateChecksum());
-		model.setCheckSumOutputFile(checkSumOutput.finallyCalculateChecksum());
 	}
 
-	public void convertUncompressedToRle() throws IOException {
-		System.out.println("convert uncompressed to rle");
-		// Array mit Länge drei für RGB-Repräsentation eines Pixels im Bild
-		byte[] pixelToCompareTo = new byte[3];
-		byte[] nextPixel = new byte[3];
-		/* 1 Byte Header, 3 Byte für Pixel, maximal 128 gleiche Pixel im Paket, (0x80
-		 * hex für 1000 0000 bin) */
-		byte[] rlePaket = new byte[4];
-		// maximal 127+1 Pixel
-		byte rlePaketRepetitionCounter = 0;
-		/* maximale Größe: 1 Byte Header, 128*3 Bytes für nachfolgende, unterschiedliche
-		 * Pixel */
-		byte[] rawPaket = new byte[(128 * 3) + 1];
-		// zählt nachfolgende unterschiedliche Pixel-RGB-Werte, maximal 127 +1
-		int rawPaketPixelCounter = 0;
-		byte[] actualReadByteFromInputStream = new byte[3];
-		this.pixelToCompressInOutputFile = realDataSegmentSizeInFileToRead / 3;
-		this.pixelToRead = realDataSegmentSizeInFileToRead / 3;
-
-		// Lese erstes Pixel vor while-Schleife
-		actualReadByteFromInputStream = readNextPixelFromInputStream();
-		checkSumInput.calculateCheckSumForByteArray(actualReadByteFromInputStream);
-		pixelToCompareTo = turnToOutputRGBOrder(actualReadByteFromInputStream);
-
-		while (pixelToCompressInOutputFile > 0) {
-			rlePaketRepetitionCounter = 0;
-			rawPaketPixelCounter = 0;
-
-			// I. Behandlung Sonderfälle
-			/* nur noch ein Pixel zu schreiben (entweder Datei mit nur einem Pixel oder am
-			 * Ende) */
-			if (pixelToRead == 0) {
-				if (pixelToCompressInOutputFile == 1) {
-					writeToRawPaketArray(rawPaket, pixelToCompareTo, rawPaketPixelCounter);
-					rawPaketPixelCounter++;
-					pixelToCompressInOutputFile--;
-					// Schreibe Raw-Paket
-					rawPaket[0] = (byte) (rawPaketPixelCounter - 1);
-					randomAccessFileOutput.write(rawPaket, 0, rawPaketPixelCounter * 3 + 1);
-					// pixelToCompressInOutputFile -= rawPaketPixelCounter + 1;
-					checkSumOutput.calculateCheckSumForByteArray(
-					        Arrays.copyOfRange(rawPaket, 0, rawPaketPixelCounter * 3 + 1));
-				}
+	/** Übergibt die Pixel des Paketes ab packetStart an den Encoder. */
+	private void writePacketPixels(EncoderRLEImageDataSegment rleEncoder, byte[] block, int packetStart,
+	        byte[] repeatedPixels) throws IOException {
+		int packetHeader = block[packetStart] & 0xff;
+		int pixelCount = (packetHeader & 0x7f) + 1;
+		if (packetHeader < 0x80) {
+			rleEncoder.writePixels(block, packetStart + 1, pixelCount * 3);
+			return;
+		}
+		for (int i = 0; i < pixelCount * 3; i += 3) {
+			repeatedPixels[i] = block[packetStart + 1];
+			repeatedPixels[i + 1] = block[packetStart + 2];
+			repeatedPixels[i + 2] = block[packetStart + 3];
+		}
+		rleEncoder.writePixels(repeatedPixels, 0, pixelCount * 3);
+	}
 
-				/* d.h. noch zwei unterschiedliche Pixel zu schreiben */
-				else if (pixelToCompressInOutputFile == 2) {
-					if (!Arrays.equals(pixelToCompareTo, nextPixel)) { /* Raw-Paket */
-						writeToRawPaketArray(rawPaket, pixelToCompareTo, rawPaketPixelCounter);
-						rawPaketPixelCounter++;
-						writeToRawPaketArray(rawPaket, nextPixel, rawPaketPixelCounter);
-						rawPaketPixelCounter++;
-						pixelToCompressInOutputFile -= 2;
-						// Schreibe Raw-Paket
-						rawPaket[0] = (byte) (rawPaketPixelCounter - 1);
-						randomAccessFileOutput.write(rawPaket, 0, rawPaketPixelCounter * 3 + 1);
-						// pixelToCompressInOutputFile -= rawPaketPixelCounter + 1;
-						checkSumOutput.calculateCheckSumForByteArray(
-						        Arrays.copyOfRange(rawPaket, 0, rawPaketPixelCounter * 3 + 1));
-					} else { /* RLE-Paket */
-						rlePaket[0] = (byte) 0x81; /* für 1000 0001 */
-						System.arraycopy(pixelToCompareTo, 0, rlePaket, 1, 3);
-						writeRLEPaketArrayToOutputFile(rlePaket);
-						checkSumOutput.calculateCheckSumForByteArray(rlePaket);
-					}
-				}
+	/** Liest die Pixel blockweise, dreht sie im Block in Output-RGB-Reihenfolge
+	 * und komprimiert sie mit EncoderRLEImageDataSegment. */
+	public void convertUncompressedToRle() throws IOException {
+		EncoderRLEImageDataSegment rleEncoder = new EncoderRLEImageDataSegment(imageDataOutput, checkSumOutput,
+		        model.getRleMode());
+		byte[] pixels = BufferCache.take(BLOCK_SIZE);
+		// unvollständiges letztes Pixel wird nicht komprimiert
+		long bytesToRead = realDataSegmentSizeInFileToRead - realDataSegmentSizeInFileToRead % 3;
+
+		while (bytesToRead > 0) {
+			int length = (int) Math.min(pixels.length, bytesToRead);
+			if (bufferedInputStream.readNBytes(pixels, 0, length) < length) {
+				throw new EOFException("Bilddatensegment ist kürzer als im Header angegeben");
 			}
+			checkSumInput.update(pixels, 0, length);
+			swizzler.swizzle(pixels, 0, length);
+			rleEncoder.writePixels(pixels, 0, length);
+			bytesToRead -= length;
+		}
+		rleEncoder.finish();
+		model.getMetrics().addPacketCounts(rleEncoder);
+	}
 
-			// II. Normaler Ablauf
-			// mindestens ein Pixel noch in Datei zu lesen
-			else if (pixelToRead >= 1) {
-				if (!(pixelToCompressInOutputFile - 2 == pixelToRead)) {
-					// lese zweites, nachfolgendes Pixel und drehe in richtige Reihenfolge
-					actualReadByteFromInputStream = readNextPixelFromInputStream();
-					checkSumInput.calculateCheckSumForByteArray(actualReadByteFromInputStream);
-					nextPixel = turnToOutputRGBOrder(actualReadByteFromInputStream);
-					/* jetzt sind zwei Pixel pixelToCompareTo und nextPixel eingelesen, die
-					 * verglichen werden */
-				}
-
-				// RLE-Paket startet
-				/* FALL 1: Pixel pixelToCompareTo und nextPixel sind gleich, also Anfang eines
-				 * Rle-Paketes */
-				if (Arrays.equals(pixelToCompareTo, nextPixel)) {
-					System.arraycopy(pixelToCompareTo, 0, rlePaket, 1, 3);
-					while (Arrays.equals(pixelToCompareTo, nextPixel) && (pixelToRead > 0)
-					        && rlePaketRepetitionCounter <= 126) {
-						/* erhöhe Wdh. Counter, da ein weiteres Pixel mit erstem übereinstimmt, erste
-						 * Wiederholung wird mit 1 gezählt, letzte maximal 127 */
-						// erster zu Wiederholender Pixel hat Counter Wert 1
-						rlePaketRepetitionCounter++;
-
-						// lese nachfolgenden Pixel
-						actualReadByteFromInputStream = readNextPixelFromInputStream();
-						checkSumInput.calculateCheckSumForByteArray(actualReadByteFromInputStream);
-						nextPixel = turnToOutputRGBOrder(actualReadByteFromInputStream);
-					}
-
-					/* Wenn Datei am Ende muss noch PixelNext geschrieben werden, dieses wird in
-					 * vorhandenes Paket angehängt, wenn pixelNext gleich PixelToCompareTo und
-					 * counter <127 <br> */
-					if (pixelToRead == 0 && Arrays.equals(pixelToCompareTo, nextPixel)) {
-						if (rlePaketRepetitionCounter <= 126) {
-							rlePaketRepetitionCounter++;
-						}
-					}
-
-					// schreibe RLE-Paket in OutputStream
-					rlePaket[0] = (byte) (128 + rlePaketRepetitionCounter);
-					writeRLEPaketArrayToOutputFile(rlePaket);
-					checkSumOutput.calculateCheckSumForByteArray(rlePaket);
+	/** Streifen bestehen aus ganzen Zeilen mit zusammen etwa STRIPE_SIZE Bytes. Die
+	 * Größe hängt nur von der Bildbreite ab, damit die Pakete unabhängig von der
+	 * Anzahl der Prozessoren immer gleich sind. */
+	private int getStripeSize() {
+		int rowSize = Math.max(1, model.getImageWidth()) * 3;
+		return Math.max(1, STRIPE_SIZE / rowSize) * rowSize;
+	}
 
-					/* wenn Datei noch nicht am Ende, ist pixelNext noch nicht geschrieben und noch
-					 * mind. 1 Pixel zusätzlich zu lesen */
-					pixelToCompareTo = nextPixel;
+	/** Komprimiert das Bild im Modus GREEDY in Streifen aus ganzen Zeilen
+	 * parallel, die Ausgabe ist dieselbe wie bei fortlaufender Komprimierung.
+	 * <br>
+	 * Die Streifen werden nacheinander gelesen und im ForkJoinPool jeweils ab dem
+	 * ersten Beginn eines RLE-Paketes, an dem die Pakete nicht mehr von den
+	 * vorangehenden Pixeln abhängen (siehe EncoderRLEImageDataSegment.findRunStart),
+	 * in einen eigenen Puffer komprimiert. Die Pixel davor komprimiert der
+	 * Encoder des Output-Files in Reihenfolge mit dem offenen Paket des
+	 * vorangehenden Streifens, danach folgen die Pakete des Streifens, dessen
+	 * offenes Paket der Encoder übernimmt. Streifen ohne einen solchen Beginn
+	 * komprimiert der Encoder des Output-Files vollständig. Die Checksummen der
+	 * Streifen werden mit CheckSum.combine zusammengefügt. <br>
+	 * Höchstens zwei Streifen je Thread sind gleichzeitig im Speicher, ihre
+	 * Pixelpuffer werden für die folgenden Streifen wiederverwendet. */
+	private void convertUncompressedToRleInStripes(int stripeSize) throws IOException {
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		int maxStripesInProgress = 2 * Math.max(1, pool.getParallelism());
+		Deque<StripeEncoder> stripesInProgress = new ArrayDeque<>();
+		Deque<byte[]> freePixelBuffers = new ArrayDeque<>();
+		EncoderRLEImageDataSegment rleEncoder = new EncoderRLEImageDataSegment(imageDataOutput, checkSumOutput);
+		long bytesToRead = realDataSegmentSizeInFileToRead - realDataSegmentSizeInFileToRead % 3;
+		boolean isFirstStripe = true;
+
+		try {
+			while (bytesToRead > 0) {
+				int length = (int) Math.min(stripeSize, bytesToRead);
+				byte[] pixels = freePixelBuffers.isEmpty() ? BufferCache.take(stripeSize) : freePixelBuffers.poll();
+				if (bufferedInputStream.readNBytes(pixels, 0, length) < length) {
+					throw new EOFException("Bilddatensegment ist kürzer als im Header angegeben");
 				}
-
-				// RAW-Paket startet
-				/* FALL 2: pixelToCompareTo und nextPixel sind Anfang eines Raw-Paketes */
-				else {
-					rawPaket[0] = 0;
-					while ((!Arrays.equals(pixelToCompareTo, nextPixel)) && (rawPaketPixelCounter <= 127)
-					        && (pixelToRead > 0)) {
-						/* schreibt ersten und weitere RGB-Werte in Array nach Header, letzter
-						 * unterschiedlicher Wert wird am Ende ggf. nicht geschrieben */
-						writeToRawPaketArray(rawPaket, pixelToCompareTo, rawPaketPixelCounter);
-						pixelToCompressInOutputFile--;
-						// zähle ersten Wert (rbgBytesToCompareTo) mit 1
-						rawPaketPixelCounter++;
-
-						pixelToCompareTo = nextPixel;
-						actualReadByteFromInputStream = readNextPixelFromInputStream();
-						checkSumInput.calculateCheckSumForByteArray(actualReadByteFromInputStream);
-						// lese nächste drei RGB-Werte
-						nextPixel = turnToOutputRGBOrder(actualReadByteFromInputStream);
-					}
-
-					// hänge letzten beide Pixel noch in Raw-Paket, wenn noch nicht voll
-					if (pixelToRead == 0 && !Arrays.equals(pixelToCompareTo, nextPixel)) {
-						if (rawPaketPixelCounter <= 126) {
-							writeToRawPaketArray(rawPaket, pixelToCompareTo, rawPaketPixelCounter);
-							rawPaketPixelCounter++;
-							writeToRawPaketArray(rawPaket, nextPixel, rawPaketPixelCounter);
-							rawPaketPixelCounter++;
-							pixelToCompressInOutputFile -= 2;
-						}
-					}
-
-					// Schreibe Raw-Paket
-					rawPaket[0] = (byte) (rawPaketPixelCounter - 1);
-					randomAccessFileOutput.write(rawPaket, 0, rawPaketPixelCounter * 3 + 1);
-					checkSumOutput.calculateCheckSumForByteArray(
-					        Arrays.copyOfRange(rawPaket, 0, rawPaketPixelCounter * 3 + 1));
+				bytesToRead -= length;
+				StripeEncoder stripeEncoder = new StripeEncoder(pixels, length, isFirstStripe);
+				isFirstStripe = false;
+				pool.execute(stripeEncoder);
+				stripesInProgress.add(stripeEncoder);
+
+				if (stripesInProgress.size() >= maxStripesInProgress) {
+					freePixelBuffers.add(writeEncodedStripe(stripesInProgress.poll(), rleEncoder));
 				}
 			}
+			while (!stripesInProgress.isEmpty()) {
+				writeEncodedStripe(stripesInProgress.poll(), rleEncoder);
+			}
+			rleEncoder.finish();
+			model.getMetrics().addPacketCounts(rleEncoder);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			// die Pixelpuffer kehren erst nach dem Ende aller Streifen in den Cache zurück
+			for (StripeEncoder stripeEncoder : stripesInProgress) {
+				stripeEncoder.quietlyJoin();
+			}
 		}
-		model.setCheckSumInputFile(checkSumInput.finallyCalculateChecksum());
-		model.setCheckSumOutputFile(checkSumOutput.finallyCalculateChecksum());
 	}
 
-	/** Dreht RGB-Bytes entsprechend der Vorgaben der Input-/Output-Formate.
+	/** Wartet auf den Streifen, schreibt seine Pakete und fügt seine Checksummen
+	 * an.
 	 *
-	 * @param rbgArray
-	 * @return */
-	byte[] turnToOutputRGBOrder(byte[] rbgArray) {
-		if (!RGBOrderInput.equals(RGBOrderOutput)) {
-			byte[] turnedRGB = new byte[3];
-			for (int i = 0; i < 3; i++) {
-				turnedRGB[RGBOrderOutput[i]] = rbgArray[RGBOrderInput[i]];
-			}
-			return turnedRGB;
-		} else {
-			return rbgArray;
+	 * @return der nicht mehr benötigte Pixelpuffer des Streifens */
+	private byte[] writeEncodedStripe(StripeEncoder stripeEncoder, EncoderRLEImageDataSegment rleEncoder)
+	        throws IOException {
+		stripeEncoder.join();
+		checkSumInput.combine(stripeEncoder.checkSumInputStripe);
+		if (stripeEncoder.runStart < 0) {
+			rleEncoder.writePixels(stripeEncoder.pixels, 0, stripeEncoder.length);
+			return stripeEncoder.pixels;
 		}
+		rleEncoder.writePixels(stripeEncoder.pixels, 0, stripeEncoder.runStart);
+		rleEncoder.writeOpenPacket();
+		rleEncoder.flushCompletedPackets();
+		stripeEncoder.encodedStripe.writeTo(bufferedOutputStream);
+		checkSumOutput.combine(stripeEncoder.checkSumOutputStripe);
+		rleEncoder.continueOpenPacketOf(stripeEncoder.rleEncoder);
+		model.getMetrics().addPacketCounts(stripeEncoder.rleEncoder);
+		return stripeEncoder.pixels;
 	}
 
-	private void writeRLEPaketArrayToOutputFile(byte[] rlePaket) throws IOException {
-		randomAccessFileOutput.write(rlePaket);
-		pixelToCompressInOutputFile -= (rlePaket[0] & 0x7f) + 1;
-	}
-
-	private byte[] readNextPixelFromInputStream() throws IOException {
-		byte[] readByteFromInputStream = new byte[3];
-		bufferedInputStream.read(readByteFromInputStream);
-		pixelToRead--;
-		return readByteFromInputStream;
-	}
+	/** Dreht die Pixel eines Streifens, berechnet seine Input-Checksumme und
+	 * komprimiert ihn ab dem ersten unabhängigen Paketbeginn in einen eigenen
+	 * Puffer. Das offene Paket am Streifenende wird nicht geschrieben. */
+	private class StripeEncoder extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final byte[] pixels;
+		private final int length;
+		private final boolean isFirstStripe;
+		private final ByteArrayOutputStream encodedStripe;
+		private final CheckSum checkSumInputStripe;
+		private final CheckSum checkSumOutputStripe;
+		/** Position, ab der der Streifen komprimiert wird, -1 wenn nicht */
+		private int runStart;
+		private EncoderRLEImageDataSegment rleEncoder;
+
+		StripeEncoder(byte[] pixels, int length, boolean isFirstStripe) {
+			this.pixels = pixels;
+			this.length = length;
+			this.isFirstStripe = isFirstStripe;
+			this.encodedStripe = new ByteArrayOutputStream(length / 2);
+			this.checkSumInputStripe = checkSumInput.isCalculated() ? new CheckSum(0) : new CheckSum(-1);
+			this.checkSumOutputStripe = checkSumOutput.isCalculated() ? new CheckSum(0) : new CheckSum(-1);
+		}
 
-	private void writeToRawPaketArray(byte[] arrayToWriteTo, byte[] array, int offset) {
-		arrayToWriteTo[offset * 3 + 1] = array[0];
-		arrayToWriteTo[offset * 3 + 2] = array[1];
-		arrayToWriteTo[offset * 3 + 3] = array[2];
+		/** Die Puffer des Encoders bleiben im Cache des ausführenden
+		 * Worker-Threads, danach werden nur noch sein offenes Paket und seine
+		 * Zähler gelesen. */
+		@Override
+		protected void compute() {
+			checkSumInputStripe.update(pixels, 0, length);
+			swizzler.swizzle(pixels, 0, length);
+			runStart = isFirstStripe ? 0 : EncoderRLEImageDataSegment.findRunStart(pixels, 0, length);
+			if (runStart < 0) {
+				return;
+			}
+			BufferCache.Scope bufferScope = BufferCache.openScope();
+			try {
+				rleEncoder = new EncoderRLEImageDataSegment(new DataOutputStream(encodedStripe), checkSumOutputStripe);
+				rleEncoder.writePixels(pixels, runStart, length - runStart);
+				rleEncoder.flushCompletedPackets();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} finally {
+				bufferScope.close();
+			}
+		}
 	}
 }
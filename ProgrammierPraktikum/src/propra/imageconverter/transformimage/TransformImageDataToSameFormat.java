@@ -0,0 +1,119 @@
+package propra.imageconverter.transformimage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import propra.imageconverter.ConversionFiles;
+import propra.imageconverter.Model;
+import propra.imageconverter.channel.IPositionalChannel;
+import propra.imageconverter.checksum.CheckSum;
+import propra.imageconverter.checksum.CheckSumCalculatorParallel;
+import propra.imageconverter.enums.ECompressionType;
+import propra.imageconverter.enums.ECounter;
+import propra.imageconverter.enums.EFormat;
+import propra.imageconverter.enums.EStage;
+import propra.imageconverter.utilities.BufferCache;
+
+/** Instanz dieser Klasse übernimmt das Bilddatensegment unverändert, wenn Ein-
+ * und Ausgabedatei in Format und Kompression übereinstimmen. <br>
+ * Die Bytes werden mit IPositionalChannel.transferTo kopiert, bei Dateien vom
+ * Betriebssystem, ohne sie in die JVM zu lesen; nur der Header wird neu geschrieben. Bei Ausgabe
+ * auf die Standardausgabe ist das Ziel von transferTo der dafür geöffnete
+ * Channel. Die Checksumme
+ * wird nur bei ProPra-Dateien über das schreibgeschützt abgebildete
+ * Input-Datensegment berechnet. Da die Bytes identisch sind, entspricht sie
+ * der Checksumme des Output-Files. <br>
+ * Eine fortlaufend gelesene Standardeingabe wird blockweise kopiert und die
+ * Checksumme dabei fortgeschrieben.
+ *
+ * @author Martina Koch */
+public class TransformImageDataToSameFormat {
+	/** Größe des Kopierpuffers für die Standardeingabe in Bytes */
+	private static final int BLOCK_SIZE = 64 * 1024;
+	private Model model;
+
+	public TransformImageDataToSameFormat(Model model) throws IOException {
+		this.model = model;
+
+		ConversionFiles conversionFiles = model.getConversionFiles();
+		WritableByteChannel outputChannel = conversionFiles
+		        .openOutputChannel(model.getOutputFormat().getHeaderLength());
+		long dataSegmentStart = model.getInputFormat().getHeaderLength();
+		if (!conversionFiles.isInputLengthKnown()) {
+			copyStreamedImageDataSegment(conversionFiles.openInputStream(dataSegmentStart), outputChannel);
+			return;
+		}
+		IPositionalChannel inputChannel = conversionFiles.getInputChannel();
+		long dataSegmentSize = determineDataSegmentSize(conversionFiles.getInputLength() - dataSegmentStart);
+
+		copyImageDataSegment(inputChannel, outputChannel, dataSegmentStart, dataSegmentSize);
+		calculateCheckSumIfPropraFile(inputChannel, dataSegmentStart, dataSegmentSize);
+	}
+
+	/** Unkomprimierte Dateien enthalten genau Breite x Höhe x 3 Bytes Bilddaten,
+	 * ein ggf. vorhandener Dateifuß wird verworfen. Komprimierte Datensegmente
+	 * reichen bis zum Dateiende. */
+	private long determineDataSegmentSize(long bytesAfterHeader) {
+		if (model.getInputCompressionType().equals(ECompressionType.UNCOMPRESSED)) {
+			return Math.min(model.getRealDataSegmentSizeInputFile(), bytesAfterHeader);
+		}
+		return bytesAfterHeader;
+	}
+
+	private void copyImageDataSegment(IPositionalChannel inputChannel, WritableByteChannel outputChannel,
+	        long dataSegmentStart, long dataSegmentSize) throws IOException {
+		long bytesCopied = 0;
+		// transferTo kopiert ggf. weniger Bytes als angefordert
+		while (bytesCopied < dataSegmentSize) {
+			long transferred = inputChannel.transferTo(dataSegmentStart + bytesCopied, dataSegmentSize - bytesCopied,
+			        outputChannel);
+			if (transferred <= 0) {
+				throw new IOException("Bilddatensegment konnte nicht kopiert werden");
+			}
+			bytesCopied += transferred;
+			model.getMetrics().add(ECounter.WRITE_CALLS, 1);
+		}
+	}
+
+	/** Kopiert bis zum Ende der Standardeingabe, unkomprimiert höchstens Breite x
+	 * Höhe x 3 Bytes. */
+	private void copyStreamedImageDataSegment(InputStream input, WritableByteChannel outputChannel)
+	        throws IOException {
+		CheckSum checkSumImageData = model.getOutputFormat().equals(EFormat.PROPRA) ? new CheckSum(0)
+		        : new CheckSum(-1);
+		byte[] block = BufferCache.take(BLOCK_SIZE);
+		long bytesToCopy = determineDataSegmentSize(Long.MAX_VALUE);
+		while (bytesToCopy > 0) {
+			int bytesRead = input.read(block, 0, (int) Math.min(BLOCK_SIZE, bytesToCopy));
+			if (bytesRead < 0) {
+				break;
+			}
+			checkSumImageData.update(block, 0, bytesRead);
+			ByteBuffer buffer = ByteBuffer.wrap(block, 0, bytesRead);
+			while (buffer.hasRemaining()) {
+				outputChannel.write(buffer);
+				model.getMetrics().add(ECounter.WRITE_CALLS, 1);
+			}
+			bytesToCopy -= bytesRead;
+		}
+		model.getMetrics().addStageNanos(EStage.CHECKSUM, checkSumImageData.getUpdateNanos());
+		long checkSum = checkSumImageData.finallyCalculateChecksum();
+		model.setCheckSumInputFile(checkSum);
+		model.setCheckSumOutputFile(checkSum);
+	}
+
+	private void calculateCheckSumIfPropraFile(IPositionalChannel inputChannel, long dataSegmentStart, long dataSegmentSize)
+	        throws IOException {
+		long checkSum = -1;
+		if (model.getOutputFormat().equals(EFormat.PROPRA)) {
+			CheckSum checkSumImageData = CheckSumCalculatorParallel.calculate(inputChannel, dataSegmentStart,
+			        dataSegmentSize);
+			model.getMetrics().addStageNanos(EStage.CHECKSUM, checkSumImageData.getUpdateNanos());
+			checkSum = checkSumImageData.finallyCalculateChecksum();
+		}
+		model.setCheckSumInputFile(checkSum);
+		model.setCheckSumOutputFile(checkSum);
+	}
+}
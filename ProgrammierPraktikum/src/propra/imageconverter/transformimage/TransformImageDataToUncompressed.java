@@ -1,51 +1,87 @@
 package propra.imageconverter.transformimage;
 
 import java.io.*;
-import java.nio.ByteBuffer;
 
+import propra.imageconverter.ConversionFiles;
 import propra.imageconverter.Model;
 import propra.imageconverter.checksum.CheckSum;
+import propra.imageconverter.enums.ECompressionType;
 import propra.imageconverter.enums.EFormat;
+import propra.imageconverter.pipeline.PipelinedInputStream;
+import propra.imageconverter.pipeline.PipelinedOutputStream;
+import propra.imageconverter.utilities.BufferCache;
 
 /** Instanz dieser Klasse transformiert die Bilddaten zu uncompressed. <br>
  * Für eine höhere Verarbeitungsgeschwindigkeit wird das Bild nur einmal
  * eingelesen und ausgegeben und hierbei die Checksumme - wenn nötig - berechnet
- * und ggf. die Pixeldaten gedreht.
+ * und ggf. die Pixeldaten gedreht. <br>
+ * Im Pipeline-Betrieb lesen, prüfen und schreiben bei unkomprimiertem Input
+ * eigene Threads, die Transformation dreht nur noch die Pixel.
  *
  * @author Martina Koch */
 public class TransformImageDataToUncompressed {
+	/** Größe des Lesepuffers in Bytes, Vielfaches von 3 */
+	private static final int BLOCK_SIZE = 3 * 64 * 1024;
 	private Model model;
-	private byte[] RGBOrderInput;
-	private byte[] RGBOrderOutput;
+	private SwizzlerRGBOrder swizzler;
 	private long realDataSegmentSizeInFileToRead;
 
-	private BufferedOutputStream bufferedOutputStream;
-	private BufferedInputStream bufferedInputStream;
-	private RandomAccessFile randomAccessFileInput;
-	private RandomAccessFile randomAccessFileOutput;
+	private ConversionFiles conversionFiles;
+	private OutputStream bufferedOutputStream;
+	private InputStream bufferedInputStream;
+	private PipelinedInputStream pipelinedInputStream;
+	private PipelinedOutputStream pipelinedOutputStream;
 
 	private CheckSum checkSumInput;
 	private CheckSum checkSumOutput;
 
 	public TransformImageDataToUncompressed(Model model) throws IOException {
 		this.model = model;
-
-		randomAccessFileInput = new RandomAccessFile(model.getInputFilePath(), "r");
-		randomAccessFileOutput = new RandomAccessFile(model.getOutputFilePath(), "rw");
-		bufferedInputStream = new BufferedInputStream(new FileInputStream(randomAccessFileInput.getFD()));
-		bufferedOutputStream = new BufferedOutputStream(new FileOutputStream(randomAccessFileOutput.getFD()));
-
-		randomAccessFileOutput.seek(model.getOutputFormat().getHeaderLength());
-		randomAccessFileInput.seek(model.getInputFormat().getHeaderLength());
+		this.conversionFiles = model.getConversionFiles();
 
 		realDataSegmentSizeInFileToRead = model.getRealDataSegmentSizeInputFile();
 
 		initializeCheckSumInputOutputFile();
+		openStreams();
 		assignInputOutputRGBOrder();
 		chooseImageDataSegementTransformation();
 
-		bufferedInputStream.close();
 		bufferedOutputStream.close();
+		bufferedInputStream.close();
+		finallyCalculateCheckSum();
+	}
+
+	/** Öffnet Input- und Output-Stream. RLE-Input wird nie in der Pipeline
+	 * gelesen. Im Pipeline-Betrieb
+	 * schreiben die Checksummen-Threads die Checksummen fort, die Transformation
+	 * erhält Checksummen, die nicht berechnet werden. */
+	private void openStreams() throws IOException {
+		long inputPosition = model.getInputFormat().getHeaderLength();
+		long outputPosition = model.getOutputFormat().getHeaderLength();
+		if (model.getPipelinedExecution() && model.getInputCompressionType().equals(ECompressionType.UNCOMPRESSED)) {
+			pipelinedInputStream = conversionFiles.openPipelinedInputStream(inputPosition,
+			        realDataSegmentSizeInFileToRead, checkSumInput);
+			pipelinedOutputStream = conversionFiles.openPipelinedOutputStream(outputPosition, checkSumOutput);
+			bufferedInputStream = pipelinedInputStream;
+			bufferedOutputStream = pipelinedOutputStream;
+			checkSumInput = new CheckSum(-1);
+			checkSumOutput = new CheckSum(-1);
+		} else {
+			bufferedInputStream = conversionFiles.openInputStream(inputPosition);
+			bufferedOutputStream = conversionFiles.openOutputStream(outputPosition);
+		}
+	}
+
+	/** Übernimmt die Checksummen ins Model, im Pipeline-Betrieb erst nach dem
+	 * Schließen der Streams vollständig. */
+	private void finallyCalculateCheckSum() {
+		if (pipelinedInputStream != null) {
+			checkSumInput = pipelinedInputStream.getCheckSum();
+			checkSumOutput = pipelinedOutputStream.getCheckSum();
+		}
+		model.getMetrics().addCheckSumTime(checkSumInput, checkSumOutput);
+		model.setCheckSumInputFile(checkSumInput.finallyCalculateChecksum());
+		model.setCheckSumOutputFile(checkSumOutput.finallyCalculateChecksum());
 	}
 
 	private void chooseImageDataSegementTransformation() throws IOException {
@@ -64,8 +100,7 @@ public class TransformImageDataToUncompressed {
 	}
 
 	private void assignInputOutputRGBOrder() {
-		RGBOrderInput = model.getInputRGBOrder();
-		RGBOrderOutput = model.getOutputRGBOrder();
+		swizzler = SwizzlerRGBOrder.of(model.getInputFormat(), model.getOutputFormat());
 	}
 
 	/** Intitalisiere CheckSumInput/Output mit 0, wenn Propra-Datei
@@ -75,122 +110,50 @@ public class TransformImageDataToUncompressed {
 		checkSumOutput = model.getOutputFormat().equals(EFormat.PROPRA) ? new CheckSum(0) : new CheckSum(-1);
 	}
 
-	/** Konvertiert unkomprimierte zu unkomprimierter Datei.
-	 * @param model */
-
+	/** Konvertiert unkomprimierte zu unkomprimierter Datei, die Pixel werden
+	 * blockweise gelesen und im Block gedreht. */
 	public void convertUncompressedToUncompressed() throws IOException {
-		byte[] bytesRead;
-
-		CheckSum checkSumInputFile = new CheckSum(0);
-		CheckSum checkSumOuptputFile = new CheckSum(0);
-		randomAccessFileInput.seek(model.getInputFormat().getHeaderLength());
-		randomAccessFileOutput.seek(model.getOutputFormat().getHeaderLength());
+		byte[] pixels = BufferCache.take(BLOCK_SIZE);
 
 		while (realDataSegmentSizeInFileToRead > 0) {
-			bytesRead = readBytePackagesFromInputStream();
-			checkSumInputFile.calculateCheckSumForByteArray(bytesRead);
+			int length = (int) Math.min(BLOCK_SIZE, realDataSegmentSizeInFileToRead);
+			if (bufferedInputStream.readNBytes(pixels, 0, length) < length) {
+				throw new EOFException("Bilddatensegment ist kürzer als im Header angegeben");
+			}
+			checkSumInput.update(pixels, 0, length);
 
-			byte[] bytesTurned = turnToOutputRGBOrder(bytesRead);
-			checkSumOuptputFile.calculateCheckSumForByteArray(bytesTurned);
+			swizzler.swizzle(pixels, 0, length - length % 3);
+			checkSumOutput.update(pixels, 0, length);
 
-			bufferedOutputStream.write(bytesTurned);
+			bufferedOutputStream.write(pixels, 0, length);
 
-			realDataSegmentSizeInFileToRead -= bytesRead.length;
+			realDataSegmentSizeInFileToRead -= length;
 		}
-
-		model.setCheckSumInputFile(checkSumInputFile.finallyCalculateChecksum());
-		model.setCheckSumOutputFile(checkSumOuptputFile.finallyCalculateChecksum());
 	}
 
-	/** Konvertiert RLE-komprimierte Datei zu unkomprimiert */
+	/** Konvertiert RLE-komprimierte Datei zu unkomprimiert, die Abschnitte werden
+	 * mit DecoderRLEImageDataSegmentParallel parallel dekodiert. Eine
+	 * fortlaufend gelesene Standardeingabe wird stattdessen blockweise mit
+	 * DecoderRLEImageDataSegment im strikten Modus dekodiert. */
 	public void convertRleToUncompressed() throws IOException {
-		long bytesToRead = realDataSegmentSizeInFileToRead;
-		int packetHeader;
-		while (bytesToRead >= 3) {
-			// lese Paket-Header
-			packetHeader = bufferedInputStream.read();
-			checkSumInput.calculateCheckSumForByteArray(ByteBuffer.allocate(1).put((byte) packetHeader).array());
-			bytesToRead--;
-			// bestimme Pakettyp: Raw (0), RLE(1)
-			byte bitID = (byte) (packetHeader >>> 7);
-			/* über logische UND-Verknüpfung mit 0x7f, d.h. 01111 1111 Anzahl Wdh. RLE-Paket
-			 * RGB-Werte bzw. Anzahl Raw-Paket unterschiedliche RGB-Werte ermitteln */
-			short repetitions = (short) ((packetHeader & 0x7f));
-			byte[] rbgOutOfInputFile;
-
-			// IDbyte: RLE-Packet
-			if (bitID == 1 && bytesToRead >= 3) {
-				/* erstelle entsprechend großes Array für zu schreibende RGB-Werte der RLE- bzw.
-				 * Raw-Pakete */
-				byte[] rbgRepetitionArray = new byte[(repetitions + 1) * 3];
-				// liest drei Folgebytes für RGB in rgb-Array
-				rbgOutOfInputFile = bufferedInputStream.readNBytes(3);
-				checkSumInput.calculateCheckSumForByteArray(rbgOutOfInputFile);
-				bytesToRead -= 3;
-
-				byte[] turnedRGB = turnToOutputRGBOrder(rbgOutOfInputFile);
-				// Anzahl Wdh. im Header plus erstes RGB Information
-				for (int j = 0; j < repetitions + 1; j++) {
-					writeRGBPaketInformationToArray(rbgRepetitionArray, turnedRGB, j);
-				}
-
-				bufferedOutputStream.write(rbgRepetitionArray);
-				checkSumOutput.calculateCheckSumForByteArray(rbgRepetitionArray);
-			}
-
-			// IDbyte: Raw-Paket
-			else {
-				// erstelle Array für zu schreibende RGB-Werte Raw-Paket
-				byte[] rbgRepetitionArray = new byte[(repetitions + 1) * 3];
-
-				// liest für jede repetition jeweils drei Folgebytes für RGB in rgb-Array
-				for (int j = 0; j < (repetitions + 1); j++) {
-					rbgOutOfInputFile = bufferedInputStream.readNBytes(3);
-					bytesToRead -= 3;
-					checkSumInput.calculateCheckSumForByteArray(rbgOutOfInputFile);
-
-					byte[] turnedRGB = turnToOutputRGBOrder(rbgOutOfInputFile);
-					for (int l = j; l <= j; l++) {
-						writeRGBPaketInformationToArray(rbgRepetitionArray, turnedRGB, l);
-					}
-				}
-				bufferedOutputStream.write(rbgRepetitionArray);
-				checkSumOutput.calculateCheckSumForByteArray(rbgRepetitionArray);
-			}
+		if (!conversionFiles.isInputLengthKnown()) {
+			convertStreamedRleToUncompressed();
+			return;
 		}
-		model.setCheckSumInputFile(checkSumInput.finallyCalculateChecksum());
-		model.setCheckSumOutputFile(checkSumOutput.finallyCalculateChecksum());
+		new DecoderRLEImageDataSegmentParallel(model, conversionFiles.getInputChannel(),
+		        conversionFiles.openOutputChannel(model.getOutputFormat().getHeaderLength()), checkSumInput,
+		        checkSumOutput);
 	}
 
-	/** Dreht Reihenfolge der RGB-Bytes entsprechend der Vorgaben der
-	 * Input-/Output-Formate.
-	 *
-	 * @param rbgArray
-	 * @return */
-	private byte[] turnToOutputRGBOrder(byte[] arrayToBeTurned) {
-		byte[] turnedRGB = new byte[arrayToBeTurned.length];
-		if (!model.getInputRGBOrder().equals(model.getOutputRGBOrder())) {
-			for (int l = 0; l < arrayToBeTurned.length; l += 3) {
-				for (int i = 0; i < 3; i++) {
-					turnedRGB[RGBOrderOutput[i] + l] = arrayToBeTurned[RGBOrderInput[i] + l];
-				}
-			}
+	private void convertStreamedRleToUncompressed() throws IOException {
+		DecoderRLEImageDataSegment rleDecoder = new DecoderRLEImageDataSegment(bufferedInputStream,
+		        realDataSegmentSizeInFileToRead, checkSumInput, true);
+		byte[] pixels = BufferCache.take(BLOCK_SIZE);
+		int length;
+		while ((length = rleDecoder.readPixels(pixels, 0, BLOCK_SIZE)) > 0) {
+			swizzler.swizzle(pixels, 0, length);
+			checkSumOutput.update(pixels, 0, length);
+			bufferedOutputStream.write(pixels, 0, length);
 		}
-		return turnedRGB;
-	}
-
-	private void writeRGBPaketInformationToArray(byte[] rbgRepetitionArray, byte[] turnedRGB, int l) {
-		rbgRepetitionArray[l * 3 + 0] = turnedRGB[0];
-		rbgRepetitionArray[l * 3 + 1] = turnedRGB[1];
-		rbgRepetitionArray[l * 3 + 2] = turnedRGB[2];
-	}
-
-	private byte[] readBytePackagesFromInputStream() throws IOException {
-		int bytesToRead = (realDataSegmentSizeInFileToRead > 1024 * 3) ? (1024 * 3)
-		        : (int) realDataSegmentSizeInFileToRead;
-		byte[] bytesReadToArray = new byte[bytesToRead];
-		bufferedInputStream.read(bytesReadToArray);
-
-		return bytesReadToArray;
 	}
 }
@@ -0,0 +1,156 @@
+package propra.imageconverter.transportcoding;
+
+import java.util.Arrays;
+
+import propra.imageconverter.ImageConverterException;
+
+/** Statische Methoden zur Base-32-hex-Kodierung und -Dekodierung ganzer Blöcke.
+ * <br>
+ * Je 5 Bytes (40 Bit) entsprechen 8 Zeichen zu je 5 Bit, die Bits werden mit
+ * dem höchstwertigen Bit zuerst gelesen. Ein unvollständiger letzter Block wird
+ * bei der Kodierung mit 0-Bits zum nächsten Zeichen aufgefüllt (ohne '='), bei
+ * der Dekodierung werden übrige Bits, die kein ganzes Byte ergeben, verworfen.
+ * <br>
+ * Alle Blöcke außer dem letzten müssen ganze Gruppen (5 Bytes bzw. 8 Zeichen)
+ * enthalten, damit die Blöcke unabhängig voneinander verarbeitet werden können.
+ *
+ * @author Martina Koch */
+public final class Base32HexCodec {
+	/** Anzahl Bytes einer Gruppe */
+	public static final int BYTES_PER_GROUP = 5;
+	/** Anzahl Zeichen einer Gruppe */
+	public static final int CHARACTERS_PER_GROUP = 8;
+	private static final byte[] ENCODE_TABLE = "0123456789ABCDEFGHIJKLMNOPQRSTUV".getBytes();
+	/** Wert (0-31) je Zeichen, -1 für Zeichen außerhalb des Alphabets */
+	private static final byte[] DECODE_TABLE = new byte[256];
+
+	static {
+		Arrays.fill(DECODE_TABLE, (byte) -1);
+		for (int i = 0; i < ENCODE_TABLE.length; i++) {
+			DECODE_TABLE[ENCODE_TABLE[i]] = (byte) i;
+		}
+	}
+
+	private Base32HexCodec() {
+	}
+
+	/** Gibt Anzahl Zeichen für length Bytes zurück. */
+	public static long encodedLength(long length) {
+		return (length * 8 + 4) / 5;
+	}
+
+	/** Gibt Anzahl Bytes für length Zeichen zurück. */
+	public static long decodedLength(long length) {
+		return length * 5 / 8;
+	}
+
+	/** Kodiert length Bytes ab sourceOffset in Zeichen ab targetOffset.
+	 *
+	 * @return Anzahl geschriebener Zeichen */
+	public static int encode(byte[] source, int sourceOffset, int length, byte[] target, int targetOffset) {
+		int sourceIndex = sourceOffset;
+		int targetIndex = targetOffset;
+		int fullGroupsEnd = sourceOffset + length - length % BYTES_PER_GROUP;
+
+		while (sourceIndex < fullGroupsEnd) {
+			long group = ((long) (source[sourceIndex] & 0xff) << 32) | ((long) (source[sourceIndex + 1] & 0xff) << 24)
+			        | ((source[sourceIndex + 2] & 0xff) << 16) | ((source[sourceIndex + 3] & 0xff) << 8)
+			        | (source[sourceIndex + 4] & 0xff);
+			target[targetIndex] = ENCODE_TABLE[(int) (group >>> 35)];
+			target[targetIndex + 1] = ENCODE_TABLE[(int) (group >>> 30) & 0x1f];
+			target[targetIndex + 2] = ENCODE_TABLE[(int) (group >>> 25) & 0x1f];
+			target[targetIndex + 3] = ENCODE_TABLE[(int) (group >>> 20) & 0x1f];
+			target[targetIndex + 4] = ENCODE_TABLE[(int) (group >>> 15) & 0x1f];
+			target[targetIndex + 5] = ENCODE_TABLE[(int) (group >>> 10) & 0x1f];
+			target[targetIndex + 6] = ENCODE_TABLE[(int) (group >>> 5) & 0x1f];
+			target[targetIndex + 7] = ENCODE_TABLE[(int) group & 0x1f];
+			sourceIndex += BYTES_PER_GROUP;
+			targetIndex += CHARACTERS_PER_GROUP;
+		}
+
+		// unvollständige letzte Gruppe: linksbündig in 40 Bit, Rest mit 0-Bits
+		int remainingBytes = sourceOffset + length - sourceIndex;
+		if (remainingBytes > 0) {
+			long group = 0;
+			for (int i = 0; i < remainingBytes; i++) {
+				group |= (long) (source[sourceIndex + i] & 0xff) << (32 - 8 * i);
+			}
+			int characters = (int) encodedLength(remainingBytes);
+			for (int i = 0; i < characters; i++) {
+				target[targetIndex++] = ENCODE_TABLE[(int) (group >>> (35 - 5 * i)) & 0x1f];
+			}
+		}
+		return targetIndex - targetOffset;
+	}
+
+	/** Dekodiert length Zeichen ab sourceOffset in Bytes ab targetOffset.
+	 *
+	 * @param positionInFile Position des ersten Zeichens in der Datei für die
+	 * Fehlermeldung
+	 * @return Anzahl geschriebener Bytes
+	 * @throws ImageConverterException bei einem Zeichen außerhalb des Alphabets */
+	public static int decode(byte[] source, int sourceOffset, int length, byte[] target, int targetOffset,
+	        long positionInFile) throws ImageConverterException {
+		int sourceIndex = sourceOffset;
+		int targetIndex = targetOffset;
+		int fullGroupsEnd = sourceOffset + length - length % CHARACTERS_PER_GROUP;
+
+		while (sourceIndex < fullGroupsEnd) {
+			int c0 = DECODE_TABLE[source[sourceIndex] & 0xff];
+			int c1 = DECODE_TABLE[source[sourceIndex + 1] & 0xff];
+			int c2 = DECODE_TABLE[source[sourceIndex + 2] & 0xff];
+			int c3 = DECODE_TABLE[source[sourceIndex + 3] & 0xff];
+			int c4 = DECODE_TABLE[source[sourceIndex + 4] & 0xff];
+			int c5 = DECODE_TABLE[source[sourceIndex + 5] & 0xff];
+			int c6 = DECODE_TABLE[source[sourceIndex + 6] & 0xff];
+			int c7 = DECODE_TABLE[source[sourceIndex + 7] & 0xff];
+			// ungültige Zeichen sind -1, d.h. negativ in der Oder-Verknüpfung
+			if ((c0 | c1 | c2 | c3 | c4 | c5 | c6 | c7) < 0) {
+				throwInvalidCharacter(source, sourceIndex, CHARACTERS_PER_GROUP,
+				        positionInFile + sourceIndex - sourceOffset);
+			}
+			long group = ((long) c0 << 35) | ((long) c1 << 30) | ((long) c2 << 25) | ((long) c3 << 20)
+			        | ((long) c4 << 15) | ((long) c5 << 10) | ((long) c6 << 5) | c7;
+			target[targetIndex] = (byte) (group >>> 32);
+			target[targetIndex + 1] = (byte) (group >>> 24);
+			target[targetIndex + 2] = (byte) (group >>> 16);
+			target[targetIndex + 3] = (byte) (group >>> 8);
+			target[targetIndex + 4] = (byte) group;
+			sourceIndex += CHARACTERS_PER_GROUP;
+			targetIndex += BYTES_PER_GROUP;
+		}
+
+		// unvollständige letzte Gruppe: Bits, die kein ganzes Byte ergeben, verwerfen
+		int remainingCharacters = sourceOffset + length - sourceIndex;
+		if (remainingCharacters > 0) {
+			long group = 0;
+			for (int i = 0; i < remainingCharacters; i++) {
+				int value = DECODE_TABLE[source[sourceIndex + i] & 0xff];
+				if (value < 0) {
+					throwInvalidCharacter(source, sourceIndex, remainingCharacters,
+					        positionInFile + sourceIndex - sourceOffset);
+				}
+				group |= (long) value << (35 - 5 * i);
+			}
+			int bytes = (int) decodedLength(remainingCharacters);
+			for (int i = 0; i < bytes; i++) {
+				target[targetIndex++] = (byte) (group >>> (32 - 8 * i));
+			}
+		}
+		return targetIndex - targetOffset;
+	}
+
+	/** Sucht das erste ungültige Zeichen der Gruppe und meldet es mit Position. */
+	private static void throwInvalidCharacter(byte[] source, int groupStart, int groupLength,
+	        long positionOfGroupInFile) throws ImageConverterException {
+		for (int i = 0; i < groupLength; i++) {
+			int character = source[groupStart + i] & 0xff;
+			if (DECODE_TABLE[character] < 0) {
+				String printable = character >= 0x20 && character < 0x7f ? "'" + (char) character + "'"
+				        : String.format("0x%02x", character);
+				throw new ImageConverterException(
+				        "Ungültiges Base-32-Zeichen " + printable + " an Position " + (positionOfGroupInFile + i));
+			}
+		}
+	}
+}
@@ -1,120 +1,172 @@
 package propra.imageconverter.transportcoding;
 
-import java.io.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import propra.imageconverter.ImageConverterException;
 import propra.imageconverter.Model;
-
-/** Instanzen dieser Klasse de-/enkodieren zu Base-32-hex.
+import propra.imageconverter.enums.ECounter;
+import propra.imageconverter.metrics.ConversionMetrics;
+import propra.imageconverter.utilities.BufferCache;
+
+/** Instanzen dieser Klasse de-/enkodieren zu Base-32-hex. <br>
+ * Die Datei wird in Abschnitte aus ganzen 5-Byte- bzw. 8-Zeichen-Gruppen
+ * geteilt, deren Position in der Ausgabedatei vorab feststeht. Die Abschnitte
+ * werden parallel mit Fork/Join übersetzt und jeweils direkt an ihre Position
+ * geschrieben, nur der letzte Abschnitt kann eine unvollständige Gruppe
+ * enthalten. Das Ergebnis ist unabhängig von der Anzahl der Threads. <br>
+ * Jeder Thread liest und übersetzt alle seine Abschnitte in denselben zwei
+ * Puffern. Schlägt die Übersetzung fehl, z.B. wegen eines ungültigen Zeichens,
+ * wird die unvollständige Ausgabedatei gelöscht.
  *
  * @author Martina Koch */
 public class EncodeDecodeBase32 {
-	private BufferedInputStream bufferedInputStream;
-	private BufferedOutputStream bufferedOutputStream;
-	private final String base32HexAlphabet = "0123456789ABCDEFGHIJKLMNOPQRSTUV";
+	/** Anzahl Gruppen je Abschnitt, ergibt 320 KB Binärdaten bzw. 512 KB Zeichen */
+	private static final int GROUPS_PER_CHUNK = 64 * 1024;
+	private FileChannel inputChannel;
+	private FileChannel outputChannel;
+	private boolean encode;
+	/** Länge eines Abschnittes in Input und Output */
+	private int inputChunkSize;
+	private int outputChunkSize;
+	private long inputLength;
+	private ConversionMetrics metrics;
 
 	/** Instanz dieser Klasse De-/Enkodiert zu Base-32-hex. */
 	public EncodeDecodeBase32(Model model) throws ImageConverterException, IOException {
+		encode = model.getEncodeBase32();
+		metrics = model.getMetrics();
+		inputChunkSize = GROUPS_PER_CHUNK
+		        * (encode ? Base32HexCodec.BYTES_PER_GROUP : Base32HexCodec.CHARACTERS_PER_GROUP);
+		outputChunkSize = GROUPS_PER_CHUNK
+		        * (encode ? Base32HexCodec.CHARACTERS_PER_GROUP : Base32HexCodec.BYTES_PER_GROUP);
+
+		try (FileChannel input = FileChannel.open(Paths.get(model.getInputFilePath()), StandardOpenOption.READ)) {
+			inputChannel = input;
+			inputLength = inputChannel.size();
+			transcodeToOutputFile(Paths.get(model.getOutputFilePath()));
+		}
+	}
+
+	/** Löscht die Ausgabedatei, wenn nicht alle Abschnitte übersetzt werden. */
+	private void transcodeToOutputFile(Path outputPath) throws ImageConverterException, IOException {
+		try (FileChannel output = FileChannel.open(outputPath, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+		        StandardOpenOption.TRUNCATE_EXISTING)) {
+			outputChannel = output;
+			long chunkCount = (inputLength + inputChunkSize - 1) / inputChunkSize;
+			transcodeChunks(chunkCount);
+		} catch (IOException | ImageConverterException | RuntimeException e) {
+			try {
+				Files.deleteIfExists(outputPath);
+			} catch (IOException deleteException) {
+				e.addSuppressed(deleteException);
+			}
+			throw e;
+		}
+	}
+
+	/** Übersetzt alle Abschnitte parallel, bei mehreren Fehlern wird der des
+	 * vordersten Abschnittes geworfen. */
+	private void transcodeChunks(long chunkCount) throws ImageConverterException, IOException {
+		if (chunkCount == 0) {
+			return;
+		}
 		try {
-			File inputFile = new File(model.getInputFilePath());
-			FileInputStream fileInputStream = new FileInputStream(inputFile);
+			ForkJoinPool.commonPool().invoke(new TranscodeTask(0, chunkCount));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} catch (InvalidCharacterException e) {
+			throw e.getCause();
+		}
+	}
 
-			File outputFile = new File(model.getOutputFilePath());
-			bufferedInputStream = new BufferedInputStream(fileInputStream);
-			FileOutputStream fileOutputStream = new FileOutputStream(outputFile);
-			bufferedOutputStream = new BufferedOutputStream(fileOutputStream);
+	/** Liest Abschnitt chunkIndex, übersetzt ihn und schreibt ihn an seine
+	 * Position in der Ausgabedatei. Die Puffer bleiben im Cache des ausführenden
+	 * Threads für dessen nächsten Abschnitt. */
+	private void transcodeChunk(long chunkIndex) throws ImageConverterException, IOException {
+		BufferCache.Scope bufferScope = BufferCache.openScope();
+		try {
+			transcodeChunk(chunkIndex, BufferCache.take(inputChunkSize), BufferCache.take(outputChunkSize));
+		} finally {
+			bufferScope.close();
+		}
+	}
 
-			boolean encode = model.getEncodeBase32();
-			boolean decode = model.getDecodeBase32();
+	private void transcodeChunk(long chunkIndex, byte[] source, byte[] target)
+	        throws ImageConverterException, IOException {
+		long inputPosition = chunkIndex * inputChunkSize;
+		int length = (int) Math.min(inputChunkSize, inputLength - inputPosition);
 
-			if (encode) {
-				System.out.println("Enkodiere Datei...");
-				encode();
-			}
-			if (decode) {
-				System.out.println("Dekodiere Datei...");
-				decode();
+		ByteBuffer sourceBuffer = ByteBuffer.wrap(source, 0, length);
+		while (sourceBuffer.hasRemaining()) {
+			metrics.add(ECounter.READ_CALLS, 1);
+			if (inputChannel.read(sourceBuffer, inputPosition + sourceBuffer.position()) < 0) {
+				throw new IOException("Input-Datei wurde während des Lesens verkürzt");
 			}
-			System.out.println("...erfolgreich abgeschlossen!");
+		}
+
+		int targetLength = encode ? Base32HexCodec.encode(source, 0, length, target, 0)
+		        : Base32HexCodec.decode(source, 0, length, target, 0, inputPosition);
 
-			bufferedOutputStream.close();
-			bufferedInputStream.close();
-		} catch (FileNotFoundException e) {
-			ImageConverterException.abruptlyExitProgram(e);
+		long outputPosition = chunkIndex * outputChunkSize;
+		ByteBuffer targetBuffer = ByteBuffer.wrap(target, 0, targetLength);
+		while (targetBuffer.hasRemaining()) {
+			outputChannel.write(targetBuffer, outputPosition + targetBuffer.position());
+			metrics.add(ECounter.WRITE_CALLS, 1);
 		}
 	}
 
-	/** Entschlüsseln der Datei aus Base-32-hex Alphabet in binäre Darstellung */
-	private void decode() throws ImageConverterException, IOException {
-		int inputRead;
-		// Binäre Darstellung der zu schreibenden Daten
-		int countEightBits = 0;
-		int outputToWrite = 0;
-		// Potenz 2^bitToPow
-		int bitToPow;
-
-		inputRead = bufferedInputStream.read();
-
-		while (inputRead != -1) {
-			// ermittle Buchstabe an Position inputRead
-			inputRead = base32HexAlphabet.indexOf(inputRead);
-
-			// lese jeweils 5 Bit, d.h. ein hex-32-Alphabet-Buchstaben
-			for (int i = 0; i < 5; i++) {
-				/* ">>>": schiebe 4 -i Nullen von links, maskiere zu lesendes erstes Bit mit
-				 * logischem UND, gelesenes Bit 0 oder 1, 0x1 (hex) = 0000 0001(binär) */
-				bitToPow = (inputRead >>> 4 - i) & 0x1;
-				// addiere 2^Position
-				if (bitToPow == 1) outputToWrite += 1 << 7 - countEightBits;
-				// erhöhe Zähler-Position in Byte
-				countEightBits++;
-				// d.h. Byte vollständig gelesen für Schreiben in Output
-				if (countEightBits == 8) {
-					bufferedOutputStream.write(outputToWrite);
-					outputToWrite = 0;
-					countEightBits = 0;
+	/** Teilt den Bereich der Abschnitte, bis je Task ein Abschnitt übrig ist. */
+	private class TranscodeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final long firstChunk;
+		private final long endChunk;
+
+		TranscodeTask(long firstChunk, long endChunk) {
+			this.firstChunk = firstChunk;
+			this.endChunk = endChunk;
+		}
+
+		@Override
+		protected void compute() {
+			if (endChunk - firstChunk == 1) {
+				try {
+					transcodeChunk(firstChunk);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				} catch (ImageConverterException e) {
+					throw new InvalidCharacterException(e);
 				}
+				return;
 			}
-			inputRead = bufferedInputStream.read();
+			long middleChunk = firstChunk + (endChunk - firstChunk) / 2;
+			TranscodeTask secondHalf = new TranscodeTask(middleChunk, endChunk);
+			secondHalf.fork();
+			// erste Hälfte vor dem Join, damit ihr Fehler Vorrang hat
+			new TranscodeTask(firstChunk, middleChunk).compute();
+			secondHalf.join();
 		}
 	}
 
-	/** Verschlüsseln der Datei in Base-32-hex Alphabet aus binärer Darstellung */
-	private void encode() throws ImageConverterException, IOException {
-		// zu lesender binärer Input
-		int inputRead;
-		// Zähler für 5-Bit Base-32-hex Verschlüsselung
-		int countFiveBits = 0;
-		int outputToWrite = 0;
-		// Potenz 2^bitToPow
-		int bitToPow;
-
-		inputRead = bufferedInputStream.read();
-		while (inputRead != -1) {
-			for (int i = 0; i < 8; i++) {
-				/* ">>>": schiebe 7 -i Nullen von links, maskiere zu lesendes erstes Bit mit
-				 * logischem UND, gelesenes Bit 0 oder 1, 0x1 (hex) = 0000 0001(binär) */
-				bitToPow = (inputRead >>> 7 - i) & 0x1;
-				// addiere 2^Position
-				if (bitToPow == 1) outputToWrite += 1 << 4 - countFiveBits;
-
-				// erhöhe Zählerposition in 5-Bit Base-32-hex-Darstellung
-				countFiveBits++;
-
-				// d.h. 5-Bit vollständig gelesen
-				if (countFiveBits == 5) {
-					bufferedOutputStream.write(base32HexAlphabet.charAt(outputToWrite));
-					outputToWrite = 0;
-					countFiveBits = 0;
-				}
-			}
-			inputRead = bufferedInputStream.read();
+	/** Transportiert ImageConverterException aus einem Fork/Join-Task. */
+	private static class InvalidCharacterException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		InvalidCharacterException(ImageConverterException cause) {
+			super(cause);
 		}
 
-		// d.h. noch Zeichen zu schreiben, Byte nicht voll mit 5 Bits
-		if (countFiveBits != 0) {
-			// somit keine weitere Addition von 2^Position
-			bufferedOutputStream.write(base32HexAlphabet.charAt(outputToWrite));
+		@Override
+		public synchronized ImageConverterException getCause() {
+			return (ImageConverterException) super.getCause();
 		}
 	}
 }
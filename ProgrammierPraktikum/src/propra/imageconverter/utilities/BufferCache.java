@@ -0,0 +1,141 @@
+package propra.imageconverter.utilities;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Instanzen dieser Klasse halten je Thread die Lese-, Schreib- und Ringpuffer
+ * (64 KB bis 768 KB) abgeschlossener Konvertierungen für die nächste bereit,
+ * damit Batch-Konvertierungen und wiederholte Konvertierungen im Speicher sie
+ * nicht je Bild neu anlegen. <br>
+ * Ein mit take entnommener Puffer gehört bis zum Schließen des innersten
+ * geöffneten Scope des Threads dem Entnehmenden und kehrt danach in den Cache
+ * des Threads zurück. Ohne geöffneten Scope wird ein neuer Puffer angelegt und
+ * nicht zurückgenommen. Jeder Thread verwendet nur seinen eigenen Cache, eine
+ * Synchronisation ist daher nicht nötig. <br>
+ * Der Inhalt eines entnommenen Puffers ist undefiniert. Je Thread werden
+ * höchstens MAX_CACHED_BYTES Bytes vorgehalten.
+ *
+ * @author Martina Koch */
+public final class BufferCache {
+	/** maximale Anzahl Bytes freier Puffer je Thread */
+	static final long MAX_CACHED_BYTES = 16L * 1024 * 1024;
+	private static final ThreadLocal<BufferCache> THREAD_CACHE = ThreadLocal.withInitial(BufferCache::new);
+	/** freie Puffer je Länge */
+	private final Map<Integer, ArrayDeque<byte[]>> freeByteBuffers = new HashMap<>();
+	private final Map<Integer, ArrayDeque<int[]>> freeIntBuffers = new HashMap<>();
+	private long cachedBytes;
+	/** geöffnete Scopes, der innerste zuerst */
+	private final ArrayDeque<Scope> openScopes = new ArrayDeque<>();
+
+	private BufferCache() {
+	}
+
+	/** Öffnet einen Scope im aufrufenden Thread, der alle bis zu seinem
+	 * Schließen entnommenen Puffer aufnimmt. */
+	public static Scope openScope() {
+		BufferCache cache = THREAD_CACHE.get();
+		Scope scope = new Scope(cache);
+		cache.openScopes.push(scope);
+		return scope;
+	}
+
+	/** Entnimmt einen byte-Puffer der Länge length. */
+	public static byte[] take(int length) {
+		BufferCache cache = THREAD_CACHE.get();
+		Scope scope = cache.openScopes.peek();
+		if (scope == null) {
+			return new byte[length];
+		}
+		byte[] buffer = cache.pollFree(cache.freeByteBuffers, length, length);
+		if (buffer == null) {
+			buffer = new byte[length];
+		}
+		scope.byteBuffers.add(buffer);
+		return buffer;
+	}
+
+	/** Entnimmt einen int-Puffer der Länge length. */
+	public static int[] takeInts(int length) {
+		BufferCache cache = THREAD_CACHE.get();
+		Scope scope = cache.openScopes.peek();
+		if (scope == null) {
+			return new int[length];
+		}
+		int[] buffer = cache.pollFree(cache.freeIntBuffers, length, 4L * length);
+		if (buffer == null) {
+			buffer = new int[length];
+		}
+		scope.intBuffers.add(buffer);
+		return buffer;
+	}
+
+	private <T> T pollFree(Map<Integer, ArrayDeque<T>> freeBuffers, int length, long bytes) {
+		ArrayDeque<T> buffers = freeBuffers.get(length);
+		if (buffers == null || buffers.isEmpty()) {
+			return null;
+		}
+		cachedBytes -= bytes;
+		return buffers.pop();
+	}
+
+	private <T> void offerFree(Map<Integer, ArrayDeque<T>> freeBuffers, T buffer, int length, long bytes) {
+		if (cachedBytes + bytes <= MAX_CACHED_BYTES) {
+			freeBuffers.computeIfAbsent(length, key -> new ArrayDeque<>()).push(buffer);
+			cachedBytes += bytes;
+		}
+	}
+
+	private void closeScope(Scope scope, boolean isReusable) {
+		if (THREAD_CACHE.get() != this || openScopes.peek() != scope) {
+			throw new IllegalStateException("Scope muss im öffnenden Thread als innerster geschlossen werden");
+		}
+		openScopes.pop();
+		if (isReusable) {
+			for (byte[] buffer : scope.byteBuffers) {
+				offerFree(freeByteBuffers, buffer, buffer.length, buffer.length);
+			}
+			for (int[] buffer : scope.intBuffers) {
+				offerFree(freeIntBuffers, buffer, buffer.length, 4L * buffer.length);
+			}
+		}
+		scope.byteBuffers.clear();
+		scope.intBuffers.clear();
+	}
+
+	/** Instanzen dieser Klasse fassen die in einem Abschnitt eines Threads
+	 * entnommenen Puffer zusammen. Scopes werden in umgekehrter Reihenfolge
+	 * ihres Öffnens geschlossen. */
+	public static final class Scope implements AutoCloseable {
+		private final BufferCache cache;
+		private final List<byte[]> byteBuffers = new ArrayList<>();
+		private final List<int[]> intBuffers = new ArrayList<>();
+		private boolean isClosed;
+
+		private Scope(BufferCache cache) {
+			this.cache = cache;
+		}
+
+		/** Gibt die Puffer des Scope an den Cache des Threads zurück. Kein Puffer
+		 * darf danach noch verwendet werden. */
+		@Override
+		public void close() {
+			close(true);
+		}
+
+		/** Schließt den Scope, ohne seine Puffer zurückzugeben, z.B. wenn ein
+		 * anderer Thread sie noch verwenden könnte. */
+		public void discard() {
+			close(false);
+		}
+
+		private void close(boolean isReusable) {
+			if (!isClosed) {
+				isClosed = true;
+				cache.closeScope(this, isReusable);
+			}
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package propra.imageconverter.verify;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import propra.imageconverter.FileResult;
+import propra.imageconverter.ImageConverterException;
+import propra.imageconverter.Model;
+import propra.imageconverter.channel.FilePositionalChannel;
+import propra.imageconverter.channel.IPositionalChannel;
+import propra.imageconverter.checksum.CheckSum;
+import propra.imageconverter.checksum.CheckSumCalculatorParallel;
+import propra.imageconverter.enums.EFormat;
+
+/** Instanz dieser Klasse überprüft ProPra-Dateien, ohne sie zu konvertieren
+ * oder eine Ausgabedatei zu schreiben. Je Datei werden Formatkennung,
+ * Kompression und Datensegmentgröße aus dem Header geprüft und die Checksumme
+ * des Bilddatensegmentes parallel (CheckSumCalculatorParallel) berechnet und
+ * mit der Checksumme im Header verglichen. <br>
+ * Ist der Input-Pfad ein Verzeichnis, werden alle darin (auch in
+ * Unterverzeichnissen) enthaltenen ProPra-Dateien gleichzeitig überprüft.
+ * Die Ergebnisse je Datei werden als FileResult im Model bzw. in der
+ * ImageConverterException zurückgegeben.
+ *
+ * @author Martina Koch */
+public class VerifierProPra {
+	// entspricht Propra-Formatkennung "ProPraWiSe22" (12 Bytes)
+	private static final byte[] FORMATKENNUNG = { 80, 114, 111, 80, 114, 97, 87, 105, 83, 101, 50, 50 };
+	private static final int HEADER_LENGTH = EFormat.PROPRA.getHeaderLength();
+	private List<Path> filesToVerify;
+	private List<FileResult> fileResults = new ArrayList<>();
+	private int faultyFileCount;
+
+	public VerifierProPra(Model model) throws ImageConverterException, IOException {
+		collectFilesToVerify(Paths.get(model.getInputFilePath()));
+		verifyFilesConcurrently();
+
+		model.setFileResults(fileResults);
+		if (faultyFileCount > 0) {
+			throw new ImageConverterException(
+			        faultyFileCount + " von " + filesToVerify.size() + " Dateien fehlerhaft", fileResults);
+		}
+	}
+
+	private void collectFilesToVerify(Path inputPath) throws ImageConverterException, IOException {
+		if (Files.isDirectory(inputPath)) {
+			try (Stream<Path> paths = Files.walk(inputPath)) {
+				filesToVerify = paths.filter(Files::isRegularFile)
+				        .filter(path -> path.toString().toLowerCase().endsWith(".propra")).sorted()
+				        .collect(Collectors.toList());
+			}
+		} else if (Files.isRegularFile(inputPath)) {
+			filesToVerify = List.of(inputPath);
+		} else {
+			throw new ImageConverterException("Zu prüfende Datei nicht gefunden: " + inputPath);
+		}
+	}
+
+	/** Überprüft alle Dateien gleichzeitig in einem Thread-Pool und sammelt die
+	 * Ergebnisse in der Reihenfolge der Dateien. */
+	private void verifyFilesConcurrently() throws IOException {
+		ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (Path file : filesToVerify) {
+				results.add(executorService.submit(() -> verifyFile(file)));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				String error = results.get(i).get();
+				fileResults.add(new FileResult(filesToVerify.get(i), null, error));
+				if (error != null) {
+					faultyFileCount++;
+				}
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IOException("Überprüfung abgebrochen: " + e.getMessage(), e);
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	/** Überprüft eine ProPra-Datei.
+	 *
+	 * @return Fehlermeldung oder null, wenn die Datei konsistent ist */
+	static String verifyFile(Path file) {
+		try (IPositionalChannel fileChannel = FilePositionalChannel.open(file, StandardOpenOption.READ)) {
+			long fileLength = fileChannel.size();
+			if (fileLength < HEADER_LENGTH) {
+				return "Datei kürzer als ProPra-Header";
+			}
+			ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining()) {
+				if (fileChannel.read(header, header.position()) == -1) {
+					break;
+				}
+			}
+			if (!Arrays.equals(Arrays.copyOf(header.array(), FORMATKENNUNG.length), FORMATKENNUNG)) {
+				return "Falscher Formatcode in ProPra-Datei";
+			}
+			if (header.get(12) < 0 || header.get(12) > 2) {
+				return "Kompressionstyp nicht zulässig";
+			}
+			long dataSegmentSizeInHeader = header.getLong(18);
+			long checkSumInHeader = header.getInt(26) & 0xffffffffL;
+			if (dataSegmentSizeInHeader != fileLength - HEADER_LENGTH) {
+				return "Datensegmentgröße im Header (" + dataSegmentSizeInHeader
+				        + ") stimmt nicht mit Datei überein (" + (fileLength - HEADER_LENGTH) + ")";
+			}
+
+			CheckSum checkSum = CheckSumCalculatorParallel.calculate(fileChannel, HEADER_LENGTH,
+			        dataSegmentSizeInHeader);
+			if (checkSum.finallyCalculateChecksum() != checkSumInHeader) {
+				return "Checksumme nicht korrekt";
+			}
+			return null;
+		} catch (IOException e) {
+			return e.getMessage();
+		}
+	}
+}